@@ -0,0 +1,118 @@
+package com.halboom.pgt.benchmarks;
+
+import com.halboom.pgt.physics.simple.ColliderBoxes;
+import com.halboom.pgt.physics.simple.CollisionInformation;
+import com.halboom.pgt.physics.simple.CollisionResolver;
+import com.halboom.pgt.physics.simple.shapes.BoundsBox;
+import com.jme3.math.Vector3f;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares resolving a mover against the tiles around it through the allocating entry point
+ * with the entry points that write into a reused result.
+ * Run with "-prof gc" to see the allocation rate of each.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class CollisionResolverBenchmark {
+    /**
+     * Number of tiles along each side of the floor under the mover.
+     */
+    private static final int FLOOR_SIZE = 4;
+
+    /**
+     * Resolver to benchmark.
+     */
+    private CollisionResolver resolver;
+
+    /**
+     * Bounds of the mover.
+     */
+    private BoundsBox mover;
+
+    /**
+     * Move of the mover for the allocating entry point.
+     */
+    private Vector3f moveAmount;
+
+    /**
+     * Tile boxes around the mover as bounds.
+     */
+    private List<BoundsBox> colliders;
+
+    /**
+     * Tile boxes around the mover as primitive arrays.
+     */
+    private ColliderBoxes boxes;
+
+    /**
+     * Reused result of the allocation free entry points.
+     */
+    private CollisionInformation information;
+
+    /**
+     * Places a mover over a floor of tiles with a wall to its side like the grid collider would gather.
+     */
+    @Setup
+    public void setUp() {
+        resolver = new CollisionResolver();
+        mover = new BoundsBox(new Vector3f(0.5f, 1.9f, 0.5f), 0.4f, 0.9f, 0.4f);
+        moveAmount = new Vector3f(0.3f, -0.8f, 0.2f);
+        colliders = new ArrayList<BoundsBox>();
+        for (int x = -FLOOR_SIZE / 2; x < FLOOR_SIZE / 2; x++) {
+            for (int z = -FLOOR_SIZE / 2; z < FLOOR_SIZE / 2; z++) {
+                colliders.add(new BoundsBox(new Vector3f(x, 0, z), new Vector3f(x + 1, 1, z + 1)));
+            }
+            colliders.add(new BoundsBox(new Vector3f(1, 1, x), new Vector3f(2, 2, x + 1)));
+            colliders.add(new BoundsBox(new Vector3f(1, 2, x), new Vector3f(2, 3, x + 1)));
+        }
+        boxes = new ColliderBoxes();
+        for (BoundsBox collider : colliders) {
+            boxes.add(collider);
+        }
+        information = new CollisionInformation();
+    }
+
+    /**
+     * @return the resolution from the entry point that creates its result.
+     */
+    @Benchmark
+    public CollisionInformation resolveAllocating() {
+        return resolver.resolveCollision(mover, moveAmount, colliders);
+    }
+
+    /**
+     * @return the resolution against the bounds list written into the reused result.
+     */
+    @Benchmark
+    public CollisionInformation resolveList() {
+        resolver.resolveCollision(mover, moveAmount.x, moveAmount.y, moveAmount.z, colliders, information);
+        return information;
+    }
+
+    /**
+     * @return the resolution against the primitive boxes written into the reused result.
+     */
+    @Benchmark
+    public CollisionInformation resolveBoxes() {
+        resolver.resolveCollision(mover, moveAmount.x, moveAmount.y, moveAmount.z, boxes, information);
+        return information;
+    }
+}
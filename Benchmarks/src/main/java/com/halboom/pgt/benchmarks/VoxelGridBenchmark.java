@@ -0,0 +1,266 @@
+package com.halboom.pgt.benchmarks;
+
+import com.halboom.pgt.pgutil.voxel.ArrayVoxelGrid;
+import com.halboom.pgt.pgutil.voxel.ChunkedVoxelGrid;
+import com.halboom.pgt.pgutil.voxel.VoxelGrid;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the old nested byte[][][] tile layout with the voxel grids for the neighbour lookups done by the
+ * meshers and the tile scans done by the grid collider.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class VoxelGridBenchmark {
+    /**
+     * Size of the benchmarked map.
+     */
+    private static final int LENGTH_X = 128, LENGTH_Y = 64, LENGTH_Z = 128;
+
+    /**
+     * Size of the chunk meshed per benchmark call.
+     */
+    private static final int CHUNK_SIZE = 16;
+
+    /**
+     * Number of boxes swept through the tiles per benchmark call.
+     */
+    private static final int SWEEPS = 256;
+
+    /**
+     * Tiles in the nested layout the grids replaced.
+     */
+    private byte[][][] arrayTiles;
+
+    /**
+     * Tiles in a flat array.
+     */
+    private VoxelGrid flatTiles;
+
+    /**
+     * Tiles in sparse paletted sections.
+     */
+    private VoxelGrid chunkedTiles;
+
+    /**
+     * Minimum corners of the swept boxes as x, y and z tile indices.
+     */
+    private int[] sweepStarts;
+
+    /**
+     * Fills the map with rolling hills and picks the swept boxes.
+     */
+    @Setup
+    public void setUp() {
+        arrayTiles = new byte[LENGTH_X][LENGTH_Y][LENGTH_Z];
+        for (int x = 0; x < LENGTH_X; x++) {
+            for (int z = 0; z < LENGTH_Z; z++) {
+                int height = (int) (LENGTH_Y / 2 + Math.sin(x * 0.1) * 8 + Math.cos(z * 0.13) * 8);
+                for (int y = 0; y < height; y++) {
+                    arrayTiles[x][y][z] = (byte) (y < height - 3 ? 1 : 2);
+                }
+            }
+        }
+        flatTiles = ArrayVoxelGrid.fromArray(arrayTiles);
+        chunkedTiles = ChunkedVoxelGrid.copyOf(flatTiles);
+
+        // Boxes around the surface where movers usually are.
+        Random random = new Random(0);
+        sweepStarts = new int[SWEEPS * 3];
+        for (int i = 0; i < SWEEPS; i++) {
+            sweepStarts[i * 3] = random.nextInt(LENGTH_X - 4);
+            sweepStarts[i * 3 + 1] = LENGTH_Y / 2 - 12 + random.nextInt(24);
+            sweepStarts[i * 3 + 2] = random.nextInt(LENGTH_Z - 4);
+        }
+    }
+
+    /**
+     * @return the visible faces of the tiles of a chunk in the nested layout.
+     */
+    @Benchmark
+    public int meshArray() {
+        int faces = 0;
+        for (int x = 0; x < CHUNK_SIZE; x++) {
+            for (int y = LENGTH_Y / 2 - CHUNK_SIZE / 2; y < LENGTH_Y / 2 + CHUNK_SIZE / 2; y++) {
+                for (int z = 0; z < CHUNK_SIZE; z++) {
+                    if (arrayTiles[x][y][z] != 0) {
+                        faces += getVisibleDirections(arrayTiles, x, y, z);
+                    }
+                }
+            }
+        }
+        return faces;
+    }
+
+    /**
+     * @return the visible faces of the tiles of a chunk in the flat grid.
+     */
+    @Benchmark
+    public int meshFlat() {
+        return mesh(flatTiles);
+    }
+
+    /**
+     * @return the visible faces of the tiles of a chunk in the sectioned grid.
+     */
+    @Benchmark
+    public int meshChunked() {
+        return mesh(chunkedTiles);
+    }
+
+    /**
+     * @return the solid tiles touched by the swept boxes in the nested layout.
+     */
+    @Benchmark
+    public int sweepArray() {
+        int solid = 0;
+        for (int i = 0; i < SWEEPS; i++) {
+            int startX = sweepStarts[i * 3], startY = sweepStarts[i * 3 + 1], startZ = sweepStarts[i * 3 + 2];
+            for (int x = startX; x < startX + 4; x++) {
+                for (int y = startY; y < startY + 4; y++) {
+                    for (int z = startZ; z < startZ + 4; z++) {
+                        if (arrayTiles[x][y][z] != 0) {
+                            solid++;
+                        }
+                    }
+                }
+            }
+        }
+        return solid;
+    }
+
+    /**
+     * @return the solid tiles touched by the swept boxes in the flat grid.
+     */
+    @Benchmark
+    public int sweepFlat() {
+        return sweep(flatTiles);
+    }
+
+    /**
+     * @return the solid tiles touched by the swept boxes in the sectioned grid.
+     */
+    @Benchmark
+    public int sweepChunked() {
+        return sweep(chunkedTiles);
+    }
+
+    /**
+     * Counts the visible faces of the tiles of a chunk like the meshers do before building quads.
+     * @param tiles the tiles to mesh.
+     * @return the visible faces as a sum of direction flags.
+     */
+    private int mesh(VoxelGrid tiles) {
+        int faces = 0;
+        for (int x = 0; x < CHUNK_SIZE; x++) {
+            for (int y = LENGTH_Y / 2 - CHUNK_SIZE / 2; y < LENGTH_Y / 2 + CHUNK_SIZE / 2; y++) {
+                for (int z = 0; z < CHUNK_SIZE; z++) {
+                    if (tiles.get(x, y, z) != 0) {
+                        faces += getVisibleDirections(tiles, x, y, z);
+                    }
+                }
+            }
+        }
+        return faces;
+    }
+
+    /**
+     * Counts the solid tiles overlapped by each swept box like the grid collider does.
+     * @param tiles the tiles to sweep through.
+     * @return the number of solid tiles touched.
+     */
+    private int sweep(VoxelGrid tiles) {
+        int solid = 0;
+        for (int i = 0; i < SWEEPS; i++) {
+            int startX = sweepStarts[i * 3], startY = sweepStarts[i * 3 + 1], startZ = sweepStarts[i * 3 + 2];
+            for (int x = startX; x < startX + 4; x++) {
+                for (int y = startY; y < startY + 4; y++) {
+                    for (int z = startZ; z < startZ + 4; z++) {
+                        if (tiles.get(x, y, z) != 0) {
+                            solid++;
+                        }
+                    }
+                }
+            }
+        }
+        return solid;
+    }
+
+    /**
+     * Finds the open sides of a tile in the nested layout the way the meshers used to.
+     * @param tiles the tiles to check.
+     * @param x the x index of the tile.
+     * @param y the y index of the tile.
+     * @param z the z index of the tile.
+     * @return the open sides as flags.
+     */
+    private static int getVisibleDirections(byte[][][] tiles, int x, int y, int z) {
+        int direction = 0;
+        if (x == 0 || tiles[x - 1][y][z] == 0) {
+            direction |= 1;
+        }
+        if (x == tiles.length - 1 || tiles[x + 1][y][z] == 0) {
+            direction |= 2;
+        }
+        if (z == 0 || tiles[x][y][z - 1] == 0) {
+            direction |= 4;
+        }
+        if (z == tiles[x][y].length - 1 || tiles[x][y][z + 1] == 0) {
+            direction |= 8;
+        }
+        if (y == tiles[x].length - 1 || tiles[x][y + 1][z] == 0) {
+            direction |= 16;
+        }
+        if (y == 0 || tiles[x][y - 1][z] == 0) {
+            direction |= 32;
+        }
+        return direction;
+    }
+
+    /**
+     * Finds the open sides of a tile in a voxel grid the way the meshers do.
+     * @param tiles the tiles to check.
+     * @param x the x index of the tile.
+     * @param y the y index of the tile.
+     * @param z the z index of the tile.
+     * @return the open sides as flags.
+     */
+    private static int getVisibleDirections(VoxelGrid tiles, int x, int y, int z) {
+        int direction = 0;
+        if (x == 0 || tiles.get(x - 1, y, z) == 0) {
+            direction |= 1;
+        }
+        if (x == tiles.getLengthX() - 1 || tiles.get(x + 1, y, z) == 0) {
+            direction |= 2;
+        }
+        if (z == 0 || tiles.get(x, y, z - 1) == 0) {
+            direction |= 4;
+        }
+        if (z == tiles.getLengthZ() - 1 || tiles.get(x, y, z + 1) == 0) {
+            direction |= 8;
+        }
+        if (y == tiles.getLengthY() - 1 || tiles.get(x, y + 1, z) == 0) {
+            direction |= 16;
+        }
+        if (y == 0 || tiles.get(x, y - 1, z) == 0) {
+            direction |= 32;
+        }
+        return direction;
+    }
+}
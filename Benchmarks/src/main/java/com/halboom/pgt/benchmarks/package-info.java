@@ -0,0 +1,5 @@
+/**
+ * This package contains JMH benchmarks for the hot paths of the terrain and the physics.
+ * Run them with the Benchmarks application, for example "gradle :Benchmarks:run".
+ */
+package com.halboom.pgt.benchmarks;
@@ -32,4 +32,12 @@ public class DebugKeys {
      * Toggles the coordinate axis on or off.
      */
     public static HotKey toggleAxis = new HotKey("Debug Toggle Axis", new KeyTrigger(KeyInput.KEY_U));
+    /**
+     * Toggles the profiler overlay on or off; profiling is enabled while shown.
+     */
+    public static HotKey toggleProfiler = new HotKey("Debug Toggle Profiler", new KeyTrigger(KeyInput.KEY_H));
+    /**
+     * Dumps the profiler to files in the working directory.
+     */
+    public static HotKey dumpProfiler = new HotKey("Debug Dump Profiler", new KeyTrigger(KeyInput.KEY_J));
 }
@@ -8,6 +8,15 @@ import com.jme3.scene.Geometry;
 import com.jme3.scene.Node;
 import com.jme3.scene.SceneGraphVisitor;
 import com.jme3.scene.Spatial;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.text.SimpleDateFormat;
+import java.util.Date;
 
 /**
  * Created with IntelliJ IDEA.
@@ -17,6 +26,11 @@ import com.jme3.scene.Spatial;
  * Debugging hotkeys for both the editor and game.
  */
 public class DebugTools extends InputActions {
+    /**
+     * Logger for the debug tools.
+     */
+    private static Logger log = LoggerFactory.getLogger(DebugTools.class);
+
     /**
      * The application to debug.
      */
@@ -68,6 +82,19 @@ public class DebugTools extends InputActions {
      */
     private static final float COMPASS_INSET = 60.0f;
 
+    /**
+     * Overlay showing the profiler.
+     */
+    private ProfilerOverlay profilerOverlay;
+    /**
+     * Amount the profiler overlay goes into the screen from the top right corner.
+     */
+    private static final float PROFILER_INSET = 320.0f;
+    /**
+     * Format of the time in the names of profiler dumps.
+     */
+    private static final String DUMP_TIME_FORMAT = "yyyyMMdd-HHmmss";
+
     /**
      * Initializes the movement.
      * @param app the app to use with the movement.
@@ -79,12 +106,15 @@ public class DebugTools extends InputActions {
         this.rootNode = app.getRootNode();
         grid = new Grid(app.getAssetManager());
         compass = new Compass(app.getAssetManager());
+        profilerOverlay = new ProfilerOverlay(app.getAssetManager(), Profiler.getInstance());
 
         registerAction(DebugKeys.toggleWireframe);
         registerAction(DebugKeys.toggleGrid);
         registerAction(DebugKeys.toggleStats);
         registerAction(DebugKeys.toggleFPS);
         registerAction(DebugKeys.toggleAxis);
+        registerAction(DebugKeys.toggleProfiler);
+        registerAction(DebugKeys.dumpProfiler);
     }
 
     @Override
@@ -114,6 +144,13 @@ public class DebugTools extends InputActions {
                 Camera camera = app.getCamera();
                 compass.setPosition(new Vector3f(COMPASS_INSET, camera.getHeight() - COMPASS_INSET, 0));
                 compass.setScale(COMPASS_SCALE);
+            } else if (name.equals(DebugKeys.toggleProfiler.name)) {
+                profilerOverlay.toggle(app.getGuiNode());
+                Camera camera = app.getCamera();
+                profilerOverlay.setPosition(new Vector3f(camera.getWidth() - PROFILER_INSET, camera.getHeight(), 0));
+                Profiler.getInstance().setIsEnabled(profilerOverlay.isAttached());
+            } else if (name.equals(DebugKeys.dumpProfiler.name)) {
+                dumpProfiler();
             }
         }
     }
@@ -134,6 +171,33 @@ public class DebugTools extends InputActions {
             Vector3f cameraPosition = app.getCamera().getLocation();
             compass.setCoordinateLabels(cameraPosition.x, cameraPosition.y, cameraPosition.z);
         }
+        if (profilerOverlay.isAttached()) {
+            profilerOverlay.update(tpf);
+        }
+    }
+
+    /**
+     * Writes the profiler as CSV and JSON files in the working directory.
+     */
+    private void dumpProfiler() {
+        String name = "profile-" + new SimpleDateFormat(DUMP_TIME_FORMAT).format(new Date());
+        try {
+            Writer csvWriter = new FileWriter(new File(name + ".csv"));
+            try {
+                Profiler.getInstance().writeCsv(csvWriter);
+            } finally {
+                csvWriter.close();
+            }
+            Writer jsonWriter = new FileWriter(new File(name + ".json"));
+            try {
+                Profiler.getInstance().writeJson(jsonWriter);
+            } finally {
+                jsonWriter.close();
+            }
+            log.info("Dumped the profiler to " + name);
+        } catch (IOException e) {
+            log.error("Could not dump the profiler to " + name, e);
+        }
     }
 
     @Override
@@ -157,6 +221,8 @@ public class DebugTools extends InputActions {
         remapAction(DebugKeys.toggleStats);
         remapAction(DebugKeys.toggleFPS);
         remapAction(DebugKeys.toggleAxis);
+        remapAction(DebugKeys.toggleProfiler);
+        remapAction(DebugKeys.dumpProfiler);
     }
 
     /**
@@ -172,4 +238,11 @@ public class DebugTools extends InputActions {
     public Compass getCompass() {
         return compass;
     }
+
+    /**
+     * @return the profiler overlay.
+     */
+    public ProfilerOverlay getProfilerOverlay() {
+        return profilerOverlay;
+    }
 }
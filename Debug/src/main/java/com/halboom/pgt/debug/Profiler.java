@@ -0,0 +1,307 @@
+package com.halboom.pgt.debug;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Times named sections of the game such as each subsystem and keeps rolling percentiles of them.
+ * Sections are timed by passing the time from begin to end so nested and parallel sections need no bookkeeping.
+ * When disabled beginning and ending a section only checks a flag.
+ */
+public final class Profiler {
+    /**
+     * Singleton instance.
+     */
+    private static Profiler ourInstance = new Profiler();
+
+    /**
+     * @return the singleton instance.
+     */
+    public static Profiler getInstance() {
+        return ourInstance;
+    }
+
+    /**
+     * Name of the section timing whole frames.
+     */
+    public static final String FRAME = "frame";
+
+    /**
+     * Name of the section holding the bytes allocated by the frame thread per frame.
+     */
+    public static final String ALLOCATION = "allocation";
+
+    /**
+     * Number of latest samples kept for each section.
+     */
+    private static final int SAMPLE_COUNT = 300;
+
+    /**
+     * Percentiles reported for each section.
+     */
+    public static final float[] PERCENTILES = new float[]{50, 95, 99};
+
+    /**
+     * True to record sections.
+     */
+    private volatile boolean isEnabled = false;
+
+    /**
+     * Sections by name.
+     */
+    private ConcurrentMap<String, ProfilerSection> sections = new ConcurrentHashMap<String, ProfilerSection>();
+
+    /**
+     * Latest values of counters such as the number of entities with a component.
+     */
+    private ConcurrentMap<String, Integer> counts = new ConcurrentHashMap<String, Integer>();
+
+    /**
+     * Bean to read the bytes allocated by a thread, null if not supported.
+     */
+    private com.sun.management.ThreadMXBean allocationBean;
+
+    /**
+     * Time the current frame started.
+     */
+    private long frameStartTime = 0;
+
+    /**
+     * Bytes allocated by the frame thread when the current frame started, -1 if unknown.
+     */
+    private long frameStartAllocation = -1;
+
+    /**
+     * Initializes the profiler.
+     */
+    private Profiler() {
+        ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+        if (threadBean instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) threadBean;
+            if (bean.isThreadAllocatedMemorySupported()) {
+                allocationBean = bean;
+            }
+        }
+    }
+
+    /**
+     * Starts timing a section.
+     * @return the start time to pass when ending the section.
+     */
+    public long begin() {
+        return isEnabled ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Ends timing a section.
+     * @param name the name of the section.
+     * @param startTime the start time returned when the section began.
+     */
+    public void end(String name, long startTime) {
+        if (isEnabled && startTime != 0) {
+            record(name, System.nanoTime() - startTime);
+        }
+    }
+
+    /**
+     * Records a timing measured elsewhere.
+     * @param name the name of the section.
+     * @param nanoseconds the time the section took.
+     */
+    public void record(String name, long nanoseconds) {
+        if (isEnabled) {
+            getSection(name, false).add(nanoseconds);
+        }
+    }
+
+    /**
+     * Sets the value of a counter.
+     * @param name the name of the counter.
+     * @param count the value of the counter.
+     */
+    public void setCount(String name, int count) {
+        if (isEnabled) {
+            counts.put(name, count);
+        }
+    }
+
+    /**
+     * Starts a frame on the calling thread.
+     */
+    public void beginFrame() {
+        if (!isEnabled) {
+            return;
+        }
+        frameStartTime = System.nanoTime();
+        frameStartAllocation = getAllocatedBytes();
+    }
+
+    /**
+     * Ends the frame started on the calling thread and records its time and allocations.
+     */
+    public void endFrame() {
+        if (!isEnabled || frameStartTime == 0) {
+            return;
+        }
+        getSection(FRAME, false).add(System.nanoTime() - frameStartTime);
+        long allocation = getAllocatedBytes();
+        if (frameStartAllocation >= 0 && allocation >= 0) {
+            getSection(ALLOCATION, true).add(allocation - frameStartAllocation);
+        }
+    }
+
+    /**
+     * @return the bytes allocated by the calling thread, -1 if unknown.
+     */
+    private long getAllocatedBytes() {
+        if (allocationBean == null || !allocationBean.isThreadAllocatedMemoryEnabled()) {
+            return -1;
+        }
+        return allocationBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    /**
+     * @param name the name of the section.
+     * @param isBytes true if the section holds bytes.
+     * @return the section with the name, created if it does not exist.
+     */
+    private ProfilerSection getSection(String name, boolean isBytes) {
+        ProfilerSection section = sections.get(name);
+        if (section == null) {
+            ProfilerSection created = new ProfilerSection(name, isBytes, SAMPLE_COUNT);
+            section = sections.putIfAbsent(name, created);
+            if (section == null) {
+                section = created;
+            }
+        }
+        return section;
+    }
+
+    /**
+     * @return the sections sorted by name.
+     */
+    public List<ProfilerSection> getSections() {
+        List<ProfilerSection> sorted = new ArrayList<ProfilerSection>(sections.values());
+        Collections.sort(sorted, new Comparator<ProfilerSection>() {
+            @Override
+            public int compare(ProfilerSection first, ProfilerSection second) {
+                return first.getName().compareTo(second.getName());
+            }
+        });
+        return sorted;
+    }
+
+    /**
+     * @return the latest values of the counters sorted by name.
+     */
+    public Map<String, Integer> getCounts() {
+        return new TreeMap<String, Integer>(counts);
+    }
+
+    /**
+     * Removes every sample and counter.
+     */
+    public void clear() {
+        sections.clear();
+        counts.clear();
+        frameStartTime = 0;
+    }
+
+    /**
+     * Writes the sections and counters as comma separated values.
+     * @param writer the writer to write to.
+     * @throws IOException if the writer fails.
+     */
+    public void writeCsv(Writer writer) throws IOException {
+        writer.write("section,unit,samples");
+        for (float percentile : PERCENTILES) {
+            writer.write(",p" + (int) percentile);
+        }
+        writer.write(",max\n");
+        for (ProfilerSection section : getSections()) {
+            writer.write(section.getName() + "," + getUnit(section) + "," + section.getCount());
+            for (float percentile : PERCENTILES) {
+                writer.write("," + section.getPercentile(percentile));
+            }
+            writer.write("," + section.getMax() + "\n");
+        }
+        writer.write("\ncounter,value\n");
+        for (Map.Entry<String, Integer> entry : getCounts().entrySet()) {
+            writer.write(entry.getKey() + "," + entry.getValue() + "\n");
+        }
+        writer.flush();
+    }
+
+    /**
+     * Writes the sections and counters as JSON.
+     * @param writer the writer to write to.
+     * @throws IOException if the writer fails.
+     */
+    public void writeJson(Writer writer) throws IOException {
+        writer.write("{\"sections\":[");
+        boolean isFirst = true;
+        for (ProfilerSection section : getSections()) {
+            if (!isFirst) {
+                writer.write(",");
+            }
+            isFirst = false;
+            writer.write("{\"name\":" + quote(section.getName()) + ",\"unit\":\"" + getUnit(section)
+                    + "\",\"samples\":" + section.getCount());
+            for (float percentile : PERCENTILES) {
+                writer.write(",\"p" + (int) percentile + "\":" + section.getPercentile(percentile));
+            }
+            writer.write(",\"max\":" + section.getMax() + "}");
+        }
+        writer.write("],\"counters\":{");
+        isFirst = true;
+        for (Map.Entry<String, Integer> entry : getCounts().entrySet()) {
+            if (!isFirst) {
+                writer.write(",");
+            }
+            isFirst = false;
+            writer.write(quote(entry.getKey()) + ":" + entry.getValue());
+        }
+        writer.write("}}\n");
+        writer.flush();
+    }
+
+    /**
+     * @param section the section to get the unit of.
+     * @return the unit of the samples of the section.
+     */
+    private String getUnit(ProfilerSection section) {
+        return section.getIsBytes() ? "bytes" : "ns";
+    }
+
+    /**
+     * @param text the text to quote.
+     * @return the text as a JSON string.
+     */
+    private String quote(String text) {
+        return "\"" + text.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+    }
+
+    /**
+     * @param isEnabled true to record sections.
+     */
+    public void setIsEnabled(boolean isEnabled) {
+        this.isEnabled = isEnabled;
+    }
+
+    /**
+     * @return true if sections are recorded.
+     */
+    public boolean getIsEnabled() {
+        return isEnabled;
+    }
+}
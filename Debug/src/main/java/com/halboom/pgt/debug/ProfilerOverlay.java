@@ -0,0 +1,143 @@
+package com.halboom.pgt.debug;
+
+import com.jme3.asset.AssetManager;
+import com.jme3.font.BitmapFont;
+import com.jme3.font.BitmapText;
+import com.jme3.math.ColorRGBA;
+import com.jme3.math.Vector3f;
+import com.jme3.scene.Node;
+
+import java.util.Map;
+
+/**
+ * Shows the profiled sections and counters of the profiler on the screen.
+ */
+public class ProfilerOverlay {
+    /**
+     * Default text size.
+     */
+    private static final float DEFAULT_TEXT_SIZE = 13.0f;
+
+    /**
+     * Seconds between refreshing the text.
+     */
+    private static final float REFRESH_INTERVAL = 0.5f;
+
+    /**
+     * Nanoseconds in a millisecond.
+     */
+    private static final float NANOSECONDS_PER_MILLISECOND = 1000000f;
+
+    /**
+     * Bytes in a kilobyte.
+     */
+    private static final float BYTES_PER_KILOBYTE = 1024f;
+
+    /**
+     * Profiler to show.
+     */
+    private Profiler profiler;
+
+    /**
+     * Text showing the profiler.
+     */
+    private BitmapText text;
+
+    /**
+     * Time since the text was refreshed.
+     */
+    private float refreshTime = REFRESH_INTERVAL;
+
+    /**
+     * Initializes the overlay.
+     * @param assetManager the asset manager to load the font with.
+     * @param profiler the profiler to show.
+     */
+    public ProfilerOverlay(AssetManager assetManager, Profiler profiler) {
+        this.profiler = profiler;
+
+        BitmapFont font = assetManager.loadFont("Interface/Fonts/Default.fnt");
+        text = new BitmapText(font, false);
+        text.setSize(DEFAULT_TEXT_SIZE);
+        text.setColor(ColorRGBA.White);
+    }
+
+    /**
+     * Refreshes the text after enough time has passed.
+     * @param tpf the time per frame.
+     */
+    public void update(float tpf) {
+        refreshTime += tpf;
+        if (refreshTime < REFRESH_INTERVAL) {
+            return;
+        }
+        refreshTime = 0;
+
+        StringBuilder builder = new StringBuilder("section p50 p95 p99 max\n");
+        for (ProfilerSection section : profiler.getSections()) {
+            builder.append(section.getName());
+            for (float percentile : Profiler.PERCENTILES) {
+                builder.append(' ').append(format(section, section.getPercentile(percentile)));
+            }
+            builder.append(' ').append(format(section, section.getMax())).append('\n');
+        }
+        for (Map.Entry<String, Integer> entry : profiler.getCounts().entrySet()) {
+            builder.append(entry.getKey()).append(": ").append(entry.getValue()).append('\n');
+        }
+        text.setText(builder.toString());
+    }
+
+    /**
+     * @param section the section the value is from.
+     * @param value the value to format.
+     * @return the value in milliseconds or kilobytes.
+     */
+    private String format(ProfilerSection section, long value) {
+        if (section.getIsBytes()) {
+            return String.format("%.1fkb", value / BYTES_PER_KILOBYTE);
+        }
+        return String.format("%.2fms", value / NANOSECONDS_PER_MILLISECOND);
+    }
+
+    /**
+     * @param position the position of the top left corner of the text.
+     */
+    public void setPosition(Vector3f position) {
+        text.setLocalTranslation(position);
+    }
+
+    /**
+     * Attaches the overlay to the node.
+     * @param parent the node to attach the overlay to.
+     */
+    public void attachTo(Node parent) {
+        refreshTime = REFRESH_INTERVAL;
+        parent.attachChild(text);
+    }
+
+    /**
+     * Detaches the overlay.
+     */
+    public void detach() {
+        text.removeFromParent();
+    }
+
+    /**
+     * Toggles the overlay of and on.
+     * @param parent the node to attach to if toggled on.
+     */
+    public void toggle(Node parent) {
+        if (isAttached()) {
+            detach();
+        } else {
+            attachTo(parent);
+        }
+    }
+
+    /**
+     * @return true if the overlay is attached to a node.
+     */
+    public boolean isAttached() {
+        return text.getParent() != null;
+    }
+}
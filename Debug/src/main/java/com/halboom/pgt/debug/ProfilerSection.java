@@ -0,0 +1,119 @@
+package com.halboom.pgt.debug;
+
+import java.util.Arrays;
+
+/**
+ * Rolling window of the latest samples of a profiled section.
+ * Samples may be added from any thread.
+ */
+public class ProfilerSection {
+    /**
+     * Name of the section.
+     */
+    private final String name;
+
+    /**
+     * True if the samples are bytes, false if they are nanoseconds.
+     */
+    private final boolean isBytes;
+
+    /**
+     * Latest samples as a ring buffer.
+     */
+    private final long[] samples;
+
+    /**
+     * Number of samples in the ring buffer.
+     */
+    private int size = 0;
+
+    /**
+     * Index the next sample is placed at.
+     */
+    private int next = 0;
+
+    /**
+     * Number of samples ever added.
+     */
+    private long count = 0;
+
+    /**
+     * Initializes the section.
+     * @param name the name of the section.
+     * @param isBytes true if the samples are bytes, false if they are nanoseconds.
+     * @param sampleCount the number of latest samples to keep.
+     */
+    public ProfilerSection(String name, boolean isBytes, int sampleCount) {
+        this.name = name;
+        this.isBytes = isBytes;
+        samples = new long[sampleCount];
+    }
+
+    /**
+     * Adds a sample replacing the oldest one if full.
+     * @param value the value of the sample.
+     */
+    public final synchronized void add(long value) {
+        samples[next] = value;
+        next = (next + 1) % samples.length;
+        if (size < samples.length) {
+            size++;
+        }
+        count++;
+    }
+
+    /**
+     * @param percentile the percentile to find from 0 to 100.
+     * @return the sample value at the percentile of the latest samples, 0 if there are none.
+     */
+    public final synchronized long getPercentile(float percentile) {
+        if (size == 0) {
+            return 0;
+        }
+        long[] sorted = Arrays.copyOf(samples, size);
+        Arrays.sort(sorted);
+        int index = (int) Math.ceil(percentile / 100f * size) - 1;
+        return sorted[Math.max(0, Math.min(size - 1, index))];
+    }
+
+    /**
+     * @return the largest of the latest samples, 0 if there are none.
+     */
+    public final synchronized long getMax() {
+        long max = 0;
+        for (int i = 0; i < size; i++) {
+            max = Math.max(max, samples[i]);
+        }
+        return max;
+    }
+
+    /**
+     * Removes every sample.
+     */
+    public final synchronized void clear() {
+        size = 0;
+        next = 0;
+        count = 0;
+    }
+
+    /**
+     * @return the name of the section.
+     */
+    public final String getName() {
+        return name;
+    }
+
+    /**
+     * @return true if the samples are bytes, false if they are nanoseconds.
+     */
+    public final boolean getIsBytes() {
+        return isBytes;
+    }
+
+    /**
+     * @return the number of samples ever added.
+     */
+    public final synchronized long getCount() {
+        return count;
+    }
+}
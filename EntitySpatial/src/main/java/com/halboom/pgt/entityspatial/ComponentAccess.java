@@ -0,0 +1,19 @@
+package com.halboom.pgt.entityspatial;
+
+/**
+ * Declares the components a subsystem touches during its update so the scheduler can run it alongside others.
+ * Only subsystems that change fields of existing components should declare access.
+ * Subsystems that add or remove components or entities, touch the scene graph or call out to callbacks
+ * should not implement this so they always run alone in order.
+ */
+public interface ComponentAccess {
+    /**
+     * @return the component classes the subsystem only reads during its update.
+     */
+    Class<?>[] getReadComponents();
+
+    /**
+     * @return the component classes the subsystem changes during its update.
+     */
+    Class<?>[] getWriteComponents();
+}
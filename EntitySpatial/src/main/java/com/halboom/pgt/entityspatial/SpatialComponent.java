@@ -21,11 +21,18 @@ public class SpatialComponent implements Component {
      */
     public String model = null;
 
+    /**
+     * True to keep the spatial after the entity is removed and reuse it for new entities with the same model.
+     * Meant for short lived entities that are created often such as projectiles.
+     */
+    public boolean isPooled = false;
+
     @Override
     public Component copy() {
         SpatialComponent output = new SpatialComponent();
         output.parent = parent;
         output.model = model;
+        output.isPooled = isPooled;
 
         return output;
     }
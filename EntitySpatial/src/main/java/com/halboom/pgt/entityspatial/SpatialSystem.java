@@ -13,10 +13,18 @@ import com.jme3.math.Vector3f;
 import com.jme3.scene.Node;
 import com.jme3.scene.Spatial;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 /**
  * Created with IntelliJ IDEA.
@@ -24,8 +32,21 @@ import java.util.Map;
  * Date: 4/22/13
  * Time: 11:21 AM
  * System to create Nodes and Geoms using an entity system.
+ * With a loader set, models are loaded in the background and entities show an empty placeholder node until
+ * their model is ready. Each model is loaded once and copied for every entity using it.
+ * Spatials of pooled entities are kept detached after removal and reused for new entities with the same model.
  */
 public class SpatialSystem implements Subsystem {
+    /**
+     * Default largest number of detached spatials kept for each model.
+     */
+    public static final int DEFAULT_POOL_SIZE = 32;
+
+    /**
+     * Name of the nodes standing in for models that are still loading.
+     */
+    public static final String PLACEHOLDER_NAME = "LoadingModel";
+
     /**
      * Entity system to use.
      */
@@ -62,11 +83,100 @@ public class SpatialSystem implements Subsystem {
      */
     private Map<Entity, SpatialAnimation> entityAnimationMap = new HashMap<Entity, SpatialAnimation>();
 
+    /**
+     * Transforms of the last two logic updates of each entity for interpolating between them.
+     */
+    private Map<Entity, InterpolatedTransform> entityTransformMap = new HashMap<Entity, InterpolatedTransform>();
+
+    /**
+     * Executor to load models in the background with, null to load them when needed.
+     */
+    private ExecutorService loader;
+
+    /**
+     * Loaded models by path, copied for each entity and never attached.
+     */
+    private Map<String, Spatial> templates = new HashMap<String, Spatial>();
+
+    /**
+     * Models being loaded in the background by path.
+     */
+    private Map<String, Future<Spatial>> loadingTemplates = new HashMap<String, Future<Spatial>>();
+
+    /**
+     * Entities showing a placeholder and the model they are waiting for.
+     */
+    private Map<Entity, String> loadingEntities = new HashMap<Entity, String>();
+
+    /**
+     * Model of the spatial created for each entity, empty for entities without a model.
+     */
+    private Map<Entity, String> entityModelMap = new HashMap<Entity, String>();
+
+    /**
+     * Entities whose spatial is pooled once they are removed.
+     */
+    private Set<Entity> pooledEntities = new HashSet<Entity>();
+
+    /**
+     * Detached spatials ready to be reused by model path.
+     */
+    private Map<String, List<Spatial>> pools = new HashMap<String, List<Spatial>>();
+
+    /**
+     * Largest number of detached spatials kept for each model.
+     */
+    private int poolSize = DEFAULT_POOL_SIZE;
+
     /**
      * Quaternion used for rotation.
      */
     private Quaternion rotation = new Quaternion();
 
+    /**
+     * Vector used for translation.
+     */
+    private Vector3f translation = new Vector3f();
+
+    /**
+     * Transform of an entity at the last two logic updates.
+     */
+    private static final class InterpolatedTransform {
+        /**
+         * Position at the previous and at the last logic update.
+         */
+        private final Vector3f previousPosition = new Vector3f(), currentPosition = new Vector3f();
+
+        /**
+         * Rotation at the previous and at the last logic update.
+         */
+        private final Quaternion previousRotation = new Quaternion(), currentRotation = new Quaternion();
+
+        /**
+         * Stores the transform of a logic update and keeps the one before it.
+         * @param transformComponent the transform of the logic update.
+         * @param isFirst true if there is no previous transform to keep.
+         */
+        private void push(TransformComponent transformComponent, boolean isFirst) {
+            currentPosition.set(transformComponent.positionX, transformComponent.positionY,
+                    transformComponent.positionZ);
+            currentRotation.set(transformComponent.rotationX, transformComponent.rotationY,
+                    transformComponent.rotationZ, transformComponent.rotationW);
+            if (isFirst) {
+                previousPosition.set(currentPosition);
+                previousRotation.set(currentRotation);
+            }
+        }
+
+        /**
+         * Moves the last logic update to the previous one.
+         */
+        private void shift() {
+            previousPosition.set(currentPosition);
+            previousRotation.set(currentRotation);
+        }
+    }
+
     /**
      * Initializes the system.
      * @param entitySystem the entity system to use.
@@ -111,13 +221,22 @@ public class SpatialSystem implements Subsystem {
         EntitySet spatials = entitySystem.getEntities(SpatialComponent.class);
 
         for (Entity entity : spatials.getAddedEntities()) {
-            addEntity(entity);
+            addEntity(entity, false);
         }
 
-        // Remove and re-add changed entities.
+        // Remove and re-add changed entities, only moving them to their parent if the model did not change.
         for (Entity entity : spatials.getChangedEntities()) {
-            removeEntity(entity);
-            addEntity(entity);
+            SpatialComponent spatialComponent = entitySystem.getComponent(entity, SpatialComponent.class);
+            String model = entityModelMap.get(entity);
+            if (model != null && model.equals(getModelPath(spatialComponent)) && entitySpatialMap.containsKey(entity)) {
+                Spatial spatial = getSpatial(entity);
+                spatial.removeFromParent();
+                attachSpatial(spatial, spatialComponent);
+                setIsPooled(entity, spatialComponent.isPooled);
+            } else {
+                removeEntity(entity);
+                addEntity(entity, false);
+            }
         }
 
         // Remove spatials along with their children.
@@ -140,6 +259,15 @@ public class SpatialSystem implements Subsystem {
                 if (spatial != null) {
                     ModelComponent modelComponent = entitySystem.getComponent(entity, ModelComponent.class);
                     transformSpatial(spatial, transformComponent, modelComponent);
+                    InterpolatedTransform transform = entityTransformMap.get(entity);
+                    if (transform == null) {
+                        transform = new InterpolatedTransform();
+                        entityTransformMap.put(entity, transform);
+                        transform.push(transformComponent, true);
+                    } else {
+                        transform.shift();
+                        transform.push(transformComponent, false);
+                    }
                 }
             }
         }
@@ -182,17 +310,7 @@ public class SpatialSystem implements Subsystem {
         for (Entity entity : spatials.getAddedEntities()) {
             Spatial spatial = getSpatial(entity);
             if (spatial != null) {
-                // Put the new animation into the map.
-                AnimControl control = spatial.getControl(AnimControl.class);
-                if (control != null) {
-                    AnimationComponent animationComponent = entitySystem.getComponent(entity, AnimationComponent.class);
-                    SpatialAnimation spatialAnimation = new SpatialAnimation(animationComponent);
-                    control.addListener(spatialAnimation);
-                    entityAnimationMap.put(entity, spatialAnimation);
-
-                    // Play the animation if one is set.
-                    playAnimation(spatial, animationComponent);
-                }
+                addAnimation(entity, spatial);
             }
         }
 
@@ -216,18 +334,110 @@ public class SpatialSystem implements Subsystem {
         }
     }
 
+    /**
+     * Listens to the animations of a spatial if it has any.
+     * @param entity the entity with the animation component.
+     * @param spatial the spatial of the entity.
+     */
+    private void addAnimation(Entity entity, Spatial spatial) {
+        // Put the new animation into the map.
+        AnimControl control = spatial.getControl(AnimControl.class);
+        if (control != null) {
+            AnimationComponent animationComponent = entitySystem.getComponent(entity, AnimationComponent.class);
+            SpatialAnimation spatialAnimation = new SpatialAnimation(animationComponent);
+            control.addListener(spatialAnimation);
+            entityAnimationMap.put(entity, spatialAnimation);
+
+            // Play the animation if one is set.
+            playAnimation(spatial, animationComponent);
+        }
+    }
+
+    /**
+     * Swaps the placeholders of entities for their models once the models finish loading.
+     */
+    private void updateLoading() {
+        Iterator<Map.Entry<String, Future<Spatial>>> loadingIterator = loadingTemplates.entrySet().iterator();
+        while (loadingIterator.hasNext()) {
+            Map.Entry<String, Future<Spatial>> entry = loadingIterator.next();
+            if (entry.getValue().isDone()) {
+                templates.put(entry.getKey(), getLoadedTemplate(entry.getValue()));
+                loadingIterator.remove();
+            }
+        }
+
+        Iterator<Map.Entry<Entity, String>> entityIterator = loadingEntities.entrySet().iterator();
+        while (entityIterator.hasNext()) {
+            Map.Entry<Entity, String> entry = entityIterator.next();
+            if (templates.containsKey(entry.getValue())) {
+                entityIterator.remove();
+                replacePlaceholder(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    /**
+     * Replaces the placeholder of an entity with its loaded model.
+     * @param entity the entity showing the placeholder.
+     * @param model the path of the loaded model.
+     */
+    private void replacePlaceholder(Entity entity, String model) {
+        Spatial placeholder = getSpatial(entity);
+        Spatial spatial = copyTemplate(model);
+        spatial.setLocalTranslation(placeholder.getLocalTranslation());
+        spatial.setLocalRotation(placeholder.getLocalRotation());
+        Node parent = placeholder.getParent();
+        placeholder.removeFromParent();
+        if (parent != null) {
+            parent.attachChild(spatial);
+        }
+        // Keep the spatials attached to the placeholder such as the spatials of child entities.
+        if (spatial instanceof Node) {
+            Node placeholderNode = (Node) placeholder;
+            while (placeholderNode.getQuantity() > 0) {
+                ((Node) spatial).attachChild(placeholderNode.getChild(0));
+            }
+        }
+        entitySpatialMap.put(entity, spatial);
+        setModelComponent(entity, model);
+        if (!entityAnimationMap.containsKey(entity)
+                && entitySystem.getComponent(entity, AnimationComponent.class) != null) {
+            addAnimation(entity, spatial);
+        }
+    }
+
     /**
      * Updates all the spatials to match the transforms.
      * @param tpf the time per frame.
      */
     @Override
     public void update(float tpf) {
+        updateLoading();
         updateSpatials();
         updateAnimations();
 
         queuedSpatials.clear();
     }
 
+    /**
+     * Places the spatials between the transforms of the last two logic updates.
+     * Called every rendered frame when the logic updates at a fixed rate slower than the display.
+     * @param alpha how far from the previous to the last logic update to place the spatials, from 0 to 1.
+     */
+    public void interpolate(float alpha) {
+        for (Map.Entry<Entity, InterpolatedTransform> entry : entityTransformMap.entrySet()) {
+            Spatial spatial = entitySpatialMap.get(entry.getKey());
+            if (spatial == null) {
+                continue;
+            }
+            InterpolatedTransform transform = entry.getValue();
+            translation.interpolateLocal(transform.previousPosition, transform.currentPosition, alpha);
+            spatial.setLocalTranslation(translation);
+            rotation.slerp(transform.previousRotation, transform.currentRotation, alpha);
+            spatial.setLocalRotation(rotation);
+        }
+    }
+
     @Override
     public void cleanupSubsystem() {
     }
@@ -235,23 +445,26 @@ public class SpatialSystem implements Subsystem {
     /**
      * Creates the spatial depending on the given components.
      * @param entity the entity with the components.
+     * @param isBlocking true to wait for the model to load, false to return a placeholder while it loads.
      * @return the created spatial.
      */
-    private Spatial createSpatial(Entity entity) {
+    private Spatial createSpatial(Entity entity, boolean isBlocking) {
         Spatial spatial = null;
         // Create a node if it contains the node component or a geometry if it contains a geometry component.
         SpatialComponent spatialComponent = entitySystem.getComponent(entity, SpatialComponent.class);
         if (spatialComponent != null) {
-            if (spatialComponent.model != null && !spatialComponent.model.equals("")) {
-                spatial = assetManager.loadModel(spatialComponent.model);
-                ModelComponent modelComponent = new ModelComponent();
-                Vector3f originalScale = spatial.getLocalScale();
-                modelComponent.scaleX = originalScale.x;
-                modelComponent.scaleY = originalScale.y;
-                modelComponent.scaleZ = originalScale.z;
-                entitySystem.setComponent(entity, modelComponent);
-            } else {
+            String model = getModelPath(spatialComponent);
+            entityModelMap.put(entity, model);
+            setIsPooled(entity, spatialComponent.isPooled);
+            if (model.equals("")) {
                 spatial = new Node();
+            } else if (templates.containsKey(model) || isBlocking || loader == null) {
+                spatial = copyTemplate(model);
+                setModelComponent(entity, model);
+            } else {
+                requestTemplate(model);
+                loadingEntities.put(entity, model);
+                spatial = new Node(PLACEHOLDER_NAME);
             }
         }
 
@@ -259,10 +472,216 @@ public class SpatialSystem implements Subsystem {
     }
 
     /**
-     * Adds the given entity to the scene.
+     * @param spatialComponent the spatial component of an entity.
+     * @return the path of the model of the entity, empty if it has none.
+     */
+    private static String getModelPath(SpatialComponent spatialComponent) {
+        return spatialComponent.model == null ? "" : spatialComponent.model;
+    }
+
+    /**
+     * Sets the model component of an entity to hold the original model data.
+     * @param entity the entity to set the model component of.
+     * @param model the path of the loaded model.
+     */
+    private void setModelComponent(Entity entity, String model) {
+        Vector3f originalScale = templates.get(model).getLocalScale();
+        ModelComponent modelComponent = entitySystem.getComponent(entity, ModelComponent.class);
+        // Entities created from prototypes may already hold the data.
+        if (modelComponent != null && modelComponent.scaleX == originalScale.x
+                && modelComponent.scaleY == originalScale.y && modelComponent.scaleZ == originalScale.z) {
+            return;
+        }
+        modelComponent = new ModelComponent();
+        modelComponent.scaleX = originalScale.x;
+        modelComponent.scaleY = originalScale.y;
+        modelComponent.scaleZ = originalScale.z;
+        entitySystem.setComponent(entity, modelComponent);
+    }
+
+    /**
+     * Retrieves a spatial of a model from its pool or by copying the loaded model, loading it first if needed.
+     * @param model the path of the model.
+     * @return the spatial of the model.
+     */
+    private Spatial copyTemplate(String model) {
+        Spatial template = getTemplate(model);
+        List<Spatial> pool = pools.get(model);
+        if (pool != null && !pool.isEmpty()) {
+            Spatial spatial = pool.remove(pool.size() - 1);
+            spatial.setLocalTransform(template.getLocalTransform());
+            return spatial;
+        }
+        return template.clone();
+    }
+
+    /**
+     * Retrieves a loaded model, loading it or waiting for it to load if needed.
+     * @param model the path of the model.
+     * @return the loaded model, not to be attached.
+     */
+    private Spatial getTemplate(String model) {
+        Spatial template = templates.get(model);
+        if (template == null) {
+            Future<Spatial> loading = loadingTemplates.remove(model);
+            if (loading != null) {
+                template = getLoadedTemplate(loading);
+            } else {
+                template = assetManager.loadModel(model);
+            }
+            templates.put(model, template);
+        }
+        return template;
+    }
+
+    /**
+     * Starts loading a model in the background if it is not loaded or loading yet.
+     * @param model the path of the model.
+     */
+    private void requestTemplate(final String model) {
+        if (templates.containsKey(model) || loadingTemplates.containsKey(model)) {
+            return;
+        }
+        loadingTemplates.put(model, loader.submit(new Callable<Spatial>() {
+            @Override
+            public Spatial call() throws Exception {
+                return assetManager.loadModel(model);
+            }
+        }));
+    }
+
+    /**
+     * Waits for a model loading in the background.
+     * @param loading the model being loaded.
+     * @return the loaded model.
+     */
+    private static Spatial getLoadedTemplate(Future<Spatial> loading) {
+        boolean isInterrupted = false;
+        try {
+            while (true) {
+                try {
+                    return loading.get();
+                } catch (InterruptedException e) {
+                    isInterrupted = true;
+                }
+            }
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            if (isInterrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Sets if the spatial of an entity is pooled once the entity is removed.
+     * @param entity the entity to set.
+     * @param isPooled true to pool the spatial.
+     */
+    private void setIsPooled(Entity entity, boolean isPooled) {
+        if (isPooled) {
+            pooledEntities.add(entity);
+        } else {
+            pooledEntities.remove(entity);
+        }
+    }
+
+    /**
+     * Keeps a detached spatial to reuse for a new entity with the same model if the pool is not full.
+     * @param model the path of the model of the spatial.
+     * @param spatial the detached spatial.
+     */
+    private void releaseSpatial(String model, Spatial spatial) {
+        List<Spatial> pool = pools.get(model);
+        if (pool == null) {
+            pool = new ArrayList<Spatial>();
+            pools.put(model, pool);
+        }
+        if (pool.size() >= poolSize) {
+            return;
+        }
+        // Detach spatials attached after the copy such as heads so they are not reused with the model.
+        Spatial template = templates.get(model);
+        if (spatial instanceof Node && template instanceof Node) {
+            Node node = (Node) spatial;
+            while (node.getQuantity() > ((Node) template).getQuantity()) {
+                node.detachChildAt(node.getQuantity() - 1);
+            }
+        }
+        AnimControl control = spatial.getControl(AnimControl.class);
+        if (control != null) {
+            control.clearChannels();
+            control.clearListeners();
+        }
+        spatial.setCullHint(Spatial.CullHint.Inherit);
+        pool.add(spatial);
+    }
+
+    /**
+     * Copies a model without adding it to any entity, loading the model first if needed.
+     * @param model the path of the model, null or empty for an empty node.
+     * @return the loaded spatial.
+     */
+    public Spatial loadSpatial(String model) {
+        if (model != null && !model.equals("")) {
+            return getTemplate(model).clone();
+        }
+        return new Node();
+    }
+
+    /**
+     * Retrieves a copy of a model without blocking, loading the model in the background if needed.
+     * Models are loaded when needed instead if no loader is set.
+     * @param model the path of the model.
+     * @return the copy of the model or null while it is loading.
+     */
+    public Spatial getModel(String model) {
+        if (!templates.containsKey(model) && loader != null) {
+            requestTemplate(model);
+            return null;
+        }
+        return getTemplate(model).clone();
+    }
+
+    /**
+     * @param entity the entity to check.
+     * @return true if the entity shows a placeholder while its model is loading.
+     */
+    public boolean getIsLoading(Entity entity) {
+        return loadingEntities.containsKey(entity);
+    }
+
+    /**
+     * Adds the given entity to the scene, waiting for its model to load if needed.
      * @param entity the entity to add.
      */
     public void addEntity(Entity entity) {
+        addEntity(entity, true);
+    }
+
+    /**
+     * Attaches the spatial of an entity to the spatial of its parent or the root if it has none.
+     * @param spatial the spatial to attach.
+     * @param spatialComponent the spatial component of the entity.
+     */
+    private void attachSpatial(Spatial spatial, SpatialComponent spatialComponent) {
+        if (spatialComponent.parent != null) {
+            Spatial parentSpatial = getSpatial(spatialComponent.parent);
+            if (parentSpatial instanceof Node) {
+                ((Node) parentSpatial).attachChild(spatial);
+            }
+        } else {
+            root.attachChild(spatial);
+        }
+    }
+
+    /**
+     * Adds the given entity to the scene.
+     * @param entity the entity to add.
+     * @param isBlocking true to wait for the model to load, false to show a placeholder while it loads.
+     */
+    private void addEntity(Entity entity, boolean isBlocking) {
         // Ignore if the entity already exists.
         if (!entitySpatialMap.containsKey(entity)) {
             Spatial spatial;
@@ -270,23 +689,15 @@ public class SpatialSystem implements Subsystem {
             if (queuedSpatials.containsKey(entity)) {
                 spatial = queuedSpatials.get(entity);
             } else {
-                spatial = createSpatial(entity);
+                spatial = createSpatial(entity, isBlocking);
             }
             // Set spatial properties if the entity is valid.
             if (spatial != null) {
                 // Remove the spatial from existing parents and attach the spatial.
                 spatial.removeFromParent();
                 entitySpatialMap.put(entity, spatial);
-                SpatialComponent spatialComponent = entitySystem.getComponent(entity, SpatialComponent.class);
                 // Add the spatial to the parent if possible else add it to the root.
-                if (spatialComponent.parent != null) {
-                    Spatial parentSpatial = getSpatial(spatialComponent.parent);
-                    if (parentSpatial instanceof Node) {
-                        ((Node) parentSpatial).attachChild(spatial);
-                    }
-                } else {
-                    root.attachChild(spatial);
-                }
+                attachSpatial(spatial, entitySystem.getComponent(entity, SpatialComponent.class));
             }
         }
     }
@@ -300,6 +711,7 @@ public class SpatialSystem implements Subsystem {
         Spatial spatial = getSpatial(entity);
         spatial.removeFromParent();
         entitySpatialMap.remove(entity);
+        entityTransformMap.remove(entity);
         // Remove animations for the entity.
         if (entityAnimationMap.containsKey(entity)) {
             AnimControl control = spatial.getControl(AnimControl.class);
@@ -317,6 +729,13 @@ public class SpatialSystem implements Subsystem {
                 removeEntity(checkedEntity);
             }
         }
+
+        // Keep the spatial of a loaded model for reuse if the entity is pooled.
+        boolean isLoading = loadingEntities.remove(entity) != null;
+        String model = entityModelMap.remove(entity);
+        if (pooledEntities.remove(entity) && !isLoading && model != null && !model.equals("")) {
+            releaseSpatial(model, spatial);
+        }
     }
 
     /**
@@ -364,15 +783,12 @@ public class SpatialSystem implements Subsystem {
                 Spatial currentSpatial = entitySpatialMap.get(entity);
                 currentSpatial.removeFromParent();
                 entitySpatialMap.put(entity, spatial);
+                // The set spatial is not a copy of the model so it is neither waited for nor pooled.
+                loadingEntities.remove(entity);
+                entityModelMap.remove(entity);
+                pooledEntities.remove(entity);
                 // Add the new spatial to the parent.
-                if (spatialComponent.parent != null) {
-                    Spatial parent = getSpatial(spatialComponent.parent);
-                    if (parent instanceof Node) {
-                        ((Node) parent).attachChild(spatial);
-                    }
-                } else {
-                    root.attachChild(spatial);
-                }
+                attachSpatial(spatial, spatialComponent);
             }
         }
     }
@@ -395,7 +811,36 @@ public class SpatialSystem implements Subsystem {
         }
     }
 
+    /**
+     * Sets the executor to load models in the background with.
+     * @param loader the executor to load with, null to load models when needed.
+     */
+    public void setLoader(ExecutorService loader) {
+        this.loader = loader;
+    }
+
+    /**
+     * @param poolSize the largest number of detached spatials kept for each model.
+     */
+    public void setPoolSize(int poolSize) {
+        this.poolSize = poolSize;
+    }
+
+    /**
+     * @return the largest number of detached spatials kept for each model.
+     */
+    public int getPoolSize() {
+        return poolSize;
+    }
+
     @Override
     public void destroy() {
+        for (Future<Spatial> loading : loadingTemplates.values()) {
+            loading.cancel(false);
+        }
+        loadingTemplates.clear();
+        loadingEntities.clear();
+        pools.clear();
+        templates.clear();
     }
 }
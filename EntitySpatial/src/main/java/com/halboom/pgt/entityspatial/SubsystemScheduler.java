@@ -0,0 +1,281 @@
+package com.halboom.pgt.entityspatial;
+
+import com.exploringlines.entitysystem.Subsystem;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Updates subsystems in order while running the ones that touch different components at the same time.
+ * A subsystem depends on every earlier subsystem it conflicts with, which is any earlier one writing a component
+ * it reads or writes, reading a component it writes, or not declaring its access at all.
+ * Subsystems are grouped into stages by the length of their longest chain of dependencies and the stages run in
+ * turn, so every conflicting pair keeps the order of the list.
+ * When not parallel the subsystems run one at a time in list order which gives the same results.
+ * Parallel updates are off by default, subsystems of a stage read the entity system from several threads at once
+ * so they should only be turned on with an entity system that allows it.
+ */
+public class SubsystemScheduler {
+    /**
+     * Subsystems in the order they were added.
+     */
+    private List<Subsystem> subsystems = new ArrayList<Subsystem>();
+
+    /**
+     * Tasks updating each subsystem in the order they were added.
+     */
+    private List<UpdateTask> tasks = new ArrayList<UpdateTask>();
+
+    /**
+     * Tasks updating each subsystem grouped into stages that run one after another.
+     */
+    private List<List<UpdateTask>> stages = new ArrayList<List<UpdateTask>>();
+
+    /**
+     * Executor to run the subsystems of a stage with.
+     */
+    private ExecutorService executor;
+
+    /**
+     * True to run the subsystems of a stage at the same time.
+     */
+    private boolean isParallel = false;
+
+    /**
+     * True once every subsystem has updated once on the calling thread.
+     */
+    private boolean isWarmedUp = false;
+
+    /**
+     * True to measure how long each subsystem takes to update.
+     */
+    private boolean isTimed = false;
+
+    /**
+     * Updates a single subsystem.
+     */
+    private static final class UpdateTask implements Callable<Void> {
+        /**
+         * Subsystem to update.
+         */
+        private final Subsystem subsystem;
+
+        /**
+         * Time per frame to update with.
+         */
+        private float tpf;
+
+        /**
+         * True to measure how long the update takes.
+         */
+        private boolean isTimed;
+
+        /**
+         * Nanoseconds the last timed update took.
+         */
+        private long updateTime;
+
+        /**
+         * Index of the stage the subsystem runs in.
+         */
+        private final int stage;
+
+        /**
+         * @param subsystem the subsystem to update.
+         * @param stage the index of the stage the subsystem runs in.
+         */
+        private UpdateTask(Subsystem subsystem, int stage) {
+            this.subsystem = subsystem;
+            this.stage = stage;
+        }
+
+        @Override
+        public Void call() throws Exception {
+            run();
+            return null;
+        }
+
+        /**
+         * Updates the subsystem on the calling thread.
+         */
+        private void run() {
+            if (!isTimed) {
+                subsystem.update(tpf);
+                return;
+            }
+            long startTime = System.nanoTime();
+            subsystem.update(tpf);
+            updateTime = System.nanoTime() - startTime;
+        }
+    }
+
+    /**
+     * Initializes the scheduler.
+     * @param subsystems the subsystems in the order they should update.
+     * @param executor the executor to run the subsystems of a stage with.
+     */
+    public SubsystemScheduler(List<? extends Subsystem> subsystems, ExecutorService executor) {
+        this.executor = executor;
+        for (Subsystem subsystem : subsystems) {
+            add(subsystem);
+        }
+    }
+
+    /**
+     * Adds a subsystem to update after the others.
+     * @param subsystem the subsystem to add.
+     */
+    public final void add(Subsystem subsystem) {
+        // Place the subsystem in the stage after its latest dependency.
+        int stage = 0;
+        for (int i = stages.size() - 1; i >= 0 && stage == 0; i--) {
+            for (UpdateTask task : stages.get(i)) {
+                if (isConflicting(task.subsystem, subsystem)) {
+                    stage = i + 1;
+                    break;
+                }
+            }
+        }
+        if (stage == stages.size()) {
+            stages.add(new ArrayList<UpdateTask>());
+        }
+        UpdateTask task = new UpdateTask(subsystem, stage);
+        stages.get(stage).add(task);
+        tasks.add(task);
+        subsystems.add(subsystem);
+    }
+
+    /**
+     * Updates every subsystem.
+     * The first update runs on the calling thread so subsystems can set up shared state such as their entity sets.
+     * @param tpf the time per frame.
+     */
+    public final void update(float tpf) {
+        for (UpdateTask task : tasks) {
+            task.tpf = tpf;
+            task.isTimed = isTimed;
+        }
+        if (!isParallel || !isWarmedUp) {
+            for (UpdateTask task : tasks) {
+                task.run();
+            }
+            isWarmedUp = true;
+            return;
+        }
+        for (List<UpdateTask> stage : stages) {
+            if (stage.size() == 1) {
+                stage.get(0).run();
+                continue;
+            }
+            try {
+                for (Future<Void> future : executor.invokeAll(stage)) {
+                    future.get();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                throw new IllegalStateException(e.getCause());
+            }
+        }
+    }
+
+    /**
+     * @param first the earlier subsystem.
+     * @param second the later subsystem.
+     * @return true if the later subsystem has to wait for the earlier one.
+     */
+    private static boolean isConflicting(Subsystem first, Subsystem second) {
+        if (!(first instanceof ComponentAccess) || !(second instanceof ComponentAccess)) {
+            return true;
+        }
+        ComponentAccess firstAccess = (ComponentAccess) first;
+        ComponentAccess secondAccess = (ComponentAccess) second;
+        return isSharing(firstAccess.getWriteComponents(), secondAccess.getReadComponents())
+                || isSharing(firstAccess.getWriteComponents(), secondAccess.getWriteComponents())
+                || isSharing(firstAccess.getReadComponents(), secondAccess.getWriteComponents());
+    }
+
+    /**
+     * @param first the first component classes.
+     * @param second the second component classes.
+     * @return true if any class is in both.
+     */
+    private static boolean isSharing(Class<?>[] first, Class<?>[] second) {
+        for (Class<?> firstClass : first) {
+            for (Class<?> secondClass : second) {
+                if (firstClass.equals(secondClass)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return the subsystems in the order they were added.
+     */
+    public final List<Subsystem> getSubsystems() {
+        return Collections.unmodifiableList(subsystems);
+    }
+
+    /**
+     * @param index the index of the subsystem in the order they were added.
+     * @return the nanoseconds the last timed update of the subsystem took.
+     */
+    public final long getUpdateTime(int index) {
+        return tasks.get(index).updateTime;
+    }
+
+    /**
+     * @param index the index of the subsystem in the order they were added.
+     * @return the index of the stage the subsystem runs in.
+     */
+    public final int getStage(int index) {
+        return tasks.get(index).stage;
+    }
+
+    /**
+     * @return the number of stages the subsystems are split into.
+     */
+    public final int getStageCount() {
+        return stages.size();
+    }
+
+    /**
+     * @param isParallel true to run the subsystems of a stage at the same time, false to run them one at a time
+     *                   in order for debugging.
+     */
+    public final void setIsParallel(boolean isParallel) {
+        this.isParallel = isParallel;
+    }
+
+    /**
+     * @return true if the subsystems of a stage run at the same time.
+     */
+    public final boolean getIsParallel() {
+        return isParallel;
+    }
+
+    /**
+     * @param isTimed true to measure how long each subsystem takes to update.
+     */
+    public final void setIsTimed(boolean isTimed) {
+        this.isTimed = isTimed;
+    }
+
+    /**
+     * @return true if each subsystem is timed when updating.
+     */
+    public final boolean getIsTimed() {
+        return isTimed;
+    }
+}
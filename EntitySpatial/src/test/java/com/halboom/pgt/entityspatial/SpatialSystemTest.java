@@ -0,0 +1,247 @@
+package com.halboom.pgt.entityspatial;
+
+import com.exploringlines.entitysystem.Entity;
+import com.exploringlines.entitysystem.EntitySystem;
+import com.jme3.animation.AnimChannel;
+import com.jme3.animation.AnimControl;
+import com.jme3.animation.AnimEventListener;
+import com.jme3.animation.Animation;
+import com.jme3.asset.DesktopAssetManager;
+import com.jme3.math.FastMath;
+import com.jme3.math.Quaternion;
+import com.jme3.math.Vector3f;
+import com.jme3.scene.Node;
+import com.jme3.scene.Spatial;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Tests for swapping in models loaded in the background and reusing pooled spatials.
+ */
+public class SpatialSystemTest {
+    private static final String MODEL = "Models/Test.j3o";
+
+    /**
+     * Asset manager building a model with a part and an animation once it is allowed to load.
+     */
+    private static final class ModelAssetManager extends DesktopAssetManager {
+        private final CountDownLatch loadable = new CountDownLatch(1);
+
+        @Override
+        public Spatial loadModel(String name) {
+            try {
+                loadable.await();
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+            Node model = new Node(name);
+            model.attachChild(new Node("Part"));
+            model.setLocalScale(2f);
+            AnimControl control = new AnimControl();
+            control.addAnim(new Animation("Walk", 1f));
+            model.addControl(control);
+            return model;
+        }
+    }
+
+    /**
+     * Listener counting animation changes.
+     */
+    private static final class CountingListener implements AnimEventListener {
+        private int changes = 0;
+
+        @Override
+        public void onAnimCycleDone(AnimControl control, AnimChannel channel, String animName) {
+        }
+
+        @Override
+        public void onAnimChange(AnimControl control, AnimChannel channel, String animName) {
+            changes++;
+        }
+    }
+
+    private EntitySystem entitySystem;
+    private ModelAssetManager assetManager;
+    private Node root;
+    private SpatialSystem spatialSystem;
+    private ExecutorService loader;
+
+    @Before
+    public void setUp() throws Exception {
+        entitySystem = new EntitySystem();
+        assetManager = new ModelAssetManager();
+        root = new Node("Root");
+        spatialSystem = new SpatialSystem(entitySystem, assetManager, root);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        assetManager.loadable.countDown();
+        if (loader != null) {
+            loader.shutdownNow();
+        }
+    }
+
+    /**
+     * Updates the spatial system and flushes the entity changes like a frame of the game.
+     */
+    private void update() {
+        spatialSystem.update(0);
+        entitySystem.flushSetChanges();
+    }
+
+    /**
+     * Creates an entity with a spatial.
+     * @param model the model of the entity, null for none.
+     * @param parent the parent entity, null for none.
+     * @param isPooled true to pool the spatial of the entity.
+     * @return the created entity.
+     */
+    private Entity createEntity(String model, Entity parent, boolean isPooled) {
+        Entity entity = entitySystem.createEntity();
+        SpatialComponent spatialComponent = new SpatialComponent();
+        spatialComponent.model = model;
+        spatialComponent.parent = parent;
+        spatialComponent.isPooled = isPooled;
+        entitySystem.setComponent(entity, spatialComponent);
+        return entity;
+    }
+
+    @Test(timeout = 10000)
+    /**
+     * Test that a loaded model takes over the parent, children and transform of its placeholder.
+     */
+    public void testReplacePlaceholder() throws Exception {
+        loader = Executors.newSingleThreadExecutor();
+        spatialSystem.setLoader(loader);
+        Entity parent = createEntity(null, null, false);
+        update();
+
+        Entity entity = createEntity(MODEL, parent, false);
+        TransformComponent transformComponent = new TransformComponent();
+        transformComponent.positionX = 1f;
+        transformComponent.positionY = 2f;
+        transformComponent.positionZ = 3f;
+        transformComponent.scaleX = 3f;
+        transformComponent.scaleY = 3f;
+        transformComponent.scaleZ = 3f;
+        Quaternion rotation = new Quaternion().fromAngleAxis(FastMath.HALF_PI, Vector3f.UNIT_Y);
+        transformComponent.rotationX = rotation.getX();
+        transformComponent.rotationY = rotation.getY();
+        transformComponent.rotationZ = rotation.getZ();
+        transformComponent.rotationW = rotation.getW();
+        entitySystem.setComponent(entity, transformComponent);
+        update();
+
+        Spatial placeholder = spatialSystem.getSpatial(entity);
+        Assert.assertTrue(spatialSystem.getIsLoading(entity));
+        Assert.assertEquals(SpatialSystem.PLACEHOLDER_NAME, placeholder.getName());
+        Assert.assertSame(spatialSystem.getSpatial(parent), placeholder.getParent());
+        Node head = new Node("Head");
+        ((Node) placeholder).attachChild(head);
+
+        assetManager.loadable.countDown();
+        while (spatialSystem.getIsLoading(entity)) {
+            Thread.sleep(1);
+            update();
+        }
+
+        Node spatial = (Node) spatialSystem.getSpatial(entity);
+        Assert.assertEquals(MODEL, spatial.getName());
+        Assert.assertNull(placeholder.getParent());
+        Assert.assertSame(spatialSystem.getSpatial(parent), spatial.getParent());
+        Assert.assertSame(spatial, head.getParent());
+        Assert.assertNotNull(spatial.getChild("Part"));
+        Assert.assertEquals(new Vector3f(1f, 2f, 3f), spatial.getLocalTranslation());
+        Assert.assertTrue(rotation.isSimilar(spatial.getLocalRotation(), FastMath.ZERO_TOLERANCE));
+        // The scale of the model is kept under the scale of the entity.
+        Assert.assertEquals(new Vector3f(6f, 6f, 6f), spatial.getLocalScale());
+    }
+
+    @Test
+    /**
+     * Test that a reused spatial comes back without the transform, children and listeners of its last entity.
+     */
+    public void testPoolReuse() throws Exception {
+        assetManager.loadable.countDown();
+        Entity entity = createEntity(MODEL, null, true);
+        TransformComponent transformComponent = new TransformComponent();
+        transformComponent.positionX = 5f;
+        transformComponent.scaleY = 4f;
+        entitySystem.setComponent(entity, transformComponent);
+        update();
+
+        Node spatial = (Node) spatialSystem.getSpatial(entity);
+        Node head = new Node("Head");
+        spatial.attachChild(head);
+        spatial.setCullHint(Spatial.CullHint.Always);
+        AnimControl control = spatial.getControl(AnimControl.class);
+        CountingListener listener = new CountingListener();
+        control.addListener(listener);
+        control.createChannel().setAnim("Walk");
+        Assert.assertEquals(1, listener.changes);
+
+        entitySystem.removeEntity(entity);
+        update();
+        Assert.assertNull(spatial.getParent());
+        Assert.assertNull(head.getParent());
+
+        Entity reused = createEntity(MODEL, null, true);
+        update();
+        Assert.assertSame(spatial, spatialSystem.getSpatial(reused));
+        Assert.assertSame(root, spatial.getParent());
+        Assert.assertEquals(1, spatial.getQuantity());
+        Assert.assertNotNull(spatial.getChild("Part"));
+        Assert.assertEquals(Spatial.CullHint.Inherit, spatial.getCullHint());
+        Assert.assertEquals(Vector3f.ZERO, spatial.getLocalTranslation());
+        Assert.assertEquals(new Vector3f(2f, 2f, 2f), spatial.getLocalScale());
+        Assert.assertEquals(0, control.getNumChannels());
+        control.createChannel().setAnim("Walk");
+        Assert.assertEquals(1, listener.changes);
+    }
+
+    @Test
+    /**
+     * Test that no more spatials than the pool size are kept for reuse.
+     */
+    public void testPoolSize() throws Exception {
+        assetManager.loadable.countDown();
+        spatialSystem.setPoolSize(1);
+        List<Entity> entities = new ArrayList<Entity>();
+        for (int i = 0; i < 3; i++) {
+            entities.add(createEntity(MODEL, null, true));
+        }
+        update();
+        List<Spatial> released = new ArrayList<Spatial>();
+        for (Entity entity : entities) {
+            released.add(spatialSystem.getSpatial(entity));
+            entitySystem.removeEntity(entity);
+        }
+        update();
+
+        entities.clear();
+        for (int i = 0; i < 3; i++) {
+            entities.add(createEntity(MODEL, null, true));
+        }
+        update();
+        int reused = 0;
+        for (Entity entity : entities) {
+            Spatial spatial = spatialSystem.getSpatial(entity);
+            Assert.assertSame(root, spatial.getParent());
+            for (Spatial releasedSpatial : released) {
+                if (releasedSpatial == spatial) {
+                    reused++;
+                }
+            }
+        }
+        Assert.assertEquals(1, reused);
+    }
+}
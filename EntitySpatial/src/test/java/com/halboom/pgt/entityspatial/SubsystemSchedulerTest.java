@@ -0,0 +1,151 @@
+package com.halboom.pgt.entityspatial;
+
+import com.exploringlines.entitysystem.Subsystem;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Tests for scheduling subsystems in stages.
+ */
+public class SubsystemSchedulerTest {
+    private static final int UPDATES = 50;
+
+    /**
+     * Stand-ins for component classes.
+     */
+    private static final class First {
+    }
+
+    private static final class Second {
+    }
+
+    private static final class Third {
+    }
+
+    /**
+     * Subsystem that does not declare its access.
+     */
+    private static class PlainSystem implements Subsystem {
+        @Override
+        public void update(float tpf) {
+        }
+
+        @Override
+        public void cleanupSubsystem() {
+        }
+
+        @Override
+        public void destroy() {
+        }
+    }
+
+    /**
+     * Subsystem mixing the values of the components it reads into the values of the components it writes.
+     */
+    private static final class MixingSystem extends PlainSystem implements ComponentAccess {
+        private final Class<?>[] reads;
+        private final Class<?>[] writes;
+        private final long[] values;
+
+        private MixingSystem(Class<?>[] reads, Class<?>[] writes, long[] values) {
+            this.reads = reads;
+            this.writes = writes;
+            this.values = values;
+        }
+
+        @Override
+        public void update(float tpf) {
+            long mixed = 1;
+            for (Class<?> read : reads) {
+                mixed = mixed * 31 + values[getSlot(read)];
+            }
+            for (Class<?> write : writes) {
+                int slot = getSlot(write);
+                // Give other threads a chance to run in between so missing dependencies show up.
+                Thread.yield();
+                values[slot] = values[slot] * 17 + mixed;
+            }
+        }
+
+        @Override
+        public Class<?>[] getReadComponents() {
+            return reads;
+        }
+
+        @Override
+        public Class<?>[] getWriteComponents() {
+            return writes;
+        }
+    }
+
+    private static int getSlot(Class<?> componentClass) {
+        if (componentClass == First.class) {
+            return 0;
+        } else if (componentClass == Second.class) {
+            return 1;
+        }
+        return 2;
+    }
+
+    private static MixingSystem createSystem(long[] values, Class<?>[] reads, Class<?>... writes) {
+        return new MixingSystem(reads, writes, values);
+    }
+
+    private static List<Subsystem> createSystems(long[] values) {
+        List<Subsystem> systems = new ArrayList<Subsystem>();
+        systems.add(createSystem(values, new Class<?>[]{Second.class}, First.class));
+        systems.add(createSystem(values, new Class<?>[]{Third.class}));
+        systems.add(createSystem(values, new Class<?>[]{First.class}, Second.class));
+        systems.add(createSystem(values, new Class<?>[]{Third.class}));
+        systems.add(new PlainSystem());
+        systems.add(createSystem(values, new Class<?>[]{}, Third.class));
+        systems.add(createSystem(values, new Class<?>[]{Second.class}, First.class));
+        systems.add(createSystem(values, new Class<?>[]{Third.class}, Second.class));
+        return systems;
+    }
+
+    @Test
+    /**
+     * Test that subsystems run in the stage after the latest one they conflict with.
+     */
+    public void testStages() throws Exception {
+        SubsystemScheduler scheduler = new SubsystemScheduler(createSystems(new long[3]), null);
+        int[] stages = new int[scheduler.getSubsystems().size()];
+        for (int i = 0; i < stages.length; i++) {
+            stages[i] = scheduler.getStage(i);
+        }
+        // Readers of the same component share a stage, a writer waits for the readers before it
+        // and the subsystem without declared access waits for and holds back everything.
+        Assert.assertEquals("[0, 0, 1, 0, 2, 3, 3, 4]", Arrays.toString(stages));
+        Assert.assertEquals(5, scheduler.getStageCount());
+        Assert.assertFalse(scheduler.getIsParallel());
+    }
+
+    @Test
+    /**
+     * Test that parallel updates give the same results as updating in order.
+     */
+    public void testParallelMatchesSerial() throws Exception {
+        long[] serialValues = new long[3];
+        SubsystemScheduler serial = new SubsystemScheduler(createSystems(serialValues), null);
+        long[] parallelValues = new long[3];
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            SubsystemScheduler parallel = new SubsystemScheduler(createSystems(parallelValues), executor);
+            parallel.setIsParallel(true);
+            for (int i = 0; i < UPDATES; i++) {
+                serial.update(1f);
+                parallel.update(1f);
+                Assert.assertArrayEquals(serialValues, parallelValues);
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
@@ -2,8 +2,9 @@
  * Main groovy class to run the script from.
  * For backwards and future compatibility use the functions from bindings instead of
  * directly from the java classes.
- * The main class runs all events attached to the bindings and handles the parameter retrieval
- * from the java events.
+ * The main class registers a handler for each event once the bindings use it and handles the parameter
+ * retrieval from the java events. Events nothing is bound to are never queued.
+ * The class is created once and updated directly by the runner.
  */
 
 import com.exploringlines.entitysystem.Entity
@@ -13,282 +14,189 @@ import com.jme3.math.Vector3f
 import com.submu.pug.game.objects.Player
 import com.submu.pug.scripting.ScriptAPI
 import com.submu.pug.scripting.ScriptEvent
+import com.submu.pug.scripting.ScriptEventHandler
+import com.submu.pug.scripting.ScriptMain
 import core.EventFunctions
 import core.ScriptBindings
 
-/**
- * Create bindings to use if needed.
- * Try not use groovyScriptBindings anywhere else.
- */
-ScriptBindings bindings = groovyScriptBindings.getVariable(ScriptBindings.PERSIST_BINDING)
-if (bindings == null) {
-    bindings = new ScriptBindings(groovyScriptBindings)
-    groovyScriptBindings.setVariable(ScriptBindings.PERSIST_BINDING, bindings)
-}
+class Main implements ScriptMain {
+    /**
+     * Bindings the scripts use.
+     */
+    private ScriptBindings bindings
 
-// Check if the script is on the first pass and do nothing if it is.
-boolean isFirstPass = bindings.getVariable(ScriptAPI.IS_FIRST_PASS)
-if (!isFirstPass) {
-    updateGenericEvents(bindings)
-    updateEvents(bindings)
-}
+    /**
+     * API to register event handlers with.
+     */
+    private ScriptAPI scriptAPI
 
-/**
- * Updates the generic events.
- * @param bindings the bindings to use.
- */
-void updateGenericEvents(ScriptBindings bindings) {
-    // Run all the generic events before the main events to prevent double updating.
-    List<EventFunctions> genericEvents = new LinkedList<>()
-    for (EventFunctions eventFunctions : bindings.genericEvents) {
-        genericEvents.add(eventFunctions)
-    }
-    bindings.flushGenericEvents()
-    for (EventFunctions eventFunctions : genericEvents) {
-        eventFunctions.call()
-    }
-}
+    /**
+     * Closures taking a bound function and the event arguments by event name.
+     */
+    private Map<String, Closure> dispatchers = new HashMap<String, Closure>()
+
+    /**
+     * Events with a handler registered.
+     */
+    private Set<String> subscribedEvents = new HashSet<String>()
+
+    /**
+     * Generic events being run, reused between updates.
+     */
+    private List<EventFunctions> runningGenericEvents = new ArrayList<EventFunctions>()
+
+    @Override
+    void initialize(ScriptAPI scriptAPI) {
+        this.scriptAPI = scriptAPI
 
-/**
- * Updates the script events.
- * @param bindings the bindings to use.
- */
-void updateEvents(ScriptBindings bindings) {
-    // No need to copy the events as the incoming ones are already copied in a new list.
-    List<ScriptEvent> events = triggeredEvents
-    // Run the queued events and set the event variables for calling into other functions.
-    for (ScriptEvent event : events) {
-        switch (event.name) {
         /**
          * Key event triggers.
          */
-            case ScriptBindings.EVENT_KEY_ANALOG:
-                String pressedKey = event.getArgs()[0]
-                float pressedAmount = event.getArgs()[1]
-                Player player = event.getArgs()[2]
-                boolean isGUIActive = event.getArgs()[3]
-                List<EventFunctions> functions = bindings.getEventBindings(ScriptBindings.EVENT_KEY_ANALOG)
-                if (functions != null) {
-                    for (EventFunctions func : functions) {
-                        func.onAnalogKeyPressed(pressedKey, pressedAmount, player, isGUIActive)
-                    }
-                }
-                break
-            case ScriptBindings.EVENT_KEY_PRESSED:
-                String pressedKey = event.getArgs()[0]
-                Player player = event.getArgs()[1]
-                boolean isGUIActive = event.getArgs()[2]
-                List<EventFunctions> functions = bindings.getEventBindings(ScriptBindings.EVENT_KEY_PRESSED)
-                if (functions != null) {
-                    for (EventFunctions func : functions) {
-                        func.onKeyPressed(pressedKey, player, isGUIActive)
-                    }
-                }
-                break
-            case ScriptBindings.EVENT_KEY_RELEASED:
-                String pressedKey = event.getArgs()[0]
-                Player player = event.getArgs()[1]
-                boolean isGUIActive = event.getArgs()[2]
-                List<EventFunctions> functions = bindings.getEventBindings(ScriptBindings.EVENT_KEY_RELEASED)
-                if (functions != null) {
-                    for (EventFunctions func : functions) {
-                        func.onKeyPressed(pressedKey, player, isGUIActive)
-                    }
-                }
-                break
-            case ScriptBindings.EVENT_CAMERA_MOVES:
-                Vector3f cameraLocation = event.getArgs()[0]
-                Vector3f lastCameraLocation = event.getArgs()[1]
-                break
+        addDispatcher(ScriptBindings.EVENT_KEY_ANALOG) { EventFunctions func, Object[] args ->
+            String pressedKey = args[0]
+            float pressedAmount = args[1]
+            Player player = args[2]
+            boolean isGUIActive = args[3]
+            func.onAnalogKeyPressed(pressedKey, pressedAmount, player, isGUIActive)
+        }
+        addDispatcher(ScriptBindings.EVENT_KEY_PRESSED) { EventFunctions func, Object[] args ->
+            String pressedKey = args[0]
+            Player player = args[1]
+            boolean isGUIActive = args[2]
+            func.onKeyPressed(pressedKey, player, isGUIActive)
+        }
+        addDispatcher(ScriptBindings.EVENT_KEY_RELEASED) { EventFunctions func, Object[] args ->
+            String pressedKey = args[0]
+            Player player = args[1]
+            boolean isGUIActive = args[2]
+            func.onKeyPressed(pressedKey, player, isGUIActive)
+        }
         /**
          * Commands and actions.
          */
-            case ScriptBindings.EVENT_ABILITY_CAST_BEGIN:
-                Entity entity = event.getArgs()[0]
-                int index = event.getArgs()[1]
-                String internalName = event.getArgs()[2]
-                Vector3f target = event.getArgs()[3]
-                List<EventFunctions> functions = bindings.getEventBindings(ScriptBindings.EVENT_ABILITY_CAST_BEGIN)
-                if (functions != null) {
-                    for (EventFunctions func : functions) {
-                        func.onAbilityCast(entity, index, internalName, target)
-                    }
-                }
-                break
-            case ScriptBindings.EVENT_ABILITY_CAST:
-                Entity entity = event.getArgs()[0]
-                int index = event.getArgs()[1]
-                String internalName = event.getArgs()[2]
-                Vector3f target = event.getArgs()[3]
-                List<EventFunctions> functions = bindings.getEventBindings(ScriptBindings.EVENT_ABILITY_CAST)
-                if (functions != null) {
-                    for (EventFunctions func : functions) {
-                        func.onAbilityCast(entity, index, internalName, target)
-                    }
-                }
-                break
-            case ScriptBindings.EVENT_ABILITY_CANCEL:
-                Entity entity = event.getArgs()[0]
-                int index = event.getArgs()[1]
-                String internalName = event.getArgs()[2]
-                Vector3f target = event.getArgs()[3]
-                List<EventFunctions> functions = bindings.getEventBindings(ScriptBindings.EVENT_ABILITY_CANCEL)
-                if (functions != null) {
-                    for (EventFunctions func : functions) {
-                        func.onAbilityCast(entity, index, internalName, target)
-                    }
-                }
-                break
-            case ScriptBindings.EVENT_ABILITY_UPGRADE:
-                Entity entity = event.getArgs()[0]
-                int abilityIndex = event.getArgs()[1]
-                String upgrade = event.getArgs()[2]
-                int level = event.getArgs()[3]
-                List<EventFunctions> functions = bindings.getEventBindings(ScriptBindings.EVENT_ABILITY_UPGRADE)
-                if (functions != null) {
-                    for (EventFunctions func : functions) {
-                        func.onAbilityUpgrade(entity, abilityIndex, upgrade, level)
-                    }
-                }
-                break
+        for (String event : [ScriptBindings.EVENT_ABILITY_CAST_BEGIN, ScriptBindings.EVENT_ABILITY_CAST,
+                             ScriptBindings.EVENT_ABILITY_CANCEL]) {
+            addDispatcher(event) { EventFunctions func, Object[] args ->
+                Entity entity = args[0]
+                int index = args[1]
+                String internalName = args[2]
+                Vector3f target = args[3]
+                func.onAbilityCast(entity, index, internalName, target)
+            }
+        }
+        addDispatcher(ScriptBindings.EVENT_ABILITY_UPGRADE) { EventFunctions func, Object[] args ->
+            Entity entity = args[0]
+            int abilityIndex = args[1]
+            String upgrade = args[2]
+            int level = args[3]
+            func.onAbilityUpgrade(entity, abilityIndex, upgrade, level)
+        }
         /**
          * Time triggers.
          */
-            case ScriptBindings.EVENT_MAP_INITIALIZATION:
-                List<EventFunctions> functions = bindings.getEventBindings(ScriptBindings.EVENT_MAP_INITIALIZATION)
-                if (functions != null) {
-                    for (EventFunctions func : functions) {
-                        func.onMapInitialization()
-                    }
-                }
-                break
-            case ScriptBindings.EVENT_PERIODIC:
-                float elapsedTime = event.getArgs()[0]
-                List<EventFunctions> functions = bindings.getEventBindings(ScriptBindings.EVENT_PERIODIC)
-                if (functions != null) {
-                    for (EventFunctions func : functions) {
-                        func.onPeriodic(elapsedTime)
-                    }
-                }
-                break
-            case ScriptBindings.EVENT_ACTOR_CREATED:
-                Entity entity = event.getArgs()[0]
-                break
-            case ScriptBindings.EVENT_PLAYER_JOINED:
-                Player player = event.getArgs()[0]
-                break
+        addDispatcher(ScriptBindings.EVENT_MAP_INITIALIZATION) { EventFunctions func, Object[] args ->
+            func.onMapInitialization()
+        }
+        addDispatcher(ScriptBindings.EVENT_PERIODIC) { EventFunctions func, Object[] args ->
+            float elapsedTime = args[0]
+            func.onPeriodic(elapsedTime)
+        }
         /**
          * Collision triggers.
          */
-            case ScriptBindings.EVENT_TILE_COLLIDED:
-                CollisionInformation collisionInformation = event.getArgs()[0]
-                List<EventFunctions> functions = bindings.getEventBindings(ScriptBindings.EVENT_TILE_COLLIDED)
-                if (functions != null) {
-                    for (EventFunctions func : functions) {
-                        func.onTileCollision(collisionInformation)
-                    }
-                }
-                break
-            case ScriptBindings.EVENT_STATIC_COLLIDED:
-                CollisionInformation collisionInformation = event.getArgs()[0]
-                List<EventFunctions> functions = bindings.getEventBindings(ScriptBindings.EVENT_STATIC_COLLIDED)
-                if (functions != null) {
-                    for (EventFunctions func : functions) {
-                        func.onBoundsCollision(collisionInformation)
-                    }
-                }
-                break
-            case ScriptBindings.EVENT_SENSOR_COLLIDED:
-                CollisionInformation collisionInformation = event.getArgs()[0]
-                List<EventFunctions> functions = bindings.getEventBindings(ScriptBindings.EVENT_SENSOR_COLLIDED)
-                if (functions != null) {
-                    for (EventFunctions func : functions) {
-                        func.onBoundsCollision(collisionInformation)
-                    }
-                }
-                break
+        addDispatcher(ScriptBindings.EVENT_TILE_COLLIDED) { EventFunctions func, Object[] args ->
+            CollisionInformation collisionInformation = args[0]
+            func.onTileCollision(collisionInformation)
+        }
+        for (String event : [ScriptBindings.EVENT_STATIC_COLLIDED, ScriptBindings.EVENT_SENSOR_COLLIDED]) {
+            addDispatcher(event) { EventFunctions func, Object[] args ->
+                CollisionInformation collisionInformation = args[0]
+                func.onBoundsCollision(collisionInformation)
+            }
+        }
         /**
          * Region event triggers.
          */
-            case ScriptBindings.EVENT_REGION_ENTER:
-                String name = event.getArgs()[0]
-                Bounds bounds = event.getArgs()[1]
-                Entity entity = event.getArgs()[2]
-                List<EventFunctions> functions = bindings.getEventBindings(ScriptBindings.EVENT_REGION_ENTER)
-                if (functions != null) {
-                    for (EventFunctions func : functions) {
-                        func.onRegionEvent(name, bounds, entity)
-                    }
-                }
-                break
-            case ScriptBindings.EVENT_REGION_INSIDE:
-                String name = event.getArgs()[0]
-                Bounds bounds = event.getArgs()[1]
-                Entity entity = event.getArgs()[2]
-                List<EventFunctions> functions = bindings.getEventBindings(ScriptBindings.EVENT_REGION_INSIDE)
-                if (functions != null) {
-                    for (EventFunctions func : functions) {
-                        func.onRegionEvent(name, bounds, entity)
-                    }
-                }
-                break
-            case ScriptBindings.EVENT_REGION_LEAVE:
-                String name = event.getArgs()[0]
-                Bounds bounds = event.getArgs()[1]
-                Entity entity = event.getArgs()[2]
-                List<EventFunctions> functions = bindings.getEventBindings(ScriptBindings.EVENT_REGION_LEAVE)
-                if (functions != null) {
-                    for (EventFunctions func : functions) {
-                        func.onRegionEvent(name, bounds, entity)
-                    }
-                }
-                break
+        for (String event : [ScriptBindings.EVENT_REGION_ENTER, ScriptBindings.EVENT_REGION_INSIDE,
+                             ScriptBindings.EVENT_REGION_LEAVE]) {
+            addDispatcher(event) { EventFunctions func, Object[] args ->
+                String name = args[0]
+                Bounds bounds = args[1]
+                Entity entity = args[2]
+                func.onRegionEvent(name, bounds, entity)
+            }
+        }
         /**
          * AI event triggers.
          */
-            case ScriptBindings.EVENT_AI_COMBAT:
-                Entity entity = event.getArgs()[0]
-                Entity target = event.getArgs()[1]
-                String script = event.getArgs()[2]
-                List<EventFunctions> functions = bindings.getEventBindings(ScriptBindings.EVENT_AI_COMBAT)
-                if (functions != null) {
-                    for (EventFunctions func : functions) {
-                        func.onCombat(entity, target, script)
-                    }
-                }
-                break
-            case ScriptBindings.EVENT_AI_LEAVE_COMBAT:
-                Entity entity = event.getArgs()[0]
-                List<EventFunctions> functions = bindings.getEventBindings(ScriptBindings.EVENT_AI_LEAVE_COMBAT)
-                if (functions != null) {
-                    for (EventFunctions func : functions) {
-                        func.onLeaveCombat(entity)
-                    }
-                }
-                break
+        addDispatcher(ScriptBindings.EVENT_AI_COMBAT) { EventFunctions func, Object[] args ->
+            Entity entity = args[0]
+            Entity target = args[1]
+            String script = args[2]
+            func.onCombat(entity, target, script)
+        }
+        addDispatcher(ScriptBindings.EVENT_AI_LEAVE_COMBAT) { EventFunctions func, Object[] args ->
+            Entity entity = args[0]
+            func.onLeaveCombat(entity)
+        }
         /**
          * Item event triggers.
          */
-            case ScriptBindings.EVENT_ITEM_PICK_UP:
-                Entity holder = event.getArgs()[0]
-                Entity item = event.getArgs()[1]
-                List<EventFunctions> functions = bindings.getEventBindings(ScriptBindings.EVENT_ITEM_PICK_UP)
-                if (functions != null) {
-                    for (EventFunctions func : functions) {
-                        func.onItemPickUpOrDrop(holder, item)
-                    }
-                }
-                break
-            case ScriptBindings.EVENT_ITEM_DROP:
-                Entity holder = event.getArgs()[0]
-                Entity item = event.getArgs()[1]
-                List<EventFunctions> functions = bindings.getEventBindings(ScriptBindings.EVENT_ITEM_DROP)
-                if (functions != null) {
-                    for (EventFunctions func : functions) {
-                        func.onItemPickUpOrDrop(holder, item)
-                    }
-                }
-                break
+        for (String event : [ScriptBindings.EVENT_ITEM_PICK_UP, ScriptBindings.EVENT_ITEM_DROP]) {
+            addDispatcher(event) { EventFunctions func, Object[] args ->
+                Entity holder = args[0]
+                Entity item = args[1]
+                func.onItemPickUpOrDrop(holder, item)
+            }
+        }
+
+        // Subscribe to the events bound while creating the bindings and to any bound later.
+        bindings = new ScriptBindings(scriptAPI)
+        for (String event : dispatchers.keySet()) {
+            if (bindings.getEventBindings(event) != null) {
+                subscribe(event)
+            }
+        }
+        bindings.setEventBoundListener { String event -> subscribe(event) }
+    }
+
+    /**
+     * Sets how the functions bound to an event are called.
+     * @param event the name of the event.
+     * @param call the closure taking a bound function and the event arguments.
+     */
+    private void addDispatcher(String event, Closure call) {
+        dispatchers.put(event, call)
+    }
+
+    /**
+     * Registers a handler calling every function bound to an event if not registered yet.
+     * @param event the name of the event.
+     */
+    private void subscribe(String event) {
+        Closure call = dispatchers.get(event)
+        if (call == null || !subscribedEvents.add(event)) {
+            return
+        }
+        scriptAPI.addEventHandler(event, { ScriptEvent scriptEvent ->
+            for (EventFunctions func : bindings.getEventBindings(event)) {
+                call(func, scriptEvent.getArgs())
+            }
+        } as ScriptEventHandler)
+    }
+
+    /**
+     * Updates the generic events.
+     * Run all the generic events before the main events to prevent double updating.
+     * @param tpf the time passed per update.
+     */
+    @Override
+    void update(float tpf) {
+        runningGenericEvents.addAll(bindings.genericEvents)
+        bindings.flushGenericEvents()
+        for (EventFunctions eventFunctions : runningGenericEvents) {
+            eventFunctions.call()
         }
+        runningGenericEvents.clear()
     }
 }
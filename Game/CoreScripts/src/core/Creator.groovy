@@ -1,6 +1,7 @@
 package core
 
 import com.exploringlines.entitysystem.Entity
+import com.jme3.math.Vector3f
 import com.submu.pug.scripting.ScriptAPI
 
 /**
@@ -63,6 +64,23 @@ class Creator {
         return api.gameObjectFactory.createActor(dataName, player, entityName)
     }
 
+    /**
+     * Creates actors of the same type at once.
+     * @param dataName the name of the actor data.
+     * @param player the id of the owning player.
+     * @param locations the positions to place each actor at.
+     * @return the actors in the order of the positions.
+     */
+    public List<Entity> createActors(String dataName, int player, List<Vector3f> locations) {
+        float[] positions = new float[locations.size() * 3]
+        for (int i = 0; i < locations.size(); i++) {
+            positions[i * 3] = locations[i].x
+            positions[i * 3 + 1] = locations[i].y
+            positions[i * 3 + 2] = locations[i].z
+        }
+        return api.gameObjectFactory.createActors(dataName, player, locations.size(), positions)
+    }
+
     /**
      * Creates a projectile.
      * Projectiles are specialized actors.
@@ -79,6 +97,7 @@ class Creator {
         entityBindings.copyStats(creator, projectile)
         entityBindings.setActorCategory(projectile, category)
         entityBindings.setMaxHealth(projectile, 0)
+        entityBindings.setPooled(projectile)
 
         if (model != null) {
             api.gameObjectFactory.changeActorModel(projectile, model)
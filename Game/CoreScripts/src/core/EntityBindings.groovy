@@ -1,5 +1,6 @@
 package core
 
+import com.halboom.pgt.entityspatial.SpatialComponent
 import com.halboom.pgt.entityspatial.TransformComponent
 import com.exploringlines.entitysystem.Entity
 import com.exploringlines.entitysystem.EntitySet
@@ -307,6 +308,8 @@ class EntityBindings {
         ActorComponent actorComponent = api.entitySystem.getComponent(entity, ActorComponent.class)
         if (actorComponent != null) {
             actorComponent.type = type
+            // Set the component again so systems caching the type such as the collision filter see the change.
+            api.entitySystem.setComponent(entity, actorComponent)
         }
     }
 
@@ -672,6 +675,19 @@ class EntityBindings {
         }
         timedLifeComponent.lifeTime = duration
         api.entitySystem.setComponent(entity, timedLifeComponent)
+        setPooled(entity)
+    }
+
+    /**
+     * Keeps the spatial of a short lived entity after it is removed to reuse for new entities with the same model.
+     * @param entity the entity to pool the spatial of.
+     */
+    public void setPooled(Entity entity) {
+        SpatialComponent spatialComponent = api.entitySystem.getComponent(entity, SpatialComponent.class)
+        if (spatialComponent != null && !spatialComponent.isPooled) {
+            spatialComponent.isPooled = true
+            api.entitySystem.setComponent(entity, spatialComponent)
+        }
     }
 
     /**
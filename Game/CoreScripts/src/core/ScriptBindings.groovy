@@ -130,6 +130,11 @@ class ScriptBindings {
      */
     private List<EventFunctions> genericEvents = new LinkedList<>()
 
+    /**
+     * Called with the event name when the first function is bound to an event.
+     */
+    private Closure eventBoundListener
+
     /**
      * Initializes the bindings.
      * @param api the api to use.
@@ -169,10 +174,20 @@ class ScriptBindings {
     public void addEventBinding(String event, EventFunctions function) {
         if (eventBindings.get(event) == null) {
             eventBindings.put(event, new LinkedList())
+            if (eventBoundListener != null) {
+                eventBoundListener(event)
+            }
         }
         eventBindings.get(event).add(function)
     }
 
+    /**
+     * @param eventBoundListener the closure called with the event name when the first function is bound to an event.
+     */
+    public void setEventBoundListener(Closure eventBoundListener) {
+        this.eventBoundListener = eventBoundListener
+    }
+
     /**
      * Retrieves all events for the bindings.
      * @param event the event to retrieve.
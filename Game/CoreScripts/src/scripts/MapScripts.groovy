@@ -77,44 +77,26 @@ class MapScripts {
                 if (timeElapsed - lastSpawnTime > spawnPeriod) {
                     lastSpawnTime = timeElapsed
                     Vector3f target = bindings.entityBindings.getPosition(enemyHQ)
-                    Vector3f location = bindings.getRegionCenter("AlliedSpawn1")
                     // Spawn normal allied units
-                    Entity spawn = bindings.creator.createActor("Enemy", ALLY_ID)
-                    bindings.entityBindings.setPosition(spawn, location.x, location.y, location.z)
-                    bindings.entityBindings.issueMoveTo(spawn, target.x, target.y, target.z)
-
-                    location = bindings.getRegionCenter("AlliedSpawn2")
-                    spawn = bindings.creator.createActor("Enemy", ALLY_ID)
-                    bindings.entityBindings.setPosition(spawn, location.x, location.y, location.z)
-                    bindings.entityBindings.issueMoveTo(spawn, target.x, target.y, target.z)
-
-                    location = bindings.getRegionCenter("AlliedSpawn3")
-                    spawn = bindings.creator.createActor("Enemy", ALLY_ID)
-                    bindings.entityBindings.setPosition(spawn, location.x, location.y, location.z)
-                    bindings.entityBindings.issueMoveTo(spawn, target.x, target.y, target.z)
+                    List<Vector3f> locations = [bindings.getRegionCenter("AlliedSpawn1"),
+                            bindings.getRegionCenter("AlliedSpawn2"), bindings.getRegionCenter("AlliedSpawn3")]
+                    for (Entity spawn : bindings.creator.createActors("Enemy", ALLY_ID, locations)) {
+                        bindings.entityBindings.issueMoveTo(spawn, target.x, target.y, target.z)
+                    }
 
                     // Spawn normal enemy units
                     target = bindings.entityBindings.getPosition(alliedHQ)
-                    location = bindings.getRegionCenter("EnemySpawn1")
-                    spawn = bindings.creator.createActor("Enemy", ENEMY_ID)
-                    bindings.entityBindings.setPosition(spawn, location.x, location.y, location.z)
-                    bindings.entityBindings.issueMoveTo(spawn, target.x, target.y, target.z)
-
-                    location = bindings.getRegionCenter("EnemySpawn2")
-                    spawn = bindings.creator.createActor("Enemy", ENEMY_ID)
-                    bindings.entityBindings.setPosition(spawn, location.x, location.y, location.z)
-                    bindings.entityBindings.issueMoveTo(spawn, target.x, target.y, target.z)
-
-                    location = bindings.getRegionCenter("EnemySpawn3")
-                    spawn = bindings.creator.createActor("Enemy", ENEMY_ID)
-                    bindings.entityBindings.setPosition(spawn, location.x, location.y, location.z)
-                    bindings.entityBindings.issueMoveTo(spawn, target.x, target.y, target.z)
+                    locations = [bindings.getRegionCenter("EnemySpawn1"), bindings.getRegionCenter("EnemySpawn2"),
+                            bindings.getRegionCenter("EnemySpawn3")]
+                    for (Entity spawn : bindings.creator.createActors("Enemy", ENEMY_ID, locations)) {
+                        bindings.entityBindings.issueMoveTo(spawn, target.x, target.y, target.z)
+                    }
 
                     // Spawn special enemy units
-                    location = bindings.getRegionCenter("EnemySpawn2")
-                    spawn = bindings.creator.createActor("HeavyEnemy", ENEMY_ID)
-                    bindings.entityBindings.setPosition(spawn, location.x, location.y, location.z)
-                    bindings.entityBindings.issueMoveTo(spawn, target.x, target.y, target.z)
+                    locations = [bindings.getRegionCenter("EnemySpawn2")]
+                    for (Entity spawn : bindings.creator.createActors("HeavyEnemy", ENEMY_ID, locations)) {
+                        bindings.entityBindings.issueMoveTo(spawn, target.x, target.y, target.z)
+                    }
                 }
             }
         })
@@ -9,8 +9,6 @@ import com.jme3.system.JmeCanvasContext;
 import com.jme3.system.awt.AwtPanel;
 import com.jme3.system.awt.AwtPanelsContext;
 import com.jme3.system.awt.PaintMode;
-import com.submu.pug.data.ConfigData;
-import com.submu.pug.data.Data;
 
 import javax.swing.JFrame;
 import javax.swing.JPopupMenu;
@@ -30,6 +28,11 @@ import java.util.concurrent.Callable;
  * Main swingContext creator for the game and editor.
  */
 public class MonkeyPug extends SimpleApplication {
+    /**
+     * Seconds between updates of the FPS text to make it easier to read.
+     */
+    private static final float FPS_TEXT_INTERVAL = 0.25f;
+
     /**
      * True to use an awt panel instead of a swing panel.
      */
@@ -56,9 +59,9 @@ public class MonkeyPug extends SimpleApplication {
     private AwtPanel rootPanel;
 
     /**
-     * MainLoop to check for application updating.
+     * Seconds since the FPS text was last updated.
      */
-    private MainLoop mainLoop;
+    private float fpsTextTime = 0;
 
     /**
      * Initializes the application without swing and with default settings.
@@ -200,16 +203,13 @@ public class MonkeyPug extends SimpleApplication {
             guiViewPort.setClearFlags(false, true, true);
         }
 
-        ConfigData config = Data.getInstance().getConfigData();
-        mainLoop = new MainLoop(config.logicRate, config.graphics.framerate);
-        mainLoop.enable();
-
         getStateManager().attach(initialState);
     }
 
     @Override
     /**
-     * Split the renderer and the logic into different threads.
+     * Updates the states once per rendered frame.
+     * States running game logic split the frame time into fixed steps themselves.
      */
     public void update() {
         // Make sure the audio renderer is available to callables
@@ -221,41 +221,31 @@ public class MonkeyPug extends SimpleApplication {
             return;
         }
 
-        // Update the logic
-        mainLoop.update();
-        while (mainLoop.shouldUpdateLogic()) {
-            float tpf = mainLoop.getLogicStepSize() * speed;
-
-            if (inputEnabled) {
-                inputManager.update(tpf);
-            }
-
-            if (audioRenderer != null) {
-                audioRenderer.update(tpf);
-            }
+        timer.update();
+        float tpf = timer.getTimePerFrame() * speed;
 
-            if (speed == 0 || paused) {
-                return;
-            }
+        if (inputEnabled) {
+            inputManager.update(tpf);
+        }
 
-            // update states
-            stateManager.update(tpf);
+        if (audioRenderer != null) {
+            audioRenderer.update(tpf);
+        }
 
-            // simple update and root node
-            simpleUpdate(tpf);
+        // update states
+        stateManager.update(tpf);
 
-            rootNode.updateLogicalState(tpf);
-            guiNode.updateLogicalState(tpf);
-        }
+        // simple update and root node
+        simpleUpdate(tpf);
 
+        rootNode.updateLogicalState(tpf);
+        guiNode.updateLogicalState(tpf);
 
-        // Renderer may already be threaded.
-        // Update the display as many times as possible based on the framerate
-        timer.update();
-        float tpf = timer.getTimePerFrame() * speed;
-        // Update the fps when the display updates to make it easier to read.
-        if (mainLoop.shouldUpdateDisplay()) {
+        // Update the fps only every so often to make it easier to read.
+        fpsTextTime += tpf;
+        if (fpsTextTime >= FPS_TEXT_INTERVAL) {
             fpsText.setText("FPS: " + (int) (1f / tpf));
+            fpsTextTime = 0;
         }
 
         rootNode.updateGeometricState();
@@ -33,6 +33,23 @@ public class ConfigData {
      */
     public int logicRate = 32;
 
+    /**
+     * True to update game systems that touch different components at the same time,
+     * false to update them one at a time in order.
+     * Off by default as the entity system is not known to be safe to read from several threads at once.
+     */
+    public boolean parallelSystems = false;
+
+    /**
+     * True to check the scripts for changes while playing and reload them when found.
+     */
+    public boolean watchScripts = false;
+
+    /**
+     * Largest number of AI entities looking for targets per logic update.
+     */
+    public int aiThinkBudget = 64;
+
     /**
      * Graphic settings for the game.
      */
@@ -85,6 +102,16 @@ public class ConfigData {
          */
         public float viewDistance = 128f;
 
+        /**
+         * True to merge flat terrain faces into larger quads.
+         */
+        public boolean greedyMeshing = false;
+
+        /**
+         * Distances where terrain chunks switch to a coarser level of detail, closest first.
+         */
+        public float[] lodDistances = {};
+
         /**
          * Resolution of the game window.
          */
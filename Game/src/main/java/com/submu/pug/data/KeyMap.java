@@ -20,6 +20,11 @@ public class KeyMap {
      */
     public static HotKey gameQuit = new HotKey("Game Quit", new KeyTrigger(KeyInput.KEY_ESCAPE));
 
+    /**
+     * Recompiles the changed scripts and restarts them when in play state.
+     */
+    public static HotKey gameReloadScripts = new HotKey("Game Reload Scripts", new KeyTrigger(KeyInput.KEY_F5));
+
     /**
      * Direction movement keys.
      */
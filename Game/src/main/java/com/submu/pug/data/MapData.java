@@ -18,6 +18,16 @@ public class MapData {
      */
     public Dimensions dimensions = new Dimensions();
 
+    /**
+     * Seed of the terrain generated when the map has no tiles.
+     */
+    public long terrainSeed = 0;
+
+    /**
+     * True to generate the terrain around the camera as it moves instead of before the map starts.
+     */
+    public boolean isTerrainGeneratedLazily = false;
+
     /**
      * Path for the sky box texture.
      */
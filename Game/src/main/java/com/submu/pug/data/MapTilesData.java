@@ -1,5 +1,7 @@
 package com.submu.pug.data;
 
+import com.halboom.pgt.pgutil.voxel.VoxelGrid;
+
 import java.util.ArrayList;
 import java.util.List;
 
@@ -44,6 +46,6 @@ public class MapTilesData {
         /**
          * Decompressed tiles that are only used for development and do not appear in the JSON output.
          */
-        public byte[][][] rawTiles;
+        public VoxelGrid rawTiles;
     }
 }
@@ -5,6 +5,7 @@ import com.halboom.pgt.input.InputActions;
 import com.halboom.pgt.pgutil.math.Vector3Int;
 import com.halboom.pgt.physics.simple.GridColliderSystem;
 import com.halboom.pgt.terrainsystem.Terrain;
+import com.halboom.pgt.terrainsystem.TileEditBatch;
 import com.jme3.asset.AssetManager;
 import com.jme3.input.InputManager;
 import com.jme3.renderer.Camera;
@@ -179,13 +180,19 @@ public class EditorActions extends InputActions {
             } else {
                 Vector3Int start = selectTool.getSelectStart();
                 Vector3Int end = selectTool.getSelectEnd();
-                for (int x = start.x; x <= end.x; x++) {
-                    for (int y = start.y; y <= end.y; y++) {
-                        for (int z = start.z; z <= end.z; z++) {
-                            closestTile.set(x, y, z);
-                            selectedTool.removeBlock(closestTile, selectedTileIndex, true);
+                // Queued edits are collected so each touched chunk is only rebuilt once.
+                TileEditBatch batch = terrain.beginEdit();
+                try {
+                    for (int x = start.x; x <= end.x; x++) {
+                        for (int y = start.y; y <= end.y; y++) {
+                            for (int z = start.z; z <= end.z; z++) {
+                                closestTile.set(x, y, z);
+                                selectedTool.removeBlock(closestTile, selectedTileIndex, true);
+                            }
                         }
                     }
+                } finally {
+                    batch.commit();
                 }
             }
         }
@@ -216,13 +223,19 @@ public class EditorActions extends InputActions {
             } else {
                 Vector3Int start = selectTool.getSelectStart();
                 Vector3Int end = selectTool.getSelectEnd();
-                for (int x = start.x; x <= end.x; x++) {
-                    for (int y = start.y; y <= end.y; y++) {
-                        for (int z = start.z; z <= end.z; z++) {
-                            closestTile.set(x, y, z);
-                            selectedTool.addBlock(closestTile, selectedTileIndex, true);
+                // Queued edits are collected so each touched chunk is only rebuilt once.
+                TileEditBatch batch = terrain.beginEdit();
+                try {
+                    for (int x = start.x; x <= end.x; x++) {
+                        for (int y = start.y; y <= end.y; y++) {
+                            for (int z = start.z; z <= end.z; z++) {
+                                closestTile.set(x, y, z);
+                                selectedTool.addBlock(closestTile, selectedTileIndex, true);
+                            }
                         }
                     }
+                } finally {
+                    batch.commit();
                 }
             }
         }
@@ -7,6 +7,8 @@ import com.halboom.pgt.asseteditor.Asset;
 import com.halboom.pgt.asseteditor.ImportListener;
 import com.halboom.pgt.debug.DebugGlobals;
 import com.halboom.pgt.pgutil.math.Vector3Int;
+import com.halboom.pgt.pgutil.voxel.ChunkedVoxelGrid;
+import com.halboom.pgt.pgutil.voxel.VoxelGrid;
 import com.halboom.pgt.physics.simple.GridColliderSystem;
 import com.jme3.app.Application;
 import com.jme3.app.SimpleApplication;
@@ -333,10 +335,10 @@ public class EditorState extends AbstractAppState {
         // Create the main segment which is the whole map.
         MapTilesData mapTilesData = new MapTilesData();
         MapTilesData.TileSegment mainSegment = new MapTilesData.TileSegment();
-        byte[][][] tiles = gameSession.getTerrain().getTiles();
-        mainSegment.dimensionX = tiles.length;
-        mainSegment.dimensionY = tiles[0].length;
-        mainSegment.dimensionZ = tiles[0][0].length;
+        VoxelGrid tiles = gameSession.getTerrain().getTiles();
+        mainSegment.dimensionX = tiles.getLengthX();
+        mainSegment.dimensionY = tiles.getLengthY();
+        mainSegment.dimensionZ = tiles.getLengthZ();
         mainSegment.name = MAIN_SEGMENT_NAME;
         mainSegment.rawTiles = tiles;
         mapTilesData.segments.add(mainSegment);
@@ -356,7 +358,7 @@ public class EditorState extends AbstractAppState {
                 savedSegment.startY = segment.startY;
                 savedSegment.startZ = segment.startZ;
                 // Set the tiles for the segment.
-                savedSegment.rawTiles = new byte[segment.dimensionX][segment.dimensionY][segment.dimensionZ];
+                savedSegment.rawTiles = new ChunkedVoxelGrid(segment.dimensionX, segment.dimensionY, segment.dimensionZ);
                 for (int x = segment.startX; x < segment.dimensionX; x++) {
                     for (int y = segment.startY; y < segment.dimensionY; y++) {
                         for (int z = segment.startZ; z < segment.dimensionZ; z++) {
@@ -372,7 +374,7 @@ public class EditorState extends AbstractAppState {
                                     || sX >= segment.dimensionX || sY >= segment.dimensionY || sZ >= segment.dimensionZ) {
                                 continue;
                             }
-                            savedSegment.rawTiles[sX][sY][sZ] = tiles[x][y][z];
+                            savedSegment.rawTiles.set(sX, sY, sZ, tiles.get(x, y, z));
                         }
                     }
                 }
@@ -406,19 +408,19 @@ public class EditorState extends AbstractAppState {
         //TerrainData terrainData = gameSession.getTerrain().generateTerrainData();
         try {
             terrainData.tiles = MapUtils.compressTiles(terrainData.rawTiles);
-            byte[][][] decompress = MapUtils.decompressTiles(terrainData.tiles,
-                    terrainData.rawTiles.length, terrainData.rawTiles[0].length, terrainData.rawTiles[0][0].length);
-            byte[][][] rawTiles = terrainData.rawTiles;
+            VoxelGrid rawTiles = terrainData.rawTiles;
+            VoxelGrid decompress = MapUtils.decompressTiles(terrainData.tiles,
+                    rawTiles.getLengthX(), rawTiles.getLengthY(), rawTiles.getLengthZ());
             terrainData.rawTiles = null;
             Gson gson = new GsonBuilder().setPrettyPrinting().create();
             String output = gson.toJson(terrainData, TerrainData.class);
             FileUtils.write(new File(path), output);
             LoggerFactory.getLogger(EditorState.class).info("Save completed.");
-            for (int x = 0; x < rawTiles.length; x++) {
-                for (int y = 0; y < rawTiles[x].length; y++) {
-                    for (int z = 0; z < rawTiles[x][y].length; z++) {
-                        if (rawTiles[x][y][z] != decompress[x][y][z]) {
-                            DebugGlobals.println(rawTiles[x][y][z] + "  " + decompress[x][y][z]);
+            for (int x = 0; x < rawTiles.getLengthX(); x++) {
+                for (int y = 0; y < rawTiles.getLengthY(); y++) {
+                    for (int z = 0; z < rawTiles.getLengthZ(); z++) {
+                        if (rawTiles.get(x, y, z) != decompress.get(x, y, z)) {
+                            DebugGlobals.println(rawTiles.get(x, y, z) + "  " + decompress.get(x, y, z));
                         }
                     }
                 }
@@ -1,7 +1,10 @@
 package com.submu.pug.game;
 
 import com.exploringlines.entitysystem.Entity;
+import com.exploringlines.entitysystem.EntitySet;
 import com.exploringlines.entitysystem.EntitySystem;
+import com.exploringlines.entitysystem.Subsystem;
+import com.halboom.pgt.entityspatial.ComponentAccess;
 import com.halboom.pgt.physics.filters.Filter;
 import com.halboom.pgt.physics.simple.shapes.Bounds;
 import com.submu.pug.game.objects.Player;
@@ -12,14 +15,21 @@ import com.submu.pug.game.objects.components.FilterFlagComponent;
 import com.submu.pug.game.objects.components.OwnerComponent;
 import org.slf4j.LoggerFactory;
 
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
 /**
  * Created with IntelliJ IDEA.
  * User: Michael Wang
  * Date: 6/12/13
  * Time: 3:41 PM
  * Collision flags for preset collision filters.
+ * The filter components of each entity are compiled into a record of flags, player, creator and actor type
+ * when they change and the alliances between players are compiled into bit sets when they change,
+ * so filtering a pair only compares the two records.
  */
-public class CollisionFilter extends Filter {
+public class CollisionFilter extends Filter implements Subsystem, ComponentAccess {
     /**
      * Groups that are commonly used throughout the game.
      * Keep this as a pre calculated list to keep things simple.
@@ -34,6 +44,72 @@ public class CollisionFilter extends Filter {
     public static final long COLLISION_UNIT = 1,
                              COLLISION_PROJECTILE = 2;
 
+    /**
+     * Components only read during the update.
+     */
+    private static final Class<?>[] READ_COMPONENTS = {FilterFlagComponent.class, OwnerComponent.class,
+            CreatorComponent.class, ActorComponent.class};
+
+    /**
+     * Components changed during the update.
+     */
+    private static final Class<?>[] WRITE_COMPONENTS = {};
+
+    /**
+     * Flags of a record set when the entity's filter allows the matching collision.
+     */
+    private static final int COLLIDES_SELF = 1,
+                             COLLIDES_OWNER = 1 << 1,
+                             COLLIDES_CREATOR = 1 << 2,
+                             COLLIDES_SHARED_CREATOR = 1 << 3,
+                             COLLIDES_ALLY = 1 << 4,
+                             COLLIDES_ENEMY = 1 << 5,
+                             COLLIDES_NEUTRAL = 1 << 6,
+                             COLLIDES_SAME = 1 << 7;
+
+    /**
+     * Flags of a record set when the entity has the matching component.
+     */
+    private static final int HAS_FILTER = 1 << 8,
+                             HAS_OWNER = 1 << 9,
+                             HAS_CREATOR = 1 << 10,
+                             HAS_ACTOR = 1 << 11;
+
+    /**
+     * Slot of players and actor types that are not known.
+     */
+    private static final int NO_SLOT = -1;
+
+    /**
+     * Filter components of an entity compiled for comparing with other entities.
+     */
+    private static final class FilterRecord {
+        /**
+         * Collision and component flags.
+         */
+        private int flags;
+
+        /**
+         * Id of the owning player.
+         */
+        private int playerID;
+
+        /**
+         * Slot of the owning player in the alliance bit sets, no slot if the player does not exist.
+         */
+        private int team = NO_SLOT;
+
+        /**
+         * Entity that created the entity, null if none.
+         */
+        private Entity creator;
+
+        /**
+         * Id of the actor type, no slot if the entity has no type.
+         */
+        private int type = NO_SLOT;
+    }
+
     /**
      * Entity system to use.
      */
@@ -44,6 +120,46 @@ public class CollisionFilter extends Filter {
      */
     private PlayerAssigner playerAssigner;
 
+    /**
+     * Compiled records of the entities with any of the filter components.
+     */
+    private Map<Entity, FilterRecord> records = new HashMap<Entity, FilterRecord>();
+
+    /**
+     * Records compiled for entities created since the last update, one for each entity of a pair.
+     */
+    private FilterRecord record1 = new FilterRecord(), record2 = new FilterRecord();
+
+    /**
+     * Ids of the actor types by name.
+     */
+    private Map<String, Integer> types = new HashMap<String, Integer>();
+
+    /**
+     * Slots of the players in the alliance bit sets by player id.
+     */
+    private Map<Integer, Integer> playerSlots = new HashMap<Integer, Integer>();
+
+    /**
+     * Bit sets of the players each player is allied with and hostile to, a row of words for each player.
+     */
+    private long[] allies = new long[0], enemies = new long[0];
+
+    /**
+     * Number of words in a row of the alliance bit sets.
+     */
+    private int words = 0;
+
+    /**
+     * Slot of the neutral passive player.
+     */
+    private int neutralSlot = NO_SLOT;
+
+    /**
+     * Alliance version of the player assigner the alliance bit sets were compiled from.
+     */
+    private int allianceVersion = -1;
+
     /**
      * Initializes the collision filter.
      * @param entitySystem the entity system to use.
@@ -54,106 +170,256 @@ public class CollisionFilter extends Filter {
         this.playerAssigner = playerAssigner;
     }
 
+    @Override
+    public void update(float tpf) {
+        updateRecords(entitySystem.getEntities(FilterFlagComponent.class));
+        updateRecords(entitySystem.getEntities(OwnerComponent.class));
+        updateRecords(entitySystem.getEntities(CreatorComponent.class));
+        updateRecords(entitySystem.getEntities(ActorComponent.class));
+    }
+
+    /**
+     * Compiles the records of the entities whose components in a set changed.
+     * @param set the set of entities with one of the filter components.
+     */
+    private void updateRecords(EntitySet set) {
+        for (Entity entity : set.getAddedEntities()) {
+            updateRecord(entity);
+        }
+        for (Entity entity : set.getChangedEntities()) {
+            updateRecord(entity);
+        }
+        for (Entity entity : set.getRemovedEntities()) {
+            updateRecord(entity);
+        }
+    }
+
+    /**
+     * Compiles the record of an entity, dropping it if the entity has none of the filter components.
+     * @param entity the entity to compile.
+     */
+    private void updateRecord(Entity entity) {
+        FilterRecord record = records.get(entity);
+        if (record == null) {
+            record = new FilterRecord();
+        }
+        if (compileRecord(entity, record)) {
+            records.put(entity, record);
+        } else {
+            records.remove(entity);
+        }
+    }
+
+    /**
+     * Compiles the filter components of an entity into a record.
+     * @param entity the entity to compile.
+     * @param store the record to store the compiled components in.
+     * @return true if the entity has any of the filter components.
+     */
+    private boolean compileRecord(Entity entity, FilterRecord store) {
+        int flags = 0;
+        FilterFlagComponent filter = entitySystem.getComponent(entity, FilterFlagComponent.class);
+        if (filter != null) {
+            flags |= HAS_FILTER;
+            flags |= filter.collidesSelf ? COLLIDES_SELF : 0;
+            flags |= filter.collidesOwner ? COLLIDES_OWNER : 0;
+            flags |= filter.collidesCreator ? COLLIDES_CREATOR : 0;
+            flags |= filter.collidesSharedCreator ? COLLIDES_SHARED_CREATOR : 0;
+            flags |= filter.collidesAlly ? COLLIDES_ALLY : 0;
+            flags |= filter.collidesEnemy ? COLLIDES_ENEMY : 0;
+            flags |= filter.collidesNeutral ? COLLIDES_NEUTRAL : 0;
+            flags |= filter.collidesSame ? COLLIDES_SAME : 0;
+        }
+        OwnerComponent owner = entitySystem.getComponent(entity, OwnerComponent.class);
+        store.team = NO_SLOT;
+        if (owner != null) {
+            flags |= HAS_OWNER;
+            store.playerID = owner.playerID;
+            store.team = getPlayerSlot(owner.playerID);
+        }
+        CreatorComponent creator = entitySystem.getComponent(entity, CreatorComponent.class);
+        store.creator = null;
+        if (creator != null && creator.creator != null) {
+            flags |= HAS_CREATOR;
+            store.creator = creator.creator;
+        }
+        ActorComponent actor = entitySystem.getComponent(entity, ActorComponent.class);
+        store.type = NO_SLOT;
+        if (actor != null) {
+            flags |= HAS_ACTOR;
+            store.type = getTypeId(actor.type);
+        }
+        store.flags = flags;
+        return flags != 0;
+    }
+
+    /**
+     * Retrieves the record of an entity, compiling it into a given record if the entity is new since the last update.
+     * @param entity the entity to retrieve the record of.
+     * @param store the record to compile into for new entities.
+     * @return the record of the entity.
+     */
+    private FilterRecord getRecord(Entity entity, FilterRecord store) {
+        FilterRecord record = records.get(entity);
+        if (record == null) {
+            compileRecord(entity, store);
+            record = store;
+        }
+        return record;
+    }
+
+    /**
+     * @param type the name of the actor type.
+     * @return the id of the actor type, no slot if the name is null.
+     */
+    private int getTypeId(String type) {
+        if (type == null) {
+            return NO_SLOT;
+        }
+        Integer id = types.get(type);
+        if (id == null) {
+            id = types.size();
+            types.put(type, id);
+        }
+        return id;
+    }
+
+    /**
+     * @param playerID the id of the player.
+     * @return the slot of the player in the alliance bit sets, no slot if the player does not exist.
+     */
+    private int getPlayerSlot(int playerID) {
+        Integer slot = playerSlots.get(playerID);
+        return slot == null ? NO_SLOT : slot;
+    }
+
+    /**
+     * Compiles the alliances between every player into bit sets and updates the player slots of the records.
+     */
+    private void compileAlliances() {
+        List<Player> players = playerAssigner.getPlayers();
+        int count = players.size();
+        words = (count + Long.SIZE - 1) / Long.SIZE;
+        allies = new long[count * words];
+        enemies = new long[count * words];
+        playerSlots.clear();
+        for (int i = 0; i < count; i++) {
+            // Players sharing an id are found as the first one, matching the player assigner.
+            if (!playerSlots.containsKey(players.get(i).getId())) {
+                playerSlots.put(players.get(i).getId(), i);
+            }
+        }
+        for (int i = 0; i < count; i++) {
+            for (int j = 0; j < count; j++) {
+                if (playerAssigner.arePlayersAllied(players.get(i), players.get(j))) {
+                    allies[i * words + j / Long.SIZE] |= 1L << j;
+                }
+                if (playerAssigner.arePlayersEnemies(players.get(i), players.get(j))) {
+                    enemies[i * words + j / Long.SIZE] |= 1L << j;
+                }
+            }
+        }
+        neutralSlot = getPlayerSlot(playerAssigner.getNeutralPassivePlayer().getId());
+        for (FilterRecord record : records.values()) {
+            if ((record.flags & HAS_OWNER) != 0) {
+                record.team = getPlayerSlot(record.playerID);
+            }
+        }
+        allianceVersion = playerAssigner.getAllianceVersion();
+    }
+
+    /**
+     * @param bits the alliance bit sets to check.
+     * @param team1 the slot of a player.
+     * @param team2 the slot of another player.
+     * @return true if the bit of the second player is set in the row of the first player.
+     */
+    private boolean isSet(long[] bits, int team1, int team2) {
+        if (team1 == NO_SLOT || team2 == NO_SLOT) {
+            return false;
+        }
+        return (bits[team1 * words + team2 / Long.SIZE] & (1L << team2)) != 0;
+    }
+
     @Override
     public boolean filterBounds(Bounds bounds1, Bounds bounds2) {
+        Entity entity1 = bounds1.getEntity();
         // Only filter entities with the filter component.
-        FilterFlagComponent filter = entitySystem.getComponent(bounds1.getEntity(), FilterFlagComponent.class);
-        if (filter == null) {
+        if (entity1 == null) {
+            return true;
+        }
+        if (allianceVersion != playerAssigner.getAllianceVersion()) {
+            compileAlliances();
+        }
+        FilterRecord filter = getRecord(entity1, record1);
+        if ((filter.flags & HAS_FILTER) == 0) {
             return true;
         }
 
-        Entity entity1 = bounds1.getEntity();
         Entity entity2 = bounds2.getEntity();
         // Bounds to bounds checks should always have entities.
-        if (entity1 == null || entity2 == null) {
+        if (entity2 == null) {
             LoggerFactory.getLogger(CollisionFilter.class).warn("Trying to filter bounds without valid entities.");
             return true;
         }
-
-        // Disallow if the entity cannot collide with the self then disallow.
-        if (!filter.collidesSelf) {
-            if (bounds1.getEntity().equals(bounds2.getEntity())) {
-                return false;
-            }
+        // Only the collisions the filter disallows need to be checked.
+        int disallowed = ~filter.flags;
+        if ((disallowed & COLLIDES_SELF) != 0 && entity1.equals(entity2)) {
+            return false;
         }
-        // Disallow if the entity cannot collide with another entity by the same owner.
-        if (!filter.collidesOwner) {
-            OwnerComponent owner1 = entitySystem.getComponent(bounds1.getEntity(), OwnerComponent.class);
-            if (owner1 != null) {
-                OwnerComponent owner2 = entitySystem.getComponent(bounds2.getEntity(), OwnerComponent.class);
-                if (owner2 != null) {
-                    if (owner1.equals(owner2)) {
-                        return false;
-                    }
-                }
+        FilterRecord other = getRecord(entity2, record2);
+        int shared = filter.flags & other.flags;
+        if ((shared & HAS_OWNER) != 0) {
+            // Disallow if the entity cannot collide with another entity by the same owner.
+            if ((disallowed & COLLIDES_OWNER) != 0 && filter.playerID == other.playerID) {
+                return false;
             }
-        }
-        // Disallow if the entity cannot collide with the creator.
-        if (!filter.collidesCreator) {
-            CreatorComponent creator = entitySystem.getComponent(bounds1.getEntity(), CreatorComponent.class);
-            if (creator != null) {
-                if (creator.creator.equals(bounds2.getEntity())) {
-                    return false;
-                }
+            if ((disallowed & COLLIDES_ALLY) != 0 && isSet(allies, filter.team, other.team)) {
+                return false;
             }
-        }
-        // Disallow if the entity cannot collide with an entity that shares the same creator.
-        if (!filter.collidesSharedCreator) {
-            CreatorComponent creator1 = entitySystem.getComponent(bounds1.getEntity(), CreatorComponent.class);
-            if (creator1 != null) {
-                CreatorComponent creator2 = entitySystem.getComponent(bounds2.getEntity(), CreatorComponent.class);
-                if (creator2 != null) {
-                    if (creator1.creator.equals(creator2.creator)) {
-                        return false;
-                    }
-                }
+            if ((disallowed & COLLIDES_ENEMY) != 0 && isSet(enemies, filter.team, other.team)) {
+                return false;
             }
         }
-        // Disallow if the entity cannot collide with allies.
-        if (!filter.collidesAlly) {
-            OwnerComponent owner1 = entitySystem.getComponent(bounds1.getEntity(), OwnerComponent.class);
-            if (owner1 != null) {
-                OwnerComponent owner2 = entitySystem.getComponent(bounds2.getEntity(), OwnerComponent.class);
-                if (owner2 != null) {
-                    if (playerAssigner.arePlayersAllied(playerAssigner.getPlayer(owner1.playerID), playerAssigner.getPlayer(owner2.playerID))) {
-                        return false;
-                    }
-                }
+        // Disallow if the entity cannot collide with the creator or an entity that shares the same creator.
+        if ((filter.flags & HAS_CREATOR) != 0) {
+            if ((disallowed & COLLIDES_CREATOR) != 0 && filter.creator.equals(entity2)) {
+                return false;
             }
-        }
-        // Disallow if the entity cannot collide with enemies.
-        if (!filter.collidesEnemy) {
-            OwnerComponent owner1 = entitySystem.getComponent(bounds1.getEntity(), OwnerComponent.class);
-            if (owner1 != null) {
-                OwnerComponent owner2 = entitySystem.getComponent(bounds2.getEntity(), OwnerComponent.class);
-                if (owner2 != null) {
-                    if (playerAssigner.arePlayersEnemies(playerAssigner.getPlayer(owner1.playerID), playerAssigner.getPlayer(owner2.playerID))) {
-                        return false;
-                    }
-                }
+            if ((disallowed & COLLIDES_SHARED_CREATOR) != 0 && (other.flags & HAS_CREATOR) != 0
+                    && filter.creator.equals(other.creator)) {
+                return false;
             }
         }
-        // Disallow if the entity cannot collide with neutrals.
-        if (!filter.collidesNeutral) {
-            OwnerComponent owner = entitySystem.getComponent(bounds2.getEntity(), OwnerComponent.class);
-            if (owner != null) {
-                Player player = playerAssigner.getPlayer(owner.playerID);
-                // Only check the neutral passive player.
-                if (player.equals(playerAssigner.getNeutralPassivePlayer())) {
-                    return false;
-                }
-            }
+        // Only check the neutral passive player.
+        if ((disallowed & COLLIDES_NEUTRAL) != 0 && (other.flags & HAS_OWNER) != 0 && other.team != NO_SLOT
+                && other.team == neutralSlot) {
+            return false;
         }
         // Disallow if entity is the same type.
-        if (!filter.collidesSame) {
-            ActorComponent actor1 = entitySystem.getComponent(bounds1.getEntity(), ActorComponent.class);
-            if (actor1 != null) {
-                ActorComponent actor2 = entitySystem.getComponent(bounds2.getEntity(), ActorComponent.class);
-                if (actor2 != null && actor1.type.equals(actor2.type)) {
-                    return false;
-                }
-            }
+        if ((disallowed & COLLIDES_SAME) != 0 && (shared & HAS_ACTOR) != 0 && filter.type != NO_SLOT
+                && filter.type == other.type) {
+            return false;
         }
         return true;
     }
+
+    @Override
+    public void cleanupSubsystem() {
+    }
+
+    @Override
+    public Class<?>[] getReadComponents() {
+        return READ_COMPONENTS;
+    }
+
+    @Override
+    public Class<?>[] getWriteComponents() {
+        return WRITE_COMPONENTS;
+    }
+
+    @Override
+    public void destroy() {
+        records.clear();
+    }
 }
@@ -3,18 +3,26 @@ package com.submu.pug.game;
 
 import com.halboom.pgt.debug.DebugGlobals;
 import com.halboom.pgt.debug.DebugTools;
+import com.halboom.pgt.debug.Profiler;
+import com.halboom.pgt.entityspatial.ComponentAccess;
 import com.halboom.pgt.entityspatial.SpatialSystem;
+import com.halboom.pgt.entityspatial.SubsystemScheduler;
 import com.halboom.pgt.entityspatial.TransformComponent;
 import com.exploringlines.entitysystem.Entity;
+import com.exploringlines.entitysystem.EntitySet;
 import com.exploringlines.entitysystem.EntitySystem;
 import com.exploringlines.entitysystem.Subsystem;
 import com.halboom.pgt.pgutil.threading.Threading;
 import com.halboom.pgt.physics.PhysicsSystem;
 import com.halboom.pgt.physics.debug.DebugBoundsSystem;
+import com.halboom.pgt.physics.pathfinding.Pathfinder;
 import com.halboom.pgt.physics.simple.GridColliderSystem;
+import com.halboom.pgt.terrainsystem.Chunk;
 import com.halboom.pgt.terrainsystem.Terrain;
+import com.halboom.pgt.terrainsystem.TerrainCallbacks;
 import com.halboom.pgt.terrainsystem.TileAtlas;
 import com.halboom.pgt.terrainsystem.TileBank;
+import com.halboom.pgt.terrainsystem.generator.Generator;
 import com.halboom.pgt.terrainsystem.generator.Noise;
 import com.jme3.app.Application;
 import com.jme3.app.SimpleApplication;
@@ -41,6 +49,7 @@ import com.submu.pug.game.objects.GameObjectFactory;
 import com.submu.pug.game.objects.ItemFactory;
 import com.submu.pug.game.objects.Player;
 import com.submu.pug.game.objects.PlayerAssigner;
+import com.submu.pug.game.objects.systems.AIPerception;
 import com.submu.pug.game.objects.systems.AISystem;
 import com.submu.pug.game.objects.systems.AbilitySystem;
 import com.submu.pug.game.objects.systems.ActionSystem;
@@ -61,6 +70,7 @@ import com.submu.pug.processors.FogState;
 import com.submu.pug.processors.ShadowState;
 import com.submu.pug.resources.map.MapFile;
 import com.submu.pug.resources.map.MapUtils;
+import com.submu.pug.scripting.EventSystem;
 import com.submu.pug.scripting.GroovyRunner;
 import com.submu.pug.scripting.ScriptAPI;
 import com.submu.pug.scripting.ScriptGlobals;
@@ -77,6 +87,7 @@ import com.submu.pug.scripting.events.EventKey;
 import com.submu.pug.scripting.events.EventPlayers;
 import com.submu.pug.scripting.events.EventRegions;
 import com.submu.pug.scripting.events.EventTime;
+import com.submu.pug.util.FixedTimestep;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
@@ -95,6 +106,11 @@ import java.util.List;
  * TODO: Remove dependency on requiring a controller for the camera.
  */
 public class GameSession {
+    /**
+     * Most logic steps to run for one frame before dropping time to catch up.
+     */
+    private static final int MAX_LOGIC_STEPS_PER_FRAME = 4;
+
     /**
      * Simple application cast of the app.
      */
@@ -185,6 +201,41 @@ public class GameSession {
      */
     private List<Subsystem> systems;
 
+    /**
+     * Updates the systems, running the ones touching different components at the same time.
+     */
+    private SubsystemScheduler systemScheduler;
+
+    /**
+     * Profiler to time the parts of the session with.
+     */
+    private Profiler profiler = Profiler.getInstance();
+
+    /**
+     * Profiler section names of the updates and clean ups of each system.
+     */
+    private String[] systemSections, cleanupSections;
+
+    /**
+     * Profiler section names of each event hook.
+     */
+    private String[] eventSections;
+
+    /**
+     * Components the systems declare access to, counted while profiling.
+     */
+    private List<Class<?>> countedComponents = new ArrayList<Class<?>>();
+
+    /**
+     * Entities having each counted component, created the first time they are counted.
+     */
+    private List<EntitySet> countedSets;
+
+    /**
+     * Profiler counter names of each counted component.
+     */
+    private String[] countedSections;
+
     /**
      * Regions within the map.
      */
@@ -195,6 +246,26 @@ public class GameSession {
      */
     private PlayerAssigner playerAssigner = new PlayerAssigner();
 
+    /**
+     * Ray from the camera used to find the targeted entity.
+     */
+    private Ray targetRay = new Ray();
+
+    /**
+     * Splits the frame time into the fixed logic steps.
+     */
+    private FixedTimestep logicTimestep;
+
+    /**
+     * System placing spatials, interpolated between logic steps every frame.
+     */
+    private SpatialSystem spatialSystem;
+
+    /**
+     * Finds paths through the tiles for walking entities.
+     */
+    private Pathfinder pathfinder;
+
     /**
      * Initializes the session.
      * @param app the application to use.
@@ -217,6 +288,7 @@ public class GameSession {
 
         // Create the entity system.
         entitySystem = new EntitySystem();
+        logicTimestep = new FixedTimestep(Data.getInstance().getConfigData().logicRate, MAX_LOGIC_STEPS_PER_FRAME);
 
         // Debug data used only when needed.
         DebugGlobals.getInstance().setRootNode(sessionRoot);
@@ -256,10 +328,18 @@ public class GameSession {
         terrain = new Terrain(tileAtlas, tileBank);
         terrain.setDimensions(mapData.dimensions.xLength, mapData.dimensions.yLength, mapData.dimensions.zLength);
         terrain.setCullDistance(Data.getInstance().getConfigData().graphics.viewDistance);
+        terrain.setGreedyMeshing(Data.getInstance().getConfigData().graphics.greedyMeshing);
+        terrain.setLodDistances(Data.getInstance().getConfigData().graphics.lodDistances);
         terrain.setScale(mapData.tileScale);
         // Generate a terrain if none is given.
         if (mapFile.getMapTilesData().segments.isEmpty()) {
-            terrain.generate(new Noise((int) (mapData.dimensions.yLength / 3.0f)));
+            Generator generator = new Noise((int) (mapData.dimensions.yLength / 3.0f));
+            generator.setSeed(mapData.terrainSeed);
+            if (mapData.isTerrainGeneratedLazily) {
+                terrain.generateLazily(generator);
+            } else {
+                terrain.generate(generator);
+            }
             //terrain.generate(new SkyIsland((int) (mapData.dimensions.yLength / 3.0f)));
             /*
             terrain.generate(new SkyTower(mapData.dimensions.xLength / 2, mapData.dimensions.yLength - 16, 16));
@@ -277,11 +357,30 @@ public class GameSession {
          * Systems that remove entities should be updated earlier.
          */
         // Create the physics system.
-        PhysicsSystem physicsSystem = new PhysicsSystem(entitySystem);
+        final PhysicsSystem physicsSystem = new PhysicsSystem(entitySystem);
         physicsSystem.setTileScale(mapData.tileScale);
         physicsSystem.setTiles(terrain.getTiles());
         physicsSystem.setTileFriction(tileFriction);
         physicsSystem.setTileCollisionGroups(tileCollisionGroups);
+        pathfinder = new Pathfinder(terrain.getTiles(), tileCollisionGroups, mapData.tileScale);
+        // Tile edits are passed to the grid collider and the pathfinder once per changed chunk.
+        terrain.setCallbacks(new TerrainCallbacks() {
+            @Override
+            public void onChunkAttached(Chunk chunk) {
+            }
+
+            @Override
+            public void onChunkChanged(Chunk chunk) {
+                physicsSystem.updateTiles(chunk.getStartIndex().x, chunk.getStartIndex().y, chunk.getStartIndex().z,
+                        chunk.getEndIndex().x, chunk.getEndIndex().y, chunk.getEndIndex().z);
+                pathfinder.invalidate(chunk.getStartIndex().x, chunk.getStartIndex().y, chunk.getStartIndex().z,
+                        chunk.getEndIndex().x, chunk.getEndIndex().y, chunk.getEndIndex().z);
+            }
+
+            @Override
+            public void onChunkRemoved(Chunk chunk) {
+            }
+        });
         CollisionFilter collisionFilter = new CollisionFilter(entitySystem, playerAssigner);
         physicsSystem.addFilter(collisionFilter);
         physicsSystem.getBulletSystem().enableDebug(app.getStateManager());
@@ -294,18 +393,23 @@ public class GameSession {
         systems.add(new TimedLifeSystem(entitySystem));
         systems.add(chaseSystem);
         systems.add(new GravitySystem(entitySystem));
-        systems.add(new AISystem(entitySystem, physicsSystem.getBoundsSystem(), collisionFilter));
-        systems.add(new MoveCommandSystem(entitySystem));
+        AISystem aiSystem = new AISystem(entitySystem, new AIPerception(entitySystem, physicsSystem.getBoundsSystem(),
+                playerAssigner, CollisionFilter.COLLISION_UNIT, AIPerception.DEFAULT_CELL_SIZE));
+        aiSystem.setThinkBudget(Data.getInstance().getConfigData().aiThinkBudget);
+        systems.add(aiSystem);
+        systems.add(new MoveCommandSystem(entitySystem, pathfinder));
         systems.add(abilitySystem);
         systems.add(new WalkSystem(entitySystem));
+        systems.add(collisionFilter);
         systems.add(physicsSystem);
         systems.add(new ActorAnimationSystem(entitySystem));
         systems.add(new LookSystem(entitySystem));
         systems.add(new ItemSystem(entitySystem));
-        SpatialSystem spatialSystem = new SpatialSystem(entitySystem, assetManager, this.sessionRoot);
+        spatialSystem = new SpatialSystem(entitySystem, assetManager, this.sessionRoot);
+        spatialSystem.setLoader(Threading.getInstance().getExecutor());
         systems.add(spatialSystem);
         systems.add(new CameraSystem(app.getStateManager().getState(CameraState.class), entitySystem, spatialSystem));
-        systems.add(new HeadSystem(entitySystem, spatialSystem, assetManager));
+        systems.add(new HeadSystem(entitySystem, spatialSystem));
         systems.add(new DebugBoundsSystem(entitySystem, assetManager, this.sessionRoot));
         AtmosphereSystem atmosphereSystem = new AtmosphereSystem(assetManager, entitySystem, this.sessionRoot);
         systems.add(atmosphereSystem);
@@ -313,6 +417,16 @@ public class GameSession {
         systems.add(new ActionSystem(entitySystem));
         systems.add(new TargetSystem(entitySystem));
         systems.add(new ExperienceSystem(entitySystem));
+        systemScheduler = new SubsystemScheduler(systems, Threading.getInstance().getForkJoinPool());
+        systemScheduler.setIsParallel(Data.getInstance().getConfigData().parallelSystems);
+        systemSections = getSectionNames(systems, "");
+        cleanupSections = getSectionNames(systems, "cleanup:");
+        for (Subsystem system : systems) {
+            if (system instanceof ComponentAccess) {
+                addCountedComponents(((ComponentAccess) system).getReadComponents());
+                addCountedComponents(((ComponentAccess) system).getWriteComponents());
+            }
+        }
 
         // Create the factory that composes objects.
         gameObjectFactory = new GameObjectFactory(entitySystem, spatialSystem, mapFile.getObjectsData());
@@ -438,18 +552,27 @@ public class GameSession {
      * @param worldData the data for the initial world objects.
      */
     private void createInitialObjects(WorldData worldData) {
-        // Create actors.
+        // Create actors, each run of placements with the same type and owner at once.
         List<WorldData.ActorPlacement> actorPlacements = worldData.actors;
-        for (WorldData.ActorPlacement actorPlacement : actorPlacements) {
-            Entity entity = gameObjectFactory.createActor(actorPlacement.type, actorPlacement.owner, actorPlacement.name);
-            TransformComponent transformComponent = entitySystem.getComponent(entity, TransformComponent.class);
-            if (transformComponent == null) {
-                transformComponent = new TransformComponent();
+        int start = 0;
+        while (start < actorPlacements.size()) {
+            WorldData.ActorPlacement first = actorPlacements.get(start);
+            int end = start + 1;
+            while (end < actorPlacements.size() && actorPlacements.get(end).type.equals(first.type)
+                    && actorPlacements.get(end).owner == first.owner) {
+                end++;
             }
-            transformComponent.positionX = actorPlacement.location.x;
-            transformComponent.positionY = actorPlacement.location.y;
-            transformComponent.positionZ = actorPlacement.location.z;
-            entitySystem.setComponent(entity, transformComponent);
+            float[] locations = new float[(end - start) * 3];
+            String[] names = new String[end - start];
+            for (int i = start; i < end; i++) {
+                WorldData.ActorPlacement actorPlacement = actorPlacements.get(i);
+                locations[(i - start) * 3] = actorPlacement.location.x;
+                locations[(i - start) * 3 + 1] = actorPlacement.location.y;
+                locations[(i - start) * 3 + 2] = actorPlacement.location.z;
+                names[i - start] = actorPlacement.name;
+            }
+            gameObjectFactory.createActors(first.type, first.owner, end - start, locations, names);
+            start = end;
         }
 
         // Create decorations.
@@ -497,6 +620,7 @@ public class GameSession {
     private void initScripts(ScriptAPI scriptAPI, String... path) {
         // Create the groovy script runner.
         groovyRunner = new GroovyRunner(scriptAPI, path);
+        groovyRunner.setIsWatching(Data.getInstance().getConfigData().watchScripts);
 
         // Create every event used.
         eventKey = new EventKey(application.getInputManager(), playerAssigner.getLocalPlayer(), getSystem(AbilitySystem.class));
@@ -512,13 +636,107 @@ public class GameSession {
         eventHooks.add(new EventAbilities(getSystem(AbilitySystem.class)));
         eventHooks.add(new EventAI(getSystem(AISystem.class)));
         eventHooks.add(new EventItem(getSystem(ItemSystem.class)));
+        eventSections = getSectionNames(eventHooks, "event:");
+    }
+
+    /**
+     * @param objects the objects to name sections for.
+     * @param prefix the prefix of the names.
+     * @return the profiler section names of each object made from its class name.
+     */
+    private String[] getSectionNames(List<?> objects, String prefix) {
+        String[] names = new String[objects.size()];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = prefix + objects.get(i).getClass().getSimpleName();
+        }
+        return names;
+    }
+
+    /**
+     * Adds components to count while profiling if not already counted.
+     * @param components the component classes to add.
+     */
+    private void addCountedComponents(Class<?>[] components) {
+        for (Class<?> component : components) {
+            if (!countedComponents.contains(component)) {
+                countedComponents.add(component);
+            }
+        }
     }
 
     /**
      * Updates the session.
+     * The game logic runs in fixed steps at the logic rate no matter the frame rate,
+     * while the spatials are placed between the last two steps every frame.
      * @param tpf the time passed per frame.
      */
     public final void update(float tpf) {
+        profiler.beginFrame();
+        systemScheduler.setIsTimed(profiler.getIsEnabled());
+        int steps = logicTimestep.advance(tpf);
+        for (int i = 0; i < steps; i++) {
+            updateLogic(logicTimestep.getStepSize());
+        }
+        long startTime = profiler.begin();
+        spatialSystem.interpolate(logicTimestep.getInterpolation());
+        profiler.end("interpolate", startTime);
+
+        // Cull the terrain.
+        startTime = profiler.begin();
+        terrain.cull(Threading.getInstance().getExecutor(), application.getCamera());
+        profiler.end("terrain", startTime);
+
+        // Set new GUI targets.
+        final Entity controlledEntity = playerAssigner.getLocalPlayer().getControlledEntity();
+        gameGUI.setControlledEntity(controlledEntity);
+        targetRay.setOrigin(application.getCamera().getLocation());
+        targetRay.setDirection(application.getCamera().getDirection());
+        gameGUI.setTargetedEntity(getSystem(PhysicsSystem.class).getBoundsSystem().getClosestIntersect(
+                targetRay, controlledEntity, gameGUI.getTargetFilter()));
+        // Update the GUI.
+        startTime = profiler.begin();
+        gameGUI.update(tpf);
+        profiler.end("gui", startTime);
+
+        if (profiler.getIsEnabled()) {
+            updateProfilerCounts();
+        }
+        profiler.endFrame();
+
+        debugTools.update(tpf);
+    }
+
+    /**
+     * Passes the number of entities with each counted component and the terrain work left to the profiler.
+     */
+    private void updateProfilerCounts() {
+        if (countedSets == null) {
+            countedSets = new ArrayList<EntitySet>();
+            for (Class<?> component : countedComponents) {
+                countedSets.add(entitySystem.getEntities(component));
+            }
+            countedSections = new String[countedComponents.size()];
+            for (int i = 0; i < countedSections.length; i++) {
+                countedSections[i] = "entities:" + countedComponents.get(i).getSimpleName();
+            }
+        }
+        for (int i = 0; i < countedSets.size(); i++) {
+            profiler.setCount(countedSections[i], countedSets.get(i).getEntities().size());
+        }
+        profiler.setCount("terrain:meshesInFlight", terrain.getMeshesInFlight());
+        profiler.setCount("terrain:queuedMeshes", terrain.getQueuedMeshes());
+        profiler.setCount("paths:pending", pathfinder.getPendingCount());
+        EventSystem eventSystem = ScriptGlobals.getInstance().getEventSystem();
+        profiler.setCount("events:produced", (int) Math.min(Integer.MAX_VALUE, eventSystem.getProducedCount()));
+        profiler.setCount("events:consumed", (int) Math.min(Integer.MAX_VALUE, eventSystem.getConsumedCount()));
+        profiler.setCount("events:dropped", (int) Math.min(Integer.MAX_VALUE, eventSystem.getDroppedCount()));
+    }
+
+    /**
+     * Runs one step of the game logic.
+     * @param tpf the fixed time of a logic step.
+     */
+    private void updateLogic(float tpf) {
         // Updates properties
         playerAssigner.getLocalPlayer().setCameraDirection(application.getCamera().getDirection());
         playerAssigner.getLocalPlayer().setCameraLocation(application.getCamera().getLocation());
@@ -526,44 +744,40 @@ public class GameSession {
         // Update the regions used for scripts.
         regions.update();
         // Updates script events.
-        for (EventHook event : eventHooks) {
-            event.updateEvent(tpf);
+        for (int i = 0; i < eventHooks.size(); i++) {
+            long startTime = profiler.begin();
+            eventHooks.get(i).updateEvent(tpf);
+            profiler.end(eventSections[i], startTime);
         }
 
         // Updates the scripts.
+        long startTime = profiler.begin();
         if (areScriptsEnabled) {
             groovyRunner.update(tpf);
         } else {
             groovyRunner.flushEvents();
         }
+        profiler.end("scripts", startTime);
 
         // Update the systems.
-        long t1 = System.nanoTime();
-        for (Subsystem system : systems) {
-            system.update(tpf);
+        systemScheduler.update(tpf);
+        if (systemScheduler.getIsTimed()) {
+            for (int i = 0; i < systemSections.length; i++) {
+                profiler.record(systemSections[i], systemScheduler.getUpdateTime(i));
+            }
         }
-        //DebugGlobals.println((System.nanoTime() - t1) / Units.MILLISECONDS_PER_NANOSECOND);
-
-        // Cull the terrain.
-        terrain.cull(Threading.getInstance().getExecutor(), application.getCamera().getLocation());
-
-        // Set new GUI targets.
-        final Entity controlledEntity = playerAssigner.getLocalPlayer().getControlledEntity();
-        gameGUI.setControlledEntity(controlledEntity);
-        gameGUI.setTargetedEntity(getSystem(PhysicsSystem.class).getBoundsSystem().getClosestIntersect(
-                new Ray(application.getCamera().getLocation(), application.getCamera().getDirection()), controlledEntity, gameGUI.getTargetFilter()));
-        // Update the GUI.
-        gameGUI.update(tpf);
 
         // Clean up the systems.
+        int systemIndex = 0;
         for (Subsystem system : systems) {
+            startTime = profiler.begin();
             system.cleanupSubsystem();
+            profiler.end(cleanupSections[systemIndex], startTime);
+            systemIndex++;
         }
 
         // Flush changes in the system.
         entitySystem.flushSetChanges();
-
-        debugTools.update(tpf);
     }
 
     /**
@@ -595,6 +809,13 @@ public class GameSession {
         }
     }
 
+    /**
+     * Recompiles the changed scripts and restarts them.
+     */
+    public final void reloadScripts() {
+        groovyRunner.reload();
+    }
+
     /**
      * @return the terrain.
      */
@@ -42,8 +42,10 @@ import com.submu.pug.game.world.GravityComponent;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -80,11 +82,31 @@ public class GameObjectFactory {
      */
     private Map<String, List<Component>> actors = new HashMap<String, List<Component>>();
 
+    /**
+     * Prototypes of the actors compiled so far by the name of the actor data.
+     */
+    private Map<String, ActorPrototype> prototypes = new HashMap<String, ActorPrototype>();
+
     /**
      * Callbacks for object creation.
      */
     private ActorCallbacks callbacks;
 
+    /**
+     * Components and spatial shared by every actor created from the same actor data.
+     */
+    private static final class ActorPrototype {
+        /**
+         * Components copied to each actor, including the ones resolved from the model.
+         */
+        private Component[] components;
+
+        /**
+         * Spatial cloned for each actor, null if the actor has no spatial.
+         */
+        private Spatial template;
+    }
+
     /**
      * Initializes the GameObjectFactory.
      * @param entitySystem the entity system to create entities with.
@@ -254,29 +276,41 @@ public class GameObjectFactory {
         CameraComponent cameraComponent = entitySystem.getComponent(entity, CameraComponent.class);
         // Create a camera component if none exists and load from the model data if available.
         if (cameraComponent == null) {
-            cameraComponent = new CameraComponent();
-            Spatial firstPersonNode = spatial.getChild(Data.getInstance().getModelData().dataNodes.cameraNode);
-            Vector3f offset = new Vector3f();
-            if (firstPersonNode != null) {
-                offset.set(firstPersonNode.getLocalTranslation()).multLocal(spatial.getLocalScale());
-                TransformComponent transformComponent = entitySystem.getComponent(entity, TransformComponent.class);
-                if (transformComponent != null) {
-                    offset.multLocal(transformComponent.scaleX, transformComponent.scaleY, transformComponent.scaleZ);
-                }
-            } else {
-                offset.set(0, 0, 0);
-            }
-            cameraComponent.cameraOffsetX = offset.x;
-            cameraComponent.cameraOffsetY = offset.y;
-            cameraComponent.cameraOffsetZ = offset.z;
-            Float maxCameraDistance = (Float) spatial.getUserData(Data.getInstance().getModelData().properties.MaxCameraDistance);
-            if (maxCameraDistance != null) {
-                cameraComponent.maxCameraDistance = maxCameraDistance * spatial.getLocalScale().z;
-            }
+            cameraComponent = createCameraComponent(spatial,
+                    entitySystem.getComponent(entity, TransformComponent.class));
             entitySystem.setComponent(entity, cameraComponent);
         }
     }
 
+    /**
+     * Creates a camera component from the model data.
+     * @param spatial the spatial to get the camera offset from if available.
+     * @param transformComponent the transform to scale the camera offset by, null to not scale it.
+     * @return the created camera component.
+     */
+    private CameraComponent createCameraComponent(Node spatial, TransformComponent transformComponent) {
+        CameraComponent cameraComponent = new CameraComponent();
+        Spatial firstPersonNode = spatial.getChild(Data.getInstance().getModelData().dataNodes.cameraNode);
+        Vector3f offset = new Vector3f();
+        if (firstPersonNode != null) {
+            offset.set(firstPersonNode.getLocalTranslation()).multLocal(spatial.getLocalScale());
+            if (transformComponent != null) {
+                offset.multLocal(transformComponent.scaleX, transformComponent.scaleY, transformComponent.scaleZ);
+            }
+        } else {
+            offset.set(0, 0, 0);
+        }
+        cameraComponent.cameraOffsetX = offset.x;
+        cameraComponent.cameraOffsetY = offset.y;
+        cameraComponent.cameraOffsetZ = offset.z;
+        Float maxCameraDistance =
+                (Float) spatial.getUserData(Data.getInstance().getModelData().properties.MaxCameraDistance);
+        if (maxCameraDistance != null) {
+            cameraComponent.maxCameraDistance = maxCameraDistance * spatial.getLocalScale().z;
+        }
+        return cameraComponent;
+    }
+
     /**
      * Creates an entity without any components.
      * @param name the name of the entity.
@@ -295,76 +329,133 @@ public class GameObjectFactory {
     }
 
     /**
-     * Generates components given the name of the actor and the entity.
-     * @param name the name of the actor to retrieve components from.
-     * @param entity the entity to generate components for.
+     * Retrieves the prototype of an actor, compiling it the first time it is used.
+     * The spatial model is loaded once and the bounds and camera components are resolved from it,
+     * so creating more actors of the same data only copies the components and clones the spatial.
+     * @param dataName the name of the actor data.
+     * @return the prototype of the actor.
      */
-    private void generateComponents(String name, Entity entity) {
-        // Go through all the components in the entity and create it if it exists.
-        List<Component> components = actors.get(name);
-        for (Component component : components) {
-            entitySystem.setComponent(entity, component.copy());
+    private ActorPrototype getPrototype(String dataName) {
+        ActorPrototype prototype = prototypes.get(dataName);
+        if (prototype != null) {
+            return prototype;
         }
-    }
-
-    /**
-     * Creates an entity with components that make up an actor.
-     * @param dataName the name of the actor data to use for creation.
-     * @param player the id of the player that owns the actor.
-     * @param entityName the name of the entity.
-     * @return the created actor.
-     */
-    public final Entity createActor(String dataName, int player, String entityName) {
-        Entity entity;
-        if (entityName == null) {
-            entity = entitySystem.createEntity();
-        } else {
-            entity = entitySystem.createEntity(entityName);
+        List<Component> actorComponents = actors.get(dataName);
+        if (actorComponents == null) {
+            throw new IllegalArgumentException("No actor data is named " + dataName + ".");
+        }
+        // Later components of the same type replace earlier ones like they would when set on an entity.
+        Map<Class<?>, Component> components = new LinkedHashMap<Class<?>, Component>();
+        for (Component component : actorComponents) {
+            components.put(component.getClass(), component.copy());
         }
-        generateComponents(dataName, entity);
+        prototype = new ActorPrototype();
 
         // Set up components that depend on the spatial model data.
-        SpatialComponent spatialComponent = entitySystem.getComponent(entity, SpatialComponent.class);
+        SpatialComponent spatialComponent = (SpatialComponent) components.get(SpatialComponent.class);
         if (spatialComponent != null) {
-            spatialSystem.addEntity(entity);
-            Spatial spatial = spatialSystem.getSpatial(entity);
+            // Actors with a timed life are created and removed often so their spatials are reused.
+            if (components.containsKey(TimedLifeComponent.class)) {
+                spatialComponent.isPooled = true;
+            }
+            prototype.template = spatialSystem.loadSpatial(spatialComponent.model);
+            if (spatialComponent.model != null && !spatialComponent.model.equals("")) {
+                ModelComponent modelComponent = new ModelComponent();
+                modelComponent.scaleX = prototype.template.getLocalScale().x;
+                modelComponent.scaleY = prototype.template.getLocalScale().y;
+                modelComponent.scaleZ = prototype.template.getLocalScale().z;
+                components.put(ModelComponent.class, modelComponent);
+            }
 
             // Set the AABB bounds.
-            AABBComponent aabbComponent = entitySystem.getComponent(entity, AABBComponent.class);
+            AABBComponent aabbComponent = (AABBComponent) components.get(AABBComponent.class);
             boolean isManuallySet = aabbComponent != null && (aabbComponent.localExtentX != 0 || aabbComponent.localExtentY != 0 || aabbComponent.localExtentZ != 0
                     || aabbComponent.localOffsetX != 0 || aabbComponent.localOffsetY != 0 || aabbComponent.localOffsetZ != 0);
             if (!isManuallySet) {
                 aabbComponent = new AABBComponent();
-                setBounds(spatial, aabbComponent);
+                setBounds(prototype.template, aabbComponent);
             }
-            entitySystem.setComponent(entity, aabbComponent);
+            components.put(AABBComponent.class, aabbComponent);
 
-            if (spatial instanceof Node) {
-                setCameraProperties(entity, (Node) spatial);
+            if (prototype.template instanceof Node && !components.containsKey(CameraComponent.class)) {
+                components.put(CameraComponent.class, createCameraComponent((Node) prototype.template,
+                        (TransformComponent) components.get(TransformComponent.class)));
             }
         }
 
         // All actors must have an actor component.
-        ActorComponent actorComponent = entitySystem.getComponent(entity, ActorComponent.class);
+        ActorComponent actorComponent = (ActorComponent) components.get(ActorComponent.class);
         if (actorComponent == null) {
             actorComponent = new ActorComponent();
         }
         actorComponent.type = dataName;
-        entitySystem.setComponent(entity, actorComponent);
+        components.put(ActorComponent.class, actorComponent);
 
         // All actors must have an owning player.
-        OwnerComponent ownerComponent = entitySystem.getComponent(entity, OwnerComponent.class);
-        if (ownerComponent == null) {
-            ownerComponent = new OwnerComponent();
+        if (!components.containsKey(OwnerComponent.class)) {
+            components.put(OwnerComponent.class, new OwnerComponent());
         }
-        ownerComponent.playerID = player;
-        entitySystem.setComponent(entity, ownerComponent);
 
-        if (callbacks != null) {
-            callbacks.onActorCreated(entity);
+        prototype.components = components.values().toArray(new Component[components.size()]);
+        prototypes.put(dataName, prototype);
+        return prototype;
+    }
+
+    /**
+     * Copies the components of a prototype to an entity.
+     * @param entity the entity to set the components of.
+     * @param prototype the prototype of the actor.
+     * @param player the id of the player that owns the actor.
+     * @param locations the positions of the actors as x, y and z, null to keep the prototype position.
+     * @param index the index of the actor's position in the locations.
+     */
+    private void setPrototypeComponents(Entity entity, ActorPrototype prototype, int player, float[] locations,
+                                        int index) {
+        boolean hasTransform = false;
+        for (Component prototypeComponent : prototype.components) {
+            Component component = prototypeComponent.copy();
+            if (component instanceof OwnerComponent) {
+                ((OwnerComponent) component).playerID = player;
+            } else if (component instanceof TransformComponent && locations != null) {
+                setPosition((TransformComponent) component, locations, index);
+                hasTransform = true;
+            } else if (component instanceof AABBComponent && locations != null) {
+                // Place the bounds with the actor so no collisions are found at the origin before physics runs.
+                AABBComponent aabbComponent = (AABBComponent) component;
+                aabbComponent.centerX = locations[index * 3];
+                aabbComponent.centerY = locations[index * 3 + 1];
+                aabbComponent.centerZ = locations[index * 3 + 2];
+            }
+            entitySystem.setComponent(entity, component);
+        }
+        if (locations != null && !hasTransform) {
+            TransformComponent transformComponent = new TransformComponent();
+            setPosition(transformComponent, locations, index);
+            entitySystem.setComponent(entity, transformComponent);
         }
+    }
+
+    /**
+     * Sets the position of a transform.
+     * @param transformComponent the transform to set the position of.
+     * @param locations the positions as x, y and z.
+     * @param index the index of the position in the locations.
+     */
+    private static void setPosition(TransformComponent transformComponent, float[] locations, int index) {
+        transformComponent.positionX = locations[index * 3];
+        transformComponent.positionY = locations[index * 3 + 1];
+        transformComponent.positionZ = locations[index * 3 + 2];
+    }
 
-        return entity;
+    /**
+     * Creates an entity with components that make up an actor.
+     * @param dataName the name of the actor data to use for creation.
+     * @param player the id of the player that owns the actor.
+     * @param entityName the name of the entity.
+     * @return the created actor.
+     */
+    public final Entity createActor(String dataName, int player, String entityName) {
+        return createActors(dataName, player, 1, null, entityName == null ? null : new String[]{entityName}).get(0);
     }
 
     /**
@@ -377,6 +468,59 @@ public class GameObjectFactory {
         return createActor(dataName, player, null);
     }
 
+    /**
+     * Creates many actors from the same actor data at once.
+     * @param dataName the name of the actor data to use for creation.
+     * @param player the id of the player that owns the actors.
+     * @param count the number of actors to create.
+     * @param locations the positions of the actors as x, y and z, null to keep the position of the actor data.
+     * @return the created actors.
+     */
+    public final List<Entity> createActors(String dataName, int player, int count, float[] locations) {
+        return createActors(dataName, player, count, locations, null);
+    }
+
+    /**
+     * Creates many actors from the same actor data at once.
+     * Every entity is given its components before any spatial is added and the callbacks run after all of them.
+     * @param dataName the name of the actor data to use for creation.
+     * @param player the id of the player that owns the actors.
+     * @param count the number of actors to create.
+     * @param locations the positions of the actors as x, y and z, null to keep the position of the actor data.
+     * @param entityNames the names of the entities, null or a null name to leave an entity unnamed.
+     * @return the created actors.
+     */
+    public final List<Entity> createActors(String dataName, int player, int count, float[] locations,
+                                           String[] entityNames) {
+        ActorPrototype prototype = getPrototype(dataName);
+        List<Entity> entities = new ArrayList<Entity>(count);
+        for (int i = 0; i < count; i++) {
+            Entity entity;
+            if (entityNames == null || entityNames[i] == null) {
+                entity = entitySystem.createEntity();
+            } else {
+                entity = entitySystem.createEntity(entityNames[i]);
+            }
+            setPrototypeComponents(entity, prototype, player, locations, i);
+            entities.add(entity);
+        }
+
+        // The spatial system copies its loaded model or reuses a pooled spatial for each entity.
+        if (prototype.template != null) {
+            for (Entity entity : entities) {
+                spatialSystem.addEntity(entity);
+            }
+        }
+
+        if (callbacks != null) {
+            for (Entity entity : entities) {
+                callbacks.onActorCreated(entity);
+            }
+        }
+
+        return entities;
+    }
+
     /**
      * Change the model of the actor and update the bounds to match.
      * If the entity does not contain a spatial then nothing will happen.
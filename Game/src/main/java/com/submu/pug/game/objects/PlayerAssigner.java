@@ -1,5 +1,6 @@
 package com.submu.pug.game.objects;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
@@ -59,6 +60,11 @@ public class PlayerAssigner {
      */
     private Player neutralHostilePlayer;
 
+    /**
+     * Number of changes to the players and alliances, used to know when cached alliances are outdated.
+     */
+    private int allianceVersion = 0;
+
     /**
      * Initializes the class.
      */
@@ -78,6 +84,7 @@ public class PlayerAssigner {
             callbacks.onPlayerAdded(player);
         }
         players.add(player);
+        allianceVersion++;
 
         // Set the default alliances for the player.
         alliances.put(player, new HashMap<Integer, AllianceStatus>());
@@ -109,6 +116,7 @@ public class PlayerAssigner {
      */
     public void removePlayer(Player player) {
         players.remove(player);
+        allianceVersion++;
     }
 
     /**
@@ -119,6 +127,7 @@ public class PlayerAssigner {
      */
     public void setAlliance(Player player1, Player player2, AllianceStatus status) {
         alliances.get(player1).put(player2.getId(), status);
+        allianceVersion++;
     }
 
     /**
@@ -176,6 +185,20 @@ public class PlayerAssigner {
         return false;
     }
 
+    /**
+     * @return the players in the order they were created, not modifiable.
+     */
+    public List<Player> getPlayers() {
+        return Collections.unmodifiableList(players);
+    }
+
+    /**
+     * @return the number of changes to the players and alliances so far.
+     */
+    public int getAllianceVersion() {
+        return allianceVersion;
+    }
+
     /**
      * @param player the player to use as the local player.
      */
@@ -21,7 +21,7 @@ public class AIComponent implements Component {
     public float combatRange = 1.0f;
 
     /**
-     * Name of the combat script to execute each frame.
+     * Name of the combat script to execute each think.
      */
     public String combatScript;
 
@@ -30,6 +30,16 @@ public class AIComponent implements Component {
      */
     public boolean isInCombat = false;
 
+    /**
+     * Seconds between the entity looking for targets, 0 to think every update the think budget allows.
+     */
+    public float thinkInterval = 0.25f;
+
+    /**
+     * Seconds until the entity thinks next.
+     */
+    public float thinkTimer = 0;
+
     @Override
     public Component copy() {
         AIComponent output = new AIComponent();
@@ -37,6 +47,8 @@ public class AIComponent implements Component {
         output.combatRange = combatRange;
         output.combatScript = combatScript;
         output.isInCombat = isInCombat;
+        output.thinkInterval = thinkInterval;
+        output.thinkTimer = thinkTimer;
 
         return output;
     }
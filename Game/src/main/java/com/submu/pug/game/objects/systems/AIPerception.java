@@ -0,0 +1,438 @@
+package com.submu.pug.game.objects.systems;
+
+import com.exploringlines.entitysystem.Entity;
+import com.exploringlines.entitysystem.EntitySystem;
+import com.halboom.pgt.entityspatial.TransformComponent;
+import com.halboom.pgt.physics.simple.BoundsSystem;
+import com.halboom.pgt.physics.simple.components.CollisionComponent;
+import com.halboom.pgt.physics.simple.shapes.Bounds;
+import com.halboom.pgt.physics.simple.shapes.BoundsBox;
+import com.jme3.math.Vector3f;
+import com.submu.pug.game.objects.Player;
+import com.submu.pug.game.objects.PlayerAssigner;
+import com.submu.pug.game.objects.components.OwnerComponent;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Answers which target is the nearest hostile to an AI entity.
+ * Potential targets are the entities that can collide, gathered once per update and hashed by owner and grid cell,
+ * so a query only looks at the cells in range of the owners hostile to the asker.
+ * Targets without an owner are hostile to everyone and AI without an owner treats every target as hostile,
+ * apart from targets of the neutral passive player which are never hostile.
+ */
+public class AIPerception {
+    /**
+     * Owner of targets and AI without an owner component.
+     */
+    public static final int NO_OWNER = Integer.MIN_VALUE;
+
+    /**
+     * Default size of a grid cell along each axis in world units.
+     */
+    public static final float DEFAULT_CELL_SIZE = 8f;
+
+    /**
+     * Number of targets the arrays start with.
+     */
+    private static final int INITIAL_CAPACITY = 64;
+
+    /**
+     * Multipliers spreading the owner and cell coordinates over the hash table.
+     */
+    private static final int HASH_OWNER = 0x9E3779B1, HASH_X = 73856093, HASH_Y = 19349663, HASH_Z = 83492791;
+
+    /**
+     * Entity system to use.
+     */
+    private EntitySystem entitySystem;
+
+    /**
+     * System holding the bounds of the targets.
+     */
+    private BoundsSystem boundsSystem;
+
+    /**
+     * Player assigner to get alliances from.
+     */
+    private PlayerAssigner playerAssigner;
+
+    /**
+     * Collision groups an entity's bounds must be in to be a target.
+     */
+    private long targetGroups;
+
+    /**
+     * Size of a grid cell along each axis.
+     */
+    private float cellSize;
+
+    /**
+     * Number of targets gathered.
+     */
+    private int targetCount = 0;
+
+    /**
+     * Entity of each target.
+     */
+    private Entity[] targets = new Entity[INITIAL_CAPACITY];
+
+    /**
+     * Owner of each target.
+     */
+    private int[] targetOwners = new int[INITIAL_CAPACITY];
+
+    /**
+     * Position of each target as x, y and z.
+     */
+    private float[] targetPositions = new float[INITIAL_CAPACITY * 3];
+
+    /**
+     * Bounds of each target as the center x, y, z followed by the extents x, y, z.
+     */
+    private float[] targetBounds = new float[INITIAL_CAPACITY * 6];
+
+    /**
+     * Cell of the bounds center of each target as x, y and z.
+     */
+    private int[] targetCells = new int[INITIAL_CAPACITY * 3];
+
+    /**
+     * Next target in the same hash slot, -1 for the last one.
+     */
+    private int[] nextTargets = new int[INITIAL_CAPACITY];
+
+    /**
+     * First target in each hash slot, -1 for empty slots.
+     */
+    private int[] slots = new int[INITIAL_CAPACITY * 2];
+
+    /**
+     * Largest extent of any target, queries reach this much further to find targets centered outside of range.
+     */
+    private float maxExtent = 0;
+
+    /**
+     * Distinct owners of the gathered targets.
+     */
+    private int[] owners = new int[8];
+
+    /**
+     * Number of distinct owners.
+     */
+    private int ownerCount = 0;
+
+    /**
+     * Owners hostile to an AI owner, filled as queries ask for them and cleared every update.
+     */
+    private Map<Integer, int[]> hostileOwners = new HashMap<Integer, int[]>();
+
+    /**
+     * Initializes the perception.
+     * @param entitySystem the entity system to use.
+     * @param boundsSystem the system holding the bounds of the targets.
+     * @param playerAssigner the player assigner to get alliances from.
+     * @param targetGroups the collision groups an entity's bounds must be in to be a target.
+     * @param cellSize the size of a grid cell along each axis in world units.
+     */
+    public AIPerception(EntitySystem entitySystem, BoundsSystem boundsSystem, PlayerAssigner playerAssigner,
+                        long targetGroups, float cellSize) {
+        if (cellSize <= 0) {
+            throw new IllegalArgumentException("Cell size must be positive but was " + cellSize + ".");
+        }
+        this.entitySystem = entitySystem;
+        this.boundsSystem = boundsSystem;
+        this.playerAssigner = playerAssigner;
+        this.targetGroups = targetGroups;
+        this.cellSize = cellSize;
+    }
+
+    /**
+     * Gathers the targets and hashes them by owner and cell.
+     */
+    public void update() {
+        int previousCount = targetCount;
+        targetCount = 0;
+        ownerCount = 0;
+        maxExtent = 0;
+        hostileOwners.clear();
+        // Only entities that can collide are targets so doodads, pickups and other decorations are ignored.
+        for (Entity entity : entitySystem.getEntities(CollisionComponent.class).getEntities()) {
+            Bounds bounds = boundsSystem.getBounds(entity);
+            if (!(bounds instanceof BoundsBox) || (bounds.getGroups() & targetGroups) == 0) {
+                continue;
+            }
+            TransformComponent transformComponent = entitySystem.getComponent(entity, TransformComponent.class);
+            if (transformComponent == null) {
+                continue;
+            }
+            addTarget(entity, (BoundsBox) bounds, transformComponent);
+        }
+        // Drop the entities left over from the previous update.
+        if (previousCount > targetCount) {
+            Arrays.fill(targets, targetCount, previousCount, null);
+        }
+
+        int slotCount = slots.length;
+        while (slotCount < targetCount * 2) {
+            slotCount *= 2;
+        }
+        if (slotCount != slots.length) {
+            slots = new int[slotCount];
+        }
+        Arrays.fill(slots, -1);
+        for (int i = 0; i < targetCount; i++) {
+            int slot = getSlot(targetOwners[i], targetCells[i * 3], targetCells[i * 3 + 1], targetCells[i * 3 + 2]);
+            nextTargets[i] = slots[slot];
+            slots[slot] = i;
+        }
+    }
+
+    /**
+     * Adds a target to the arrays.
+     * @param entity the entity of the target.
+     * @param bounds the bounds of the target.
+     * @param transformComponent the transform of the target.
+     */
+    private void addTarget(Entity entity, BoundsBox bounds, TransformComponent transformComponent) {
+        if (targetCount == targets.length) {
+            int capacity = targets.length * 2;
+            targets = Arrays.copyOf(targets, capacity);
+            targetOwners = Arrays.copyOf(targetOwners, capacity);
+            targetPositions = Arrays.copyOf(targetPositions, capacity * 3);
+            targetBounds = Arrays.copyOf(targetBounds, capacity * 6);
+            targetCells = Arrays.copyOf(targetCells, capacity * 3);
+            nextTargets = Arrays.copyOf(nextTargets, capacity);
+        }
+        int index = targetCount++;
+        targets[index] = entity;
+        int owner = getOwner(entity);
+        targetOwners[index] = owner;
+        addOwner(owner);
+        targetPositions[index * 3] = transformComponent.positionX;
+        targetPositions[index * 3 + 1] = transformComponent.positionY;
+        targetPositions[index * 3 + 2] = transformComponent.positionZ;
+        Vector3f center = bounds.getCenter();
+        targetBounds[index * 6] = center.x;
+        targetBounds[index * 6 + 1] = center.y;
+        targetBounds[index * 6 + 2] = center.z;
+        targetBounds[index * 6 + 3] = bounds.getXExtent();
+        targetBounds[index * 6 + 4] = bounds.getYExtent();
+        targetBounds[index * 6 + 5] = bounds.getZExtent();
+        maxExtent = Math.max(maxExtent,
+                Math.max(bounds.getXExtent(), Math.max(bounds.getYExtent(), bounds.getZExtent())));
+        targetCells[index * 3] = toCell(center.x);
+        targetCells[index * 3 + 1] = toCell(center.y);
+        targetCells[index * 3 + 2] = toCell(center.z);
+    }
+
+    /**
+     * Adds an owner to the distinct owners if it is not in them yet.
+     * @param owner the owner to add.
+     */
+    private void addOwner(int owner) {
+        for (int i = 0; i < ownerCount; i++) {
+            if (owners[i] == owner) {
+                return;
+            }
+        }
+        if (ownerCount == owners.length) {
+            owners = Arrays.copyOf(owners, ownerCount * 2);
+        }
+        owners[ownerCount++] = owner;
+    }
+
+    /**
+     * Retrieves the nearest hostile target whose bounds are within range of a position.
+     * Targets are ordered by the distance to their position and range is checked against their bounds.
+     * @param self the entity asking, never returned.
+     * @param owner the owner of the entity asking or NO_OWNER.
+     * @param position the position to look from.
+     * @param range the range to look within.
+     * @return the nearest hostile target or null if none is in range.
+     */
+    public Entity getNearestHostile(Entity self, int owner, Vector3f position, float range) {
+        int[] hostile = getHostileOwners(owner);
+        if (hostile.length == 0 || targetCount == 0) {
+            return null;
+        }
+        float reach = range + maxExtent;
+        int minX = toCell(position.x - reach), maxX = toCell(position.x + reach);
+        int minY = toCell(position.y - reach), maxY = toCell(position.y + reach);
+        int minZ = toCell(position.z - reach), maxZ = toCell(position.z + reach);
+        long cellCount = (long) (maxX - minX + 1) * (maxY - minY + 1) * (maxZ - minZ + 1);
+
+        int nearest = -1;
+        float nearestDistance = Float.MAX_VALUE;
+        if (cellCount * hostile.length > targetCount) {
+            // Looking through every cell in range costs more than checking every target.
+            for (int i = 0; i < targetCount; i++) {
+                if (contains(hostile, targetOwners[i])) {
+                    float distance = getDistanceIfInRange(i, self, position, range);
+                    if (distance < nearestDistance) {
+                        nearestDistance = distance;
+                        nearest = i;
+                    }
+                }
+            }
+        } else {
+            for (int o = 0; o < hostile.length; o++) {
+                int targetOwner = hostile[o];
+                for (int x = minX; x <= maxX; x++) {
+                    for (int y = minY; y <= maxY; y++) {
+                        for (int z = minZ; z <= maxZ; z++) {
+                            for (int i = slots[getSlot(targetOwner, x, y, z)]; i != -1; i = nextTargets[i]) {
+                                // Skip targets of other owners or cells sharing the slot.
+                                if (targetOwners[i] != targetOwner || targetCells[i * 3] != x
+                                        || targetCells[i * 3 + 1] != y || targetCells[i * 3 + 2] != z) {
+                                    continue;
+                                }
+                                float distance = getDistanceIfInRange(i, self, position, range);
+                                if (distance < nearestDistance) {
+                                    nearestDistance = distance;
+                                    nearest = i;
+                                }
+                            }
+                        }
+                    }
+                }
+            }
+        }
+
+        return nearest == -1 ? null : targets[nearest];
+    }
+
+    /**
+     * Checks a target against the range and retrieves its distance.
+     * @param index the index of the target.
+     * @param self the entity asking, never in range.
+     * @param position the position to look from.
+     * @param range the range to look within.
+     * @return the squared distance to the target's position or Float.MAX_VALUE if its bounds are out of range.
+     */
+    private float getDistanceIfInRange(int index, Entity self, Vector3f position, float range) {
+        if (targets[index].equals(self)) {
+            return Float.MAX_VALUE;
+        }
+        // Distance from the position to the closest point of the bounds.
+        float boundsDistance = 0;
+        for (int axis = 0; axis < 3; axis++) {
+            float value = axis == 0 ? position.x : axis == 1 ? position.y : position.z;
+            float offset = Math.abs(value - targetBounds[index * 6 + axis]) - targetBounds[index * 6 + 3 + axis];
+            if (offset > 0) {
+                boundsDistance += offset * offset;
+            }
+        }
+        if (boundsDistance > range * range) {
+            return Float.MAX_VALUE;
+        }
+        float x = targetPositions[index * 3] - position.x;
+        float y = targetPositions[index * 3 + 1] - position.y;
+        float z = targetPositions[index * 3 + 2] - position.z;
+        return x * x + y * y + z * z;
+    }
+
+    /**
+     * Retrieves the owners among the targets that are hostile to an owner, computed once per update.
+     * @param owner the owner to get the hostile owners of.
+     * @return the hostile owners.
+     */
+    private int[] getHostileOwners(int owner) {
+        int[] hostile = hostileOwners.get(owner);
+        if (hostile == null) {
+            int count = 0;
+            int[] found = new int[ownerCount];
+            for (int i = 0; i < ownerCount; i++) {
+                if (isHostile(owner, owners[i])) {
+                    found[count++] = owners[i];
+                }
+            }
+            hostile = Arrays.copyOf(found, count);
+            hostileOwners.put(owner, hostile);
+        }
+        return hostile;
+    }
+
+    /**
+     * Checks if targets of an owner are hostile to another owner.
+     * @param owner the owner looking for targets.
+     * @param targetOwner the owner of the targets.
+     * @return true if the targets are hostile.
+     */
+    private boolean isHostile(int owner, int targetOwner) {
+        Player targetPlayer = targetOwner == NO_OWNER ? null : playerAssigner.getPlayer(targetOwner);
+        if (targetPlayer != null && targetPlayer.equals(playerAssigner.getNeutralPassivePlayer())) {
+            return false;
+        }
+        if (owner == NO_OWNER || targetOwner == NO_OWNER) {
+            return true;
+        }
+        if (owner == targetOwner) {
+            return false;
+        }
+        Player player = playerAssigner.getPlayer(owner);
+        if (player == null || targetPlayer == null) {
+            return true;
+        }
+        return !playerAssigner.arePlayersAllied(player, targetPlayer);
+    }
+
+    /**
+     * @param entity the entity to get the owner of.
+     * @return the player ID owning the entity or NO_OWNER.
+     */
+    public int getOwner(Entity entity) {
+        OwnerComponent ownerComponent = entitySystem.getComponent(entity, OwnerComponent.class);
+        return ownerComponent == null ? NO_OWNER : ownerComponent.playerID;
+    }
+
+    /**
+     * @param values the values to search.
+     * @param value the value to find.
+     * @return true if the value is in the values.
+     */
+    private static boolean contains(int[] values, int value) {
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] == value) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param owner the owner of the targets in the slot.
+     * @param x the cell along the x axis.
+     * @param y the cell along the y axis.
+     * @param z the cell along the z axis.
+     * @return the hash slot of the owner's targets in the cell.
+     */
+    private int getSlot(int owner, int x, int y, int z) {
+        int hash = owner * HASH_OWNER ^ x * HASH_X ^ y * HASH_Y ^ z * HASH_Z;
+        return (hash ^ (hash >>> 16)) & (slots.length - 1);
+    }
+
+    /**
+     * @param value the world coordinate.
+     * @return the cell holding the coordinate.
+     */
+    private int toCell(float value) {
+        return (int) Math.floor(value / cellSize);
+    }
+
+    /**
+     * @return the size of a grid cell along each axis in world units.
+     */
+    public float getCellSize() {
+        return cellSize;
+    }
+
+    /**
+     * @return the number of targets gathered by the last update.
+     */
+    public int getTargetCount() {
+        return targetCount;
+    }
+}
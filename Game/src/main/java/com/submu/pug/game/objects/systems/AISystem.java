@@ -5,15 +5,13 @@ import com.exploringlines.entitysystem.Entity;
 import com.exploringlines.entitysystem.EntitySet;
 import com.exploringlines.entitysystem.EntitySystem;
 import com.exploringlines.entitysystem.Subsystem;
-import com.halboom.pgt.physics.simple.BoundsSystem;
-import com.halboom.pgt.physics.simple.shapes.BoundsSphere;
 import com.jme3.math.Vector3f;
-import com.submu.pug.game.CollisionFilter;
 import com.submu.pug.game.objects.components.AIComponent;
-import com.submu.pug.game.objects.components.FilterFlagComponent;
 import com.submu.pug.game.objects.components.MoveCommandComponent;
-import com.submu.pug.game.objects.components.OwnerComponent;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
 
 /**
@@ -22,144 +20,177 @@ import java.util.List;
  * Date: 6/26/13
  * Time: 4:56 PM
  * Handles general AI triggering.
+ * Each AI entity thinks once per think interval, with the first think staggered so entities created together
+ * do not think on the same update, and at most the think budget of entities think per update.
+ * Targets are found through a perception gathered once per update that has thinking entities.
  */
 public class AISystem implements Subsystem {
+    /**
+     * Default largest number of entities thinking per update.
+     */
+    public static final int DEFAULT_THINK_BUDGET = 64;
+
+    /**
+     * Fraction of the think interval the first think of consecutive entities is moved by to stagger them.
+     */
+    private static final float STAGGER_STEP = 0.618034f;
+
     /**
      * Entity system to use.
      */
     private EntitySystem entitySystem;
 
     /**
-     * System to use for getting entities within bounds.
+     * Perception used to find the nearest hostile targets.
      */
-    private BoundsSystem boundsSystem;
+    private AIPerception perception;
 
     /**
-     * Collision filter to use for finding which entities can be acted upon.
+     * Location of the entity thinking.
      */
-    private CollisionFilter collisionFilter;
+    private Vector3f center = new Vector3f();
 
     /**
-     * Location of the volume.
+     * Entities due to think this update, reused between updates.
      */
-    private Vector3f center = new Vector3f();
+    private List<Entity> thinking = new ArrayList<Entity>();
+
+    /**
+     * Largest number of entities thinking per update.
+     */
+    private int thinkBudget = DEFAULT_THINK_BUDGET;
 
     /**
-     * Sphere used for bounds checks.
+     * Fraction of the think interval the next added entity first thinks after.
      */
-    private BoundsSphere sphere = new BoundsSphere(1.0f, center);
+    private float stagger = 0;
 
     /**
      * Callbacks for the AI system.
      */
     private Callbacks callbacks;
 
+    /**
+     * Orders entities by how long they are past their think interval, most overdue first.
+     */
+    private final Comparator<Entity> overdueComparator = new Comparator<Entity>() {
+        @Override
+        public int compare(Entity entity1, Entity entity2) {
+            return Float.compare(entitySystem.getComponent(entity1, AIComponent.class).thinkTimer,
+                    entitySystem.getComponent(entity2, AIComponent.class).thinkTimer);
+        }
+    };
+
     /**
      * Initializes the AI system.
      * @param entitySystem the entity system to use.
-     * @param boundsSystem the system used for bounds.
-     * @param collisionFilter filtering system to use for finding which entities that can be collided with.
+     * @param perception the perception to find targets with.
      */
-    public AISystem(EntitySystem entitySystem, BoundsSystem boundsSystem, CollisionFilter collisionFilter) {
+    public AISystem(EntitySystem entitySystem, AIPerception perception) {
         this.entitySystem = entitySystem;
-        this.boundsSystem = boundsSystem;
-        this.collisionFilter = collisionFilter;
-        sphere.setTargets(CollisionFilter.COLLISION_UNIT);
-        Entity sphereEntity = entitySystem.createEntity();
-        sphere.setEntity(sphereEntity);
-
-        FilterFlagComponent filterFlagComponent = new FilterFlagComponent();
-        filterFlagComponent.collidesEnemy = true;
-        entitySystem.setComponent(sphereEntity, filterFlagComponent);
-        entitySystem.setComponent(sphereEntity, new OwnerComponent());
-    }
-
-    /**
-     * Retrieves the closest entity to a point.
-     * @param position the position to check from.
-     * @param entities the entities to check with.
-     * @return the closest entity or null if none.
-     */
-    private Entity getClosestEntity(Vector3f position, List<Entity> entities) {
-        Entity closest = null;
-        float minDistance = Float.MAX_VALUE;
-        for (Entity entity : entities) {
-            TransformComponent transformComponent = entitySystem.getComponent(entity, TransformComponent.class);
-            if (transformComponent != null) {
-                float distance = (transformComponent.positionX - position.x) * (transformComponent.positionX - position.x)
-                        + (transformComponent.positionY - position.y) * (transformComponent.positionY - position.y)
-                        + (transformComponent.positionZ - position.z) * (transformComponent.positionZ - position.z);
-                if (distance < minDistance) {
-                    minDistance = distance;
-                    closest = entity;
-                }
-            }
-        }
-
-        return closest;
+        this.perception = perception;
     }
 
     @Override
     public void update(float tpf) {
         EntitySet set = entitySystem.getEntities(AIComponent.class);
+        for (Entity entity : set.getAddedEntities()) {
+            AIComponent aiComponent = entitySystem.getComponent(entity, AIComponent.class);
+            aiComponent.thinkTimer = aiComponent.thinkInterval * stagger;
+            stagger = (stagger + STAGGER_STEP) % 1f;
+        }
+        // Entities past their interval keep waiting with the budget used up, so the most overdue go first.
+        thinking.clear();
         for (Entity entity : set.getEntities()) {
-            // Follow hostile entities within range.
-            TransformComponent transformComponent = entitySystem.getComponent(entity, TransformComponent.class);
-            if (transformComponent == null) {
-                continue;
+            AIComponent aiComponent = entitySystem.getComponent(entity, AIComponent.class);
+            aiComponent.thinkTimer -= tpf;
+            if (aiComponent.thinkTimer <= 0) {
+                thinking.add(entity);
             }
+        }
+        if (thinking.isEmpty()) {
+            return;
+        }
+        if (thinking.size() > thinkBudget) {
+            Collections.sort(thinking, overdueComparator);
+        }
+
+        perception.update();
+        int count = Math.min(thinking.size(), thinkBudget);
+        for (int i = 0; i < count; i++) {
+            Entity entity = thinking.get(i);
             AIComponent aiComponent = entitySystem.getComponent(entity, AIComponent.class);
-            sphere.setRadius(aiComponent.aggroRange);
-            center.x = transformComponent.positionX;
-            center.y = transformComponent.positionY;
-            center.z = transformComponent.positionZ;
-            sphere.setCenter(center);
-            // Update sphere properties to match the entity for filtering.
-            Entity sphereEntity = sphere.getEntity();
-            OwnerComponent ownerComponent = entitySystem.getComponent(entity, OwnerComponent.class);
-            if (ownerComponent != null) {
-                OwnerComponent sphereOwner = entitySystem.getComponent(sphereEntity, OwnerComponent.class);
-                sphereOwner.playerID = ownerComponent.playerID;
-            } else {
-                entitySystem.removeComponent(sphereEntity, OwnerComponent.class);
+            aiComponent.thinkTimer = aiComponent.thinkInterval;
+            think(entity, aiComponent);
+        }
+    }
+
+    /**
+     * Follows or fights the nearest hostile entity within range.
+     * @param entity the entity thinking.
+     * @param aiComponent the AI of the entity.
+     */
+    private void think(Entity entity, AIComponent aiComponent) {
+        TransformComponent transformComponent = entitySystem.getComponent(entity, TransformComponent.class);
+        if (transformComponent == null) {
+            return;
+        }
+        center.x = transformComponent.positionX;
+        center.y = transformComponent.positionY;
+        center.z = transformComponent.positionZ;
+        // Get the closest enemy.
+        Entity closest = perception.getNearestHostile(entity, perception.getOwner(entity), center,
+                aiComponent.aggroRange);
+        if (closest != null) {
+            MoveCommandComponent moveCommandComponent = entitySystem.getComponent(entity, MoveCommandComponent.class);
+            // Check if within combat range, else aggro.
+            TransformComponent enemyPosition = entitySystem.getComponent(closest, TransformComponent.class);
+            float distance = Float.MAX_VALUE;
+            // Only calculate distance if the entity has a combat script.
+            if (aiComponent.combatScript != null && enemyPosition != null) {
+                distance = (enemyPosition.positionX - center.x) * (enemyPosition.positionX - center.x)
+                    + (enemyPosition.positionY - center.y) * (enemyPosition.positionY - center.y)
+                    + (enemyPosition.positionZ - center.z) * (enemyPosition.positionZ - center.z);
             }
-            // Get the closest enemy.
-            List<Entity> inRange = boundsSystem.getEntitiesInBounds(sphere, collisionFilter);
-            Entity closest = getClosestEntity(center, inRange);
-            if (closest != null) {
-                MoveCommandComponent moveCommandComponent = entitySystem.getComponent(entity, MoveCommandComponent.class);
-                // Check if within combat range, else aggro.
-                TransformComponent enemyPosition = entitySystem.getComponent(closest, TransformComponent.class);
-                float distance = Float.MAX_VALUE;
-                // Only calculate distance if the entity has a combat script.
-                if (aiComponent.combatScript != null && enemyPosition != null) {
-                    distance = (enemyPosition.positionX - center.x) * (enemyPosition.positionX - center.x)
-                        + (enemyPosition.positionY - center.y) * (enemyPosition.positionY - center.y)
-                        + (enemyPosition.positionZ - center.z) * (enemyPosition.positionZ - center.z);
+            if (distance < aiComponent.combatRange * aiComponent.combatRange) {
+                aiComponent.isInCombat = true;
+                // Run the combat script.
+                if (aiComponent.combatScript != null && callbacks != null) {
+                    callbacks.onCombat(entity, closest, aiComponent.combatScript);
                 }
-                if (distance < aiComponent.combatRange * aiComponent.combatRange) {
-                    aiComponent.isInCombat = true;
-                    // Run the combat script.
-                    if (aiComponent.combatScript != null && callbacks != null) {
-                        callbacks.onCombat(entity, closest, aiComponent.combatScript);
-                    }
-                } else {
-                    if (moveCommandComponent == null) {
-                        moveCommandComponent = new MoveCommandComponent();
-                        entitySystem.setComponent(entity, moveCommandComponent);
-                    }
-                    moveCommandComponent.entity = closest;
-                }
-            } else if (aiComponent.isInCombat) {
-                // Leave combat.
-                aiComponent.isInCombat = false;
-                if (callbacks != null) {
-                    callbacks.onLeaveCombat(entity);
+            } else {
+                if (moveCommandComponent == null) {
+                    moveCommandComponent = new MoveCommandComponent();
+                    entitySystem.setComponent(entity, moveCommandComponent);
                 }
+                moveCommandComponent.entity = closest;
+            }
+        } else if (aiComponent.isInCombat) {
+            // Leave combat.
+            aiComponent.isInCombat = false;
+            if (callbacks != null) {
+                callbacks.onLeaveCombat(entity);
             }
         }
     }
 
+    /**
+     * @param thinkBudget the largest number of entities thinking per update.
+     */
+    public void setThinkBudget(int thinkBudget) {
+        if (thinkBudget <= 0) {
+            throw new IllegalArgumentException("Think budget must be positive but was " + thinkBudget + ".");
+        }
+        this.thinkBudget = thinkBudget;
+    }
+
+    /**
+     * @return the largest number of entities thinking per update.
+     */
+    public int getThinkBudget() {
+        return thinkBudget;
+    }
+
     @Override
     public void cleanupSubsystem() {
     }
@@ -1,5 +1,6 @@
 package com.submu.pug.game.objects.systems;
 
+import com.halboom.pgt.entityspatial.ComponentAccess;
 import com.exploringlines.entitysystem.Entity;
 import com.exploringlines.entitysystem.EntitySet;
 import com.exploringlines.entitysystem.EntitySystem;
@@ -13,7 +14,17 @@ import com.submu.pug.game.objects.components.ActionComponent;
  * Time: 4:12 PM
  * Resets actions and handles animations for some actions.
  */
-public class ActionSystem implements Subsystem {
+public class ActionSystem implements Subsystem, ComponentAccess {
+    /**
+     * Components only read during the update.
+     */
+    private static final Class<?>[] READ_COMPONENTS = {};
+
+    /**
+     * Components changed during the update.
+     */
+    private static final Class<?>[] WRITE_COMPONENTS = {};
+
     /**
      * Entity system to use.
      */
@@ -48,6 +59,16 @@ public class ActionSystem implements Subsystem {
         }
     }
 
+    @Override
+    public Class<?>[] getReadComponents() {
+        return READ_COMPONENTS;
+    }
+
+    @Override
+    public Class<?>[] getWriteComponents() {
+        return WRITE_COMPONENTS;
+    }
+
     @Override
     public void destroy() {
     }
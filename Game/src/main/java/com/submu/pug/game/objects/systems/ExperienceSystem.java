@@ -1,5 +1,6 @@
 package com.submu.pug.game.objects.systems;
 
+import com.halboom.pgt.entityspatial.ComponentAccess;
 import com.exploringlines.entitysystem.Entity;
 import com.exploringlines.entitysystem.EntitySet;
 import com.exploringlines.entitysystem.EntitySystem;
@@ -13,7 +14,17 @@ import com.submu.pug.game.objects.components.ExperienceComponent;
  * Time: 1:22 PM
  * Handles the leveling of entities.
  */
-public class ExperienceSystem implements Subsystem {
+public class ExperienceSystem implements Subsystem, ComponentAccess {
+    /**
+     * Components only read during the update.
+     */
+    private static final Class<?>[] READ_COMPONENTS = {};
+
+    /**
+     * Components changed during the update.
+     */
+    private static final Class<?>[] WRITE_COMPONENTS = {ExperienceComponent.class};
+
     /**
      * Entity system to use.
      */
@@ -45,6 +56,16 @@ public class ExperienceSystem implements Subsystem {
     public void cleanupSubsystem() {
     }
 
+    @Override
+    public Class<?>[] getReadComponents() {
+        return READ_COMPONENTS;
+    }
+
+    @Override
+    public Class<?>[] getWriteComponents() {
+        return WRITE_COMPONENTS;
+    }
+
     @Override
     public void destroy() {
     }
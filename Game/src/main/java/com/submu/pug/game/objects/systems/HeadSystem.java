@@ -7,7 +7,6 @@ import com.exploringlines.entitysystem.Entity;
 import com.exploringlines.entitysystem.EntitySet;
 import com.exploringlines.entitysystem.EntitySystem;
 import com.exploringlines.entitysystem.Subsystem;
-import com.jme3.asset.AssetManager;
 import com.jme3.math.Vector3f;
 import com.jme3.scene.Node;
 import com.jme3.scene.Spatial;
@@ -16,7 +15,10 @@ import com.submu.pug.data.ModelData;
 import com.submu.pug.game.objects.components.ActionComponent;
 import com.submu.pug.game.objects.components.HeadComponent;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -27,6 +29,7 @@ import java.util.Map;
  * System for handling the head of an entity.
  * This system is somewhat similar to the spatial system only more specialized.
  * A head without a parent spatial will not be created.
+ * Heads are attached once both the body and the head model finished loading.
  */
 public class HeadSystem implements Subsystem {
     /**
@@ -40,9 +43,9 @@ public class HeadSystem implements Subsystem {
     private SpatialSystem spatialSystem;
 
     /**
-     * Asset manager to load resources fom.
+     * Entities with heads waiting for their body or head model to load.
      */
-    private AssetManager assetManager;
+    private List<Entity> pendingEntities = new ArrayList<Entity>();
 
     /**
      * Map for entities and heads.
@@ -52,25 +55,35 @@ public class HeadSystem implements Subsystem {
     /**
      * Initializes the system.
      * @param entitySystem the entity system to use.
-     * @param spatialSystem the spatial system to use.
-     * @param assetManager the asset manager to load from.
+     * @param spatialSystem the spatial system to use and load head models from.
      */
-    public HeadSystem(EntitySystem entitySystem, SpatialSystem spatialSystem, AssetManager assetManager) {
+    public HeadSystem(EntitySystem entitySystem, SpatialSystem spatialSystem) {
         this.entitySystem = entitySystem;
         this.spatialSystem = spatialSystem;
-        this.assetManager = assetManager;
     }
 
     @Override
     public void update(float tpf) {
         EntitySet set = entitySystem.getEntities(HeadComponent.class);
+        pendingEntities.addAll(set.getAddedEntities());
         // Create a head model for each valid spatial.
-        for (Entity entity : set.getAddedEntities()) {
+        Iterator<Entity> iterator = pendingEntities.iterator();
+        while (iterator.hasNext()) {
+            Entity entity = iterator.next();
+            // Try again once the body finished loading.
+            if (spatialSystem.getIsLoading(entity)) {
+                continue;
+            }
             Spatial spatial = spatialSystem.getSpatial(entity);
             if (spatial != null && spatial instanceof Node) {
                 Node node = (Node) spatial;
                 HeadComponent headComponent = entitySystem.getComponent(entity, HeadComponent.class);
-                Spatial model = assetManager.loadModel(headComponent.model);
+                Spatial model = spatialSystem.getModel(headComponent.model);
+                // Try again once the head model finished loading.
+                if (model == null) {
+                    continue;
+                }
+                iterator.remove();
                 Vector3f originalScale = new Vector3f(model.getLocalScale());
                 entityHeadMap.put(entity, model);
                 node.attachChild(model);
@@ -117,6 +130,8 @@ public class HeadSystem implements Subsystem {
                         }
                     }
                 }
+            } else {
+                iterator.remove();
             }
         }
 
@@ -149,9 +164,11 @@ public class HeadSystem implements Subsystem {
 
         // Removed unused spatials.
         for (Entity entity : set.getRemovedEntities()) {
-            Spatial spatial = entityHeadMap.get(entity);
-            spatial.removeFromParent();
-            entityHeadMap.remove(entity);
+            pendingEntities.remove(entity);
+            Spatial spatial = entityHeadMap.remove(entity);
+            if (spatial != null) {
+                spatial.removeFromParent();
+            }
         }
     }
 
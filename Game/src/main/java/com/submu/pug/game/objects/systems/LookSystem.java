@@ -1,5 +1,6 @@
 package com.submu.pug.game.objects.systems;
 
+import com.halboom.pgt.entityspatial.ComponentAccess;
 import com.halboom.pgt.entityspatial.TransformComponent;
 import com.exploringlines.entitysystem.Entity;
 import com.exploringlines.entitysystem.EntitySet;
@@ -19,7 +20,17 @@ import java.util.Objects;
  * Time: 3:55 PM
  * Makes the entity look at a point.
  */
-public class LookSystem implements Subsystem {
+public class LookSystem implements Subsystem, ComponentAccess {
+    /**
+     * Components only read during the update.
+     */
+    private static final Class<?>[] READ_COMPONENTS = {};
+
+    /**
+     * Components changed during the update.
+     */
+    private static final Class<?>[] WRITE_COMPONENTS = {ActionComponent.class, TransformComponent.class};
+
     /**
      * Entity system to use.
      */
@@ -95,6 +106,16 @@ public class LookSystem implements Subsystem {
         this.localPlayer = localPlayer;
     }
 
+    @Override
+    public Class<?>[] getReadComponents() {
+        return READ_COMPONENTS;
+    }
+
+    @Override
+    public Class<?>[] getWriteComponents() {
+        return WRITE_COMPONENTS;
+    }
+
     @Override
     public void destroy() {
     }
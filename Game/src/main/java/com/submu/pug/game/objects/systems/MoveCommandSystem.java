@@ -1,38 +1,134 @@
 package com.submu.pug.game.objects.systems;
 
+import com.halboom.pgt.entityspatial.ComponentAccess;
 import com.halboom.pgt.entityspatial.TransformComponent;
 import com.exploringlines.entitysystem.Entity;
 import com.exploringlines.entitysystem.EntitySet;
 import com.exploringlines.entitysystem.EntitySystem;
 import com.exploringlines.entitysystem.Subsystem;
+import com.halboom.pgt.physics.pathfinding.PathRequest;
+import com.halboom.pgt.physics.pathfinding.Pathfinder;
+import com.halboom.pgt.physics.simple.components.AABBComponent;
+import com.halboom.pgt.physics.simple.components.GridColliderComponent;
 import com.jme3.math.Vector3f;
 import com.submu.pug.game.objects.components.ActionComponent;
 import com.submu.pug.game.objects.components.MoveCommandComponent;
 
+import java.util.HashMap;
+import java.util.Map;
+
 /**
  * Created with IntelliJ IDEA.
  * User: MW
  * Date: 5/23/13
  * Time: 8:30 PM
+ * Walks entities towards their move command destination.
+ * Entities colliding with the tiles follow the waypoints of a path found by the pathfinder,
+ * walking straight at the destination while the first path is searched, after the last waypoint
+ * and when no path was found.
  */
-public class MoveCommandSystem implements Subsystem {
+public class MoveCommandSystem implements Subsystem, ComponentAccess {
+    /**
+     * Components only read during the update.
+     */
+    private static final Class<?>[] READ_COMPONENTS = {TransformComponent.class, AABBComponent.class,
+            GridColliderComponent.class};
+
+    /**
+     * Components changed during the update.
+     */
+    private static final Class<?>[] WRITE_COMPONENTS = {ActionComponent.class, MoveCommandComponent.class};
+
+    /**
+     * Seconds an entity waits after asking for a path before asking for another to the same destination.
+     */
+    private static final float REPATH_INTERVAL = 0.5f;
+
+    /**
+     * Horizontal distance in tiles from a waypoint where it counts as reached.
+     */
+    private static final float WAYPOINT_REACH = 0.5f;
+
+    /**
+     * Path being followed by an entity.
+     */
+    private static final class PathFollower {
+        /**
+         * Request being searched, null if none.
+         */
+        private PathRequest request;
+
+        /**
+         * Found path being followed, null if none.
+         */
+        private PathRequest path;
+
+        /**
+         * Index of the waypoint being walked to.
+         */
+        private int waypoint = 0;
+
+        /**
+         * Cell of the destination last asked for.
+         */
+        private int goalX, goalY, goalZ;
+
+        /**
+         * True once a path was asked for.
+         */
+        private boolean hasGoal = false;
+
+        /**
+         * Seconds until another path can be asked for.
+         */
+        private float repathTime = 0;
+
+        /**
+         * Edit count of the pathfinder when the last search found no path, -1 if it found one.
+         */
+        private long failedEdit = -1;
+    }
+
     /**
      * System to use for the entities.
      */
     private EntitySystem entitySystem;
 
+    /**
+     * Pathfinder to find paths through the tiles with, null to always walk straight.
+     */
+    private Pathfinder pathfinder;
+
+    /**
+     * Paths of the entities walking to a destination.
+     */
+    private Map<Entity, PathFollower> followers = new HashMap<Entity, PathFollower>();
+
+    /**
+     * Direction to the next waypoint, reused between entities.
+     */
+    private final Vector3f waypointDirection = new Vector3f();
+
     /**
      * Initializes the system.
      * @param entitySystem the entity system to use.
+     * @param pathfinder the pathfinder to find paths through the tiles with, null to always walk straight.
      */
-    public MoveCommandSystem(EntitySystem entitySystem) {
+    public MoveCommandSystem(EntitySystem entitySystem, Pathfinder pathfinder) {
         this.entitySystem = entitySystem;
+        this.pathfinder = pathfinder;
     }
 
     @Override
     public void update(float tpf) {
         // Move entities that have the move command.
         EntitySet set = entitySystem.getEntities(MoveCommandComponent.class);
+        if (pathfinder != null) {
+            pathfinder.update();
+            for (Entity entity : set.getRemovedEntities()) {
+                removeFollower(entity);
+            }
+        }
         for (Entity entity : set.getEntities()) {
             // Check that the entity is valid.
             ActionComponent actionComponent = entitySystem.getComponent(entity, ActionComponent.class);
@@ -49,6 +145,7 @@ public class MoveCommandSystem implements Subsystem {
                     || (moveCommand.directionX != 0 || moveCommand.directionY != 0 || moveCommand.directionZ != 0)
                     || moveCommand.entity != null;
             if (!shouldMove) {
+                removeFollower(entity);
                 continue;
             }
             // Get the destination from an entity else from the move command.
@@ -65,7 +162,12 @@ public class MoveCommandSystem implements Subsystem {
                 destination = new Vector3f(moveCommand.destinationX, moveCommand.destinationY, moveCommand.destinationZ);
             }
             // Move towards the destination if there is one or the direction if not.
-            if (destination != null) {
+            if (destination != null && getPathDirection(entity, transform, destination, tpf, waypointDirection)) {
+                actionComponent.isWalking = true;
+                actionComponent.walkDirectionX = waypointDirection.x;
+                actionComponent.walkDirectionY = waypointDirection.y;
+                actionComponent.walkDirectionZ = waypointDirection.z;
+            } else if (destination != null) {
                 // Find the angle to reach the destination.
                 Vector3f currentLocation = new Vector3f(transform.positionX, transform.positionY, transform.positionZ);
                 // Calculate the direction, the Y axis does not need to be checked against as the walk system will handle that.
@@ -77,6 +179,7 @@ public class MoveCommandSystem implements Subsystem {
                 actionComponent.walkDirectionY = destination.y;
                 actionComponent.walkDirectionZ = destination.z;
             } else if (moveCommand.directionX != 0 || moveCommand.directionY != 0 || moveCommand.directionZ != 0) {
+                removeFollower(entity);
                 // Set the angle to walk.
                 actionComponent.isWalking = true;
                 actionComponent.walkDirectionX = moveCommand.directionX;
@@ -95,11 +198,118 @@ public class MoveCommandSystem implements Subsystem {
         }
     }
 
+    /**
+     * Finds the direction to the next waypoint of the entity's path, asking for a new path when the destination moved
+     * to another tile or the tiles along the path changed.
+     * @param entity the entity walking.
+     * @param transform the transform of the entity.
+     * @param destination the position to walk to.
+     * @param tpf the time passed per frame.
+     * @param store the vector to store the horizontal direction in.
+     * @return true if the entity should walk towards a waypoint, false to walk straight at the destination.
+     */
+    private boolean getPathDirection(Entity entity, TransformComponent transform, Vector3f destination, float tpf,
+                                     Vector3f store) {
+        if (pathfinder == null) {
+            return false;
+        }
+        AABBComponent aabb = entitySystem.getComponent(entity, AABBComponent.class);
+        GridColliderComponent gridCollider = entitySystem.getComponent(entity, GridColliderComponent.class);
+        // Only entities blocked by the tiles need to walk around them.
+        if (aabb == null || gridCollider == null || gridCollider.isSensor) {
+            removeFollower(entity);
+            return false;
+        }
+        PathFollower follower = followers.get(entity);
+        if (follower == null) {
+            follower = new PathFollower();
+            followers.put(entity, follower);
+        }
+        follower.repathTime -= tpf;
+        if (follower.request != null && follower.request.getIsDone()) {
+            follower.path = follower.request.getIsFound() ? follower.request : null;
+            follower.failedEdit = follower.path == null ? pathfinder.getEditCount() : -1;
+            follower.waypoint = 0;
+            follower.request = null;
+        }
+
+        float scale = pathfinder.getScale();
+        int goalX = (int) Math.floor(destination.x / scale);
+        int goalY = (int) Math.floor(destination.y / scale);
+        int goalZ = (int) Math.floor(destination.z / scale);
+        boolean isGoalChanged = !follower.hasGoal || goalX != follower.goalX || goalY != follower.goalY
+                || goalZ != follower.goalZ;
+        if (isGoalChanged) {
+            // Paths to the old destination would lead the wrong way so walk straight until the new path is found.
+            follower.path = null;
+            follower.waypoint = 0;
+            if (follower.request != null) {
+                pathfinder.cancel(follower.request);
+                follower.request = null;
+            }
+        }
+        boolean needsPath = isGoalChanged
+                || (follower.path != null && pathfinder.getIsOutdated(follower.path))
+                || (follower.path == null && follower.failedEdit != pathfinder.getEditCount());
+        // A new destination is asked for right away, only repaths to the same destination wait.
+        if (needsPath && follower.request == null && (isGoalChanged || follower.repathTime <= 0)) {
+            follower.request = pathfinder.requestPath(transform.positionX, aabb.centerY - aabb.worldExtentY,
+                    transform.positionZ, destination.x, destination.y, destination.z, aabb.worldExtentY * 2,
+                    gridCollider.collisionGroup);
+            follower.goalX = goalX;
+            follower.goalY = goalY;
+            follower.goalZ = goalZ;
+            follower.hasGoal = true;
+            follower.repathTime = REPATH_INTERVAL;
+        }
+
+        PathRequest path = follower.path;
+        if (path == null) {
+            return false;
+        }
+        float reach = WAYPOINT_REACH * scale;
+        while (follower.waypoint < path.getWaypointCount()) {
+            store.set(path.getWaypointX(follower.waypoint) - transform.positionX, 0,
+                    path.getWaypointZ(follower.waypoint) - transform.positionZ);
+            if (store.lengthSquared() > reach * reach) {
+                store.normalizeLocal();
+                return true;
+            }
+            follower.waypoint++;
+        }
+        return false;
+    }
+
+    /**
+     * Stops an entity from following a path.
+     * @param entity the entity to stop.
+     */
+    private void removeFollower(Entity entity) {
+        PathFollower follower = followers.remove(entity);
+        if (follower != null && follower.request != null) {
+            pathfinder.cancel(follower.request);
+        }
+    }
+
     @Override
     public void cleanupSubsystem() {
     }
 
+    @Override
+    public Class<?>[] getReadComponents() {
+        return READ_COMPONENTS;
+    }
+
+    @Override
+    public Class<?>[] getWriteComponents() {
+        return WRITE_COMPONENTS;
+    }
+
     @Override
     public void destroy() {
+        if (pathfinder != null) {
+            pathfinder.destroy();
+        }
+        followers.clear();
     }
 }
@@ -1,5 +1,6 @@
 package com.submu.pug.game.objects.systems;
 
+import com.halboom.pgt.entityspatial.ComponentAccess;
 import com.exploringlines.entitysystem.Entity;
 import com.exploringlines.entitysystem.EntitySet;
 import com.exploringlines.entitysystem.EntitySystem;
@@ -13,7 +14,17 @@ import com.submu.pug.game.objects.components.TargetComponent;
  * Time: 2:30 PM
  * Targeting system that can be used for homing or head tracking.
  */
-public class TargetSystem implements Subsystem {
+public class TargetSystem implements Subsystem, ComponentAccess {
+    /**
+     * Components only read during the update.
+     */
+    private static final Class<?>[] READ_COMPONENTS = {};
+
+    /**
+     * Components changed during the update.
+     */
+    private static final Class<?>[] WRITE_COMPONENTS = {};
+
     /**
      * Entity system to use.
      */
@@ -46,6 +57,16 @@ public class TargetSystem implements Subsystem {
         }
     }
 
+    @Override
+    public Class<?>[] getReadComponents() {
+        return READ_COMPONENTS;
+    }
+
+    @Override
+    public Class<?>[] getWriteComponents() {
+        return WRITE_COMPONENTS;
+    }
+
     @Override
     public void destroy() {
     }
@@ -1,5 +1,6 @@
 package com.submu.pug.game.objects.systems;
 
+import com.halboom.pgt.entityspatial.ComponentAccess;
 import com.exploringlines.entitysystem.Entity;
 import com.exploringlines.entitysystem.EntitySet;
 import com.exploringlines.entitysystem.EntitySystem;
@@ -17,7 +18,17 @@ import com.submu.pug.game.objects.components.WalkComponent;
  * Time: 3:31 PM
  * Handles the walking actions of an entity.
  */
-public class WalkSystem implements Subsystem {
+public class WalkSystem implements Subsystem, ComponentAccess {
+    /**
+     * Components only read during the update.
+     */
+    private static final Class<?>[] READ_COMPONENTS = {ActionComponent.class, WalkComponent.class, CollisionComponent.class};
+
+    /**
+     * Components changed during the update.
+     */
+    private static final Class<?>[] WRITE_COMPONENTS = {SpeedComponent.class};
+
     /**
      * Entity system to use.
      */
@@ -169,6 +180,16 @@ public class WalkSystem implements Subsystem {
     public void cleanupSubsystem() {
     }
 
+    @Override
+    public Class<?>[] getReadComponents() {
+        return READ_COMPONENTS;
+    }
+
+    @Override
+    public Class<?>[] getWriteComponents() {
+        return WRITE_COMPONENTS;
+    }
+
     @Override
     public void destroy() {
     }
@@ -1,5 +1,6 @@
 package com.submu.pug.game.world;
 
+import com.halboom.pgt.entityspatial.ComponentAccess;
 import com.exploringlines.entitysystem.Entity;
 import com.exploringlines.entitysystem.EntitySet;
 import com.exploringlines.entitysystem.EntitySystem;
@@ -13,7 +14,17 @@ import com.halboom.pgt.physics.simple.components.SpeedComponent;
  * Time: 2:00 PM
  * Calculates gravity for objects.
  */
-public class GravitySystem implements Subsystem {
+public class GravitySystem implements Subsystem, ComponentAccess {
+    /**
+     * Components only read during the update.
+     */
+    private static final Class<?>[] READ_COMPONENTS = {GravityComponent.class};
+
+    /**
+     * Components changed during the update.
+     */
+    private static final Class<?>[] WRITE_COMPONENTS = {SpeedComponent.class};
+
     /**
      * Entity system to use.
      */
@@ -45,6 +56,16 @@ public class GravitySystem implements Subsystem {
     public void cleanupSubsystem() {
     }
 
+    @Override
+    public Class<?>[] getReadComponents() {
+        return READ_COMPONENTS;
+    }
+
+    @Override
+    public Class<?>[] getWriteComponents() {
+        return WRITE_COMPONENTS;
+    }
+
     @Override
     public void destroy() {
     }
@@ -14,6 +14,7 @@ import com.jme3.scene.Geometry;
 import com.jme3.scene.Spatial;
 import com.jme3.scene.shape.Box;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
@@ -57,6 +58,11 @@ public class Regions {
      */
     private List<Spatial> debugBounds = new LinkedList<Spatial>();
 
+    /**
+     * Entities found within a region, reused for every region.
+     */
+    private List<Entity> collided = new ArrayList<Entity>();
+
     /**
      * Initializes the class.
      * @param boundsSystem the bounds system to use for retrieving bounds.
@@ -91,7 +97,8 @@ public class Regions {
             for (Map.Entry<RegionInfo, List<Entity>> entry : regionMap.entrySet()) {
                 String name = entry.getKey().name;
                 Bounds bounds = entry.getKey().bounds;
-                List<Entity> collided = boundsSystem.getEntitiesInBounds(bounds, null);
+                collided.clear();
+                boundsSystem.getEntitiesInBounds(bounds, null, collided);
                 List<Entity> previousColliders = entry.getValue();
                 // Trigger callbacks on entities within the region.
                 for (Entity collidee : collided) {
@@ -2,8 +2,12 @@ package com.submu.pug.game.world.generators.terrain;
 
 import com.halboom.pgt.debug.DebugGlobals;
 import com.halboom.pgt.pgutil.math.Vector3Int;
-import com.halboom.pgt.terrainsystem.generator.Generator;
+import com.halboom.pgt.pgutil.voxel.ChunkedVoxelGrid;
+import com.halboom.pgt.pgutil.voxel.VoxelGrid;
+import com.halboom.pgt.terrainsystem.generator.SeededGenerator;
+import com.halboom.pgt.terrainsystem.generator.TileSink;
 
+import java.util.Random;
 import java.util.Stack;
 
 /**
@@ -12,8 +16,9 @@ import java.util.Stack;
  * Date: 8/21/13
  * Time: 11:31 AM
  * Creates a sky island.
+ * The island grows randomly from its center so it is grown once when prepared and regions copy it.
  */
-public class SkyIsland implements Generator {
+public class SkyIsland extends SeededGenerator {
     /**
      * Chances to continue generating in the given direction.
      */
@@ -32,6 +37,11 @@ public class SkyIsland implements Generator {
      */
     private int islandHeight;
 
+    /**
+     * Tiles of the prepared island.
+     */
+    private VoxelGrid island;
+
     /**
      * Initialize the generator.
      * @param islandHeight the height of the island.
@@ -46,16 +56,17 @@ public class SkyIsland implements Generator {
      * @param startX the x location.
      * @param startY the y location.
      * @param startZ the z location.
+     * @param randomSource the random values deciding where the island grows.
      */
-    private void generate(byte[][][] tiles, int startX, int startY, int startZ) {
+    private void generate(VoxelGrid tiles, int startX, int startY, int startZ, Random randomSource) {
         //DebugGlobals.println(x, y, z);
-        //DebugGlobals.println(tiles.length);
-        //DebugGlobals.println(tiles[x].length);
-        //DebugGlobals.println(tiles[x][y].length);
+        //DebugGlobals.println(tiles.getLengthX());
+        //DebugGlobals.println(tiles.getLengthY());
+        //DebugGlobals.println(tiles.getLengthZ());
 
         // Recursion will overflow so use a stack instead.
         Stack<Vector3Int> stack = new Stack<Vector3Int>();
-        int height = (int) (Math.random() * islandHeight);
+        int height = (int) (randomSource.nextDouble() * islandHeight);
         for (int h = 0; h < height; h++) {
             int y = startY - h;
             stack.push(new Vector3Int(startX, y, startZ));
@@ -64,35 +75,35 @@ public class SkyIsland implements Generator {
                 int x = index.x;
                 int z = index.z;
                 // Stop generating when outside the bounds.
-                if (x < 0 || y < 0 || z < 0 || x >= tiles.length || y >= tiles[x].length || z >= tiles[x][y].length) {
+                if (x < 0 || y < 0 || z < 0 || x >= tiles.getLengthX() || y >= tiles.getLengthY() || z >= tiles.getLengthZ()) {
                     continue;
                 }
 
                 // Make the tile solid.
-                tiles[x][y][z] = 1;
+                tiles.set(x, y, z, (byte) 1);
                 // Expand to other areas.
-                double random = Math.random();
-                if (random <= CHANCE_LEFT && x > 0 && tiles[x - 1][y][z] != 1) {
+                double random = randomSource.nextDouble();
+                if (random <= CHANCE_LEFT && x > 0 && tiles.get(x - 1, y, z) != 1) {
                     stack.push(new Vector3Int(x - 1, y, z));
                 }
-                random = Math.random();
-                if (random <= CHANCE_RIGHT && x < tiles.length - 1 && tiles[x + 1][y][z] != 1) {
+                random = randomSource.nextDouble();
+                if (random <= CHANCE_RIGHT && x < tiles.getLengthX() - 1 && tiles.get(x + 1, y, z) != 1) {
                     stack.push(new Vector3Int(x + 1, y, z));
                 }
-                random = Math.random();
-                if (random <= CHANCE_BACKWARD && z > 0 && tiles[x][y][z - 1] != 1) {
+                random = randomSource.nextDouble();
+                if (random <= CHANCE_BACKWARD && z > 0 && tiles.get(x, y, z - 1) != 1) {
                     stack.push(new Vector3Int(x, y, z - 1));
                 }
-                random = Math.random();
-                if (random <= CHANCE_FORWARD && z < tiles[x][y].length - 1 && tiles[x][y][z + 1] != 1) {
+                random = randomSource.nextDouble();
+                if (random <= CHANCE_FORWARD && z < tiles.getLengthZ() - 1 && tiles.get(x, y, z + 1) != 1) {
                     stack.push(new Vector3Int(x, y, z + 1));
                 }
-                random = Math.random();
-                if (random <= CHANCE_DOWN && y > 0 && tiles[x][y - 1][z] != 1) {
+                random = randomSource.nextDouble();
+                if (random <= CHANCE_DOWN && y > 0 && tiles.get(x, y - 1, z) != 1) {
                     stack.push(new Vector3Int(x, y - 1, z));
                 }
-                random = Math.random();
-                if (random <= CHANCE_UP && y < tiles[x].length - 1 && tiles[x][y + 1][z] != 1) {
+                random = randomSource.nextDouble();
+                if (random <= CHANCE_UP && y < tiles.getLengthY() - 1 && tiles.get(x, y + 1, z) != 1) {
                     stack.push(new Vector3Int(x, y + 1, z));
                 }
             }
@@ -100,14 +111,26 @@ public class SkyIsland implements Generator {
     }
 
     @Override
-    public byte[][][] generate(int xLength, int yLength, int zLength) {
-        byte[][][] tiles = new byte[xLength][yLength][zLength];
+    public void prepare(int xLength, int yLength, int zLength) {
+        island = new ChunkedVoxelGrid(xLength, yLength, zLength);
 
         // First generate the top slice of the island.
         int centerX = (int) (xLength / 2.0f);
         int centerZ = (int) (zLength / 2.0f);
-        generate(tiles, centerX, islandHeight, centerZ);
+        generate(island, centerX, islandHeight, centerZ, createRandom());
+    }
 
-        return tiles;
+    @Override
+    public void generate(Vector3Int start, Vector3Int end, TileSink sink) {
+        for (int x = start.x; x <= end.x; x++) {
+            for (int y = start.y; y <= end.y; y++) {
+                for (int z = start.z; z <= end.z; z++) {
+                    byte tile = island.get(x, y, z);
+                    if (tile != 0) {
+                        sink.set(x, y, z, tile);
+                    }
+                }
+            }
+        }
     }
 }
@@ -1,7 +1,9 @@
 package com.submu.pug.game.world.generators.terrain;
 
 import com.halboom.pgt.debug.DebugGlobals;
-import com.halboom.pgt.terrainsystem.generator.Generator;
+import com.halboom.pgt.pgutil.math.Vector3Int;
+import com.halboom.pgt.terrainsystem.generator.SeededGenerator;
+import com.halboom.pgt.terrainsystem.generator.TileSink;
 import com.jme3.math.FastMath;
 
 /**
@@ -12,8 +14,9 @@ import com.jme3.math.FastMath;
  * Generates a sky tower.
  * A sky tower is a circular tower that starts from the sky and goes downwards.
  * The top of the sky tower will be a floating island.
+ * The columns of the walls are traced once when prepared.
  */
-public class SkyTower implements Generator {
+public class SkyTower extends SeededGenerator {
     /**
      * Base level of the sky tower (entrance of the tower).
      */
@@ -34,6 +37,21 @@ public class SkyTower implements Generator {
      */
     private float stepSize = 0.1f;
 
+    /**
+     * Center of the tower.
+     */
+    private float cx, cz;
+
+    /**
+     * Number of floors below the entrance.
+     */
+    private int floors;
+
+    /**
+     * Columns of the prepared map that are part of the walls.
+     */
+    private boolean[][] wallColumns = new boolean[0][0];
+
     /**
      * Initializes the generator.
      * @param radius the radius of the tower.
@@ -47,41 +65,43 @@ public class SkyTower implements Generator {
     }
 
     @Override
-    public byte[][][] generate(int xLength, int yLength, int zLength) {
-        byte[][][] tiles = new byte[xLength][yLength][zLength];
-        float cx = xLength / 2;
-        float cz  = zLength / 2;
-        // Create the floors.
-        int floors = entranceLevel / floorHeight;
-        for (int x = 0; x < xLength; x++) {
-            for (int z = 0; z < zLength; z++) {
+    public void prepare(int xLength, int yLength, int zLength) {
+        cx = xLength / 2;
+        cz  = zLength / 2;
+        floors = entranceLevel / floorHeight;
+        // Trace the walls.
+        wallColumns = new boolean[xLength][zLength];
+        for (float angle = 0; angle < 360; angle += stepSize) {
+            int tx = (int) (cx + radius * Math.cos(angle * FastMath.DEG_TO_RAD));
+            int tz = (int) (cz + radius * Math.sin(angle * FastMath.DEG_TO_RAD));
+            if (tx < 0 || tz < 0 || tx >= xLength || tz >= zLength) {
+                continue;
+            }
+            wallColumns[tx][tz] = true;
+        }
+    }
+
+    @Override
+    public void generate(Vector3Int start, Vector3Int end, TileSink sink) {
+        for (int x = start.x; x <= end.x; x++) {
+            for (int z = start.z; z <= end.z; z++) {
                 float xd = x - cx;
                 float zd = z - cz;
+                // Create the floors.
                 if (xd * xd + zd * zd <= radius * radius) {
                     for (int y = 0; y < floors; y++) {
-                        tiles[x][y * floorHeight][z] = 1;
+                        sink.set(x, y * floorHeight, z, (byte) 1);
                     }
                 }
-            }
-        }
-        // Create the walls.
-        for (float angle = 0; angle < 360; angle += stepSize) {
-            int tx = (int) (cx + radius * Math.cos(angle * FastMath.DEG_TO_RAD));
-            int tz = (int) (cz + radius * Math.sin(angle * FastMath.DEG_TO_RAD));
-            for (int y = 0; y < entranceLevel; y++) {
-                if (tx < 0 || tz < 0 || tx >= xLength || tz >= zLength) {
-                    continue;
+                // Create the walls.
+                if (wallColumns[x][z]) {
+                    for (int y = start.y; y <= Math.min(end.y, entranceLevel - 1); y++) {
+                        sink.set(x, y, z, (byte) 1);
+                    }
                 }
-                tiles[tx][y][tz] = 1;
+                // Create the top platform.
+                sink.set(x, entranceLevel, z, (byte) 1);
             }
         }
-        // Create the top platform.
-        for (int x = 0; x < xLength; x++) {
-            for (int z = 0; z < zLength; z++) {
-                tiles[x][entranceLevel][z] = 1;
-            }
-        }
-
-        return tiles;
     }
 }
@@ -17,6 +17,11 @@ public class PlayActions extends InputActions {
      */
     private PlayerActionCallback quitCallback;
 
+    /**
+     * Callback function to run when reloading the scripts.
+     */
+    private PlayerActionCallback reloadScriptsCallback;
+
     /**
      * Initializes the actions.
      * @param inputManager the input manager to use.
@@ -25,6 +30,7 @@ public class PlayActions extends InputActions {
         super(inputManager);
 
         registerAction(KeyMap.gameQuit);
+        registerAction(KeyMap.gameReloadScripts);
     }
 
     @Override
@@ -32,6 +38,8 @@ public class PlayActions extends InputActions {
         if (isPressed) {
             if (name.equals(KeyMap.gameQuit.name) && quitCallback != null) {
                 quitCallback.execute();
+            } else if (name.equals(KeyMap.gameReloadScripts.name) && reloadScriptsCallback != null) {
+                reloadScriptsCallback.execute();
             }
         }
     }
@@ -63,6 +71,13 @@ public class PlayActions extends InputActions {
         this.quitCallback = quitCallback;
     }
 
+    /**
+     * @param reloadScriptsCallback the callback to execute when the gameReloadScripts action is pressed.
+     */
+    public void setReloadScriptsCallback(PlayerActionCallback reloadScriptsCallback) {
+        this.reloadScriptsCallback = reloadScriptsCallback;
+    }
+
     /**
      * Callback interface for play state actions.
      */
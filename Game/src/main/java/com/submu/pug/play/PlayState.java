@@ -150,6 +150,12 @@ public class PlayState extends AbstractAppState {
                 onQuit();
             }
         });
+        playActions.setReloadScriptsCallback(new PlayActions.PlayerActionCallback() {
+            @Override
+            public void execute() {
+                gameSession.reloadScripts();
+            }
+        });
     }
 
     @Override
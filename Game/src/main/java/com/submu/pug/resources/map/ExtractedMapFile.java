@@ -3,6 +3,7 @@ package com.submu.pug.resources.map;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import com.halboom.pgt.asseteditor.Asset;
+import com.halboom.pgt.pgutil.voxel.VoxelGrid;
 import com.jme3.asset.AssetManager;
 import com.jme3.asset.DesktopAssetManager;
 import com.submu.pug.data.AssetsData;
@@ -285,13 +286,13 @@ public class ExtractedMapFile implements MapFile {
         // Write the map data
         try {
             // Compress the tiles.
-            List<byte[][][]> rawTilesStore = new LinkedList<byte[][][]>();
+            List<VoxelGrid> rawTilesStore = new LinkedList<VoxelGrid>();
             for (MapTilesData.TileSegment segment : mapTilesData.segments) {
-                byte[][][] rawTiles = segment.rawTiles;
+                VoxelGrid rawTiles = segment.rawTiles;
                 rawTilesStore.add(rawTiles);
-                segment.dimensionX = rawTiles.length;
-                segment.dimensionY = rawTiles[0].length;
-                segment.dimensionZ = rawTiles[0][0].length;
+                segment.dimensionX = rawTiles.getLengthX();
+                segment.dimensionY = rawTiles.getLengthY();
+                segment.dimensionZ = rawTiles.getLengthZ();
                 segment.tiles = MapUtils.compressTiles(rawTiles);
                 segment.rawTiles = null;
             }
@@ -374,7 +375,7 @@ public class ExtractedMapFile implements MapFile {
             // Decompress the tiles.
             for (MapTilesData.TileSegment segment : mapTilesData.segments) {
                 segment.rawTiles = MapUtils.decompressTiles(segment.tiles,
-                        mapData.dimensions.xLength, mapData.dimensions.yLength, mapData.dimensions.zLength);
+                        segment.dimensionX, segment.dimensionY, segment.dimensionZ);
             }
 
         } catch (NullPointerException e) {
@@ -1,10 +1,14 @@
 package com.submu.pug.resources.map;
 
+import com.halboom.pgt.pgutil.voxel.ArrayVoxelGrid;
+import com.halboom.pgt.pgutil.voxel.ChunkedVoxelGrid;
+import com.halboom.pgt.pgutil.voxel.VoxelGrid;
 import org.apache.commons.codec.binary.Base64;
-import org.apache.commons.compress.utils.IOUtils;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
 import java.io.IOException;
 import java.util.zip.GZIPInputStream;
 import java.util.zip.GZIPOutputStream;
@@ -28,47 +32,63 @@ public final class MapUtils {
      * @return the compressed string.
      * @throws java.io.IOException thrown when compression fails.
      */
-    public static String compressTiles(byte[][][] tiles) throws IOException {
+    public static String compressTiles(VoxelGrid tiles) throws IOException {
         ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
         GZIPOutputStream gzipOutputStream = new GZIPOutputStream(byteArrayOutputStream);
-        byte[] singleTiles = new byte[tiles.length * tiles[0].length * tiles[0][0].length];
-        for (int x = 0; x < tiles.length; x++) {
-            for (int y = 0; y < tiles[x].length; y++) {
-                for (int z = 0; z < tiles[x][y].length; z++) {
-                    singleTiles[(x * tiles[x].length + y) * tiles[x][y].length + z] = tiles[x][y][z];
+        if (tiles instanceof ArrayVoxelGrid) {
+            // Array grids are already stored in the compressed order.
+            gzipOutputStream.write(((ArrayVoxelGrid) tiles).getData());
+        } else {
+            // Write a row at a time so sparse grids are never expanded in memory.
+            byte[] row = new byte[tiles.getLengthZ()];
+            for (int x = 0; x < tiles.getLengthX(); x++) {
+                for (int y = 0; y < tiles.getLengthY(); y++) {
+                    for (int z = 0; z < row.length; z++) {
+                        row[z] = tiles.get(x, y, z);
+                    }
+                    gzipOutputStream.write(row);
                 }
             }
         }
-        gzipOutputStream.write(singleTiles);
         gzipOutputStream.close();
         return Base64.encodeBase64String(byteArrayOutputStream.toByteArray());
     }
 
     /**
-     * Decompresses the tiles and returns a 3D byte array.
+     * Decompresses the tiles into a sparse grid.
      * @param tiles the tiles to decompress.
-     * @param xLength the first array length.
-     * @param yLength the second array length.
-     * @param zLength the third array length.
+     * @param xLength the number of tiles along the X axis.
+     * @param yLength the number of tiles along the Y axis.
+     * @param zLength the number of tiles along the Z axis.
      * @return the decompressed tiles.
-     * @throws IOException thrown when decompression fails.
+     * @throws IOException thrown when decompression fails or the tiles do not match the lengths.
      */
-    public static byte[][][] decompressTiles(String tiles, int xLength, int yLength, int zLength) throws IOException {
-        // Decompress the tiles.
-        byte[] decodedTiles = Base64.decodeBase64(tiles);
-        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
-        GZIPInputStream inputStream = new GZIPInputStream(new ByteArrayInputStream((decodedTiles)));
-        IOUtils.copy(inputStream, byteArrayOutputStream);
-        inputStream.close();
-        decodedTiles = byteArrayOutputStream.toByteArray();
-        byte[][][] rawTiles = new byte[xLength][yLength][zLength];
-        for (int x = 0; x < rawTiles.length; x++) {
-            for (int y = 0; y < rawTiles[x].length; y++) {
-                for (int z = 0; z < rawTiles[x][y].length; z++) {
-                    rawTiles[x][y][z] = decodedTiles[(x * rawTiles[x].length + y) * rawTiles[x][y].length + z];
+    public static VoxelGrid decompressTiles(String tiles, int xLength, int yLength, int zLength) throws IOException {
+        ChunkedVoxelGrid rawTiles = new ChunkedVoxelGrid(xLength, yLength, zLength);
+        DataInputStream inputStream = new DataInputStream(
+                new GZIPInputStream(new ByteArrayInputStream(Base64.decodeBase64(tiles))));
+        try {
+            // Read a row at a time so the map is never expanded in memory.
+            byte[] row = new byte[zLength];
+            for (int x = 0; x < xLength; x++) {
+                for (int y = 0; y < yLength; y++) {
+                    inputStream.readFully(row);
+                    for (int z = 0; z < zLength; z++) {
+                        if (row[z] != 0) {
+                            rawTiles.set(x, y, z, row[z]);
+                        }
+                    }
                 }
             }
+            if (inputStream.read() != -1) {
+                throw new IOException("Decompressed more than " + xLength * yLength * zLength + " tiles.");
+            }
+        } catch (EOFException e) {
+            throw new IOException("Decompressed fewer than " + xLength * yLength * zLength + " tiles.", e);
+        } finally {
+            inputStream.close();
         }
+        rawTiles.compact();
         return rawTiles;
     }
 }
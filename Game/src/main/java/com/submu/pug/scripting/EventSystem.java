@@ -1,7 +1,8 @@
 package com.submu.pug.scripting;
 
 import java.util.ArrayList;
-import java.util.LinkedList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -11,13 +12,102 @@ import java.util.Map;
  * Date: 3/15/13
  * Time: 2:40 PM
  * Registers attached events and runs all attached.
+ * Each event name gets an integer ID the hooks queue with, and events nobody handles are dropped before they are
+ * built. Queued events come from a pool and go back to it once dispatched.
+ * Event types can be limited to a number per update or coalesced so only the first event with the same key
+ * arguments is kept each update, optionally adding up a numeric argument of the coalesced events into it.
  */
 public final class EventSystem {
+    /**
+     * Initial capacity of the tables indexed by event ID.
+     */
+    private static final int INITIAL_EVENT_TYPES = 32;
+
+    /**
+     * Coalescing key of events that are not queued.
+     */
+    private static final Object REJECTED = new Object();
+
+    /**
+     * Coalescing key of queued events of IDs that do not coalesce.
+     */
+    private static final Object NOT_COALESCED = new Object();
+
     /**
      * Queued events to be executed on the next runner update.
      */
     private List<ScriptEvent> queuedEvents;
 
+    /**
+     * Events being dispatched, swapped with the queued events so events queued by handlers run next update.
+     */
+    private List<ScriptEvent> dispatchingEvents;
+
+    /**
+     * Events ready to be reused.
+     */
+    private List<ScriptEvent> pool = new ArrayList<ScriptEvent>();
+
+    /**
+     * IDs of the event names.
+     */
+    private Map<String, Integer> eventIds = new HashMap<String, Integer>();
+
+    /**
+     * Names of the events by ID.
+     */
+    private List<String> eventNames = new ArrayList<String>();
+
+    /**
+     * Handlers by event ID, null if the event has none.
+     */
+    private List<List<ScriptEventHandler>> handlers = new ArrayList<List<ScriptEventHandler>>();
+
+    /**
+     * Handlers in use while new handlers are registered into a fresh table, null if none are being registered.
+     */
+    private List<List<ScriptEventHandler>> previousHandlers;
+
+    /**
+     * Most events of each ID queued per update, 0 for no limit.
+     */
+    private int[] limits = new int[INITIAL_EVENT_TYPES];
+
+    /**
+     * Indices of the arguments that make events of each ID the same, null to keep every event.
+     */
+    private int[][] coalescedArgs = new int[INITIAL_EVENT_TYPES][];
+
+    /**
+     * Index of the argument added up when events of each ID are coalesced, -1 to keep the first value.
+     */
+    private int[] summedArgs = new int[INITIAL_EVENT_TYPES];
+
+    /**
+     * Events queued for the next update by their coalescing key, null for IDs that do not coalesce.
+     */
+    private List<Map<Object, ScriptEvent>> coalescedEvents = new ArrayList<Map<Object, ScriptEvent>>();
+
+    /**
+     * Number of events of each ID queued for the next update.
+     */
+    private int[] queuedCounts = new int[INITIAL_EVENT_TYPES];
+
+    /**
+     * Number of events of each ID produced by the hooks, including dropped ones.
+     */
+    private long[] producedCounts = new long[INITIAL_EVENT_TYPES];
+
+    /**
+     * Number of events of each ID passed to at least one handler.
+     */
+    private long[] consumedCounts = new long[INITIAL_EVENT_TYPES];
+
+    /**
+     * Number of events of each ID dropped as unhandled, over the limit, or coalesced.
+     */
+    private long[] droppedCounts = new long[INITIAL_EVENT_TYPES];
+
     /**
      * Variables to store data into.
      */
@@ -29,23 +119,316 @@ public final class EventSystem {
      */
     public EventSystem(Map<String, Object> variables) {
         queuedEvents = new ArrayList<ScriptEvent>();
+        dispatchingEvents = new ArrayList<ScriptEvent>();
+        Arrays.fill(summedArgs, -1);
         this.variables = variables;
     }
 
     /**
-     * @return the events that are ready to be executed.
+     * Retrieves the ID of an event name, registering it if new.
+     * @param name the name of the event.
+     * @return the ID of the event.
+     */
+    public int getEventId(String name) {
+        Integer id = eventIds.get(name);
+        if (id != null) {
+            return id;
+        }
+        int newId = eventNames.size();
+        eventIds.put(name, newId);
+        eventNames.add(name);
+        handlers.add(null);
+        coalescedEvents.add(null);
+        if (newId == limits.length) {
+            int capacity = limits.length * 2;
+            limits = Arrays.copyOf(limits, capacity);
+            coalescedArgs = Arrays.copyOf(coalescedArgs, capacity);
+            summedArgs = Arrays.copyOf(summedArgs, capacity);
+            Arrays.fill(summedArgs, newId, capacity, -1);
+            queuedCounts = Arrays.copyOf(queuedCounts, capacity);
+            producedCounts = Arrays.copyOf(producedCounts, capacity);
+            consumedCounts = Arrays.copyOf(consumedCounts, capacity);
+            droppedCounts = Arrays.copyOf(droppedCounts, capacity);
+        }
+        return newId;
+    }
+
+    /**
+     * @param id the ID of the event.
+     * @return the name of the event.
+     */
+    public String getEventName(int id) {
+        return eventNames.get(id);
+    }
+
+    /**
+     * @return the number of event IDs registered.
+     */
+    public int getEventTypeCount() {
+        return eventNames.size();
+    }
+
+    /**
+     * Registers a handler to be called for each queued event of a name.
+     * @param name the name of the events to handle.
+     * @param handler the handler to call.
+     */
+    public void addHandler(String name, ScriptEventHandler handler) {
+        int id = getEventId(name);
+        List<ScriptEventHandler> idHandlers = handlers.get(id);
+        if (idHandlers == null) {
+            idHandlers = new ArrayList<ScriptEventHandler>();
+            handlers.set(id, idHandlers);
+        }
+        idHandlers.add(handler);
+    }
+
+    /**
+     * Removes every registered handler.
+     */
+    public void clearHandlers() {
+        for (int i = 0; i < handlers.size(); i++) {
+            handlers.set(i, null);
+        }
+    }
+
+    /**
+     * Registers the following handlers into a fresh table, keeping the current handlers until the table is kept.
+     */
+    public void beginHandlers() {
+        if (previousHandlers == null) {
+            previousHandlers = handlers;
+        }
+        handlers = new ArrayList<List<ScriptEventHandler>>();
+        for (int i = 0; i < eventNames.size(); i++) {
+            handlers.add(null);
+        }
+    }
+
+    /**
+     * Keeps the handlers registered since beginning a fresh table and drops the ones used before.
+     */
+    public void commitHandlers() {
+        previousHandlers = null;
+    }
+
+    /**
+     * Drops the handlers registered since beginning a fresh table and uses the ones used before again.
+     */
+    public void rollbackHandlers() {
+        if (previousHandlers == null) {
+            return;
+        }
+        handlers = previousHandlers;
+        previousHandlers = null;
+        // Events registered while the fresh table was in use have no handlers in the previous table.
+        while (handlers.size() < eventNames.size()) {
+            handlers.add(null);
+        }
+    }
+
+    /**
+     * @param id the ID of the event.
+     * @return true if any handler is registered for the event so it is worth building.
+     */
+    public boolean isSubscribed(int id) {
+        return handlers.get(id) != null;
+    }
+
+    /**
+     * @param id the ID of the event.
+     * @param limit the most events of the ID queued per update, 0 for no limit.
      */
-    public List<ScriptEvent> getQueuedEvents() {
-        return queuedEvents;
+    public void setLimit(int id, int limit) {
+        limits[id] = limit;
     }
 
     /**
-     * Adds an event with parameters to the queue.
+     * Keeps only the first event of an ID each update among events with equal arguments at the indices.
+     * @param id the ID of the event.
+     * @param argIndices the indices of the arguments making events the same, none to keep every event.
+     */
+    public void setCoalescing(int id, int... argIndices) {
+        coalescedArgs[id] = argIndices.length == 0 ? null : argIndices;
+        coalescedEvents.set(id, argIndices.length == 0 ? null : new HashMap<Object, ScriptEvent>());
+    }
+
+    /**
+     * Adds up a numeric argument of coalesced events into the kept event as a float instead of keeping the first.
+     * @param id the ID of the event.
+     * @param argIndex the index of the argument to add up, -1 to keep the first value.
+     */
+    public void setSummedArg(int id, int argIndex) {
+        summedArgs[id] = argIndex;
+    }
+
+    /**
+     * Adds an event created outside the system such as by the scripts to the queue.
      * @param event the event to add to the queue.
      */
     public void addQueuedEvent(ScriptEvent event) {
-        if (queuedEvents != null) {
-            queuedEvents.add(event);
+        int id = getEventId(event.getName());
+        event.setId(id);
+        Object[] args = event.getArgs();
+        int argCount = event.getArgCount();
+        Object key = getAcceptedKey(id, argCount > 0 ? args[0] : null, argCount > 1 ? args[1] : null,
+                argCount > 2 ? args[2] : null, argCount > 3 ? args[3] : null);
+        if (key != REJECTED) {
+            enqueue(event, key);
+        }
+    }
+
+    /**
+     * Queues an event without arguments.
+     * @param id the ID of the event.
+     */
+    public void queueEvent(int id) {
+        queue(id, 0, null, null, null, null);
+    }
+
+    /**
+     * Queues an event.
+     * @param id the ID of the event.
+     * @param arg0 the first argument.
+     */
+    public void queueEvent(int id, Object arg0) {
+        queue(id, 1, arg0, null, null, null);
+    }
+
+    /**
+     * Queues an event.
+     * @param id the ID of the event.
+     * @param arg0 the first argument.
+     * @param arg1 the second argument.
+     */
+    public void queueEvent(int id, Object arg0, Object arg1) {
+        queue(id, 2, arg0, arg1, null, null);
+    }
+
+    /**
+     * Queues an event.
+     * @param id the ID of the event.
+     * @param arg0 the first argument.
+     * @param arg1 the second argument.
+     * @param arg2 the third argument.
+     */
+    public void queueEvent(int id, Object arg0, Object arg1, Object arg2) {
+        queue(id, 3, arg0, arg1, arg2, null);
+    }
+
+    /**
+     * Queues an event.
+     * @param id the ID of the event.
+     * @param arg0 the first argument.
+     * @param arg1 the second argument.
+     * @param arg2 the third argument.
+     * @param arg3 the fourth argument.
+     */
+    public void queueEvent(int id, Object arg0, Object arg1, Object arg2, Object arg3) {
+        queue(id, 4, arg0, arg1, arg2, arg3);
+    }
+
+    /**
+     * Queues a pooled event if it is accepted.
+     * @param id the ID of the event.
+     * @param argCount the number of arguments used.
+     * @param arg0 the first argument.
+     * @param arg1 the second argument.
+     * @param arg2 the third argument.
+     * @param arg3 the fourth argument.
+     */
+    private void queue(int id, int argCount, Object arg0, Object arg1, Object arg2, Object arg3) {
+        Object key = getAcceptedKey(id, arg0, arg1, arg2, arg3);
+        if (key == REJECTED) {
+            return;
+        }
+        ScriptEvent event = pool.isEmpty() ? new ScriptEvent() : pool.remove(pool.size() - 1);
+        event.set(id, eventNames.get(id), argCount, arg0, arg1, arg2, arg3);
+        enqueue(event, key);
+    }
+
+    /**
+     * Adds an accepted event to the queue.
+     * @param event the event to add.
+     * @param key the coalescing key of the event.
+     */
+    private void enqueue(ScriptEvent event, Object key) {
+        queuedEvents.add(event);
+        if (key != NOT_COALESCED) {
+            coalescedEvents.get(event.getId()).put(key, event);
+        }
+    }
+
+    /**
+     * Counts a produced event and checks if it should be queued.
+     * An event with the same key arguments as one already queued is merged into that one instead.
+     * @param id the ID of the event.
+     * @param arg0 the first argument.
+     * @param arg1 the second argument.
+     * @param arg2 the third argument.
+     * @param arg3 the fourth argument.
+     * @return the coalescing key of the event, NOT_COALESCED if the ID does not coalesce,
+     * or REJECTED if the event is unhandled, over its limit, or merged into a queued event.
+     */
+    private Object getAcceptedKey(int id, Object arg0, Object arg1, Object arg2, Object arg3) {
+        producedCounts[id]++;
+        if (handlers.get(id) == null || (limits[id] > 0 && queuedCounts[id] >= limits[id])) {
+            droppedCounts[id]++;
+            return REJECTED;
+        }
+        int[] argIndices = coalescedArgs[id];
+        if (argIndices == null) {
+            queuedCounts[id]++;
+            return NOT_COALESCED;
+        }
+        Object key;
+        if (argIndices.length == 1) {
+            key = getArg(argIndices[0], arg0, arg1, arg2, arg3);
+        } else {
+            Object[] keyArgs = new Object[argIndices.length];
+            for (int i = 0; i < argIndices.length; i++) {
+                keyArgs[i] = getArg(argIndices[i], arg0, arg1, arg2, arg3);
+            }
+            key = Arrays.asList(keyArgs);
+        }
+        ScriptEvent queued = coalescedEvents.get(id).get(key);
+        if (queued != null) {
+            int summedArg = summedArgs[id];
+            if (summedArg >= 0) {
+                Object value = getArg(summedArg, arg0, arg1, arg2, arg3);
+                Object queuedValue = queued.getArgs()[summedArg];
+                if (value instanceof Number && queuedValue instanceof Number) {
+                    queued.setArg(summedArg, ((Number) queuedValue).floatValue() + ((Number) value).floatValue());
+                }
+            }
+            droppedCounts[id]++;
+            return REJECTED;
+        }
+        queuedCounts[id]++;
+        return key;
+    }
+
+    /**
+     * @param index the index of the argument.
+     * @param arg0 the first argument.
+     * @param arg1 the second argument.
+     * @param arg2 the third argument.
+     * @param arg3 the fourth argument.
+     * @return the argument at the index.
+     */
+    private static Object getArg(int index, Object arg0, Object arg1, Object arg2, Object arg3) {
+        return index == 0 ? arg0 : index == 1 ? arg1 : index == 2 ? arg2 : arg3;
+    }
+
+    /**
+     * Forgets the coalescing keys of the queued events.
+     */
+    private void clearCoalescedEvents() {
+        for (int i = 0; i < coalescedEvents.size(); i++) {
+            Map<Object, ScriptEvent> keyed = coalescedEvents.get(i);
+            if (keyed != null) {
+                keyed.clear();
+            }
         }
     }
 
@@ -53,7 +436,108 @@ public final class EventSystem {
      * Clears the queued events.
      */
     public void clearQueuedEvents() {
-        queuedEvents.clear();
+        release(queuedEvents);
+        Arrays.fill(queuedCounts, 0);
+        clearCoalescedEvents();
+    }
+
+    /**
+     * Passes the queued events to the handlers registered for them and clears the queue.
+     * Events queued while dispatching are kept for the next dispatch.
+     */
+    public void dispatchQueuedEvents() {
+        List<ScriptEvent> events = queuedEvents;
+        queuedEvents = dispatchingEvents;
+        dispatchingEvents = events;
+        Arrays.fill(queuedCounts, 0);
+        clearCoalescedEvents();
+        try {
+            for (int i = 0; i < events.size(); i++) {
+                ScriptEvent event = events.get(i);
+                List<ScriptEventHandler> idHandlers = handlers.get(event.getId());
+                if (idHandlers == null) {
+                    continue;
+                }
+                consumedCounts[event.getId()]++;
+                for (int j = 0; j < idHandlers.size(); j++) {
+                    idHandlers.get(j).onEvent(event);
+                }
+            }
+        } finally {
+            release(events);
+        }
+    }
+
+    /**
+     * Returns the pooled events of a list to the pool and clears the list.
+     * @param events the events to release.
+     */
+    private void release(List<ScriptEvent> events) {
+        for (int i = 0; i < events.size(); i++) {
+            ScriptEvent event = events.get(i);
+            if (event.getIsPooled()) {
+                event.clear();
+                pool.add(event);
+            }
+        }
+        events.clear();
+    }
+
+    /**
+     * @param counts the counts by event ID.
+     * @return the sum of the counts of every registered event.
+     */
+    private long getTotal(long[] counts) {
+        long total = 0;
+        for (int i = 0; i < eventNames.size(); i++) {
+            total += counts[i];
+        }
+        return total;
+    }
+
+    /**
+     * @return the number of events produced by the hooks, including dropped ones.
+     */
+    public long getProducedCount() {
+        return getTotal(producedCounts);
+    }
+
+    /**
+     * @return the number of events passed to at least one handler.
+     */
+    public long getConsumedCount() {
+        return getTotal(consumedCounts);
+    }
+
+    /**
+     * @return the number of events dropped as unhandled, over the limit, or coalesced.
+     */
+    public long getDroppedCount() {
+        return getTotal(droppedCounts);
+    }
+
+    /**
+     * @param id the ID of the event.
+     * @return the number of events of the ID produced by the hooks, including dropped ones.
+     */
+    public long getProducedCount(int id) {
+        return producedCounts[id];
+    }
+
+    /**
+     * @param id the ID of the event.
+     * @return the number of events of the ID passed to at least one handler.
+     */
+    public long getConsumedCount(int id) {
+        return consumedCounts[id];
+    }
+
+    /**
+     * @param id the ID of the event.
+     * @return the number of events of the ID dropped as unhandled, over the limit, or coalesced.
+     */
+    public long getDroppedCount(int id) {
+        return droppedCounts[id];
     }
 
     /**
@@ -69,9 +553,11 @@ public final class EventSystem {
      * Resets the system.
      */
     public void reset() {
-        if (queuedEvents != null) {
-            queuedEvents = new LinkedList<ScriptEvent>();
-        }
+        release(queuedEvents);
+        release(dispatchingEvents);
+        Arrays.fill(queuedCounts, 0);
+        clearCoalescedEvents();
+        clearHandlers();
         variables = null;
     }
 }
@@ -1,38 +1,53 @@
 package com.submu.pug.scripting;
 
-import groovy.lang.Binding;
+import com.halboom.pgt.pgutil.threading.Threading;
 import groovy.util.GroovyScriptEngine;
 import groovy.util.ResourceException;
 import groovy.util.ScriptException;
+import org.slf4j.LoggerFactory;
 
+import java.io.File;
 import java.io.IOError;
 import java.io.IOException;
-import java.util.LinkedList;
-import java.util.List;
-import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 /**
  * Created with IntelliJ IDEA.
  * User: MW
  * Date: 3/14/13
  * Time: 12:55 PM
- * Loads scala scripts.
+ * Loads groovy scripts.
+ * The main script class is compiled once and updated directly, with queued events passed straight to the
+ * handlers the scripts register by name.
+ * Scripts are only recompiled when reloaded, either explicitly or when watching finds changed sources.
  */
 public class GroovyRunner {
     /**
-     * Scripting engine to run groovy scripts with.
+     * Name of the main script to load.
      */
-    private GroovyScriptEngine gse;
+    private static final String MAIN_SCRIPT = "Main.groovy";
+
+    /**
+     * Extension of the script sources to watch for changes.
+     */
+    private static final String SCRIPT_EXTENSION = ".groovy";
 
     /**
-     * Main binding for the script.
+     * Seconds between checking the sources for changes when watching.
      */
-    private Binding mainBinding;
+    private static final float WATCH_INTERVAL = 1f;
+
+    /**
+     * Scripting engine to run groovy scripts with.
+     */
+    private GroovyScriptEngine gse;
 
     /**
-     * Variables to put into the binding dynamically.
+     * Roots of the script sources.
      */
-    private Map<String, Object> variables;
+    private String[] path;
 
     /**
      * API that scripts can use.
@@ -44,6 +59,31 @@ public class GroovyRunner {
      */
     private EventSystem eventSystem;
 
+    /**
+     * Instance of the main script class.
+     */
+    private ScriptMain scriptMain;
+
+    /**
+     * Newest modification time of the sources when the scripts were loaded.
+     */
+    private long loadedModifiedTime;
+
+    /**
+     * True to check the sources for changes in the background and reload when found.
+     */
+    private boolean isWatching = false;
+
+    /**
+     * Time since the sources were last checked for changes.
+     */
+    private float watchTime = 0;
+
+    /**
+     * Check of the newest modification time running in the background, null if none.
+     */
+    private Future<Long> modifiedTimeCheck;
+
     /**
      * Initializes the script loader.
      * @param scriptAPI the script API to use.
@@ -56,51 +96,151 @@ public class GroovyRunner {
             throw new IOError(ex);
         }
 
+        this.path = path;
         this.scriptAPI = scriptAPI;
-        variables = scriptAPI.getVariables();
         // System to get called events from.
-        eventSystem = new EventSystem(variables);
+        eventSystem = new EventSystem(scriptAPI.getVariables());
         ScriptGlobals.getInstance().setEventSystem(eventSystem);
 
-        // Run the main class once to compile.
-        mainBinding = new Binding();
-        mainBinding.setVariable(ScriptAPI.WRAPPER_NAME, scriptAPI);
-        mainBinding.setVariable(ScriptAPI.VARIABLE_NAME, variables);
-        mainBinding.setVariable(ScriptAPI.TRIGGERED_EVENTS, eventSystem.getQueuedEvents());
-        mainBinding.setVariable(ScriptAPI.IS_FIRST_PASS, true);
-
         try {
-            gse.run("Main.groovy", mainBinding);
-            mainBinding.setVariable(ScriptAPI.IS_FIRST_PASS, false);
+            load();
         } catch (ScriptException ex) {
-            throw new InternalError("Script failed to run.");
+            throw new InternalError("Script failed to compile.");
         } catch (ResourceException ex) {
             throw new UnknownError("A resource exception has occurred.");
         }
     }
 
     /**
-     * Updates the groovy scripts.
-     * @param tpf the time passed per frame.
+     * Compiles the main script if needed and creates and initializes a new instance of it.
+     * @throws ScriptException if the scripts fail to compile.
+     * @throws ResourceException if the scripts cannot be read.
+     * @throws RuntimeException if the new instance fails to initialize, the current instance is kept.
      */
-    public void update(float tpf) {
-        long startTime = System.currentTimeMillis();
+    private void load() throws ScriptException, ResourceException {
+        // Take the time first so sources failing to compile are not retried until they change again.
+        loadedModifiedTime = getModifiedTime(path);
+        Class<?> mainClass = gse.loadScriptByName(MAIN_SCRIPT);
+        if (!ScriptMain.class.isAssignableFrom(mainClass)) {
+            throw new ScriptException(MAIN_SCRIPT + " must be a class implementing " + ScriptMain.class.getName());
+        }
+        ScriptMain createdMain;
+        try {
+            createdMain = (ScriptMain) mainClass.newInstance();
+        } catch (InstantiationException ex) {
+            throw new ScriptException("Could not create the main script.", ex);
+        } catch (IllegalAccessException ex) {
+            throw new ScriptException("Could not access the main script.", ex);
+        }
+        // The new instance registers its handlers into a fresh table so a failing initialize leaves the old one.
+        eventSystem.beginHandlers();
+        boolean isInitialized = false;
+        try {
+            createdMain.initialize(scriptAPI);
+            isInitialized = true;
+        } finally {
+            if (isInitialized) {
+                eventSystem.commitHandlers();
+            } else {
+                eventSystem.rollbackHandlers();
+            }
+        }
+        scriptMain = createdMain;
+    }
+
+    /**
+     * Recompiles the changed scripts and starts them again from a new instance.
+     * State kept by the old instance is dropped, and the old instance keeps running with its handlers
+     * if the scripts fail to compile or the new instance fails to initialize.
+     */
+    public void reload() {
         try {
-            // Copy the events and pass all the queued events to the groovy script to parse and run.
-            List<ScriptEvent> events = new LinkedList<ScriptEvent>();
-            events.addAll(eventSystem.getQueuedEvents());
-            // Clear the current events now in case the script creates new queued events.
-            eventSystem.clearQueuedEvents();
-            mainBinding.setVariable(ScriptAPI.TRIGGERED_EVENTS, events);
-            mainBinding.setVariable("tpf", tpf);
-            gse.run("Main.groovy", mainBinding);
+            load();
+            LoggerFactory.getLogger(GroovyRunner.class).info("Reloaded the scripts.");
         } catch (ScriptException ex) {
-            throw new InternalError("Script failed to run.");
+            LoggerFactory.getLogger(GroovyRunner.class).error("Could not reload the scripts.", ex);
         } catch (ResourceException ex) {
-            throw new UnknownError("A resource exception has occurred.");
+            LoggerFactory.getLogger(GroovyRunner.class).error("Could not read the scripts to reload.", ex);
+        } catch (RuntimeException ex) {
+            LoggerFactory.getLogger(GroovyRunner.class).error("Could not initialize the reloaded scripts.", ex);
+        }
+    }
+
+    /**
+     * Updates the groovy scripts.
+     * @param tpf the time passed per frame.
+     */
+    public void update(float tpf) {
+        if (isWatching) {
+            updateWatching(tpf);
         }
-        long duration = System.currentTimeMillis() - startTime;
-        //DebugGlobals.println(duration);
+        scriptMain.update(tpf);
+        eventSystem.dispatchQueuedEvents();
+    }
+
+    /**
+     * Checks the sources for changes in the background and reloads once a check finds any.
+     * @param tpf the time passed per frame.
+     */
+    private void updateWatching(float tpf) {
+        if (modifiedTimeCheck != null) {
+            if (!modifiedTimeCheck.isDone()) {
+                return;
+            }
+            long modifiedTime;
+            try {
+                modifiedTime = modifiedTimeCheck.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (ExecutionException e) {
+                throw new IllegalStateException(e.getCause());
+            } finally {
+                modifiedTimeCheck = null;
+            }
+            if (modifiedTime > loadedModifiedTime) {
+                reload();
+            }
+        }
+        watchTime += tpf;
+        if (watchTime >= WATCH_INTERVAL) {
+            watchTime = 0;
+            final String[] roots = path;
+            modifiedTimeCheck = Threading.getInstance().getExecutor().submit(new Callable<Long>() {
+                @Override
+                public Long call() throws Exception {
+                    return getModifiedTime(roots);
+                }
+            });
+        }
+    }
+
+    /**
+     * @param roots the roots of the script sources.
+     * @return the newest modification time of the script sources under the roots.
+     */
+    private static long getModifiedTime(String[] roots) {
+        long modifiedTime = 0;
+        for (String root : roots) {
+            modifiedTime = Math.max(modifiedTime, getModifiedTime(new File(root)));
+        }
+        return modifiedTime;
+    }
+
+    /**
+     * @param file the file or directory to check.
+     * @return the newest modification time of the script sources in the file or directory.
+     */
+    private static long getModifiedTime(File file) {
+        File[] children = file.listFiles();
+        if (children == null) {
+            return file.getName().endsWith(SCRIPT_EXTENSION) ? file.lastModified() : 0;
+        }
+        long modifiedTime = 0;
+        for (File child : children) {
+            modifiedTime = Math.max(modifiedTime, getModifiedTime(child));
+        }
+        return modifiedTime;
     }
 
     /**
@@ -110,10 +250,27 @@ public class GroovyRunner {
         eventSystem.clearQueuedEvents();
     }
 
+    /**
+     * @param isWatching true to check the sources for changes in the background and reload when found.
+     */
+    public void setIsWatching(boolean isWatching) {
+        this.isWatching = isWatching;
+    }
+
+    /**
+     * @return true if the sources are checked for changes.
+     */
+    public boolean getIsWatching() {
+        return isWatching;
+    }
+
     /**
      * Destroys the runner.
      */
     public void destroy() {
+        if (modifiedTimeCheck != null) {
+            modifiedTimeCheck.cancel(true);
+        }
         gse.getGroovyClassLoader().clearCache();
     }
 }
@@ -28,27 +28,6 @@ import java.util.Map;
  * Functions and variables that the scripts can import and call.
  */
 public final class ScriptAPI {
-    /**
-     * Name of the variable to hold when the script should really start executing.
-     * This allows for setting up the systems in the game first.
-     */
-    public static final String IS_FIRST_PASS = "isFirstPass";
-
-    /**
-     * Name of the variable in the binding that holds all the triggered events.
-     */
-    public static final String TRIGGERED_EVENTS = "triggeredEvents";
-
-    /**
-     * Name of the variable to use to store the API in the wrapper.
-     */
-    public static final String WRAPPER_NAME = "groovyScriptBindings";
-
-    /**
-     * Name for the variables within the binding.
-     */
-    public static final String VARIABLE_NAME = "variables";
-
     /**
      * Variables to set and store.
      */
@@ -165,6 +144,15 @@ public final class ScriptAPI {
         ScriptGlobals.getInstance().addEvent(scriptEvent);
     }
 
+    /**
+     * Registers a handler called for each event of a name on script updates.
+     * @param name the name of the events to handle.
+     * @param handler the handler to call.
+     */
+    public void addEventHandler(String name, ScriptEventHandler handler) {
+        ScriptGlobals.getInstance().addEventHandler(name, handler);
+    }
+
     /**
      * Logs an error and displays it in the console.
      * @param errors the errors to log.
@@ -6,8 +6,20 @@ package com.submu.pug.scripting;
  * Date: 3/15/13
  * Time: 12:15 PM
  * An event that scripts can attach to.
+ * Events queued by the event hooks are pooled and reused after they are dispatched,
+ * so handlers must not keep them or their arguments array.
  */
 public class ScriptEvent {
+    /**
+     * Largest number of arguments a pooled event holds.
+     */
+    public static final int MAX_ARGS = 4;
+
+    /**
+     * ID of the event type, -1 until queued.
+     */
+    private int id = -1;
+
     /**
      * Name of the script event.
      */
@@ -18,6 +30,16 @@ public class ScriptEvent {
      */
     private Object[] args;
 
+    /**
+     * Number of arguments used.
+     */
+    private int argCount;
+
+    /**
+     * True if the event is owned by the event system and reused.
+     */
+    private boolean isPooled;
+
     /**
      * Initializes the event.
      * @param name the name of the script.
@@ -26,19 +48,95 @@ public class ScriptEvent {
     public ScriptEvent(String name, Object... args) {
         this.name = name;
         this.args = args;
+        argCount = args.length;
     }
 
     /**
-     * @return the arguments of the event.
+     * Initializes an event for the event system pool.
+     */
+    ScriptEvent() {
+        args = new Object[MAX_ARGS];
+        isPooled = true;
+    }
+
+    /**
+     * Sets a pooled event.
+     * @param id the ID of the event type.
+     * @param name the name of the event type.
+     * @param argCount the number of arguments used.
+     * @param arg0 the first argument.
+     * @param arg1 the second argument.
+     * @param arg2 the third argument.
+     * @param arg3 the fourth argument.
+     */
+    final void set(int id, String name, int argCount, Object arg0, Object arg1, Object arg2, Object arg3) {
+        this.id = id;
+        this.name = name;
+        this.argCount = argCount;
+        args[0] = arg0;
+        args[1] = arg1;
+        args[2] = arg2;
+        args[3] = arg3;
+    }
+
+    /**
+     * Drops the references of a pooled event.
+     */
+    final void clear() {
+        name = null;
+        argCount = 0;
+        for (int i = 0; i < args.length; i++) {
+            args[i] = null;
+        }
+    }
+
+    /**
+     * @param index the index of the argument.
+     * @param arg the new value of the argument.
+     */
+    final void setArg(int index, Object arg) {
+        args[index] = arg;
+    }
+
+    /**
+     * @param id the ID of the event type.
+     */
+    final void setId(int id) {
+        this.id = id;
+    }
+
+    /**
+     * @return the ID of the event type, -1 if not queued yet.
+     */
+    public final int getId() {
+        return id;
+    }
+
+    /**
+     * @return the arguments of the event, pooled events always have MAX_ARGS entries with the unused ones null.
      */
     public Object[] getArgs() {
         return args;
     }
 
+    /**
+     * @return the number of arguments used.
+     */
+    public final int getArgCount() {
+        return argCount;
+    }
+
     /**
      * @return the name of the event.
      */
     public String getName() {
         return name;
     }
+
+    /**
+     * @return true if the event is owned by the event system and reused.
+     */
+    final boolean getIsPooled() {
+        return isPooled;
+    }
 }
@@ -0,0 +1,12 @@
+package com.submu.pug.scripting;
+
+/**
+ * Handles script events of the name it is registered for.
+ */
+public interface ScriptEventHandler {
+    /**
+     * Called for each queued event of the registered name.
+     * @param event the event to handle.
+     */
+    void onEvent(ScriptEvent event);
+}
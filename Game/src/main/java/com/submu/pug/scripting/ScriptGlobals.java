@@ -40,6 +40,15 @@ public final class ScriptGlobals {
         eventSystem.addQueuedEvent(scriptEvent);
     }
 
+    /**
+     * Registers a handler for the events of a name.
+     * @param name the name of the events to handle.
+     * @param handler the handler to call.
+     */
+    public void addEventHandler(String name, ScriptEventHandler handler) {
+        eventSystem.addHandler(name, handler);
+    }
+
     /**
      * Puts data into the scripting engine.
      * @param name the name of the data.
@@ -49,6 +58,13 @@ public final class ScriptGlobals {
         eventSystem.putData(name, data);
     }
 
+    /**
+     * @return the event system the hooks queue events into.
+     */
+    public EventSystem getEventSystem() {
+        return eventSystem;
+    }
+
     /**
      * @param eventSystem the event system to set.
      */
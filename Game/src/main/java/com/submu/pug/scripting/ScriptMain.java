@@ -0,0 +1,19 @@
+package com.submu.pug.scripting;
+
+/**
+ * Entry point the main script class implements.
+ * The class is compiled and created once and then called directly every update.
+ */
+public interface ScriptMain {
+    /**
+     * Sets up the scripts and registers their event handlers.
+     * @param scriptAPI the api the scripts can use.
+     */
+    void initialize(ScriptAPI scriptAPI);
+
+    /**
+     * Runs the work the scripts do every update.
+     * @param tpf the time passed per update.
+     */
+    void update(float tpf);
+}
@@ -2,7 +2,7 @@ package com.submu.pug.scripting.events;
 
 import com.exploringlines.entitysystem.Entity;
 import com.submu.pug.game.objects.systems.AISystem;
-import com.submu.pug.scripting.ScriptEvent;
+import com.submu.pug.scripting.EventSystem;
 import com.submu.pug.scripting.ScriptGlobals;
 
 /**
@@ -22,6 +22,17 @@ public class EventAI implements EventHook {
      */
     public static final String EVENT_LEAVE_COMBAT = "eventLeaveCombat";
 
+    /**
+     * Event system to queue the events into.
+     */
+    private EventSystem eventSystem = ScriptGlobals.getInstance().getEventSystem();
+
+    /**
+     * IDs of the events.
+     */
+    private int combatId = eventSystem.getEventId(EVENT_COMBAT),
+            leaveCombatId = eventSystem.getEventId(EVENT_LEAVE_COMBAT);
+
     /**
      * Initializes the event hook.
      * @param aiSystem the AI system to hook to.
@@ -30,12 +41,12 @@ public class EventAI implements EventHook {
         aiSystem.setCallbacks(new AISystem.Callbacks() {
             @Override
             public void onCombat(Entity entity, Entity target, String script) {
-                ScriptGlobals.getInstance().addEvent(new ScriptEvent(EVENT_COMBAT, entity, target, script));
+                eventSystem.queueEvent(combatId, entity, target, script);
             }
 
             @Override
             public void onLeaveCombat(Entity entity) {
-                ScriptGlobals.getInstance().addEvent(new ScriptEvent(EVENT_LEAVE_COMBAT, entity));
+                eventSystem.queueEvent(leaveCombatId, entity);
             }
         });
     }
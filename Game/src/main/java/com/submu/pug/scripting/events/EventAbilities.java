@@ -3,7 +3,7 @@ package com.submu.pug.scripting.events;
 import com.exploringlines.entitysystem.Entity;
 import com.jme3.math.Vector3f;
 import com.submu.pug.game.objects.systems.AbilitySystem;
-import com.submu.pug.scripting.ScriptEvent;
+import com.submu.pug.scripting.EventSystem;
 import com.submu.pug.scripting.ScriptGlobals;
 
 /**
@@ -35,6 +35,19 @@ public class EventAbilities implements EventHook {
      */
     public static final String EVENT_ABILITY_UPGRADE = "eventAbilityUpgrade";
 
+    /**
+     * Event system to queue the events into.
+     */
+    private EventSystem eventSystem = ScriptGlobals.getInstance().getEventSystem();
+
+    /**
+     * IDs of the events.
+     */
+    private int castBeginId = eventSystem.getEventId(EVENT_ABILITY_CAST_BEGIN),
+            castId = eventSystem.getEventId(EVENT_ABILITY_CAST),
+            cancelId = eventSystem.getEventId(EVENT_ABILITY_CANCEL),
+            upgradeId = eventSystem.getEventId(EVENT_ABILITY_UPGRADE);
+
     /**
      * Initializes the hook.
      * @param abilitySystem the ability system to get ability information from.
@@ -43,19 +56,19 @@ public class EventAbilities implements EventHook {
         abilitySystem.setCallbacks(new AbilitySystem.Callbacks() {
             @Override
             public void onAbilityCastBegin(Entity entity, int index, String internalName, Vector3f target) {
-                ScriptGlobals.getInstance().addEvent(new ScriptEvent(EVENT_ABILITY_CAST_BEGIN, entity, index, internalName, target));
+                eventSystem.queueEvent(castBeginId, entity, index, internalName, target);
             }
             @Override
             public void onAbilityCast(Entity entity, int index, String internalName, Vector3f target) {
-                ScriptGlobals.getInstance().addEvent(new ScriptEvent(EVENT_ABILITY_CAST, entity, index, internalName, target));
+                eventSystem.queueEvent(castId, entity, index, internalName, target);
             }
             @Override
             public void onAbilityCancel(Entity entity, int index, String internalName, Vector3f target) {
-                ScriptGlobals.getInstance().addEvent(new ScriptEvent(EVENT_ABILITY_CANCEL, entity, index, internalName, target));
+                eventSystem.queueEvent(cancelId, entity, index, internalName, target);
             }
             @Override
             public void onAbilityUpgrade(Entity entity, int index, String upgrade, int level) {
-                ScriptGlobals.getInstance().addEvent(new ScriptEvent(EVENT_ABILITY_UPGRADE, entity, index, upgrade, level));
+                eventSystem.queueEvent(upgradeId, entity, index, upgrade, level);
             }
         });
     }
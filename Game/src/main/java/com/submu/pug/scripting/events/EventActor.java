@@ -3,7 +3,7 @@ package com.submu.pug.scripting.events;
 import com.exploringlines.entitysystem.Entity;
 import com.submu.pug.game.objects.ActorCallbacks;
 import com.submu.pug.game.objects.GameObjectFactory;
-import com.submu.pug.scripting.ScriptEvent;
+import com.submu.pug.scripting.EventSystem;
 import com.submu.pug.scripting.ScriptGlobals;
 
 /**
@@ -26,6 +26,18 @@ public class EventActor implements EventHook {
      */
     public static final String VAR_LAST_CREATED_ACTOR = "varLastCreatedActor";
 
+    /**
+     * Event system to queue the events into.
+     */
+    private EventSystem eventSystem = ScriptGlobals.getInstance().getEventSystem();
+
+    /**
+     * IDs of the events.
+     */
+    private int createdId = eventSystem.getEventId(EVENT_ACTOR_CREATED),
+            changedId = eventSystem.getEventId(EVENT_ACTOR_CHANGED),
+            removedId = eventSystem.getEventId(EVENT_ACTOR_REMOVED);
+
     /**
      * Callbacks to hook into the world with.
      */
@@ -40,17 +52,17 @@ public class EventActor implements EventHook {
             @Override
             public void onActorCreated(Entity entity) {
                 ScriptGlobals.getInstance().putData(VAR_LAST_CREATED_ACTOR, entity);
-                ScriptGlobals.getInstance().addEvent(new ScriptEvent(EVENT_ACTOR_CREATED, entity));
+                eventSystem.queueEvent(createdId, entity);
             }
 
             @Override
             public void onActorChanged(Entity entity) {
-                ScriptGlobals.getInstance().addEvent(new ScriptEvent(EVENT_ACTOR_CHANGED, entity));
+                eventSystem.queueEvent(changedId, entity);
             }
 
             @Override
             public void onActorRemoved(Entity entity) {
-                ScriptGlobals.getInstance().addEvent(new ScriptEvent(EVENT_ACTOR_REMOVED, entity));
+                eventSystem.queueEvent(removedId, entity);
             }
         };
         gameObjectFactory.setCallbacks(callbacks);
@@ -4,7 +4,7 @@ import com.exploringlines.entitysystem.Entity;
 import com.jme3.scene.Spatial;
 import com.submu.pug.game.world.AtmosphereCallbacks;
 import com.submu.pug.game.world.AtmosphereSystem;
-import com.submu.pug.scripting.ScriptEvent;
+import com.submu.pug.scripting.EventSystem;
 import com.submu.pug.scripting.ScriptGlobals;
 
 /**
@@ -32,6 +32,19 @@ public class EventAtmosphere implements EventHook {
      */
     public static final String VAR_LAST_CREATED_LIGHT = "varLastCreatedLight";
 
+    /**
+     * Event system to queue the events into.
+     */
+    private EventSystem eventSystem = ScriptGlobals.getInstance().getEventSystem();
+
+    /**
+     * IDs of the events.
+     */
+    private int lightCreatedId = eventSystem.getEventId(EVENT_LIGHT_CREATED),
+            lightChangedId = eventSystem.getEventId(EVENT_LIGHT_CHANGED),
+            lightRemovedId = eventSystem.getEventId(EVENT_LIGHT_REMOVED),
+            skyboxChangedId = eventSystem.getEventId(EVENT_SKYBOX_CHANGED);
+
     /**
      * Initializes the atmosphere.
      * @param atmosphereSystem the atmosphere to hook to.
@@ -40,23 +53,23 @@ public class EventAtmosphere implements EventHook {
         atmosphereSystem.setCallbacks(new AtmosphereCallbacks() {
             @Override
             public void onLightCreated(Entity entity) {
-                ScriptGlobals.getInstance().addEvent(new ScriptEvent(EVENT_LIGHT_CREATED, entity));
+                eventSystem.queueEvent(lightCreatedId, entity);
                 ScriptGlobals.getInstance().putData(VAR_LAST_CREATED_LIGHT, entity);
             }
 
             @Override
             public void onLightChanged(Entity entity) {
-                ScriptGlobals.getInstance().addEvent(new ScriptEvent(EVENT_LIGHT_CHANGED, entity));
+                eventSystem.queueEvent(lightChangedId, entity);
             }
 
             @Override
             public void onLightRemoved(Entity entity) {
-                ScriptGlobals.getInstance().addEvent(new ScriptEvent(EVENT_LIGHT_REMOVED, entity));
+                eventSystem.queueEvent(lightRemovedId, entity);
             }
 
             @Override
             public void onSkyboxChanged(Spatial skybox) {
-                ScriptGlobals.getInstance().addEvent(new ScriptEvent(EVENT_SKYBOX_CHANGED, skybox));
+                eventSystem.queueEvent(skyboxChangedId, skybox);
             }
         });
     }
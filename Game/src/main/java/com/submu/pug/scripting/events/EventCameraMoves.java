@@ -2,7 +2,7 @@ package com.submu.pug.scripting.events;
 
 import com.jme3.math.Vector3f;
 import com.jme3.renderer.Camera;
-import com.submu.pug.scripting.ScriptEvent;
+import com.submu.pug.scripting.EventSystem;
 import com.submu.pug.scripting.ScriptGlobals;
 
 /**
@@ -18,6 +18,16 @@ public class EventCameraMoves implements EventHook {
      */
     public static final String EVENT_CAMERA_MOVEMENT = "eventCameraMovement";
 
+    /**
+     * Event system to queue the events into.
+     */
+    private EventSystem eventSystem = ScriptGlobals.getInstance().getEventSystem();
+
+    /**
+     * ID of the event.
+     */
+    private int movementId = eventSystem.getEventId(EVENT_CAMERA_MOVEMENT);
+
     /**
      * Camera to track movements of.
      */
@@ -39,8 +49,8 @@ public class EventCameraMoves implements EventHook {
 
     @Override
     public void updateEvent(float tpf) {
-        if (!lastLocation.equals(camera.getLocation())) {
-            ScriptGlobals.getInstance().addEvent(new ScriptEvent(EVENT_CAMERA_MOVEMENT, camera.getLocation(), lastLocation));
+        if (eventSystem.isSubscribed(movementId) && !lastLocation.equals(camera.getLocation())) {
+            eventSystem.queueEvent(movementId, camera.getLocation(), lastLocation);
         }
         lastLocation.set(camera.getLocation());
     }
@@ -3,7 +3,7 @@ package com.submu.pug.scripting.events;
 import com.halboom.pgt.physics.PhysicsSystem;
 import com.halboom.pgt.physics.simple.CollisionCallbacks;
 import com.halboom.pgt.physics.simple.CollisionInformation;
-import com.submu.pug.scripting.ScriptEvent;
+import com.submu.pug.scripting.EventSystem;
 import com.submu.pug.scripting.ScriptGlobals;
 
 /**
@@ -21,25 +21,42 @@ public class EventCollider implements EventHook {
             EVENT_STATIC_COLLIDED = "eventStaticCollided",
             EVENT_SENSOR_COLLIDED = "eventSensorCollided";
 
+    /**
+     * Event system to queue the events into.
+     */
+    private EventSystem eventSystem = ScriptGlobals.getInstance().getEventSystem();
+
+    /**
+     * IDs of the events.
+     */
+    private int tileId = eventSystem.getEventId(EVENT_TILE_COLLIDED),
+            staticId = eventSystem.getEventId(EVENT_STATIC_COLLIDED),
+            sensorId = eventSystem.getEventId(EVENT_SENSOR_COLLIDED);
+
     /**
      * Initializes the event.
      * @param physicsSystem the system to hook the events to.
      */
     public EventCollider(PhysicsSystem physicsSystem) {
+        // Keep one bounds collision per collider and collidee pair each update, passed after the information.
+        eventSystem.setCoalescing(staticId, 1, 2);
+        eventSystem.setCoalescing(sensorId, 1, 2);
         physicsSystem.addCollisionCallbacks(new CollisionCallbacks() {
             @Override
             public void onBlockerCollide(CollisionInformation collisionInformation) {
-                ScriptGlobals.getInstance().addEvent(new ScriptEvent(EVENT_STATIC_COLLIDED, collisionInformation));
+                eventSystem.queueEvent(staticId, collisionInformation, collisionInformation.getCollider(),
+                        collisionInformation.getCollidee());
             }
 
             @Override
             public void onSensorCollide(CollisionInformation collisionInformation) {
-                ScriptGlobals.getInstance().addEvent(new ScriptEvent(EVENT_SENSOR_COLLIDED, collisionInformation));
+                eventSystem.queueEvent(sensorId, collisionInformation, collisionInformation.getCollider(),
+                        collisionInformation.getCollidee());
             }
 
             @Override
             public void onTileCollide(CollisionInformation collisionInformation) {
-                ScriptGlobals.getInstance().addEvent(new ScriptEvent(EVENT_TILE_COLLIDED, collisionInformation));
+                eventSystem.queueEvent(tileId, collisionInformation);
             }
         });
     }
@@ -2,7 +2,7 @@ package com.submu.pug.scripting.events;
 
 import com.exploringlines.entitysystem.Entity;
 import com.submu.pug.game.objects.systems.ItemSystem;
-import com.submu.pug.scripting.ScriptEvent;
+import com.submu.pug.scripting.EventSystem;
 import com.submu.pug.scripting.ScriptGlobals;
 
 /**
@@ -19,6 +19,17 @@ public class EventItem implements EventHook {
     public static final String EVENT_ITEM_PICK_UP = "eventItemPickUp",
                                EVENT_ITEM_DROP = "eventItemDrop";
 
+    /**
+     * Event system to queue the events into.
+     */
+    private EventSystem eventSystem = ScriptGlobals.getInstance().getEventSystem();
+
+    /**
+     * IDs of the events.
+     */
+    private int pickUpId = eventSystem.getEventId(EVENT_ITEM_PICK_UP),
+            dropId = eventSystem.getEventId(EVENT_ITEM_DROP);
+
     /**
      * Initializes the hook.
      * @param itemSystem the item system to attach callbacks to.
@@ -27,12 +38,12 @@ public class EventItem implements EventHook {
         itemSystem.setCallbacks(new ItemSystem.Callbacks() {
             @Override
             public void onItemPickup(Entity entity, Entity item) {
-                ScriptGlobals.getInstance().addEvent(new ScriptEvent(EVENT_ITEM_PICK_UP, entity, item));
+                eventSystem.queueEvent(pickUpId, entity, item);
             }
 
             @Override
             public void onItemDrop(Entity entity, Entity item) {
-                ScriptGlobals.getInstance().addEvent(new ScriptEvent(EVENT_ITEM_DROP, entity, item));
+                eventSystem.queueEvent(dropId, entity, item);
             }
         });
     }
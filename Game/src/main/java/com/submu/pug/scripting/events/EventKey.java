@@ -6,7 +6,7 @@ import com.jme3.input.InputManager;
 import com.submu.pug.data.KeyMap;
 import com.submu.pug.game.objects.Player;
 import com.submu.pug.game.objects.systems.AbilitySystem;
-import com.submu.pug.scripting.ScriptEvent;
+import com.submu.pug.scripting.EventSystem;
 import com.submu.pug.scripting.ScriptGlobals;
 
 /**
@@ -33,6 +33,18 @@ public class EventKey extends InputActions implements EventHook {
      */
     public static final String EVENT_KEY_RELEASED = "eventKeyReleased";
 
+    /**
+     * Event system to queue the events into.
+     */
+    private EventSystem eventSystem = ScriptGlobals.getInstance().getEventSystem();
+
+    /**
+     * IDs of the events.
+     */
+    private int analogId = eventSystem.getEventId(EVENT_ANALOG),
+            pressedId = eventSystem.getEventId(EVENT_KEY_PRESSED),
+            releasedId = eventSystem.getEventId(EVENT_KEY_RELEASED);
+
     /**
      * Player that the event is attached to.
      */
@@ -72,11 +84,13 @@ public class EventKey extends InputActions implements EventHook {
         registerAction(KeyMap.gameAbility3);
         registerAction(KeyMap.look);
         registerAction(KeyMap.use);
+        // Keep one analog event per key each update holding the value of every analog event of the key.
+        eventSystem.setCoalescing(analogId, 0);
+        eventSystem.setSummedArg(analogId, 1);
     }
 
     @Override
     protected void onActionInput(String name, boolean isPressed, float tpf) {
-        ScriptEvent event;
         // Only allow action triggers when the GUI is not active.
         if (!isGUIActivated) {
             if (name.equals(KeyMap.gameAbility1.name)) {
@@ -90,12 +104,7 @@ public class EventKey extends InputActions implements EventHook {
             }
         }
         // Send the key input to the scripting system.
-        if (isPressed) {
-            event = new ScriptEvent(EVENT_KEY_PRESSED, name, player, isGUIActivated);
-        } else {
-            event = new ScriptEvent(EVENT_KEY_RELEASED, name, player, isGUIActivated);
-        }
-        ScriptGlobals.getInstance().addEvent(event);
+        eventSystem.queueEvent(isPressed ? pressedId : releasedId, name, player, isGUIActivated);
     }
 
     @Override
@@ -112,8 +121,10 @@ public class EventKey extends InputActions implements EventHook {
                 abilitySystem.onHotkeyAnalog(player, AbilitySystem.HOTKEY_JUMP);
             }
         }
-        ScriptEvent event = new ScriptEvent(EVENT_ANALOG, name, value, player, isGUIActivated);
-        ScriptGlobals.getInstance().addEvent(event);
+        // Analog events come every update a key is held so skip boxing the value when nothing listens.
+        if (eventSystem.isSubscribed(analogId)) {
+            eventSystem.queueEvent(analogId, name, value, player, isGUIActivated);
+        }
     }
 
     /**
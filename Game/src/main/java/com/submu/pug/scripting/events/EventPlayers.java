@@ -3,7 +3,7 @@ package com.submu.pug.scripting.events;
 import com.submu.pug.game.objects.Player;
 import com.submu.pug.game.objects.PlayerAssigner;
 import com.submu.pug.game.objects.PlayerCallbacks;
-import com.submu.pug.scripting.ScriptEvent;
+import com.submu.pug.scripting.EventSystem;
 import com.submu.pug.scripting.ScriptGlobals;
 
 /**
@@ -23,6 +23,16 @@ public class EventPlayers implements EventHook {
      */
     public static final String VAR_LAST_JOINED_PLAYER = "varLastJoinedPlayer";
 
+    /**
+     * Event system to queue the events into.
+     */
+    private EventSystem eventSystem = ScriptGlobals.getInstance().getEventSystem();
+
+    /**
+     * ID of the event.
+     */
+    private int joinedId = eventSystem.getEventId(EVENT_PLAYER_JOINED);
+
     /**
      * Callbacks for the game session.
      */
@@ -37,7 +47,7 @@ public class EventPlayers implements EventHook {
             @Override
             public void onPlayerAdded(Player player) {
                 ScriptGlobals.getInstance().putData(VAR_LAST_JOINED_PLAYER, player);
-                ScriptGlobals.getInstance().addEvent(new ScriptEvent(EVENT_PLAYER_JOINED, player));
+                eventSystem.queueEvent(joinedId, player);
             }
         };
         playerAssigner.setCallbacks(callbacks);
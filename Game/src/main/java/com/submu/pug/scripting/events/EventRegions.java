@@ -3,7 +3,7 @@ package com.submu.pug.scripting.events;
 import com.exploringlines.entitysystem.Entity;
 import com.halboom.pgt.physics.simple.shapes.Bounds;
 import com.submu.pug.game.world.Regions;
-import com.submu.pug.scripting.ScriptEvent;
+import com.submu.pug.scripting.EventSystem;
 import com.submu.pug.scripting.ScriptGlobals;
 
 /**
@@ -21,6 +21,18 @@ public class EventRegions implements EventHook {
     EVENT_REGION_INSIDE = "eventRegionInside",
     EVENT_REGION_LEAVE = "eventRegionLeave";
 
+    /**
+     * Event system to queue the events into.
+     */
+    private EventSystem eventSystem = ScriptGlobals.getInstance().getEventSystem();
+
+    /**
+     * IDs of the events.
+     */
+    private int enterId = eventSystem.getEventId(EVENT_REGION_ENTER),
+            insideId = eventSystem.getEventId(EVENT_REGION_INSIDE),
+            leaveId = eventSystem.getEventId(EVENT_REGION_LEAVE);
+
     /**
      * Initializes the class.
      * @param regions the regions to set the callbacks to.
@@ -29,17 +41,17 @@ public class EventRegions implements EventHook {
         regions.setCallbacks(new Regions.Callbacks() {
             @Override
             public void onEntityEnters(String name, Bounds bounds, Entity entity) {
-                ScriptGlobals.getInstance().addEvent(new ScriptEvent(EVENT_REGION_ENTER, name, bounds, entity));
+                eventSystem.queueEvent(enterId, name, bounds, entity);
             }
 
             @Override
             public void onEntityInside(String name, Bounds bounds, Entity entity) {
-                ScriptGlobals.getInstance().addEvent(new ScriptEvent(EVENT_REGION_INSIDE, name, bounds, entity));
+                eventSystem.queueEvent(insideId, name, bounds, entity);
             }
 
             @Override
             public void onEntityLeaves(String name, Bounds bounds, Entity entity) {
-                ScriptGlobals.getInstance().addEvent(new ScriptEvent(EVENT_REGION_LEAVE, name, bounds, entity));
+                eventSystem.queueEvent(leaveId, name, bounds, entity);
             }
         });
     }
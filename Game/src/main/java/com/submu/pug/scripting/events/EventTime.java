@@ -1,6 +1,6 @@
 package com.submu.pug.scripting.events;
 
-import com.submu.pug.scripting.ScriptEvent;
+import com.submu.pug.scripting.EventSystem;
 import com.submu.pug.scripting.ScriptGlobals;
 import com.submu.pug.util.math.Units;
 
@@ -31,6 +31,17 @@ public class EventTime implements  EventHook {
      */
     public static final String VAR_TIME_ELAPSED = "varTimeElapsed";
 
+    /**
+     * Event system to queue the events into.
+     */
+    private EventSystem eventSystem = ScriptGlobals.getInstance().getEventSystem();
+
+    /**
+     * IDs of the events.
+     */
+    private int initializationId = eventSystem.getEventId(EVENT_INITIALIZATION),
+            periodicId = eventSystem.getEventId(EVENT_PERIODIC);
+
     /**
      * Total time elapsed for a map.
      */
@@ -45,9 +56,11 @@ public class EventTime implements  EventHook {
     @Override
     public void updateEvent(float tpf) {
         if (timeElapsed <= Units.TOLERANCE) {
-            ScriptGlobals.getInstance().addEvent(new ScriptEvent(EVENT_INITIALIZATION));
+            eventSystem.queueEvent(initializationId);
+        }
+        if (eventSystem.isSubscribed(periodicId)) {
+            eventSystem.queueEvent(periodicId, timeElapsed);
         }
-        ScriptGlobals.getInstance().addEvent(new ScriptEvent(EVENT_PERIODIC, timeElapsed));
         ScriptGlobals.getInstance().putData(VAR_TIME_ELAPSED, timeElapsed);
         timeElapsed += tpf;
     }
@@ -0,0 +1,81 @@
+package com.submu.pug.util;
+
+/**
+ * Accumulates frame time and hands it out in fixed logic steps.
+ * The number of steps per frame is capped so a slow frame drops time instead of falling further behind.
+ */
+public class FixedTimestep {
+    /**
+     * Largest interpolation below a whole step.
+     */
+    private static final float MAX_INTERPOLATION = Math.nextAfter(1f, 0);
+
+    /**
+     * Size of each logic step in seconds.
+     */
+    private float stepSize;
+
+    /**
+     * Maximum number of steps to run for one frame.
+     */
+    private int maxStepsPerFrame;
+
+    /**
+     * Time accumulated that has not been stepped yet.
+     */
+    private float accumulator = 0;
+
+    /**
+     * Initializes the timestep.
+     * @param stepsPerSecond the number of logic steps per second.
+     * @param maxStepsPerFrame the maximum number of steps to run for one frame.
+     */
+    public FixedTimestep(float stepsPerSecond, int maxStepsPerFrame) {
+        this.stepSize = 1f / stepsPerSecond;
+        this.maxStepsPerFrame = maxStepsPerFrame;
+    }
+
+    /**
+     * Adds the time of a frame and consumes the steps it completes.
+     * @param tpf the time passed for the frame.
+     * @return the number of logic steps to run.
+     */
+    public final int advance(float tpf) {
+        accumulator += tpf;
+        int steps = (int) (accumulator / stepSize);
+        if (steps > maxStepsPerFrame) {
+            // Drop the time that cannot be caught up on and keep the partial step.
+            steps = maxStepsPerFrame;
+            accumulator %= stepSize;
+        } else {
+            accumulator -= steps * stepSize;
+        }
+        // Guard against the remainder going negative through rounding.
+        if (accumulator < 0) {
+            accumulator = 0;
+        }
+        return steps;
+    }
+
+    /**
+     * Drops the accumulated time such as after loading or unpausing.
+     */
+    public final void reset() {
+        accumulator = 0;
+    }
+
+    /**
+     * @return how far between the last logic step and the next the frame is, from 0 up to but excluding 1.
+     */
+    public final float getInterpolation() {
+        // A remainder just below the step size can round up to a whole step when divided.
+        return Math.min(MAX_INTERPOLATION, accumulator / stepSize);
+    }
+
+    /**
+     * @return the size of each logic step in seconds.
+     */
+    public final float getStepSize() {
+        return stepSize;
+    }
+}
@@ -0,0 +1,220 @@
+package com.submu.pug.game;
+
+import com.exploringlines.entitysystem.Entity;
+import com.exploringlines.entitysystem.EntitySystem;
+import com.halboom.pgt.physics.simple.shapes.BoundsBox;
+import com.jme3.math.Vector3f;
+import com.submu.pug.game.objects.Player;
+import com.submu.pug.game.objects.PlayerAssigner;
+import com.submu.pug.game.objects.components.ActorComponent;
+import com.submu.pug.game.objects.components.CreatorComponent;
+import com.submu.pug.game.objects.components.FilterFlagComponent;
+import com.submu.pug.game.objects.components.OwnerComponent;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Tests that the compiled collision filter matches looking up the filter components of each pair.
+ */
+public class CollisionFilterTest {
+    private static final int PLAYERS = 6;
+    private static final int ENTITIES = 40;
+    private static final int TYPES = 3;
+
+    private Random random;
+    private EntitySystem entitySystem;
+    private PlayerAssigner playerAssigner;
+    private List<Player> players;
+    private List<BoundsBox> bounds;
+    private CollisionFilter collisionFilter;
+
+    @Before
+    /**
+     * Create players with random alliances and entities with random filter components.
+     */
+    public void setUp() throws Exception {
+        random = new Random(7);
+        entitySystem = new EntitySystem();
+        playerAssigner = new PlayerAssigner();
+        players = new ArrayList<Player>(playerAssigner.getPlayers());
+        for (int i = 1; i <= PLAYERS; i++) {
+            players.add(playerAssigner.createPlayer(i));
+        }
+        randomizeAlliances();
+
+        bounds = new ArrayList<BoundsBox>();
+        for (int i = 0; i < ENTITIES; i++) {
+            BoundsBox box = new BoundsBox(new Vector3f(), 0.5f, 0.5f, 0.5f);
+            box.setEntity(entitySystem.createEntity());
+            bounds.add(box);
+        }
+        for (BoundsBox box : bounds) {
+            randomizeComponents(box.getEntity());
+        }
+        collisionFilter = new CollisionFilter(entitySystem, playerAssigner);
+    }
+
+    /**
+     * Sets random alliances between the players.
+     */
+    private void randomizeAlliances() {
+        for (int i = 0; i < PLAYERS * 2; i++) {
+            Player player1 = players.get(random.nextInt(players.size()));
+            Player player2 = players.get(random.nextInt(players.size()));
+            playerAssigner.setAlliance(player1, player2, random.nextBoolean() ? PlayerAssigner.AllianceStatus.ALLIED
+                    : PlayerAssigner.AllianceStatus.HOSTILE);
+        }
+    }
+
+    /**
+     * Sets random filter components on an entity, leaving some of them out.
+     * @param entity the entity to set the components of.
+     */
+    private void randomizeComponents(Entity entity) {
+        if (random.nextInt(3) > 0) {
+            FilterFlagComponent filter = new FilterFlagComponent();
+            filter.collidesSelf = random.nextBoolean();
+            filter.collidesOwner = random.nextBoolean();
+            filter.collidesCreator = random.nextBoolean();
+            filter.collidesSharedCreator = random.nextBoolean();
+            filter.collidesAlly = random.nextBoolean();
+            filter.collidesEnemy = random.nextBoolean();
+            filter.collidesNeutral = random.nextBoolean();
+            filter.collidesSame = random.nextBoolean();
+            entitySystem.setComponent(entity, filter);
+        }
+        if (random.nextInt(4) > 0) {
+            OwnerComponent owner = new OwnerComponent();
+            owner.playerID = players.get(random.nextInt(players.size())).getId();
+            entitySystem.setComponent(entity, owner);
+        }
+        if (random.nextBoolean()) {
+            CreatorComponent creator = new CreatorComponent();
+            creator.creator = bounds.get(random.nextInt(bounds.size() / 4)).getEntity();
+            entitySystem.setComponent(entity, creator);
+        }
+        if (random.nextInt(4) > 0) {
+            ActorComponent actor = new ActorComponent();
+            actor.type = "type" + random.nextInt(TYPES);
+            entitySystem.setComponent(entity, actor);
+        }
+    }
+
+    /**
+     * Filters a pair by looking up the components of both entities, the way the filter did before compiling.
+     * @param entity1 the entity whose filter is used.
+     * @param entity2 the entity to filter against.
+     * @return true if the entities can collide.
+     */
+    private boolean filterByLookup(Entity entity1, Entity entity2) {
+        FilterFlagComponent filter = entitySystem.getComponent(entity1, FilterFlagComponent.class);
+        if (filter == null) {
+            return true;
+        }
+        if (!filter.collidesSelf && entity1.equals(entity2)) {
+            return false;
+        }
+        OwnerComponent owner1 = entitySystem.getComponent(entity1, OwnerComponent.class);
+        OwnerComponent owner2 = entitySystem.getComponent(entity2, OwnerComponent.class);
+        if (owner1 != null && owner2 != null) {
+            Player player1 = playerAssigner.getPlayer(owner1.playerID);
+            Player player2 = playerAssigner.getPlayer(owner2.playerID);
+            if (!filter.collidesOwner && owner1.playerID == owner2.playerID) {
+                return false;
+            }
+            if (!filter.collidesAlly && playerAssigner.arePlayersAllied(player1, player2)) {
+                return false;
+            }
+            if (!filter.collidesEnemy && playerAssigner.arePlayersEnemies(player1, player2)) {
+                return false;
+            }
+        }
+        CreatorComponent creator1 = entitySystem.getComponent(entity1, CreatorComponent.class);
+        CreatorComponent creator2 = entitySystem.getComponent(entity2, CreatorComponent.class);
+        if (!filter.collidesCreator && creator1 != null && creator1.creator.equals(entity2)) {
+            return false;
+        }
+        if (!filter.collidesSharedCreator && creator1 != null && creator2 != null
+                && creator1.creator.equals(creator2.creator)) {
+            return false;
+        }
+        if (!filter.collidesNeutral && owner2 != null
+                && playerAssigner.getPlayer(owner2.playerID).equals(playerAssigner.getNeutralPassivePlayer())) {
+            return false;
+        }
+        ActorComponent actor1 = entitySystem.getComponent(entity1, ActorComponent.class);
+        ActorComponent actor2 = entitySystem.getComponent(entity2, ActorComponent.class);
+        if (!filter.collidesSame && actor1 != null && actor2 != null && actor1.type.equals(actor2.type)) {
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Checks every pair of entities against looking up their components.
+     */
+    private void assertMatchesLookup() {
+        for (BoundsBox bounds1 : bounds) {
+            for (BoundsBox bounds2 : bounds) {
+                Assert.assertEquals(filterByLookup(bounds1.getEntity(), bounds2.getEntity()),
+                        collisionFilter.filterBounds(bounds1, bounds2));
+            }
+        }
+    }
+
+    /**
+     * Runs the filter's update and ends the frame like the game session does.
+     */
+    private void update() {
+        collisionFilter.update(0.1f);
+        entitySystem.flushSetChanges();
+    }
+
+    @Test
+    /**
+     * Test entities compiled on the fly before the first update and compiled records after it.
+     */
+    public void testMatchesLookup() throws Exception {
+        assertMatchesLookup();
+        update();
+        assertMatchesLookup();
+    }
+
+    @Test
+    /**
+     * Test that the records follow components and alliances changing between updates.
+     */
+    public void testChanges() throws Exception {
+        update();
+        for (int i = 0; i < 5; i++) {
+            for (int j = 0; j < ENTITIES / 4; j++) {
+                randomizeComponents(bounds.get(random.nextInt(ENTITIES)).getEntity());
+            }
+            randomizeAlliances();
+            update();
+            assertMatchesLookup();
+        }
+    }
+
+    @Test
+    /**
+     * Test changing an actor type in place then setting the component again, as the script bindings do.
+     */
+    public void testActorTypeChange() throws Exception {
+        update();
+        for (BoundsBox box : bounds) {
+            ActorComponent actor = entitySystem.getComponent(box.getEntity(), ActorComponent.class);
+            if (actor != null) {
+                actor.type = "type" + random.nextInt(TYPES);
+                entitySystem.setComponent(box.getEntity(), actor);
+            }
+        }
+        update();
+        assertMatchesLookup();
+    }
+}
@@ -0,0 +1,214 @@
+package com.submu.pug.game.objects.systems;
+
+import com.exploringlines.entitysystem.Entity;
+import com.exploringlines.entitysystem.EntitySystem;
+import com.halboom.pgt.entityspatial.TransformComponent;
+import com.halboom.pgt.physics.simple.BoundsSystem;
+import com.halboom.pgt.physics.simple.CollisionResolver;
+import com.halboom.pgt.physics.simple.components.AABBComponent;
+import com.halboom.pgt.physics.simple.components.CollisionComponent;
+import com.halboom.pgt.physics.simple.shapes.Bounds;
+import com.halboom.pgt.physics.simple.shapes.BoundsBox;
+import com.halboom.pgt.physics.simple.shapes.BoundsSphere;
+import com.jme3.math.Vector3f;
+import com.submu.pug.game.CollisionFilter;
+import com.submu.pug.game.objects.Player;
+import com.submu.pug.game.objects.PlayerAssigner;
+import com.submu.pug.game.objects.components.FilterFlagComponent;
+import com.submu.pug.game.objects.components.OwnerComponent;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Tests that the perception finds the same nearest hostile as filtering every entity with the collision filter.
+ */
+public class AIPerceptionTest {
+    private static final int PLAYERS = 5;
+    private static final int ENTITIES = 300;
+    private static final float WORLD_SIZE = 60f;
+
+    private Random random;
+    private EntitySystem entitySystem;
+    private PlayerAssigner playerAssigner;
+    private List<Player> players;
+    private List<Entity> entities;
+    private BoundsSystem boundsSystem;
+    private CollisionFilter collisionFilter;
+    private AIPerception perception;
+
+    @Before
+    /**
+     * Create players with random alliances and entities with random positions, owners and collision groups.
+     */
+    public void setUp() throws Exception {
+        random = new Random(11);
+        entitySystem = new EntitySystem();
+        playerAssigner = new PlayerAssigner();
+        players = new ArrayList<Player>(playerAssigner.getPlayers());
+        for (int i = 1; i <= PLAYERS; i++) {
+            players.add(playerAssigner.createPlayer(i));
+        }
+        for (int i = 0; i < PLAYERS * 2; i++) {
+            Player player1 = players.get(random.nextInt(players.size()));
+            Player player2 = players.get(random.nextInt(players.size()));
+            playerAssigner.setAlliance(player1, player2, random.nextBoolean() ? PlayerAssigner.AllianceStatus.ALLIED
+                    : PlayerAssigner.AllianceStatus.HOSTILE);
+        }
+
+        entities = new ArrayList<Entity>();
+        for (int i = 0; i < ENTITIES; i++) {
+            Entity entity = entitySystem.createEntity();
+            TransformComponent transformComponent = new TransformComponent();
+            transformComponent.positionX = random.nextFloat() * WORLD_SIZE;
+            transformComponent.positionY = random.nextFloat() * 4f;
+            transformComponent.positionZ = random.nextFloat() * WORLD_SIZE;
+            entitySystem.setComponent(entity, transformComponent);
+            AABBComponent aabbComponent = new AABBComponent();
+            aabbComponent.localExtentX = 0.2f + random.nextFloat() * 2f;
+            aabbComponent.localExtentY = 0.2f + random.nextFloat() * 2f;
+            aabbComponent.localExtentZ = 0.2f + random.nextFloat() * 2f;
+            entitySystem.setComponent(entity, aabbComponent);
+            // Leave some entities without collision like doodads, which are never targets.
+            if (random.nextInt(4) > 0) {
+                CollisionComponent collisionComponent = new CollisionComponent();
+                collisionComponent.groups = random.nextInt(4);
+                entitySystem.setComponent(entity, collisionComponent);
+            }
+            if (random.nextInt(5) > 0) {
+                OwnerComponent ownerComponent = new OwnerComponent();
+                ownerComponent.playerID = players.get(random.nextInt(players.size())).getId();
+                entitySystem.setComponent(entity, ownerComponent);
+            }
+            entities.add(entity);
+        }
+
+        boundsSystem = new BoundsSystem(entitySystem, new CollisionResolver());
+        boundsSystem.update(0.1f);
+        collisionFilter = new CollisionFilter(entitySystem, playerAssigner);
+        perception = new AIPerception(entitySystem, boundsSystem, playerAssigner, CollisionFilter.COLLISION_UNIT,
+                AIPerception.DEFAULT_CELL_SIZE);
+        perception.update();
+    }
+
+    /**
+     * Finds the nearest hostile by filtering every collidable entity in range with a sphere entity that only
+     * collides with enemies, the way the AI system did before the perception.
+     * @param self the entity asking.
+     * @param sphereEntity the entity of the sphere, owned the same as the entity asking.
+     * @param position the position to look from.
+     * @param range the range to look within.
+     * @return the nearest hostile or null if none is in range.
+     */
+    private Entity getNearestHostileByFilter(Entity self, Entity sphereEntity, Vector3f position, float range) {
+        BoundsSphere sphere = new BoundsSphere(range, position);
+        sphere.setEntity(sphereEntity);
+        Entity nearest = null;
+        float nearestDistance = Float.MAX_VALUE;
+        for (Entity entity : entities) {
+            if (entity.equals(self) || entitySystem.getComponent(entity, CollisionComponent.class) == null) {
+                continue;
+            }
+            Bounds bounds = boundsSystem.getBounds(entity);
+            if ((bounds.getGroups() & CollisionFilter.COLLISION_UNIT) == 0
+                    || getBoundsDistance((BoundsBox) bounds, position) > range * range
+                    || !collisionFilter.filterBounds(sphere, bounds)) {
+                continue;
+            }
+            TransformComponent transformComponent = entitySystem.getComponent(entity, TransformComponent.class);
+            float x = transformComponent.positionX - position.x;
+            float y = transformComponent.positionY - position.y;
+            float z = transformComponent.positionZ - position.z;
+            float distance = x * x + y * y + z * z;
+            if (distance < nearestDistance) {
+                nearestDistance = distance;
+                nearest = entity;
+            }
+        }
+        return nearest;
+    }
+
+    /**
+     * @param bounds the bounds to measure to.
+     * @param position the position to measure from.
+     * @return the squared distance from the position to the closest point of the bounds.
+     */
+    private float getBoundsDistance(BoundsBox bounds, Vector3f position) {
+        Vector3f center = bounds.getCenter();
+        float x = Math.max(Math.abs(position.x - center.x) - bounds.getXExtent(), 0);
+        float y = Math.max(Math.abs(position.y - center.y) - bounds.getYExtent(), 0);
+        float z = Math.max(Math.abs(position.z - center.z) - bounds.getZExtent(), 0);
+        return x * x + y * y + z * z;
+    }
+
+    /**
+     * Creates the entity of a filter sphere that only collides with enemies.
+     * @param owner the owner of the sphere or AIPerception.NO_OWNER.
+     * @return the entity of the sphere.
+     */
+    private Entity createSphereEntity(int owner) {
+        Entity sphereEntity = entitySystem.createEntity();
+        FilterFlagComponent filterFlagComponent = new FilterFlagComponent();
+        filterFlagComponent.collidesEnemy = true;
+        entitySystem.setComponent(sphereEntity, filterFlagComponent);
+        if (owner != AIPerception.NO_OWNER) {
+            OwnerComponent ownerComponent = new OwnerComponent();
+            ownerComponent.playerID = owner;
+            entitySystem.setComponent(sphereEntity, ownerComponent);
+        }
+        return sphereEntity;
+    }
+
+    @Test
+    /**
+     * Test every entity looking for the nearest hostile at small and large ranges against filtering every entity.
+     */
+    public void testMatchesFilter() throws Exception {
+        float[] ranges = {1f, 4f, 12f, WORLD_SIZE * 2};
+        Vector3f position = new Vector3f();
+        int found = 0;
+        for (Entity self : entities) {
+            int owner = perception.getOwner(self);
+            Entity sphereEntity = createSphereEntity(owner);
+            TransformComponent transformComponent = entitySystem.getComponent(self, TransformComponent.class);
+            position.set(transformComponent.positionX, transformComponent.positionY, transformComponent.positionZ);
+            for (float range : ranges) {
+                Entity expected = getNearestHostileByFilter(self, sphereEntity, position, range);
+                Assert.assertEquals(expected, perception.getNearestHostile(self, owner, position, range));
+                if (expected != null) {
+                    found++;
+                }
+            }
+        }
+        // Make sure the comparison is not only between empty results.
+        Assert.assertTrue(found > ENTITIES);
+    }
+
+    @Test
+    /**
+     * Test that entities without a collision component are not targets even when they are the closest.
+     */
+    public void testIgnoresEntitiesWithoutCollision() throws Exception {
+        int collidable = 0;
+        for (Entity entity : entities) {
+            CollisionComponent collisionComponent = entitySystem.getComponent(entity, CollisionComponent.class);
+            if (collisionComponent != null && (collisionComponent.groups & CollisionFilter.COLLISION_UNIT) != 0) {
+                collidable++;
+            }
+        }
+        Assert.assertEquals(collidable, perception.getTargetCount());
+
+        Entity doodad = entitySystem.createEntity();
+        TransformComponent transformComponent = new TransformComponent();
+        transformComponent.positionX = -100f;
+        entitySystem.setComponent(doodad, transformComponent);
+        entitySystem.setComponent(doodad, new AABBComponent());
+        boundsSystem.update(0.1f);
+        perception.update();
+        Assert.assertNull(perception.getNearestHostile(null, AIPerception.NO_OWNER, new Vector3f(-100f, 0, 0), 2f));
+    }
+}
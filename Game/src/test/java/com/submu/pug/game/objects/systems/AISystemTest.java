@@ -0,0 +1,115 @@
+package com.submu.pug.game.objects.systems;
+
+import com.exploringlines.entitysystem.Entity;
+import com.exploringlines.entitysystem.EntitySystem;
+import com.halboom.pgt.physics.simple.BoundsSystem;
+import com.halboom.pgt.physics.simple.CollisionResolver;
+import com.submu.pug.game.CollisionFilter;
+import com.submu.pug.game.objects.PlayerAssigner;
+import com.submu.pug.game.objects.components.AIComponent;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Tests the staggering and budget of the AI system's thinking.
+ */
+public class AISystemTest {
+    private static final int ENTITIES = 10;
+    private static final float THINK_INTERVAL = 0.5f;
+
+    private EntitySystem entitySystem;
+    private AISystem aiSystem;
+    private List<Entity> entities;
+
+    @Before
+    /**
+     * Create AI entities that have no targets.
+     */
+    public void setUp() throws Exception {
+        entitySystem = new EntitySystem();
+        AIPerception perception = new AIPerception(entitySystem,
+                new BoundsSystem(entitySystem, new CollisionResolver()), new PlayerAssigner(),
+                CollisionFilter.COLLISION_UNIT, AIPerception.DEFAULT_CELL_SIZE);
+        aiSystem = new AISystem(entitySystem, perception);
+        entities = new ArrayList<Entity>();
+        for (int i = 0; i < ENTITIES; i++) {
+            Entity entity = entitySystem.createEntity();
+            AIComponent aiComponent = new AIComponent();
+            aiComponent.thinkInterval = THINK_INTERVAL;
+            entitySystem.setComponent(entity, aiComponent);
+            entities.add(entity);
+        }
+    }
+
+    /**
+     * Updates the AI system and ends the frame like the game session does.
+     * @param tpf the time since the last update.
+     * @return the entities that thought during the update.
+     */
+    private Set<Entity> update(float tpf) {
+        aiSystem.update(tpf);
+        entitySystem.flushSetChanges();
+        Set<Entity> thought = new HashSet<Entity>();
+        for (Entity entity : entities) {
+            // Thinking restarts the timer at the full interval while waiting entities are below it.
+            if (entitySystem.getComponent(entity, AIComponent.class).thinkTimer == THINK_INTERVAL) {
+                thought.add(entity);
+            }
+        }
+        return thought;
+    }
+
+    @Test
+    /**
+     * Test that entities added together have their first think spread over the interval.
+     */
+    public void testStagger() throws Exception {
+        Set<Entity> thought = update(0);
+        Assert.assertTrue(thought.size() <= 1);
+        Set<Float> timers = new HashSet<Float>();
+        for (Entity entity : entities) {
+            float thinkTimer = entitySystem.getComponent(entity, AIComponent.class).thinkTimer;
+            Assert.assertTrue(thinkTimer >= 0 && thinkTimer <= THINK_INTERVAL);
+            timers.add(thinkTimer);
+        }
+        Assert.assertEquals(ENTITIES, timers.size());
+
+        // Every entity still thinks once within one interval.
+        Set<Entity> all = new HashSet<Entity>(thought);
+        for (int i = 0; i < 10; i++) {
+            all.addAll(update(THINK_INTERVAL / 10));
+        }
+        Assert.assertEquals(ENTITIES, all.size());
+    }
+
+    @Test
+    /**
+     * Test that no more than the budget think per update and that overdue entities go first.
+     */
+    public void testBudget() throws Exception {
+        int budget = 4;
+        aiSystem.setThinkBudget(budget);
+        Set<Entity> all = new HashSet<Entity>();
+        int updates = (ENTITIES + budget - 1) / budget;
+        for (int i = 0; i < updates; i++) {
+            Set<Entity> thought = update(THINK_INTERVAL);
+            Assert.assertEquals(budget, thought.size());
+            all.addAll(thought);
+        }
+        Assert.assertEquals(ENTITIES, all.size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    /**
+     * Test that the budget has to allow thinking.
+     */
+    public void testInvalidBudget() throws Exception {
+        aiSystem.setThinkBudget(0);
+    }
+}
@@ -0,0 +1,195 @@
+package com.submu.pug.scripting;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Tests for queueing and dispatching script events.
+ */
+public class EventSystemTest {
+    /**
+     * Handler copying the arguments of the events it is passed.
+     */
+    private static final class RecordingHandler implements ScriptEventHandler {
+        private final List<String> events = new ArrayList<String>();
+        private final List<ScriptEvent> instances = new ArrayList<ScriptEvent>();
+
+        @Override
+        public void onEvent(ScriptEvent event) {
+            StringBuilder builder = new StringBuilder(event.getName());
+            for (int i = 0; i < event.getArgCount(); i++) {
+                builder.append(' ').append(event.getArgs()[i]);
+            }
+            events.add(builder.toString());
+            instances.add(event);
+        }
+    }
+
+    @Test
+    /**
+     * Test that names get stable IDs in the order they are registered.
+     */
+    public void testEventIds() throws Exception {
+        EventSystem eventSystem = new EventSystem(new HashMap<String, Object>());
+        // More names than the initial table size so the tables grow.
+        for (int i = 0; i < 100; i++) {
+            Assert.assertEquals(i, eventSystem.getEventId("event" + i));
+        }
+        Assert.assertEquals(42, eventSystem.getEventId("event42"));
+        Assert.assertEquals("event99", eventSystem.getEventName(99));
+        Assert.assertEquals(100, eventSystem.getEventTypeCount());
+
+        RecordingHandler handler = new RecordingHandler();
+        eventSystem.addHandler("event99", handler);
+        Assert.assertTrue(eventSystem.isSubscribed(99));
+        Assert.assertFalse(eventSystem.isSubscribed(98));
+        eventSystem.queueEvent(99, "a");
+        eventSystem.queueEvent(98, "b");
+        eventSystem.addQueuedEvent(new ScriptEvent("event99", "c", 1));
+        eventSystem.dispatchQueuedEvents();
+        Assert.assertEquals("[event99 a, event99 c 1]", handler.events.toString());
+        Assert.assertEquals(3, eventSystem.getProducedCount());
+        Assert.assertEquals(2, eventSystem.getConsumedCount());
+        Assert.assertEquals(1, eventSystem.getDroppedCount(98));
+    }
+
+    @Test
+    /**
+     * Test that dispatched events go back to the pool and are reused with cleared arguments.
+     */
+    public void testPooling() throws Exception {
+        EventSystem eventSystem = new EventSystem(new HashMap<String, Object>());
+        RecordingHandler handler = new RecordingHandler();
+        eventSystem.addHandler("pooled", handler);
+        int id = eventSystem.getEventId("pooled");
+        eventSystem.queueEvent(id, "a", "b", "c", "d");
+        eventSystem.dispatchQueuedEvents();
+        ScriptEvent first = handler.instances.get(0);
+        Assert.assertNull(first.getArgs()[0]);
+
+        eventSystem.queueEvent(id, "e");
+        eventSystem.dispatchQueuedEvents();
+        Assert.assertSame(first, handler.instances.get(1));
+        Assert.assertEquals("[pooled a b c d, pooled e]", handler.events.toString());
+
+        // Events created by the scripts are not pooled.
+        ScriptEvent scripted = new ScriptEvent("pooled", "f");
+        eventSystem.addQueuedEvent(scripted);
+        eventSystem.dispatchQueuedEvents();
+        Assert.assertEquals("f", scripted.getArgs()[0]);
+        eventSystem.queueEvent(id, "g");
+        eventSystem.dispatchQueuedEvents();
+        Assert.assertSame(first, handler.instances.get(3));
+    }
+
+    @Test
+    /**
+     * Test that events over the limit are dropped until the next dispatch.
+     */
+    public void testLimit() throws Exception {
+        EventSystem eventSystem = new EventSystem(new HashMap<String, Object>());
+        RecordingHandler handler = new RecordingHandler();
+        eventSystem.addHandler("limited", handler);
+        int id = eventSystem.getEventId("limited");
+        eventSystem.setLimit(id, 2);
+        for (int i = 0; i < 5; i++) {
+            eventSystem.queueEvent(id, i);
+        }
+        eventSystem.dispatchQueuedEvents();
+        eventSystem.queueEvent(id, 5);
+        eventSystem.dispatchQueuedEvents();
+        Assert.assertEquals("[limited 0, limited 1, limited 5]", handler.events.toString());
+        Assert.assertEquals(6, eventSystem.getProducedCount(id));
+        Assert.assertEquals(3, eventSystem.getConsumedCount(id));
+        Assert.assertEquals(3, eventSystem.getDroppedCount(id));
+    }
+
+    @Test
+    /**
+     * Test that events with the same key arguments are kept once per dispatch.
+     */
+    public void testCoalescing() throws Exception {
+        EventSystem eventSystem = new EventSystem(new HashMap<String, Object>());
+        RecordingHandler handler = new RecordingHandler();
+        eventSystem.addHandler("pair", handler);
+        int id = eventSystem.getEventId("pair");
+        eventSystem.setCoalescing(id, 1, 2);
+        eventSystem.queueEvent(id, "first", "a", "b");
+        eventSystem.queueEvent(id, "second", "a", "b");
+        eventSystem.queueEvent(id, "third", "b", "a");
+        eventSystem.queueEvent(id, "fourth", "a", null);
+        eventSystem.queueEvent(id, "fifth", "a", null);
+        eventSystem.addQueuedEvent(new ScriptEvent("pair", "sixth", "b", "a"));
+        eventSystem.dispatchQueuedEvents();
+        Assert.assertEquals("[pair first a b, pair third b a, pair fourth a null]", handler.events.toString());
+        Assert.assertEquals(3, eventSystem.getDroppedCount(id));
+
+        // Keys are forgotten once dispatched and after clearing.
+        eventSystem.queueEvent(id, "seventh", "a", "b");
+        eventSystem.clearQueuedEvents();
+        eventSystem.queueEvent(id, "eighth", "a", "b");
+        eventSystem.dispatchQueuedEvents();
+        Assert.assertEquals("pair eighth a b", handler.events.get(3));
+        Assert.assertEquals(4, handler.events.size());
+    }
+
+    @Test
+    /**
+     * Test that coalesced events can add up an argument instead of keeping the first value.
+     */
+    public void testSummedCoalescing() throws Exception {
+        EventSystem eventSystem = new EventSystem(new HashMap<String, Object>());
+        RecordingHandler handler = new RecordingHandler();
+        eventSystem.addHandler("analog", handler);
+        int id = eventSystem.getEventId("analog");
+        eventSystem.setCoalescing(id, 0);
+        eventSystem.setSummedArg(id, 1);
+        eventSystem.queueEvent(id, "left", 0.25f, "player");
+        eventSystem.queueEvent(id, "right", 1f, "player");
+        eventSystem.queueEvent(id, "left", 0.5f, "player");
+        eventSystem.queueEvent(id, "left", 0.125f, "player");
+        eventSystem.dispatchQueuedEvents();
+        Assert.assertEquals("[analog left 0.875 player, analog right 1.0 player]", handler.events.toString());
+    }
+
+    @Test
+    /**
+     * Test that handlers registered into a fresh table only replace the old ones once kept.
+     */
+    public void testHandlerTable() throws Exception {
+        EventSystem eventSystem = new EventSystem(new HashMap<String, Object>());
+        RecordingHandler oldHandler = new RecordingHandler();
+        eventSystem.addHandler("old", oldHandler);
+        int id = eventSystem.getEventId("old");
+
+        // A failed load drops its handlers, including ones for events registered meanwhile.
+        RecordingHandler failedHandler = new RecordingHandler();
+        eventSystem.beginHandlers();
+        eventSystem.addHandler("old", failedHandler);
+        eventSystem.addHandler("new", failedHandler);
+        eventSystem.rollbackHandlers();
+        int newId = eventSystem.getEventId("new");
+        Assert.assertFalse(eventSystem.isSubscribed(newId));
+        eventSystem.queueEvent(id, "a");
+        eventSystem.queueEvent(newId, "b");
+        eventSystem.dispatchQueuedEvents();
+        Assert.assertEquals("[old a]", oldHandler.events.toString());
+        Assert.assertTrue(failedHandler.events.isEmpty());
+
+        // A successful load replaces the handlers.
+        RecordingHandler newHandler = new RecordingHandler();
+        eventSystem.beginHandlers();
+        eventSystem.addHandler("new", newHandler);
+        eventSystem.commitHandlers();
+        Assert.assertFalse(eventSystem.isSubscribed(id));
+        eventSystem.queueEvent(id, "c");
+        eventSystem.queueEvent(newId, "d");
+        eventSystem.dispatchQueuedEvents();
+        Assert.assertEquals("[old a]", oldHandler.events.toString());
+        Assert.assertEquals("[new d]", newHandler.events.toString());
+    }
+}
@@ -0,0 +1,84 @@
+package com.submu.pug.util;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Random;
+
+/**
+ * Tests for splitting frame time into fixed logic steps.
+ */
+public class FixedTimestepTest {
+    /**
+     * Steps per second giving a step size that floats hold exactly.
+     */
+    private static final float STEPS_PER_SECOND = 64f;
+
+    private static final float STEP = 1f / STEPS_PER_SECOND;
+
+    private static final int MAX_STEPS_PER_FRAME = 4;
+
+    @Test
+    /**
+     * Test that each frame runs the steps it completes and keeps the rest for the next frame.
+     */
+    public void testAdvance() throws Exception {
+        FixedTimestep timestep = new FixedTimestep(STEPS_PER_SECOND, MAX_STEPS_PER_FRAME);
+        Assert.assertEquals(STEP, timestep.getStepSize(), 0);
+        Assert.assertEquals(1, timestep.advance(STEP));
+        Assert.assertEquals(0, timestep.advance(STEP / 2));
+        Assert.assertEquals(0.5f, timestep.getInterpolation(), 0.0001f);
+        Assert.assertEquals(1, timestep.advance(STEP / 2));
+        Assert.assertEquals(0f, timestep.getInterpolation(), 0.0001f);
+        Assert.assertEquals(3, timestep.advance(STEP * 3 + STEP / 4));
+        Assert.assertEquals(0.25f, timestep.getInterpolation(), 0.0001f);
+        Assert.assertEquals(0, timestep.advance(0));
+    }
+
+    @Test
+    /**
+     * Test that time past the step limit of a frame is dropped instead of run in later frames.
+     */
+    public void testDropTime() throws Exception {
+        FixedTimestep timestep = new FixedTimestep(STEPS_PER_SECOND, MAX_STEPS_PER_FRAME);
+        Assert.assertEquals(MAX_STEPS_PER_FRAME, timestep.advance(1f));
+        Assert.assertEquals(0f, timestep.getInterpolation(), 0.0001f);
+        Assert.assertEquals(0, timestep.advance(0));
+
+        // The partial step is kept.
+        Assert.assertEquals(MAX_STEPS_PER_FRAME, timestep.advance(STEP * 10 + STEP / 2));
+        Assert.assertEquals(0.5f, timestep.getInterpolation(), 0.0001f);
+        Assert.assertEquals(1, timestep.advance(STEP / 2));
+        Assert.assertEquals(0f, timestep.getInterpolation(), 0.0001f);
+    }
+
+    @Test
+    /**
+     * Test that the interpolation stays within a step for uneven frame times.
+     */
+    public void testInterpolationRange() throws Exception {
+        // A step size that floats cannot hold exactly so the remainders pick up rounding errors.
+        FixedTimestep timestep = new FixedTimestep(60f, MAX_STEPS_PER_FRAME);
+        Random random = new Random(0);
+        for (int i = 0; i < 100000; i++) {
+            int steps = timestep.advance(random.nextFloat() * 0.1f);
+            Assert.assertTrue(steps >= 0 && steps <= MAX_STEPS_PER_FRAME);
+            float alpha = timestep.getInterpolation();
+            Assert.assertTrue("Interpolation " + alpha, alpha >= 0f && alpha < 1f);
+        }
+    }
+
+    @Test
+    /**
+     * Test that resetting drops the time that was not stepped yet.
+     */
+    public void testReset() throws Exception {
+        FixedTimestep timestep = new FixedTimestep(STEPS_PER_SECOND, MAX_STEPS_PER_FRAME);
+        timestep.advance(STEP * 3 / 4);
+        Assert.assertEquals(0.75f, timestep.getInterpolation(), 0.0001f);
+        timestep.reset();
+        Assert.assertEquals(0f, timestep.getInterpolation(), 0);
+        Assert.assertEquals(0, timestep.advance(STEP / 2));
+        Assert.assertEquals(0.5f, timestep.getInterpolation(), 0.0001f);
+    }
+}
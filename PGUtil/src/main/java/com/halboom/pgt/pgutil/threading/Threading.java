@@ -1,6 +1,7 @@
 package com.halboom.pgt.pgutil.threading;
 
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
 
 /**
@@ -33,6 +34,11 @@ public final class Threading {
      */
     private ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(THREADS);
 
+    /**
+     * Pool for work that is split into many small tasks, uses a thread for each processor.
+     */
+    private ForkJoinPool forkJoinPool = new ForkJoinPool();
+
     /**
      * Initializes the class.
      */
@@ -44,6 +50,7 @@ public final class Threading {
      */
     public void destroy() {
         executor.shutdownNow();
+        forkJoinPool.shutdownNow();
     }
 
     /**
@@ -52,4 +59,11 @@ public final class Threading {
     public ExecutorService getExecutor() {
         return executor;
     }
+
+    /**
+     * @return the pool for work that is split into many small tasks.
+     */
+    public ForkJoinPool getForkJoinPool() {
+        return forkJoinPool;
+    }
 }
@@ -0,0 +1,177 @@
+package com.halboom.pgt.pgutil.voxel;
+
+/**
+ * Voxel grid backed by a single flat array.
+ * Tiles are stored linearly with z changing fastest, the same order used by compressed map files,
+ * so neighbours along z are adjacent in memory and neighbours along y or x are a fixed stride away.
+ */
+public class ArrayVoxelGrid implements VoxelGrid {
+    /**
+     * Number of tiles along each axis.
+     */
+    private final int lengthX, lengthY, lengthZ;
+
+    /**
+     * Distance in the array between neighbours along the X axis.
+     */
+    private final int strideX;
+
+    /**
+     * Tiles of the grid.
+     */
+    private final byte[] data;
+
+    /**
+     * Initializes an empty grid.
+     * @param lengthX the number of tiles along the X axis.
+     * @param lengthY the number of tiles along the Y axis.
+     * @param lengthZ the number of tiles along the Z axis.
+     */
+    public ArrayVoxelGrid(int lengthX, int lengthY, int lengthZ) {
+        this(lengthX, lengthY, lengthZ, new byte[lengthX * lengthY * lengthZ]);
+    }
+
+    /**
+     * Initializes a grid using existing tiles without copying them.
+     * @param lengthX the number of tiles along the X axis.
+     * @param lengthY the number of tiles along the Y axis.
+     * @param lengthZ the number of tiles along the Z axis.
+     * @param data the tiles stored in the grid order.
+     */
+    public ArrayVoxelGrid(int lengthX, int lengthY, int lengthZ, byte[] data) {
+        if (lengthX < 0 || lengthY < 0 || lengthZ < 0) {
+            throw new IllegalArgumentException("Grid lengths must not be negative.");
+        }
+        if (data.length != lengthX * lengthY * lengthZ) {
+            throw new IllegalArgumentException("Expected " + lengthX * lengthY * lengthZ
+                    + " tiles but got " + data.length + ".");
+        }
+        this.lengthX = lengthX;
+        this.lengthY = lengthY;
+        this.lengthZ = lengthZ;
+        this.strideX = lengthY * lengthZ;
+        this.data = data;
+    }
+
+    /**
+     * Copies nested tile arrays into a new grid.
+     * Used while callers still move from nested arrays to voxel grids.
+     * @param tiles the tiles to copy, every row must have the same length.
+     * @return the copied grid.
+     */
+    public static ArrayVoxelGrid fromArray(byte[][][] tiles) {
+        int lengthX = tiles.length;
+        int lengthY = lengthX > 0 ? tiles[0].length : 0;
+        int lengthZ = lengthY > 0 ? tiles[0][0].length : 0;
+        ArrayVoxelGrid grid = new ArrayVoxelGrid(lengthX, lengthY, lengthZ);
+        int index = 0;
+        for (int x = 0; x < lengthX; x++) {
+            for (int y = 0; y < lengthY; y++) {
+                System.arraycopy(tiles[x][y], 0, grid.data, index, lengthZ);
+                index += lengthZ;
+            }
+        }
+        return grid;
+    }
+
+    /**
+     * Copies the grid into nested tile arrays.
+     * Used while callers still move from nested arrays to voxel grids.
+     * @return the copied tiles.
+     */
+    public byte[][][] toArray() {
+        byte[][][] tiles = new byte[lengthX][lengthY][lengthZ];
+        int index = 0;
+        for (int x = 0; x < lengthX; x++) {
+            for (int y = 0; y < lengthY; y++) {
+                System.arraycopy(data, index, tiles[x][y], 0, lengthZ);
+                index += lengthZ;
+            }
+        }
+        return tiles;
+    }
+
+    /**
+     * Copies any grid into a new array backed grid.
+     * @param grid the grid to copy.
+     * @return the copied grid.
+     */
+    public static ArrayVoxelGrid copyOf(VoxelGrid grid) {
+        if (grid instanceof ArrayVoxelGrid) {
+            ArrayVoxelGrid arrayGrid = (ArrayVoxelGrid) grid;
+            return new ArrayVoxelGrid(arrayGrid.lengthX, arrayGrid.lengthY, arrayGrid.lengthZ,
+                    arrayGrid.data.clone());
+        }
+        ArrayVoxelGrid copy = new ArrayVoxelGrid(grid.getLengthX(), grid.getLengthY(), grid.getLengthZ());
+        for (int x = 0; x < copy.lengthX; x++) {
+            for (int y = 0; y < copy.lengthY; y++) {
+                for (int z = 0; z < copy.lengthZ; z++) {
+                    copy.data[copy.getIndex(x, y, z)] = grid.get(x, y, z);
+                }
+            }
+        }
+        return copy;
+    }
+
+    /**
+     * Retrieves the array index of a tile.
+     * @param x the x index.
+     * @param y the y index.
+     * @param z the z index.
+     * @return the array index of the tile.
+     */
+    public final int getIndex(int x, int y, int z) {
+        return x * strideX + y * lengthZ + z;
+    }
+
+    /**
+     * @return the distance in the array between neighbours along the X axis.
+     */
+    public final int getStrideX() {
+        return strideX;
+    }
+
+    /**
+     * @return the distance in the array between neighbours along the Y axis.
+     */
+    public final int getStrideY() {
+        return lengthZ;
+    }
+
+    /**
+     * @return the backing tiles in the grid order, changes are written through to the grid.
+     */
+    public final byte[] getData() {
+        return data;
+    }
+
+    @Override
+    public final int getLengthX() {
+        return lengthX;
+    }
+
+    @Override
+    public final int getLengthY() {
+        return lengthY;
+    }
+
+    @Override
+    public final int getLengthZ() {
+        return lengthZ;
+    }
+
+    @Override
+    public final boolean isInBounds(int x, int y, int z) {
+        return x >= 0 && y >= 0 && z >= 0 && x < lengthX && y < lengthY && z < lengthZ;
+    }
+
+    @Override
+    public final byte get(int x, int y, int z) {
+        return data[x * strideX + y * lengthZ + z];
+    }
+
+    @Override
+    public final void set(int x, int y, int z, byte tile) {
+        data[x * strideX + y * lengthZ + z] = tile;
+    }
+}
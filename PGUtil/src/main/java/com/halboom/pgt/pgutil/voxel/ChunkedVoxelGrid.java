@@ -0,0 +1,281 @@
+package com.halboom.pgt.pgutil.voxel;
+
+/**
+ * Voxel grid split into cubic sections that are only allocated once a tile is written to them.
+ * Empty sections take no memory, uniform sections store a single tile and mixed sections store
+ * a small palette with bit packed indices, so memory follows the detail of the map instead of its volume.
+ * Writes change the section arrays in place and only replace a section when its palette has to grow, so like
+ * any other grid a mesh worker reading it during an edit may see a mix of old and new tiles.
+ * Such meshes are thrown away by the chunk revision check once the edited chunks are set dirty.
+ */
+public class ChunkedVoxelGrid implements VoxelGrid {
+    /**
+     * Default number of tiles along each axis of a section.
+     */
+    public static final int DEFAULT_SECTION_SIZE = 16;
+
+    /**
+     * Approximate bytes used by a section reference.
+     */
+    private static final int REFERENCE_BYTES = 8;
+
+    /**
+     * Number of tiles along each axis.
+     */
+    private final int lengthX, lengthY, lengthZ;
+
+    /**
+     * Number of sections along each axis.
+     */
+    private final int sectionsX, sectionsY, sectionsZ;
+
+    /**
+     * Shift and mask converting a tile index to a section and local index.
+     */
+    private final int sectionShift, sectionMask;
+
+    /**
+     * Number of tiles in a section.
+     */
+    private final int sectionVolume;
+
+    /**
+     * Sections indexed by (x * sectionsY + y) * sectionsZ + z, null for an empty section.
+     */
+    private final VoxelSection[] sections;
+
+    /**
+     * Initializes an empty grid with the default section size.
+     * @param lengthX the number of tiles along the X axis.
+     * @param lengthY the number of tiles along the Y axis.
+     * @param lengthZ the number of tiles along the Z axis.
+     */
+    public ChunkedVoxelGrid(int lengthX, int lengthY, int lengthZ) {
+        this(lengthX, lengthY, lengthZ, DEFAULT_SECTION_SIZE);
+    }
+
+    /**
+     * Initializes an empty grid.
+     * @param lengthX the number of tiles along the X axis.
+     * @param lengthY the number of tiles along the Y axis.
+     * @param lengthZ the number of tiles along the Z axis.
+     * @param sectionSize the number of tiles along each axis of a section, must be a power of two.
+     */
+    public ChunkedVoxelGrid(int lengthX, int lengthY, int lengthZ, int sectionSize) {
+        if (lengthX < 0 || lengthY < 0 || lengthZ < 0) {
+            throw new IllegalArgumentException("Grid lengths must not be negative.");
+        }
+        if (sectionSize <= 0 || Integer.bitCount(sectionSize) != 1) {
+            throw new IllegalArgumentException("Section size must be a power of two but was " + sectionSize + ".");
+        }
+        this.lengthX = lengthX;
+        this.lengthY = lengthY;
+        this.lengthZ = lengthZ;
+        this.sectionShift = Integer.numberOfTrailingZeros(sectionSize);
+        this.sectionMask = sectionSize - 1;
+        this.sectionVolume = sectionSize * sectionSize * sectionSize;
+        this.sectionsX = (lengthX + sectionMask) >> sectionShift;
+        this.sectionsY = (lengthY + sectionMask) >> sectionShift;
+        this.sectionsZ = (lengthZ + sectionMask) >> sectionShift;
+        this.sections = new VoxelSection[sectionsX * sectionsY * sectionsZ];
+    }
+
+    /**
+     * Copies any grid into a new chunked grid and compacts it.
+     * @param grid the grid to copy.
+     * @return the copied grid.
+     */
+    public static ChunkedVoxelGrid copyOf(VoxelGrid grid) {
+        ChunkedVoxelGrid copy = new ChunkedVoxelGrid(grid.getLengthX(), grid.getLengthY(), grid.getLengthZ());
+        for (int x = 0; x < copy.lengthX; x++) {
+            for (int y = 0; y < copy.lengthY; y++) {
+                for (int z = 0; z < copy.lengthZ; z++) {
+                    byte tile = grid.get(x, y, z);
+                    if (tile != 0) {
+                        copy.set(x, y, z, tile);
+                    }
+                }
+            }
+        }
+        copy.compact();
+        return copy;
+    }
+
+    @Override
+    public final int getLengthX() {
+        return lengthX;
+    }
+
+    @Override
+    public final int getLengthY() {
+        return lengthY;
+    }
+
+    @Override
+    public final int getLengthZ() {
+        return lengthZ;
+    }
+
+    @Override
+    public final boolean isInBounds(int x, int y, int z) {
+        return x >= 0 && y >= 0 && z >= 0 && x < lengthX && y < lengthY && z < lengthZ;
+    }
+
+    @Override
+    public final byte get(int x, int y, int z) {
+        VoxelSection section = sections[getSectionIndex(x >> sectionShift, y >> sectionShift, z >> sectionShift)];
+        if (section == null) {
+            return 0;
+        }
+        return section.get(getLocalIndex(x, y, z));
+    }
+
+    @Override
+    public final void set(int x, int y, int z, byte tile) {
+        int sectionIndex = getSectionIndex(x >> sectionShift, y >> sectionShift, z >> sectionShift);
+        VoxelSection section = sections[sectionIndex];
+        if (section == null) {
+            // Empty sections stay unallocated until something other than an empty tile is written.
+            if (tile == 0) {
+                return;
+            }
+            section = new VoxelSection(sectionVolume, (byte) 0);
+        }
+        sections[sectionIndex] = section.set(getLocalIndex(x, y, z), tile);
+    }
+
+    /**
+     * Shrinks every section to the smallest palette of its tiles and releases sections that became empty.
+     * Writes only ever grow sections so this should be called after large edits.
+     */
+    public void compact() {
+        for (int i = 0; i < sections.length; i++) {
+            VoxelSection section = sections[i];
+            if (section != null) {
+                section = section.compact();
+                if (section.isUniform() && section.get(0) == 0) {
+                    section = null;
+                }
+                sections[i] = section;
+            }
+        }
+    }
+
+    /**
+     * @return the number of tiles along each axis of a section.
+     */
+    public final int getSectionSize() {
+        return sectionMask + 1;
+    }
+
+    /**
+     * @return the number of sections along the X axis.
+     */
+    public final int getSectionsX() {
+        return sectionsX;
+    }
+
+    /**
+     * @return the number of sections along the Y axis.
+     */
+    public final int getSectionsY() {
+        return sectionsY;
+    }
+
+    /**
+     * @return the number of sections along the Z axis.
+     */
+    public final int getSectionsZ() {
+        return sectionsZ;
+    }
+
+    /**
+     * Checks if every tile of a section is the same.
+     * @param sectionX the x index of the section.
+     * @param sectionY the y index of the section.
+     * @param sectionZ the z index of the section.
+     * @return true if the section is empty or uniform.
+     */
+    public final boolean isSectionUniform(int sectionX, int sectionY, int sectionZ) {
+        VoxelSection section = sections[getSectionIndex(sectionX, sectionY, sectionZ)];
+        return section == null || section.isUniform();
+    }
+
+    /**
+     * Gets the number of distinct tiles a section can hold without growing.
+     * @param sectionX the x index of the section.
+     * @param sectionY the y index of the section.
+     * @param sectionZ the z index of the section.
+     * @return the palette size of the section, 0 for an unallocated section.
+     */
+    public final int getSectionPaletteSize(int sectionX, int sectionY, int sectionZ) {
+        VoxelSection section = sections[getSectionIndex(sectionX, sectionY, sectionZ)];
+        if (section == null) {
+            return 0;
+        }
+        return section.getPaletteSize();
+    }
+
+    /**
+     * Gets the approximate memory used by a section.
+     * @param sectionX the x index of the section.
+     * @param sectionY the y index of the section.
+     * @param sectionZ the z index of the section.
+     * @return the bytes used by the section, 0 for an unallocated section.
+     */
+    public final long getSectionMemoryUsage(int sectionX, int sectionY, int sectionZ) {
+        VoxelSection section = sections[getSectionIndex(sectionX, sectionY, sectionZ)];
+        if (section == null) {
+            return 0;
+        }
+        return section.getMemoryUsage();
+    }
+
+    /**
+     * @return the number of sections that are allocated.
+     */
+    public final int getAllocatedSections() {
+        int allocated = 0;
+        for (VoxelSection section : sections) {
+            if (section != null) {
+                allocated++;
+            }
+        }
+        return allocated;
+    }
+
+    /**
+     * @return the approximate bytes used by the grid including its section table.
+     */
+    public final long getMemoryUsage() {
+        long bytes = VoxelSection.OBJECT_BYTES + VoxelSection.ARRAY_BYTES + (long) sections.length * REFERENCE_BYTES;
+        for (VoxelSection section : sections) {
+            if (section != null) {
+                bytes += section.getMemoryUsage();
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * Retrieves the index of a section in the section table.
+     * @param sectionX the x index of the section.
+     * @param sectionY the y index of the section.
+     * @param sectionZ the z index of the section.
+     * @return the index of the section.
+     */
+    private int getSectionIndex(int sectionX, int sectionY, int sectionZ) {
+        return (sectionX * sectionsY + sectionY) * sectionsZ + sectionZ;
+    }
+
+    /**
+     * Retrieves the index of a tile within its section.
+     * @param x the x index of the tile.
+     * @param y the y index of the tile.
+     * @param z the z index of the tile.
+     * @return the index of the tile in its section.
+     */
+    private int getLocalIndex(int x, int y, int z) {
+        return (((x & sectionMask) << sectionShift | (y & sectionMask)) << sectionShift) | (z & sectionMask);
+    }
+}
@@ -0,0 +1,49 @@
+package com.halboom.pgt.pgutil.voxel;
+
+/**
+ * A fixed size 3D grid of tile values indexed by x from left to right, y from bottom to top
+ * and z from back to the camera.
+ */
+public interface VoxelGrid {
+    /**
+     * @return the number of tiles along the X axis.
+     */
+    int getLengthX();
+
+    /**
+     * @return the number of tiles along the Y axis.
+     */
+    int getLengthY();
+
+    /**
+     * @return the number of tiles along the Z axis.
+     */
+    int getLengthZ();
+
+    /**
+     * Checks if an index is within the bounds of the grid.
+     * @param x the x index.
+     * @param y the y index.
+     * @param z the z index.
+     * @return true if the index is in bounds, false if out.
+     */
+    boolean isInBounds(int x, int y, int z);
+
+    /**
+     * Retrieves the tile at an index, the index must be in bounds.
+     * @param x the x index.
+     * @param y the y index.
+     * @param z the z index.
+     * @return the tile at the index.
+     */
+    byte get(int x, int y, int z);
+
+    /**
+     * Sets the tile at an index, the index must be in bounds.
+     * @param x the x index.
+     * @param y the y index.
+     * @param z the z index.
+     * @param tile the tile to set.
+     */
+    void set(int x, int y, int z, byte tile);
+}
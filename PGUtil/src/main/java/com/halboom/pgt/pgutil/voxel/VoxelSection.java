@@ -0,0 +1,243 @@
+package com.halboom.pgt.pgutil.voxel;
+
+/**
+ * Tiles of a cubic section of a chunked grid stored as a palette with bit packed indices.
+ * A section with a single palette entry stores no indices at all.
+ * The palette and the index width never change once created, a section that outgrows them is
+ * replaced by a larger copy so readers on other threads always see a consistent section.
+ */
+final class VoxelSection {
+    /**
+     * Bits of a packed long.
+     */
+    private static final int LONG_BITS = 64, LONG_SHIFT = 6;
+
+    /**
+     * Bits per index for each size step, each divides a long so indices never straddle two longs.
+     */
+    private static final int[] INDEX_BITS = {1, 2, 4, 8};
+
+    /**
+     * Approximate bytes used by an object header and a reference or array length.
+     */
+    static final int OBJECT_BYTES = 16, ARRAY_BYTES = 16;
+
+    /**
+     * Number of tiles in the section.
+     */
+    private final int volume;
+
+    /**
+     * Tile values of the palette, sized to the number of indices that fit the index width.
+     */
+    private final byte[] palette;
+
+    /**
+     * Number of used palette entries.
+     */
+    private int paletteSize;
+
+    /**
+     * Bits per packed index, zero for a uniform section.
+     */
+    private final int bits;
+
+    /**
+     * Packed palette indices, null for a uniform section.
+     */
+    private final long[] packed;
+
+    /**
+     * Creates a section where every tile is the same.
+     * @param volume the number of tiles in the section.
+     * @param tile the tile of the section.
+     */
+    VoxelSection(int volume, byte tile) {
+        this.volume = volume;
+        this.palette = new byte[]{tile};
+        this.paletteSize = 1;
+        this.bits = 0;
+        this.packed = null;
+    }
+
+    /**
+     * Creates an empty mixed section.
+     * @param volume the number of tiles in the section.
+     * @param bits the bits per packed index.
+     */
+    private VoxelSection(int volume, int bits) {
+        this.volume = volume;
+        this.palette = new byte[1 << bits];
+        this.paletteSize = 0;
+        this.bits = bits;
+        this.packed = new long[(volume * bits + LONG_BITS - 1) >>> LONG_SHIFT];
+    }
+
+    /**
+     * Retrieves a tile of the section.
+     * @param index the index of the tile in the section.
+     * @return the tile.
+     */
+    byte get(int index) {
+        if (packed == null) {
+            return palette[0];
+        }
+        return palette[readEntry(index)];
+    }
+
+    /**
+     * Sets a tile of the section.
+     * @param index the index of the tile in the section.
+     * @param tile the tile to set.
+     * @return this section or a larger copy if the tile did not fit, the caller must keep the returned section.
+     */
+    VoxelSection set(int index, byte tile) {
+        int entry = findEntry(tile);
+        if (entry < 0) {
+            if (paletteSize < palette.length && packed != null) {
+                entry = paletteSize;
+                palette[entry] = tile;
+                paletteSize++;
+            } else {
+                // Move into a section with wider indices and try again.
+                return grow(paletteSize + 1).set(index, tile);
+            }
+        }
+        if (packed != null) {
+            writeEntry(index, entry);
+        }
+        return this;
+    }
+
+    /**
+     * Creates the smallest copy of the section that holds the used tiles.
+     * @return the compacted section, a uniform section if only one tile is used.
+     */
+    VoxelSection compact() {
+        if (packed == null) {
+            return this;
+        }
+        int[] counts = new int[paletteSize];
+        for (int i = 0; i < volume; i++) {
+            counts[readEntry(i)]++;
+        }
+        int used = 0;
+        int lastUsed = 0;
+        for (int i = 0; i < paletteSize; i++) {
+            if (counts[i] > 0) {
+                used++;
+                lastUsed = i;
+            }
+        }
+        if (used == 1) {
+            return new VoxelSection(volume, palette[lastUsed]);
+        }
+        if (used == paletteSize && getBitsFor(used) == bits) {
+            return this;
+        }
+        VoxelSection section = new VoxelSection(volume, getBitsFor(used));
+        for (int i = 0; i < paletteSize; i++) {
+            if (counts[i] > 0) {
+                section.palette[section.paletteSize] = palette[i];
+                section.paletteSize++;
+            }
+        }
+        for (int i = 0; i < volume; i++) {
+            section.writeEntry(i, section.findEntry(palette[readEntry(i)]));
+        }
+        return section;
+    }
+
+    /**
+     * @return true if every tile of the section is the same.
+     */
+    boolean isUniform() {
+        return packed == null;
+    }
+
+    /**
+     * @return the number of tiles in the palette.
+     */
+    int getPaletteSize() {
+        return paletteSize;
+    }
+
+    /**
+     * @return the approximate number of bytes used by the section.
+     */
+    long getMemoryUsage() {
+        long bytes = OBJECT_BYTES + ARRAY_BYTES + palette.length;
+        if (packed != null) {
+            bytes += ARRAY_BYTES + (long) packed.length * (LONG_BITS / Byte.SIZE);
+        }
+        return bytes;
+    }
+
+    /**
+     * Creates a copy of the section with indices wide enough for a palette size.
+     * @param size the number of palette entries needed.
+     * @return the copied section.
+     */
+    private VoxelSection grow(int size) {
+        VoxelSection section = new VoxelSection(volume, getBitsFor(size));
+        System.arraycopy(palette, 0, section.palette, 0, paletteSize);
+        section.paletteSize = paletteSize;
+        if (packed != null) {
+            for (int i = 0; i < volume; i++) {
+                section.writeEntry(i, readEntry(i));
+            }
+        }
+        return section;
+    }
+
+    /**
+     * Finds the palette entry of a tile.
+     * @param tile the tile to find.
+     * @return the palette entry or -1 if the tile is not in the palette.
+     */
+    private int findEntry(byte tile) {
+        for (int i = 0; i < paletteSize; i++) {
+            if (palette[i] == tile) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Reads the palette entry of a tile, the section must not be uniform.
+     * @param index the index of the tile in the section.
+     * @return the palette entry.
+     */
+    private int readEntry(int index) {
+        int bit = index * bits;
+        return (int) (packed[bit >>> LONG_SHIFT] >>> (bit & (LONG_BITS - 1))) & ((1 << bits) - 1);
+    }
+
+    /**
+     * Writes the palette entry of a tile, the section must not be uniform.
+     * @param index the index of the tile in the section.
+     * @param entry the palette entry.
+     */
+    private void writeEntry(int index, int entry) {
+        int bit = index * bits;
+        int shift = bit & (LONG_BITS - 1);
+        long mask = (long) ((1 << bits) - 1) << shift;
+        int slot = bit >>> LONG_SHIFT;
+        packed[slot] = (packed[slot] & ~mask) | ((long) entry << shift);
+    }
+
+    /**
+     * Gets the smallest index width for a palette size.
+     * @param size the number of palette entries.
+     * @return the bits per index.
+     */
+    private static int getBitsFor(int size) {
+        for (int bits : INDEX_BITS) {
+            if (size <= 1 << bits) {
+                return bits;
+            }
+        }
+        throw new IllegalArgumentException("Palette of " + size + " tiles does not fit a byte.");
+    }
+}
@@ -0,0 +1,4 @@
+/**
+ * This package contains voxel storage shared by the terrain and the physics.
+ */
+package com.halboom.pgt.pgutil.voxel;
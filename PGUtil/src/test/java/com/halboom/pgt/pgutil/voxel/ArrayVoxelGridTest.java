@@ -0,0 +1,60 @@
+package com.halboom.pgt.pgutil.voxel;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests for the flat array voxel grid.
+ */
+public class ArrayVoxelGridTest {
+    @Test
+    /**
+     * Test that tiles are stored in the compressed map order.
+     */
+    public void testIndexOrder() throws Exception {
+        ArrayVoxelGrid grid = new ArrayVoxelGrid(3, 4, 5);
+        Assert.assertEquals(20, grid.getStrideX());
+        Assert.assertEquals(5, grid.getStrideY());
+        Assert.assertEquals((2 * 4 + 3) * 5 + 1, grid.getIndex(2, 3, 1));
+
+        grid.set(2, 3, 1, (byte) 7);
+        Assert.assertEquals(7, grid.getData()[grid.getIndex(2, 3, 1)]);
+        Assert.assertEquals(7, grid.get(2, 3, 1));
+        Assert.assertEquals(0, grid.get(1, 3, 2));
+    }
+
+    @Test
+    public void testBounds() throws Exception {
+        ArrayVoxelGrid grid = new ArrayVoxelGrid(3, 4, 5);
+        Assert.assertTrue(grid.isInBounds(0, 0, 0));
+        Assert.assertTrue(grid.isInBounds(2, 3, 4));
+        Assert.assertFalse(grid.isInBounds(-1, 0, 0));
+        Assert.assertFalse(grid.isInBounds(3, 0, 0));
+        Assert.assertFalse(grid.isInBounds(0, 4, 0));
+        Assert.assertFalse(grid.isInBounds(0, 0, 5));
+    }
+
+    @Test
+    public void testArrayConversion() throws Exception {
+        byte[][][] tiles = new byte[2][3][4];
+        tiles[1][2][3] = 5;
+        tiles[0][1][2] = 3;
+
+        ArrayVoxelGrid grid = ArrayVoxelGrid.fromArray(tiles);
+        Assert.assertEquals(2, grid.getLengthX());
+        Assert.assertEquals(3, grid.getLengthY());
+        Assert.assertEquals(4, grid.getLengthZ());
+        Assert.assertEquals(5, grid.get(1, 2, 3));
+        Assert.assertEquals(3, grid.get(0, 1, 2));
+
+        byte[][][] copy = grid.toArray();
+        Assert.assertEquals(5, copy[1][2][3]);
+        Assert.assertEquals(3, copy[0][1][2]);
+        Assert.assertEquals(0, copy[1][1][1]);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testWrongDataLength() throws Exception {
+        new ArrayVoxelGrid(2, 2, 2, new byte[7]);
+    }
+}
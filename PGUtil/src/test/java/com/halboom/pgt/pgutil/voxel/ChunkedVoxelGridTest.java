@@ -0,0 +1,99 @@
+package com.halboom.pgt.pgutil.voxel;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Random;
+
+/**
+ * Tests for the sparse paletted voxel grid.
+ */
+public class ChunkedVoxelGridTest {
+    @Test
+    /**
+     * Test that sections are only allocated when written.
+     */
+    public void testLazySections() throws Exception {
+        ChunkedVoxelGrid grid = new ChunkedVoxelGrid(40, 20, 40);
+        Assert.assertEquals(3, grid.getSectionsX());
+        Assert.assertEquals(2, grid.getSectionsY());
+        Assert.assertEquals(3, grid.getSectionsZ());
+        Assert.assertEquals(0, grid.getAllocatedSections());
+
+        grid.set(5, 5, 5, (byte) 0);
+        Assert.assertEquals(0, grid.getAllocatedSections());
+
+        grid.set(39, 19, 39, (byte) 3);
+        Assert.assertEquals(1, grid.getAllocatedSections());
+        Assert.assertEquals(3, grid.get(39, 19, 39));
+        Assert.assertEquals(0, grid.get(38, 19, 39));
+        Assert.assertEquals(0, grid.getSectionMemoryUsage(0, 0, 0));
+        Assert.assertTrue(grid.getSectionMemoryUsage(2, 1, 2) > 0);
+
+        grid.set(39, 19, 39, (byte) 0);
+        grid.compact();
+        Assert.assertEquals(0, grid.getAllocatedSections());
+    }
+
+    @Test
+    /**
+     * Test that filled sections compact to a single tile.
+     */
+    public void testUniformSections() throws Exception {
+        ChunkedVoxelGrid grid = new ChunkedVoxelGrid(16, 16, 16);
+        for (int x = 0; x < 16; x++) {
+            for (int y = 0; y < 16; y++) {
+                for (int z = 0; z < 16; z++) {
+                    grid.set(x, y, z, (byte) 2);
+                }
+            }
+        }
+        Assert.assertFalse(grid.isSectionUniform(0, 0, 0));
+        long mixedMemory = grid.getMemoryUsage();
+
+        grid.compact();
+        Assert.assertTrue(grid.isSectionUniform(0, 0, 0));
+        Assert.assertEquals(1, grid.getSectionPaletteSize(0, 0, 0));
+        Assert.assertTrue(grid.getMemoryUsage() < mixedMemory);
+        Assert.assertEquals(2, grid.get(7, 8, 9));
+
+        grid.set(7, 8, 9, (byte) 1);
+        Assert.assertFalse(grid.isSectionUniform(0, 0, 0));
+        Assert.assertEquals(1, grid.get(7, 8, 9));
+        Assert.assertEquals(2, grid.get(7, 8, 10));
+    }
+
+    @Test
+    /**
+     * Test random writes against an array grid while palettes grow and shrink.
+     */
+    public void testMatchesArrayGrid() throws Exception {
+        Random random = new Random(1);
+        ChunkedVoxelGrid grid = new ChunkedVoxelGrid(20, 18, 24, 8);
+        ArrayVoxelGrid expected = new ArrayVoxelGrid(20, 18, 24);
+        for (int i = 0; i < 50000; i++) {
+            int x = random.nextInt(20);
+            int y = random.nextInt(18);
+            int z = random.nextInt(24);
+            byte tile = (byte) (random.nextInt(2) == 0 ? 0 : random.nextInt(256));
+            grid.set(x, y, z, tile);
+            expected.set(x, y, z, tile);
+            if (i % 10000 == 0) {
+                grid.compact();
+            }
+        }
+        grid.compact();
+        for (int x = 0; x < 20; x++) {
+            for (int y = 0; y < 18; y++) {
+                for (int z = 0; z < 24; z++) {
+                    Assert.assertEquals(expected.get(x, y, z), grid.get(x, y, z));
+                }
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testSectionSizePowerOfTwo() throws Exception {
+        new ChunkedVoxelGrid(16, 16, 16, 12);
+    }
+}
@@ -7,6 +7,8 @@ import com.exploringlines.entitysystem.Entity;
 import com.exploringlines.entitysystem.EntitySystem;
 import com.exploringlines.entitysystem.Subsystem;
 import com.halboom.pgt.pgutil.threading.Threading;
+import com.halboom.pgt.pgutil.voxel.ArrayVoxelGrid;
+import com.halboom.pgt.pgutil.voxel.VoxelGrid;
 import com.halboom.pgt.physics.bullet.components.BulletComponent;
 import com.halboom.pgt.physics.debug.DebugBoundsComponent;
 import com.halboom.pgt.physics.debug.DebugGrid;
@@ -161,12 +163,12 @@ public final class App extends SimpleApplication {
             });
 
             // Generate random terrain
-            byte[][][] tile = new byte[32][32][32];
-            for (int x = 0; x < tile.length; x++) {
-                for (int z = 0; z < tile[x][0].length; z++) {
-                    int height = (int) (Math.random() * (tile[x].length - 0.01));
+            VoxelGrid tile = new ArrayVoxelGrid(32, 32, 32);
+            for (int x = 0; x < tile.getLengthX(); x++) {
+                for (int z = 0; z < tile.getLengthZ(); z++) {
+                    int height = (int) (Math.random() * (tile.getLengthY() - 0.01));
                     for (int y = 0; y < height; y++) {
-                        tile[x][y][z] = 1;
+                        tile.set(x, y, z, (byte) 1);
                     }
                 }
             }
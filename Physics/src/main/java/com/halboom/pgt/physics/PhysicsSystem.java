@@ -4,6 +4,7 @@ import com.exploringlines.entitysystem.Entity;
 import com.exploringlines.entitysystem.EntitySet;
 import com.exploringlines.entitysystem.EntitySystem;
 import com.exploringlines.entitysystem.Subsystem;
+import com.halboom.pgt.pgutil.voxel.VoxelGrid;
 import com.halboom.pgt.physics.bullet.BulletSystem;
 import com.halboom.pgt.physics.components.PhysicsStateComponent;
 import com.halboom.pgt.physics.debug.DebugBoundsSystem;
@@ -12,8 +13,10 @@ import com.halboom.pgt.physics.filters.Filter;
 import com.halboom.pgt.physics.filters.PulseCollisionSystem;
 import com.halboom.pgt.physics.simple.BoundsColliderSystem;
 import com.halboom.pgt.physics.simple.BoundsSystem;
+import com.halboom.pgt.physics.simple.Broadphase;
 import com.halboom.pgt.physics.simple.CollisionCallbacks;
 import com.halboom.pgt.physics.simple.CollisionResolver;
+import com.halboom.pgt.physics.simple.GridBroadphase;
 import com.halboom.pgt.physics.simple.GridColliderSystem;
 import com.halboom.pgt.physics.simple.MovementSystem;
 import com.halboom.pgt.physics.simple.SpeedSystem;
@@ -34,6 +37,11 @@ import java.util.List;
  * System that controls and updates the other physics systems in the preferred order.
  */
 public class PhysicsSystem implements Subsystem {
+    /**
+     * Size of a broadphase grid cell in tiles.
+     */
+    private static final int BROADPHASE_CELL_TILES = 4;
+
     /**
      * Entity system to use for getting entity information.
      */
@@ -73,6 +81,7 @@ public class PhysicsSystem implements Subsystem {
 
         collisionResolver = new CollisionResolver();
         boundsSystem = new BoundsSystem(entitySystem, collisionResolver);
+        boundsSystem.setBroadphase(new GridBroadphase(BROADPHASE_CELL_TILES));
         bulletSystem = new BulletSystem(entitySystem);
         BoundsColliderSystem boundsColliderSystem =
                 new BoundsColliderSystem(entitySystem, collisionResolver, boundsSystem);
@@ -165,10 +174,23 @@ public class PhysicsSystem implements Subsystem {
      * Sets the tiles of the grid collider.
      * @param tiles the tiles to set.
      */
-    public void setTiles(byte[][][] tiles) {
+    public void setTiles(VoxelGrid tiles) {
         gridColliderSystem.setTiles(tiles);
     }
 
+    /**
+     * Updates the grid collider after the tiles within a box changed.
+     * @param minX the smallest x index of the box.
+     * @param minY the smallest y index of the box.
+     * @param minZ the smallest z index of the box.
+     * @param maxX the largest x index of the box.
+     * @param maxY the largest y index of the box.
+     * @param maxZ the largest z index of the box.
+     */
+    public void updateTiles(int minX, int minY, int minZ, int maxX, int maxY, int maxZ) {
+        gridColliderSystem.updateTiles(minX, minY, minZ, maxX, maxY, maxZ);
+    }
+
     /**
      * Sets the tile frictions for the grid collider system.
      * @param frictions the tile frictions to set.
@@ -190,6 +212,18 @@ public class PhysicsSystem implements Subsystem {
      */
     public void setTileScale(float scale) {
         gridColliderSystem.setScale(scale);
+        Broadphase broadphase = boundsSystem.getBroadphase();
+        if (broadphase instanceof GridBroadphase) {
+            ((GridBroadphase) broadphase).setCellSize(scale * BROADPHASE_CELL_TILES);
+        }
+    }
+
+    /**
+     * Sets the broadphase used to find bounds that may collide, a grid sized to the tiles is used by default.
+     * @param broadphase the broadphase to set.
+     */
+    public void setBroadphase(Broadphase broadphase) {
+        boundsSystem.setBroadphase(broadphase);
     }
 
     /**
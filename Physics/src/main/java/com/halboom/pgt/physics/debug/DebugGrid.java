@@ -1,5 +1,6 @@
 package com.halboom.pgt.physics.debug;
 
+import com.halboom.pgt.pgutil.voxel.VoxelGrid;
 import com.jme3.asset.AssetManager;
 import com.jme3.material.Material;
 import com.jme3.math.Vector3f;
@@ -33,7 +34,7 @@ public class DebugGrid {
     /**
      * Tiles the grid uses.
      */
-    private byte[][][] tiles;
+    private VoxelGrid tiles;
 
     /**
      * Size of a tile.
@@ -56,10 +57,10 @@ public class DebugGrid {
             return;
         }
         debugRoot = new Node();
-        for (int x = 0; x < tiles.length; x++) {
-            for (int y = 0; y < tiles[x].length; y++) {
-                for (int z = 0; z < tiles[x][y].length; z++) {
-                    if (tiles[x][y][z] != 0) {
+        for (int x = 0; x < tiles.getLengthX(); x++) {
+            for (int y = 0; y < tiles.getLengthY(); y++) {
+                for (int z = 0; z < tiles.getLengthZ(); z++) {
+                    if (tiles.get(x, y, z) != 0) {
                         Box box = new Box(size / 2, size / 2, size / 2);
                         Geometry boxGeometry = new Geometry("grid", box);
                         Material material = new Material(assetManager, "Common/MatDefs/Misc/Unshaded.j3md");
@@ -76,7 +77,7 @@ public class DebugGrid {
     /**
      * @param tiles the tiles to set for debugging.
      */
-    public void setTiles(byte[][][] tiles) {
+    public void setTiles(VoxelGrid tiles) {
         this.tiles = tiles;
         disable();
         generateDisplay();
@@ -0,0 +1,637 @@
+package com.halboom.pgt.physics.pathfinding;
+
+import com.halboom.pgt.pgutil.voxel.VoxelGrid;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Walkable cells of the tiles for walkers of one height blocked by the same tile collision groups.
+ * A cell is walkable if the tile below it blocks the walker and the tiles it takes up do not.
+ * Walkers move to the eight cells around them on the same level, step up or down one tile
+ * and drop down a few tiles, diagonal moves are only allowed if both sides are walkable.
+ * The walkable cells of each region are split into areas connected by moves that can be walked back,
+ * these areas are the nodes searched first to find which areas a path passes through.
+ * Only used by the search thread of the pathfinder.
+ */
+final class NavigationLayer {
+    /**
+     * Most tiles a walker drops down in one move, drops of more than one tile cannot be walked back.
+     */
+    static final int MAX_DROP = 3;
+
+    /**
+     * Size of a buffer holding the coordinates of every move from a cell.
+     */
+    static final int MOVES_LENGTH = 8 * 3;
+
+    /**
+     * Bits of an area node holding the area label, the region index is stored above them.
+     */
+    static final int LABEL_BITS = 16;
+
+    /**
+     * Mask for the area label of an area node.
+     */
+    static final long LABEL_MASK = (1L << LABEL_BITS) - 1;
+
+    /**
+     * Number of moves along the axes, the first directions.
+     */
+    private static final int ORTHOGONAL_DIRECTIONS = 4;
+
+    /**
+     * Steps along the x and z axes of each direction, the axes first and then the diagonals.
+     */
+    private static final int[] DIRECTIONS_X = {1, -1, 0, 0, 1, 1, -1, -1},
+                               DIRECTIONS_Z = {0, 0, 1, -1, 1, -1, 1, -1};
+
+    /**
+     * Collision groups of tile types without groups set.
+     */
+    private static final long DEFAULT_TILE_GROUPS = 1;
+
+    /**
+     * Largest number of cached corridors before the cache is cleared.
+     */
+    private static final int MAX_CORRIDORS = 1024;
+
+    /**
+     * Walkable areas of a region.
+     */
+    static final class Regions {
+        /**
+         * Area label of each cell in the region, 0 if the cell is not walkable.
+         */
+        private final short[] labels;
+
+        /**
+         * Number of areas in the region.
+         */
+        private int count = 0;
+
+        /**
+         * Average cell of each area by label as x, y and z.
+         */
+        private float[] centers;
+
+        /**
+         * Area nodes each area has a move into by label, null until needed.
+         */
+        private long[][] edges;
+
+        /**
+         * Creates the areas of a region.
+         * @param volume the number of cells in the region.
+         */
+        private Regions(int volume) {
+            labels = new short[volume];
+        }
+
+        /**
+         * @param local the index of the cell within the region.
+         * @return the area label of the cell, 0 if the cell is not walkable.
+         */
+        int getLabel(int local) {
+            return labels[local];
+        }
+    }
+
+    /**
+     * Tiles to walk on.
+     */
+    private final VoxelGrid tiles;
+
+    /**
+     * Collision groups of each tile type.
+     */
+    private final long[] tileGroups;
+
+    /**
+     * Tile collision groups blocking the walker.
+     */
+    private final long groups;
+
+    /**
+     * Number of tiles the walker takes up vertically.
+     */
+    private final int height;
+
+    /**
+     * Size of a region along each axis in tiles, a power of two.
+     */
+    private final int regionSize;
+
+    /**
+     * Shift turning a tile index into a region index.
+     */
+    private final int regionShift;
+
+    /**
+     * Number of regions along each axis.
+     */
+    private final int regionsX, regionsY, regionsZ;
+
+    /**
+     * Areas of the regions that were needed by index.
+     */
+    private final Map<Integer, Regions> regions = new HashMap<Integer, Regions>();
+
+    /**
+     * Corridors of area nodes found between two area nodes by the start and goal node.
+     */
+    private final Map<Long, Map<Long, long[]>> corridors = new HashMap<Long, Map<Long, long[]>>();
+
+    /**
+     * Number of cached corridors.
+     */
+    private int corridorCount = 0;
+
+    /**
+     * Cells left to flood while labelling areas.
+     */
+    private final int[] floodStack;
+
+    /**
+     * Coordinates of the moves from the cell being flooded.
+     */
+    private final int[] floodMoves = new int[MOVES_LENGTH];
+
+    /**
+     * Creates the layer.
+     * @param tiles the tiles to walk on.
+     * @param tileGroups the collision groups of each tile type.
+     * @param groups the tile collision groups blocking the walker.
+     * @param height the number of tiles the walker takes up vertically.
+     * @param regionSize the size of a region along each axis in tiles, a power of two.
+     */
+    NavigationLayer(VoxelGrid tiles, long[] tileGroups, long groups, int height, int regionSize) {
+        this.tiles = tiles;
+        this.tileGroups = tileGroups;
+        this.groups = groups;
+        this.height = height;
+        this.regionSize = regionSize;
+        regionShift = Integer.numberOfTrailingZeros(regionSize);
+        regionsX = (tiles.getLengthX() + regionSize - 1) >> regionShift;
+        regionsY = (tiles.getLengthY() + regionSize - 1) >> regionShift;
+        regionsZ = (tiles.getLengthZ() + regionSize - 1) >> regionShift;
+        floodStack = new int[regionSize * regionSize * regionSize];
+    }
+
+    /**
+     * Checks if a tile blocks the walker, tiles outside of the grid do not.
+     * @param x the x index.
+     * @param y the y index.
+     * @param z the z index.
+     * @return true if the tile blocks the walker.
+     */
+    private boolean isSolid(int x, int y, int z) {
+        if (!tiles.isInBounds(x, y, z)) {
+            return false;
+        }
+        int tile = tiles.get(x, y, z) & 0xFF;
+        if (tile == 0) {
+            return false;
+        }
+        long tileGroup = tile < tileGroups.length ? tileGroups[tile] : DEFAULT_TILE_GROUPS;
+        return (tileGroup & groups) != 0;
+    }
+
+    /**
+     * Checks that none of the tiles in a column block the walker.
+     * @param x the x index.
+     * @param minY the lowest y index.
+     * @param maxY the highest y index.
+     * @param z the z index.
+     * @return true if no tile in the column blocks the walker.
+     */
+    private boolean isClear(int x, int minY, int maxY, int z) {
+        for (int y = minY; y <= maxY; y++) {
+            if (isSolid(x, y, z)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Checks if the walker can stand in a cell.
+     * @param x the x index.
+     * @param y the y index of the tile the walker's feet are in.
+     * @param z the z index.
+     * @return true if the cell is in the grid, stands on a blocking tile and has room for the walker.
+     */
+    boolean isWalkable(int x, int y, int z) {
+        return y > 0 && tiles.isInBounds(x, y, z) && isSolid(x, y - 1, z) && isClear(x, y, y + height - 1, z);
+    }
+
+    /**
+     * Finds the cells the walker can move to from a walkable cell.
+     * @param x the x index.
+     * @param y the y index.
+     * @param z the z index.
+     * @param isReversible true to only find moves that can be walked back, leaving out drops of more than one tile.
+     * @param store the buffer to store the x, y and z index of each move in, at least MOVES_LENGTH long.
+     * @return the number of indices stored, three for each move.
+     */
+    int getMoves(int x, int y, int z, boolean isReversible, int[] store) {
+        int count = 0;
+        for (int i = 0; i < ORTHOGONAL_DIRECTIONS; i++) {
+            int nextX = x + DIRECTIONS_X[i];
+            int nextZ = z + DIRECTIONS_Z[i];
+            int nextY = -1;
+            if (isWalkable(nextX, y, nextZ)) {
+                nextY = y;
+            } else if (isWalkable(nextX, y + 1, nextZ) && !isSolid(x, y + height, z)) {
+                nextY = y + 1;
+            } else if (tiles.isInBounds(nextX, y, nextZ) && isClear(nextX, y, y + height - 1, nextZ)) {
+                int maxDrop = isReversible ? 1 : MAX_DROP;
+                for (int drop = 1; drop <= maxDrop && !isSolid(nextX, y - drop, nextZ); drop++) {
+                    if (isWalkable(nextX, y - drop, nextZ)) {
+                        nextY = y - drop;
+                        break;
+                    }
+                }
+            }
+            if (nextY != -1) {
+                store[count++] = nextX;
+                store[count++] = nextY;
+                store[count++] = nextZ;
+            }
+        }
+        for (int i = ORTHOGONAL_DIRECTIONS; i < DIRECTIONS_X.length; i++) {
+            int nextX = x + DIRECTIONS_X[i];
+            int nextZ = z + DIRECTIONS_Z[i];
+            if (isWalkable(nextX, y, nextZ) && isWalkable(nextX, y, z) && isWalkable(x, y, nextZ)) {
+                store[count++] = nextX;
+                store[count++] = y;
+                store[count++] = nextZ;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Retrieves the areas of a region, labelling them if needed.
+     * @param index the index of the region.
+     * @return the areas of the region.
+     */
+    Regions getRegions(int index) {
+        Regions regionAreas = regions.get(index);
+        if (regionAreas == null) {
+            regionAreas = labelRegion(index);
+            regions.put(index, regionAreas);
+        }
+        return regionAreas;
+    }
+
+    /**
+     * Splits the walkable cells of a region into areas connected by moves that can be walked back.
+     * @param index the index of the region.
+     * @return the areas of the region.
+     */
+    private Regions labelRegion(int index) {
+        int volume = regionSize * regionSize * regionSize;
+        Regions regionAreas = new Regions(volume);
+        int baseX = getRegionX(index) << regionShift;
+        int baseY = getRegionY(index) << regionShift;
+        int baseZ = getRegionZ(index) << regionShift;
+        float[] sums = new float[16 * 3];
+        int[] sizes = new int[16];
+        for (int local = 0; local < volume; local++) {
+            if (regionAreas.labels[local] != 0 || !isWalkable(baseX + getLocalX(local), baseY + getLocalY(local),
+                    baseZ + getLocalZ(local))) {
+                continue;
+            }
+            int label = ++regionAreas.count;
+            if (label * 3 + 2 >= sums.length) {
+                sums = Arrays.copyOf(sums, sums.length * 2);
+                sizes = Arrays.copyOf(sizes, sizes.length * 2);
+            }
+            regionAreas.labels[local] = (short) label;
+            int stackSize = 0;
+            floodStack[stackSize++] = local;
+            while (stackSize > 0) {
+                int cell = floodStack[--stackSize];
+                int x = baseX + getLocalX(cell);
+                int y = baseY + getLocalY(cell);
+                int z = baseZ + getLocalZ(cell);
+                sums[label * 3] += x;
+                sums[label * 3 + 1] += y;
+                sums[label * 3 + 2] += z;
+                sizes[label]++;
+                int moveCount = getMoves(x, y, z, true, floodMoves);
+                for (int i = 0; i < moveCount; i += 3) {
+                    if (getRegionIndex(floodMoves[i], floodMoves[i + 1], floodMoves[i + 2]) != index) {
+                        continue;
+                    }
+                    int next = getLocalIndex(floodMoves[i], floodMoves[i + 1], floodMoves[i + 2]);
+                    if (regionAreas.labels[next] == 0) {
+                        regionAreas.labels[next] = (short) label;
+                        floodStack[stackSize++] = next;
+                    }
+                }
+            }
+        }
+        regionAreas.centers = new float[(regionAreas.count + 1) * 3];
+        for (int label = 1; label <= regionAreas.count; label++) {
+            for (int axis = 0; axis < 3; axis++) {
+                regionAreas.centers[label * 3 + axis] = sums[label * 3 + axis] / sizes[label];
+            }
+        }
+        return regionAreas;
+    }
+
+    /**
+     * Finds the area nodes each area of a region has a move into.
+     * @param index the index of the region.
+     * @param regionAreas the areas of the region.
+     */
+    private void connectRegion(int index, Regions regionAreas) {
+        @SuppressWarnings("unchecked")
+        Set<Long>[] targets = new Set[regionAreas.count + 1];
+        int baseX = getRegionX(index) << regionShift;
+        int baseY = getRegionY(index) << regionShift;
+        int baseZ = getRegionZ(index) << regionShift;
+        int[] moves = new int[MOVES_LENGTH];
+        for (int local = 0; local < regionAreas.labels.length; local++) {
+            int label = regionAreas.labels[local];
+            if (label == 0) {
+                continue;
+            }
+            int moveCount = getMoves(baseX + getLocalX(local), baseY + getLocalY(local), baseZ + getLocalZ(local),
+                    false, moves);
+            for (int i = 0; i < moveCount; i += 3) {
+                long node = getNode(moves[i], moves[i + 1], moves[i + 2]);
+                if (node == -1 || node == getNode(index, label)) {
+                    continue;
+                }
+                if (targets[label] == null) {
+                    targets[label] = new HashSet<Long>();
+                }
+                targets[label].add(node);
+            }
+        }
+        regionAreas.edges = new long[regionAreas.count + 1][];
+        for (int label = 1; label <= regionAreas.count; label++) {
+            int i = 0;
+            regionAreas.edges[label] = new long[targets[label] == null ? 0 : targets[label].size()];
+            if (targets[label] != null) {
+                for (Long node : targets[label]) {
+                    regionAreas.edges[label][i++] = node;
+                }
+            }
+        }
+    }
+
+    /**
+     * Retrieves the area node of a cell.
+     * @param x the x index.
+     * @param y the y index.
+     * @param z the z index.
+     * @return the area node of the cell or -1 if the cell is not walkable.
+     */
+    long getNode(int x, int y, int z) {
+        if (!tiles.isInBounds(x, y, z)) {
+            return -1;
+        }
+        int index = getRegionIndex(x, y, z);
+        int label = getRegions(index).labels[getLocalIndex(x, y, z)];
+        return label == 0 ? -1 : getNode(index, label);
+    }
+
+    /**
+     * @param index the index of the region.
+     * @param label the label of the area.
+     * @return the area node.
+     */
+    static long getNode(int index, int label) {
+        return ((long) index << LABEL_BITS) | label;
+    }
+
+    /**
+     * @param node the area node.
+     * @return the index of the region of the area.
+     */
+    static int getNodeRegion(long node) {
+        return (int) (node >>> LABEL_BITS);
+    }
+
+    /**
+     * @param node the area node.
+     * @return the label of the area within its region.
+     */
+    static int getNodeLabel(long node) {
+        return (int) (node & LABEL_MASK);
+    }
+
+    /**
+     * Retrieves the area nodes an area has a move into, finding them for the region if needed.
+     * @param node the area node.
+     * @return the area nodes moved into.
+     */
+    long[] getEdges(long node) {
+        int index = getNodeRegion(node);
+        Regions regionAreas = getRegions(index);
+        if (regionAreas.edges == null) {
+            connectRegion(index, regionAreas);
+        }
+        return regionAreas.edges[getNodeLabel(node)];
+    }
+
+    /**
+     * Retrieves the average cell of an area.
+     * @param node the area node.
+     * @param axis 0 for x, 1 for y and 2 for z.
+     * @return the average index of the area's cells along the axis.
+     */
+    float getCenter(long node, int axis) {
+        return getRegions(getNodeRegion(node)).centers[getNodeLabel(node) * 3 + axis];
+    }
+
+    /**
+     * @param start the area node the corridor starts at.
+     * @param goal the area node the corridor ends at.
+     * @return the cached corridor of area nodes between the nodes or null if none is cached.
+     */
+    long[] getCorridor(long start, long goal) {
+        Map<Long, long[]> goals = corridors.get(start);
+        return goals == null ? null : goals.get(goal);
+    }
+
+    /**
+     * Caches a corridor of area nodes.
+     * @param start the area node the corridor starts at.
+     * @param goal the area node the corridor ends at.
+     * @param corridor the area nodes from the start to the goal.
+     */
+    void putCorridor(long start, long goal, long[] corridor) {
+        if (corridorCount >= MAX_CORRIDORS) {
+            corridors.clear();
+            corridorCount = 0;
+        }
+        Map<Long, long[]> goals = corridors.get(start);
+        if (goals == null) {
+            goals = new HashMap<Long, long[]>();
+            corridors.put(start, goals);
+        }
+        if (goals.put(goal, corridor) == null) {
+            corridorCount++;
+        }
+    }
+
+    /**
+     * Drops the areas and corridors that may have changed after the tiles within a box changed.
+     * Areas of the regions next to the box are labelled again as their cells depend on the tiles around them,
+     * regions next to those only find their moves again as moves look into the regions around them.
+     * @param minX the smallest x index of the box.
+     * @param minY the smallest y index of the box.
+     * @param minZ the smallest z index of the box.
+     * @param maxX the largest x index of the box.
+     * @param maxY the largest y index of the box.
+     * @param maxZ the largest z index of the box.
+     */
+    void invalidate(int minX, int minY, int minZ, int maxX, int maxY, int maxZ) {
+        int minRegionX = (Math.max(minX, 0) >> regionShift) - 1;
+        int minRegionY = (Math.max(minY, 0) >> regionShift) - 1;
+        int minRegionZ = (Math.max(minZ, 0) >> regionShift) - 1;
+        int maxRegionX = (Math.max(maxX, 0) >> regionShift) + 1;
+        int maxRegionY = (Math.max(maxY, 0) >> regionShift) + 1;
+        int maxRegionZ = (Math.max(maxZ, 0) >> regionShift) + 1;
+        Set<Integer> relabelled = new HashSet<Integer>();
+        for (int x = minRegionX - 1; x <= maxRegionX + 1; x++) {
+            for (int y = minRegionY - 1; y <= maxRegionY + 1; y++) {
+                for (int z = minRegionZ - 1; z <= maxRegionZ + 1; z++) {
+                    if (x < 0 || y < 0 || z < 0 || x >= regionsX || y >= regionsY || z >= regionsZ) {
+                        continue;
+                    }
+                    int index = (x * regionsY + y) * regionsZ + z;
+                    boolean isNear = x >= minRegionX && x <= maxRegionX && y >= minRegionY && y <= maxRegionY
+                            && z >= minRegionZ && z <= maxRegionZ;
+                    if (isNear) {
+                        if (regions.remove(index) != null) {
+                            relabelled.add(index);
+                        }
+                    } else {
+                        Regions regionAreas = regions.get(index);
+                        if (regionAreas != null) {
+                            regionAreas.edges = null;
+                        }
+                    }
+                }
+            }
+        }
+        if (relabelled.isEmpty()) {
+            return;
+        }
+        for (Iterator<Map<Long, long[]>> goalsIterator = corridors.values().iterator(); goalsIterator.hasNext();) {
+            Map<Long, long[]> goals = goalsIterator.next();
+            for (Iterator<long[]> iterator = goals.values().iterator(); iterator.hasNext();) {
+                for (long node : iterator.next()) {
+                    if (relabelled.contains(getNodeRegion(node))) {
+                        iterator.remove();
+                        corridorCount--;
+                        break;
+                    }
+                }
+            }
+            if (goals.isEmpty()) {
+                goalsIterator.remove();
+            }
+        }
+    }
+
+    /**
+     * @param x the x index.
+     * @param y the y index.
+     * @param z the z index.
+     * @return the index of the region holding the tile.
+     */
+    int getRegionIndex(int x, int y, int z) {
+        return ((x >> regionShift) * regionsY + (y >> regionShift)) * regionsZ + (z >> regionShift);
+    }
+
+    /**
+     * @param x the x index.
+     * @param y the y index.
+     * @param z the z index.
+     * @return the index of the tile within its region.
+     */
+    int getLocalIndex(int x, int y, int z) {
+        int mask = regionSize - 1;
+        return ((x & mask) << (regionShift * 2)) | ((y & mask) << regionShift) | (z & mask);
+    }
+
+    /**
+     * @param local the index of a tile within its region.
+     * @return the x index of the tile within its region.
+     */
+    int getLocalX(int local) {
+        return local >> (regionShift * 2);
+    }
+
+    /**
+     * @param local the index of a tile within its region.
+     * @return the y index of the tile within its region.
+     */
+    int getLocalY(int local) {
+        return (local >> regionShift) & (regionSize - 1);
+    }
+
+    /**
+     * @param local the index of a tile within its region.
+     * @return the z index of the tile within its region.
+     */
+    int getLocalZ(int local) {
+        return local & (regionSize - 1);
+    }
+
+    /**
+     * @param index the index of a region.
+     * @return the x index of the region.
+     */
+    int getRegionX(int index) {
+        return index / (regionsY * regionsZ);
+    }
+
+    /**
+     * @param index the index of a region.
+     * @return the y index of the region.
+     */
+    int getRegionY(int index) {
+        return index / regionsZ % regionsY;
+    }
+
+    /**
+     * @param index the index of a region.
+     * @return the z index of the region.
+     */
+    int getRegionZ(int index) {
+        return index % regionsZ;
+    }
+
+    /**
+     * @return the number of regions.
+     */
+    int getRegionCount() {
+        return regionsX * regionsY * regionsZ;
+    }
+
+    /**
+     * @return the size of a region along each axis in tiles.
+     */
+    int getRegionSize() {
+        return regionSize;
+    }
+
+    /**
+     * @return the shift turning a tile index into a region index.
+     */
+    int getRegionShift() {
+        return regionShift;
+    }
+}
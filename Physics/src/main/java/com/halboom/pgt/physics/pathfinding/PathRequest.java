@@ -0,0 +1,169 @@
+package com.halboom.pgt.physics.pathfinding;
+
+/**
+ * Path asked of the pathfinder, filled in by a later pathfinder update once the search finishes.
+ */
+public final class PathRequest {
+    /**
+     * Cells the walker starts and ends at.
+     */
+    final int startX, startY, startZ, goalX, goalY, goalZ;
+
+    /**
+     * Number of tiles the walker takes up vertically.
+     */
+    final int height;
+
+    /**
+     * Tile collision groups blocking the walker.
+     */
+    final long groups;
+
+    /**
+     * Edit count of the pathfinder when the search was started.
+     */
+    long searchedEdit;
+
+    /**
+     * Cells the found path turns at set by the search, null if none was found.
+     */
+    int[] cells;
+
+    /**
+     * Regions of the areas the found path passes through set by the search.
+     */
+    int[] regions;
+
+    /**
+     * Positions of the feet at each waypoint as x, y and z.
+     */
+    private float[] waypoints;
+
+    /**
+     * True once the search finished.
+     */
+    private boolean isDone = false;
+
+    /**
+     * True if the request was cancelled.
+     */
+    private boolean isCancelled = false;
+
+    /**
+     * Creates the request.
+     * @param startX the x index of the start.
+     * @param startY the y index of the start.
+     * @param startZ the z index of the start.
+     * @param goalX the x index of the goal.
+     * @param goalY the y index of the goal.
+     * @param goalZ the z index of the goal.
+     * @param height the number of tiles the walker takes up vertically.
+     * @param groups the tile collision groups blocking the walker.
+     */
+    PathRequest(int startX, int startY, int startZ, int goalX, int goalY, int goalZ, int height, long groups) {
+        this.startX = startX;
+        this.startY = startY;
+        this.startZ = startZ;
+        this.goalX = goalX;
+        this.goalY = goalY;
+        this.goalZ = goalZ;
+        this.height = height;
+        this.groups = groups;
+    }
+
+    /**
+     * Finishes the request with the cells found by the search.
+     * @param scale the size of a tile.
+     */
+    void finish(float scale) {
+        if (cells != null) {
+            waypoints = new float[cells.length];
+            for (int i = 0; i < cells.length; i += 3) {
+                waypoints[i] = (cells[i] + 0.5f) * scale;
+                waypoints[i + 1] = cells[i + 1] * scale;
+                waypoints[i + 2] = (cells[i + 2] + 0.5f) * scale;
+            }
+        }
+        isDone = true;
+    }
+
+    /**
+     * Marks the request as cancelled.
+     */
+    void cancel() {
+        isCancelled = true;
+    }
+
+    /**
+     * @return true if the request was cancelled.
+     */
+    boolean getIsCancelled() {
+        return isCancelled;
+    }
+
+    /**
+     * @return true once the search finished.
+     */
+    public boolean getIsDone() {
+        return isDone;
+    }
+
+    /**
+     * @return true if the search finished and found a path.
+     */
+    public boolean getIsFound() {
+        return isDone && waypoints != null;
+    }
+
+    /**
+     * @return the number of waypoints of the found path, 0 if none was found.
+     */
+    public int getWaypointCount() {
+        return waypoints == null ? 0 : waypoints.length / 3;
+    }
+
+    /**
+     * @param index the index of the waypoint.
+     * @return the x position of the feet at the waypoint.
+     */
+    public float getWaypointX(int index) {
+        return waypoints[index * 3];
+    }
+
+    /**
+     * @param index the index of the waypoint.
+     * @return the y position of the feet at the waypoint.
+     */
+    public float getWaypointY(int index) {
+        return waypoints[index * 3 + 1];
+    }
+
+    /**
+     * @param index the index of the waypoint.
+     * @return the z position of the feet at the waypoint.
+     */
+    public float getWaypointZ(int index) {
+        return waypoints[index * 3 + 2];
+    }
+
+    /**
+     * @return the x index of the goal cell asked for.
+     */
+    public int getGoalX() {
+        return goalX;
+    }
+
+    /**
+     * @return the y index of the goal cell asked for.
+     */
+    public int getGoalY() {
+        return goalY;
+    }
+
+    /**
+     * @return the z index of the goal cell asked for.
+     */
+    public int getGoalZ() {
+        return goalZ;
+    }
+}
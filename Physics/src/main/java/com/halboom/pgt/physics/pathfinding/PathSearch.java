@@ -0,0 +1,514 @@
+package com.halboom.pgt.physics.pathfinding;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Finds paths through a navigation layer in two steps.
+ * A* first searches the areas of the regions for a corridor of areas from the start to the goal,
+ * then searches the cells for a path only looking at the cells of the areas in the corridor.
+ * Found corridors are cached in the layer so walkers starting and ending in the same areas share them.
+ * Only used by the search thread of the pathfinder.
+ */
+final class PathSearch {
+    /**
+     * Most area nodes looked at while searching for a corridor.
+     */
+    private static final int MAX_CORRIDOR_EXPANSIONS = 4096;
+
+    /**
+     * Most cells looked at while searching for a path within a corridor.
+     */
+    private static final int MAX_PATH_EXPANSIONS = 1 << 16;
+
+    /**
+     * Area node being searched for a corridor.
+     */
+    private static final class AreaNode implements Comparable<AreaNode> {
+        /**
+         * Area node of the layer.
+         */
+        private final long node;
+
+        /**
+         * Cost from the start and estimated cost to the goal through the node.
+         */
+        private float cost, estimate;
+
+        /**
+         * Node the cheapest known way to this node comes from.
+         */
+        private AreaNode parent;
+
+        /**
+         * True once the node has been expanded.
+         */
+        private boolean isClosed;
+
+        /**
+         * Creates the node.
+         * @param node the area node of the layer.
+         */
+        private AreaNode(long node) {
+            this.node = node;
+        }
+
+        @Override
+        public int compareTo(AreaNode other) {
+            return Float.compare(estimate, other.estimate);
+        }
+    }
+
+    /**
+     * Area nodes reached while searching for a corridor.
+     */
+    private final Map<Long, AreaNode> areaNodes = new HashMap<Long, AreaNode>();
+
+    /**
+     * Area nodes left to expand ordered by estimated cost.
+     */
+    private final PriorityQueue<AreaNode> openAreas = new PriorityQueue<AreaNode>();
+
+    /**
+     * Stamp of the current cell search, cells and regions with other stamps are not part of it.
+     */
+    private int stamp = 0;
+
+    /**
+     * Slot of each region in the corridor and the stamp the slot was set with.
+     */
+    private int[] regionSlots = new int[0], regionStamps = new int[0];
+
+    /**
+     * Number of regions in the corridor.
+     */
+    private int slotCount = 0;
+
+    /**
+     * Areas of the region of each slot.
+     */
+    private NavigationLayer.Regions[] slotRegions = new NavigationLayer.Regions[0];
+
+    /**
+     * Region index of each slot.
+     */
+    private int[] slotIndices = new int[0];
+
+    /**
+     * Labels of the corridor areas of each slot.
+     */
+    private BitSet[] slotLabels = new BitSet[0];
+
+    /**
+     * Cost from the start of each cell by slot and local index.
+     */
+    private float[] costs = new float[0];
+
+    /**
+     * Cell the cheapest known way to each cell comes from.
+     */
+    private int[] parents = new int[0];
+
+    /**
+     * Stamp set once a cell is reached and once it is expanded.
+     */
+    private int[] reachedStamps = new int[0], closedStamps = new int[0];
+
+    /**
+     * Cells left to expand as a binary heap, may hold outdated entries.
+     */
+    private int[] heapCells = new int[64];
+
+    /**
+     * Estimated cost through each heap entry.
+     */
+    private float[] heapEstimates = new float[64];
+
+    /**
+     * Number of heap entries.
+     */
+    private int heapSize = 0;
+
+    /**
+     * Coordinates of the moves from the cell being expanded.
+     */
+    private final int[] moves = new int[NavigationLayer.MOVES_LENGTH];
+
+    /**
+     * Corridor of area nodes of the last path found, null if none was found.
+     */
+    private long[] foundCorridor;
+
+    /**
+     * Finds a path between two walkable cells.
+     * @param layer the layer to search.
+     * @param startX the x index of the start.
+     * @param startY the y index of the start.
+     * @param startZ the z index of the start.
+     * @param goalX the x index of the goal.
+     * @param goalY the y index of the goal.
+     * @param goalZ the z index of the goal.
+     * @return the x, y and z index of the cells the path turns at ending with the goal, without the start,
+     * or null if no path was found.
+     */
+    int[] findPath(NavigationLayer layer, int startX, int startY, int startZ, int goalX, int goalY, int goalZ) {
+        foundCorridor = null;
+        long start = layer.getNode(startX, startY, startZ);
+        long goal = layer.getNode(goalX, goalY, goalZ);
+        if (start == -1 || goal == -1) {
+            return null;
+        }
+        long[] corridor = layer.getCorridor(start, goal);
+        if (corridor == null) {
+            corridor = findCorridor(layer, start, goal, goalX, goalY, goalZ);
+            if (corridor == null) {
+                return null;
+            }
+            layer.putCorridor(start, goal, corridor);
+        }
+        int[] cells = findCells(layer, corridor, startX, startY, startZ, goalX, goalY, goalZ);
+        if (cells != null) {
+            foundCorridor = corridor;
+        }
+        return cells;
+    }
+
+    /**
+     * @return the corridor of area nodes of the last path found, null if the last search found none.
+     */
+    long[] getFoundCorridor() {
+        return foundCorridor;
+    }
+
+    /**
+     * Searches the areas for a corridor between two area nodes.
+     * @param layer the layer to search.
+     * @param start the area node to start from.
+     * @param goal the area node to reach.
+     * @param goalX the x index of the goal cell.
+     * @param goalY the y index of the goal cell.
+     * @param goalZ the z index of the goal cell.
+     * @return the area nodes from the start to the goal or null if the goal cannot be reached.
+     */
+    private long[] findCorridor(NavigationLayer layer, long start, long goal, int goalX, int goalY, int goalZ) {
+        areaNodes.clear();
+        openAreas.clear();
+        AreaNode startNode = new AreaNode(start);
+        startNode.estimate = getAreaDistance(layer, start, goalX, goalY, goalZ);
+        areaNodes.put(start, startNode);
+        openAreas.add(startNode);
+        int expansions = 0;
+        while (!openAreas.isEmpty() && expansions < MAX_CORRIDOR_EXPANSIONS) {
+            AreaNode current = openAreas.poll();
+            current.isClosed = true;
+            expansions++;
+            if (current.node == goal) {
+                int length = 0;
+                for (AreaNode node = current; node != null; node = node.parent) {
+                    length++;
+                }
+                long[] corridor = new long[length];
+                for (AreaNode node = current; node != null; node = node.parent) {
+                    corridor[--length] = node.node;
+                }
+                return corridor;
+            }
+            for (long edge : layer.getEdges(current.node)) {
+                AreaNode next = areaNodes.get(edge);
+                if (next == null) {
+                    next = new AreaNode(edge);
+                    next.cost = Float.MAX_VALUE;
+                    areaNodes.put(edge, next);
+                } else if (next.isClosed) {
+                    continue;
+                }
+                float cost = current.cost + Math.max(1f, getAreaDistance(layer, current.node, edge));
+                if (cost < next.cost) {
+                    // Take the node out before changing its estimate so the queue stays ordered.
+                    openAreas.remove(next);
+                    next.cost = cost;
+                    next.parent = current;
+                    next.estimate = cost + getAreaDistance(layer, edge, goalX, goalY, goalZ);
+                    openAreas.add(next);
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Searches the cells of the corridor areas for a path.
+     * @param layer the layer to search.
+     * @param corridor the area nodes the path may pass through.
+     * @param startX the x index of the start.
+     * @param startY the y index of the start.
+     * @param startZ the z index of the start.
+     * @param goalX the x index of the goal.
+     * @param goalY the y index of the goal.
+     * @param goalZ the z index of the goal.
+     * @return the cells the path turns at or null if no path was found within the corridor.
+     */
+    private int[] findCells(NavigationLayer layer, long[] corridor, int startX, int startY, int startZ,
+                            int goalX, int goalY, int goalZ) {
+        setCorridor(layer, corridor);
+        int shift = layer.getRegionShift();
+        int volumeShift = shift * 3;
+        int start = getCell(layer, startX, startY, startZ);
+        int goal = getCell(layer, goalX, goalY, goalZ);
+        heapSize = 0;
+        costs[start] = 0;
+        parents[start] = -1;
+        reachedStamps[start] = stamp;
+        push(start, getDistance(startX, startY, startZ, goalX, goalY, goalZ));
+        int expansions = 0;
+        while (heapSize > 0 && expansions < MAX_PATH_EXPANSIONS) {
+            int cell = pop();
+            if (closedStamps[cell] == stamp) {
+                continue;
+            }
+            closedStamps[cell] = stamp;
+            expansions++;
+            if (cell == goal) {
+                return getTurns(layer, goal);
+            }
+            int slot = cell >> volumeShift;
+            int local = cell & ((1 << volumeShift) - 1);
+            int regionIndex = slotIndices[slot];
+            int x = (layer.getRegionX(regionIndex) << shift) + layer.getLocalX(local);
+            int y = (layer.getRegionY(regionIndex) << shift) + layer.getLocalY(local);
+            int z = (layer.getRegionZ(regionIndex) << shift) + layer.getLocalZ(local);
+            int moveCount = layer.getMoves(x, y, z, false, moves);
+            for (int i = 0; i < moveCount; i += 3) {
+                int nextX = moves[i];
+                int nextY = moves[i + 1];
+                int nextZ = moves[i + 2];
+                int next = getCell(layer, nextX, nextY, nextZ);
+                if (next == -1 || closedStamps[next] == stamp) {
+                    continue;
+                }
+                float cost = costs[cell] + getDistance(x, y, z, nextX, nextY, nextZ);
+                if (reachedStamps[next] != stamp || cost < costs[next]) {
+                    reachedStamps[next] = stamp;
+                    costs[next] = cost;
+                    parents[next] = cell;
+                    push(next, cost + getDistance(nextX, nextY, nextZ, goalX, goalY, goalZ));
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Gives each region of the corridor a slot and marks the labels of its corridor areas.
+     * @param layer the layer to search.
+     * @param corridor the area nodes the path may pass through.
+     */
+    private void setCorridor(NavigationLayer layer, long[] corridor) {
+        stamp++;
+        if (regionSlots.length < layer.getRegionCount()) {
+            regionSlots = new int[layer.getRegionCount()];
+            regionStamps = new int[layer.getRegionCount()];
+        }
+        slotCount = 0;
+        for (long node : corridor) {
+            int regionIndex = NavigationLayer.getNodeRegion(node);
+            int slot;
+            if (regionStamps[regionIndex] == stamp) {
+                slot = regionSlots[regionIndex];
+            } else {
+                slot = slotCount++;
+                if (slot == slotRegions.length) {
+                    int length = Math.max(4, slotRegions.length * 2);
+                    slotRegions = Arrays.copyOf(slotRegions, length);
+                    slotIndices = Arrays.copyOf(slotIndices, length);
+                    slotLabels = Arrays.copyOf(slotLabels, length);
+                }
+                regionStamps[regionIndex] = stamp;
+                regionSlots[regionIndex] = slot;
+                slotRegions[slot] = layer.getRegions(regionIndex);
+                slotIndices[slot] = regionIndex;
+                if (slotLabels[slot] == null) {
+                    slotLabels[slot] = new BitSet();
+                } else {
+                    slotLabels[slot].clear();
+                }
+            }
+            slotLabels[slot].set(NavigationLayer.getNodeLabel(node));
+        }
+        int regionSize = layer.getRegionSize();
+        int cells = slotCount * regionSize * regionSize * regionSize;
+        if (costs.length < cells) {
+            costs = new float[cells];
+            parents = new int[cells];
+            reachedStamps = new int[cells];
+            closedStamps = new int[cells];
+        }
+    }
+
+    /**
+     * @param layer the layer being searched.
+     * @param x the x index.
+     * @param y the y index.
+     * @param z the z index.
+     * @return the search index of the cell or -1 if it is not in a corridor area.
+     */
+    private int getCell(NavigationLayer layer, int x, int y, int z) {
+        int regionIndex = layer.getRegionIndex(x, y, z);
+        if (regionStamps[regionIndex] != stamp) {
+            return -1;
+        }
+        int slot = regionSlots[regionIndex];
+        int local = layer.getLocalIndex(x, y, z);
+        if (!slotLabels[slot].get(slotRegions[slot].getLabel(local))) {
+            return -1;
+        }
+        return (slot << (layer.getRegionShift() * 3)) | local;
+    }
+
+    /**
+     * Walks a found path back from the goal keeping only the cells where it turns.
+     * @param layer the layer being searched.
+     * @param goal the search index of the goal.
+     * @return the x, y and z index of the turning cells from the first after the start to the goal.
+     */
+    private int[] getTurns(NavigationLayer layer, int goal) {
+        int shift = layer.getRegionShift();
+        int volumeShift = shift * 3;
+        // The path is walked back to and including the start so the first step can be compared against it.
+        int length = 1;
+        for (int cell = goal; parents[cell] != -1; cell = parents[cell]) {
+            length++;
+        }
+        int[] cells = new int[length * 3];
+        int index = length;
+        for (int cell = goal; index > 0; cell = parents[cell]) {
+            int regionIndex = slotIndices[cell >> volumeShift];
+            int local = cell & ((1 << volumeShift) - 1);
+            index--;
+            cells[index * 3] = (layer.getRegionX(regionIndex) << shift) + layer.getLocalX(local);
+            cells[index * 3 + 1] = (layer.getRegionY(regionIndex) << shift) + layer.getLocalY(local);
+            cells[index * 3 + 2] = (layer.getRegionZ(regionIndex) << shift) + layer.getLocalZ(local);
+        }
+        // Drop the start and the cells continuing in the same direction as the step before them.
+        int turnCount = 0;
+        for (int i = 1; i < length; i++) {
+            if (i < length - 1) {
+                boolean isStraight = true;
+                for (int axis = 0; axis < 3; axis++) {
+                    int before = cells[i * 3 + axis] - cells[(i - 1) * 3 + axis];
+                    int after = cells[(i + 1) * 3 + axis] - cells[i * 3 + axis];
+                    isStraight &= before == after;
+                }
+                if (isStraight) {
+                    continue;
+                }
+            }
+            cells[turnCount * 3] = cells[i * 3];
+            cells[turnCount * 3 + 1] = cells[i * 3 + 1];
+            cells[turnCount * 3 + 2] = cells[i * 3 + 2];
+            turnCount++;
+        }
+        return Arrays.copyOf(cells, turnCount * 3);
+    }
+
+    /**
+     * Adds a cell to the heap.
+     * @param cell the search index of the cell.
+     * @param estimate the estimated cost through the cell.
+     */
+    private void push(int cell, float estimate) {
+        if (heapSize == heapCells.length) {
+            heapCells = Arrays.copyOf(heapCells, heapSize * 2);
+            heapEstimates = Arrays.copyOf(heapEstimates, heapSize * 2);
+        }
+        int index = heapSize++;
+        while (index > 0) {
+            int parent = (index - 1) / 2;
+            if (heapEstimates[parent] <= estimate) {
+                break;
+            }
+            heapCells[index] = heapCells[parent];
+            heapEstimates[index] = heapEstimates[parent];
+            index = parent;
+        }
+        heapCells[index] = cell;
+        heapEstimates[index] = estimate;
+    }
+
+    /**
+     * Removes the cell with the lowest estimate from the heap.
+     * @return the search index of the cell.
+     */
+    private int pop() {
+        int top = heapCells[0];
+        heapSize--;
+        int cell = heapCells[heapSize];
+        float estimate = heapEstimates[heapSize];
+        int index = 0;
+        while (true) {
+            int child = index * 2 + 1;
+            if (child >= heapSize) {
+                break;
+            }
+            if (child + 1 < heapSize && heapEstimates[child + 1] < heapEstimates[child]) {
+                child++;
+            }
+            if (heapEstimates[child] >= estimate) {
+                break;
+            }
+            heapCells[index] = heapCells[child];
+            heapEstimates[index] = heapEstimates[child];
+            index = child;
+        }
+        heapCells[index] = cell;
+        heapEstimates[index] = estimate;
+        return top;
+    }
+
+    /**
+     * @param layer the layer of the area.
+     * @param node the area node.
+     * @param x the x index.
+     * @param y the y index.
+     * @param z the z index.
+     * @return the distance from the average cell of the area to a cell.
+     */
+    private static float getAreaDistance(NavigationLayer layer, long node, int x, int y, int z) {
+        float dx = layer.getCenter(node, 0) - x;
+        float dy = layer.getCenter(node, 1) - y;
+        float dz = layer.getCenter(node, 2) - z;
+        return (float) Math.sqrt(dx * dx + dy * dy + dz * dz);
+    }
+
+    /**
+     * @param layer the layer of the areas.
+     * @param node1 an area node.
+     * @param node2 another area node.
+     * @return the distance between the average cells of the areas.
+     */
+    private static float getAreaDistance(NavigationLayer layer, long node1, long node2) {
+        float dx = layer.getCenter(node1, 0) - layer.getCenter(node2, 0);
+        float dy = layer.getCenter(node1, 1) - layer.getCenter(node2, 1);
+        float dz = layer.getCenter(node1, 2) - layer.getCenter(node2, 2);
+        return (float) Math.sqrt(dx * dx + dy * dy + dz * dz);
+    }
+
+    /**
+     * @param x1 the x index of a cell.
+     * @param y1 the y index of a cell.
+     * @param z1 the z index of a cell.
+     * @param x2 the x index of another cell.
+     * @param y2 the y index of another cell.
+     * @param z2 the z index of another cell.
+     * @return the distance between the cells.
+     */
+    private static float getDistance(int x1, int y1, int z1, int x2, int y2, int z2) {
+        int dx = x2 - x1;
+        int dy = y2 - y1;
+        int dz = z2 - z1;
+        return (float) Math.sqrt(dx * dx + dy * dy + dz * dz);
+    }
+}
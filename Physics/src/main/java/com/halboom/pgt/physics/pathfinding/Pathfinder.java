@@ -0,0 +1,433 @@
+package com.halboom.pgt.physics.pathfinding;
+
+import com.halboom.pgt.pgutil.threading.Threading;
+import com.halboom.pgt.pgutil.voxel.VoxelGrid;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * Finds walkable paths through the tiles in the background.
+ * Requests are searched in batches on the shared executor, one batch at a time, and handed back by the update
+ * after the batch finishes.
+ * Walkable cells depend on the height of the walker and the tile collision groups blocking it,
+ * so walkers sharing both share the walkable areas and the corridors found between them.
+ * Paths passing through regions whose tiles changed while they were searched are searched again.
+ */
+public class Pathfinder {
+    /**
+     * Default size of a region along each axis in tiles, matching the terrain chunks.
+     */
+    public static final int DEFAULT_REGION_SIZE = 16;
+
+    /**
+     * Default largest number of requests searched in one batch.
+     */
+    public static final int DEFAULT_BATCH_SIZE = 32;
+
+    /**
+     * Most tiles above and below a requested cell looked through for a walkable one.
+     */
+    private static final int MAX_SNAP = 4;
+
+    /**
+     * Steps along the x and z axes of the columns looked through for a walkable cell, the requested column first.
+     */
+    private static final int[] SNAP_X = {0, 1, -1, 0, 0, 1, 1, -1, -1},
+                               SNAP_Z = {0, 0, 0, 1, -1, 1, -1, 1, -1};
+
+    /**
+     * Tiles to walk on.
+     */
+    private final VoxelGrid tiles;
+
+    /**
+     * Collision groups of each tile type.
+     */
+    private final long[] tileGroups;
+
+    /**
+     * Size of a tile.
+     */
+    private final float scale;
+
+    /**
+     * Size of a region along each axis in tiles, a power of two.
+     */
+    private final int regionSize;
+
+    /**
+     * Number of regions along each axis.
+     */
+    private final int regionsX, regionsY, regionsZ;
+
+    /**
+     * Requests waiting to be searched.
+     */
+    private List<PathRequest> pending = new LinkedList<PathRequest>();
+
+    /**
+     * Requests of the batch being searched.
+     */
+    private List<PathRequest> batch = new ArrayList<PathRequest>();
+
+    /**
+     * Search of the batch running in the background, null if none.
+     */
+    private Future<?> batchSearch;
+
+    /**
+     * Largest number of requests searched in one batch.
+     */
+    private int batchSize = DEFAULT_BATCH_SIZE;
+
+    /**
+     * Tile boxes changed since the last update as min x, y, z and max x, y, z.
+     */
+    private final Queue<int[]> edits = new ConcurrentLinkedQueue<int[]>();
+
+    /**
+     * Tile boxes changed that the search thread has not dropped the areas of yet.
+     */
+    private final Queue<int[]> searchEdits = new ConcurrentLinkedQueue<int[]>();
+
+    /**
+     * Number of tile edits handled by the updates.
+     */
+    private long editCount = 0;
+
+    /**
+     * Edit count of the last edit touching each region or a region next to it.
+     */
+    private final long[] regionEdits;
+
+    /**
+     * Walkable areas by the tile collision groups blocking the walker and the height of the walker,
+     * only used by the search thread.
+     */
+    private final Map<Long, Map<Integer, NavigationLayer>> layers = new HashMap<Long, Map<Integer, NavigationLayer>>();
+
+    /**
+     * Search of the search thread.
+     */
+    private final PathSearch search = new PathSearch();
+
+    /**
+     * Creates a pathfinder with regions the size of the terrain chunks.
+     * @param tiles the tiles to walk on, shared by reference.
+     * @param tileGroups the collision groups of each tile type.
+     * @param scale the size of a tile.
+     */
+    public Pathfinder(VoxelGrid tiles, long[] tileGroups, float scale) {
+        this(tiles, tileGroups, scale, DEFAULT_REGION_SIZE);
+    }
+
+    /**
+     * Creates a pathfinder.
+     * @param tiles the tiles to walk on, shared by reference.
+     * @param tileGroups the collision groups of each tile type.
+     * @param scale the size of a tile.
+     * @param regionSize the size of a region along each axis in tiles, a power of two.
+     */
+    public Pathfinder(VoxelGrid tiles, long[] tileGroups, float scale, int regionSize) {
+        if (regionSize <= 0 || Integer.bitCount(regionSize) != 1) {
+            throw new IllegalArgumentException("Region size must be a power of two but was " + regionSize + ".");
+        }
+        this.tiles = tiles;
+        this.tileGroups = tileGroups.clone();
+        this.scale = scale;
+        this.regionSize = regionSize;
+        regionsX = (tiles.getLengthX() + regionSize - 1) / regionSize;
+        regionsY = (tiles.getLengthY() + regionSize - 1) / regionSize;
+        regionsZ = (tiles.getLengthZ() + regionSize - 1) / regionSize;
+        regionEdits = new long[regionsX * regionsY * regionsZ];
+    }
+
+    /**
+     * Asks for a path between two positions, the request is searched and filled in by later updates.
+     * @param startX the x position of the walker's feet.
+     * @param startY the y position of the walker's feet.
+     * @param startZ the z position of the walker's feet.
+     * @param goalX the x position to walk to.
+     * @param goalY the y position to walk to.
+     * @param goalZ the z position to walk to.
+     * @param height the height of the walker.
+     * @param groups the tile collision groups blocking the walker.
+     * @return the request.
+     */
+    public PathRequest requestPath(float startX, float startY, float startZ, float goalX, float goalY, float goalZ,
+                                   float height, long groups) {
+        PathRequest request = new PathRequest(toTile(startX), toTile(startY), toTile(startZ),
+                toTile(goalX), toTile(goalY), toTile(goalZ), Math.max(1, (int) Math.ceil(height / scale - 0.01f)),
+                groups);
+        pending.add(request);
+        return request;
+    }
+
+    /**
+     * Stops searching for a request, cancelled requests are never done.
+     * @param request the request to cancel.
+     */
+    public void cancel(PathRequest request) {
+        request.cancel();
+        pending.remove(request);
+    }
+
+    /**
+     * Hands back the requests of a finished batch and starts searching the next one.
+     */
+    public void update() {
+        int[] edit = edits.poll();
+        while (edit != null) {
+            markEdit(edit);
+            searchEdits.add(edit);
+            edit = edits.poll();
+        }
+
+        if (batchSearch != null) {
+            if (!batchSearch.isDone()) {
+                return;
+            }
+            try {
+                batchSearch.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (ExecutionException e) {
+                throw new IllegalStateException(e.getCause());
+            } finally {
+                batchSearch = null;
+            }
+            for (int i = batch.size() - 1; i >= 0; i--) {
+                PathRequest request = batch.get(i);
+                if (request.getIsCancelled()) {
+                    continue;
+                }
+                if (getIsOutdated(request)) {
+                    pending.add(0, request);
+                } else {
+                    request.finish(scale);
+                }
+            }
+            batch.clear();
+        }
+
+        if (!pending.isEmpty()) {
+            while (!pending.isEmpty() && batch.size() < batchSize) {
+                PathRequest request = pending.remove(0);
+                request.searchedEdit = editCount;
+                batch.add(request);
+            }
+            final List<PathRequest> searched = new ArrayList<PathRequest>(batch);
+            batchSearch = Threading.getInstance().getExecutor().submit(new Runnable() {
+                @Override
+                public void run() {
+                    searchBatch(searched);
+                }
+            });
+        }
+    }
+
+    /**
+     * Checks if tiles a searched request depends on changed since it was searched.
+     * Found paths only depend on the regions they pass through while paths not found depend on every tile.
+     * @param request the searched request.
+     * @return true if the request needs to be searched again.
+     */
+    public boolean getIsOutdated(PathRequest request) {
+        if (request.cells == null) {
+            return editCount > request.searchedEdit;
+        }
+        for (int region : request.regions) {
+            if (regionEdits[region] > request.searchedEdit) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Marks the regions a tile edit may change the walkable cells of.
+     * @param edit the changed tile box.
+     */
+    private void markEdit(int[] edit) {
+        editCount++;
+        int minX = Math.max(0, edit[0] / regionSize - 1), maxX = Math.min(regionsX - 1, edit[3] / regionSize + 1);
+        int minY = Math.max(0, edit[1] / regionSize - 1), maxY = Math.min(regionsY - 1, edit[4] / regionSize + 1);
+        int minZ = Math.max(0, edit[2] / regionSize - 1), maxZ = Math.min(regionsZ - 1, edit[5] / regionSize + 1);
+        for (int x = minX; x <= maxX; x++) {
+            for (int y = minY; y <= maxY; y++) {
+                for (int z = minZ; z <= maxZ; z++) {
+                    regionEdits[(x * regionsY + y) * regionsZ + z] = editCount;
+                }
+            }
+        }
+    }
+
+    /**
+     * Searches a batch of requests, run by the search thread.
+     * @param requests the requests to search.
+     */
+    private void searchBatch(List<PathRequest> requests) {
+        int[] edit = searchEdits.poll();
+        while (edit != null) {
+            for (Map<Integer, NavigationLayer> heights : layers.values()) {
+                for (NavigationLayer layer : heights.values()) {
+                    layer.invalidate(edit[0], edit[1], edit[2], edit[3], edit[4], edit[5]);
+                }
+            }
+            edit = searchEdits.poll();
+        }
+
+        int[] start = new int[3];
+        int[] goal = new int[3];
+        for (PathRequest request : requests) {
+            request.cells = null;
+            request.regions = null;
+            if (request.getIsCancelled()) {
+                continue;
+            }
+            NavigationLayer layer = getLayer(request.groups, request.height);
+            if (!findWalkable(layer, request.startX, request.startY, request.startZ, start)
+                    || !findWalkable(layer, request.goalX, request.goalY, request.goalZ, goal)) {
+                continue;
+            }
+            int[] cells = search.findPath(layer, start[0], start[1], start[2], goal[0], goal[1], goal[2]);
+            if (cells != null) {
+                long[] corridor = search.getFoundCorridor();
+                int[] regions = new int[corridor.length];
+                for (int i = 0; i < corridor.length; i++) {
+                    regions[i] = NavigationLayer.getNodeRegion(corridor[i]);
+                }
+                request.regions = regions;
+                request.cells = cells;
+            }
+        }
+    }
+
+    /**
+     * Retrieves the walkable areas of walkers, creating them if needed.
+     * @param groups the tile collision groups blocking the walkers.
+     * @param height the number of tiles the walkers take up vertically.
+     * @return the walkable areas.
+     */
+    private NavigationLayer getLayer(long groups, int height) {
+        Map<Integer, NavigationLayer> heights = layers.get(groups);
+        if (heights == null) {
+            heights = new HashMap<Integer, NavigationLayer>();
+            layers.put(groups, heights);
+        }
+        NavigationLayer layer = heights.get(height);
+        if (layer == null) {
+            layer = new NavigationLayer(tiles, tileGroups, groups, height, regionSize);
+            heights.put(height, layer);
+        }
+        return layer;
+    }
+
+    /**
+     * Finds the closest walkable cell to a requested cell looking up and down its column and the columns around it.
+     * @param layer the walkable areas to look in.
+     * @param x the x index of the requested cell.
+     * @param y the y index of the requested cell.
+     * @param z the z index of the requested cell.
+     * @param store the array to store the x, y and z index of the walkable cell in.
+     * @return true if a walkable cell was found.
+     */
+    private static boolean findWalkable(NavigationLayer layer, int x, int y, int z, int[] store) {
+        for (int i = 0; i < SNAP_X.length; i++) {
+            for (int offset = 0; offset <= MAX_SNAP; offset++) {
+                // Look below first as walkers standing on a tile are often slightly inside of it.
+                for (int sign = -1; sign <= 1; sign += 2) {
+                    int snappedY = y + offset * sign;
+                    if (layer.isWalkable(x + SNAP_X[i], snappedY, z + SNAP_Z[i])) {
+                        store[0] = x + SNAP_X[i];
+                        store[1] = snappedY;
+                        store[2] = z + SNAP_Z[i];
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Marks tiles as changed so the walkable areas and paths passing through them are found again.
+     * Can be called from any thread, the change is picked up by the next update.
+     * @param minX the smallest x index of the changed tiles.
+     * @param minY the smallest y index of the changed tiles.
+     * @param minZ the smallest z index of the changed tiles.
+     * @param maxX the largest x index of the changed tiles.
+     * @param maxY the largest y index of the changed tiles.
+     * @param maxZ the largest z index of the changed tiles.
+     */
+    public void invalidate(int minX, int minY, int minZ, int maxX, int maxY, int maxZ) {
+        edits.add(new int[]{minX, minY, minZ, maxX, maxY, maxZ});
+    }
+
+    /**
+     * @param position the position along an axis.
+     * @return the index of the tile holding the position.
+     */
+    private int toTile(float position) {
+        return (int) Math.floor(position / scale);
+    }
+
+    /**
+     * @param batchSize the largest number of requests searched in one batch.
+     */
+    public void setBatchSize(int batchSize) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("Batch size must be positive but was " + batchSize + ".");
+        }
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * @return the largest number of requests searched in one batch.
+     */
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * @return the number of requests waiting to be searched or being searched.
+     */
+    public int getPendingCount() {
+        return pending.size() + batch.size();
+    }
+
+    /**
+     * @return the number of tile edits handled by the updates, changes whenever the tiles change.
+     */
+    public long getEditCount() {
+        return editCount;
+    }
+
+    /**
+     * @return the size of a tile.
+     */
+    public float getScale() {
+        return scale;
+    }
+
+    /**
+     * Stops the running search and drops the requests.
+     */
+    public void destroy() {
+        if (batchSearch != null) {
+            batchSearch.cancel(true);
+            batchSearch = null;
+        }
+        pending.clear();
+        batch.clear();
+    }
+}
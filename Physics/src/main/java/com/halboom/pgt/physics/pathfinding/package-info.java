@@ -0,0 +1,4 @@
+/**
+ * This package contains classes for finding walkable paths through the tiles.
+ */
+package com.halboom.pgt.physics.pathfinding;
@@ -13,6 +13,7 @@ import com.halboom.pgt.physics.simple.shapes.Bounds;
 import com.halboom.pgt.physics.simple.shapes.BoundsBox;
 import com.jme3.math.Vector3f;
 
+import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
 
@@ -22,6 +23,7 @@ import java.util.List;
  * Date: 5/9/13
  * Time: 2:19 PM
  * Collides objects with other objects.
+ * Only the bounds found by the broadphase of the bounds system are tested against each other.
  */
 public class BoundsColliderSystem implements Subsystem {
     /**
@@ -44,6 +46,21 @@ public class BoundsColliderSystem implements Subsystem {
      */
     private List<CollisionCallbacks> collisionCallbacks = new LinkedList<CollisionCallbacks>();
 
+    /**
+     * Bounds found by the broadphase, reused for every query.
+     */
+    private List<BoundsBox> candidates = new ArrayList<BoundsBox>();
+
+    /**
+     * Area a bounds moves through, reused for every mover.
+     */
+    private BoundsBox sweptBounds = new BoundsBox();
+
+    /**
+     * Result of resolving a mover, reused as callbacks get their own copy.
+     */
+    private CollisionInformation resolved = new CollisionInformation();
+
     /**
      * Initializes the system.
      * @param entitySystem the entity system to use.
@@ -60,17 +77,7 @@ public class BoundsColliderSystem implements Subsystem {
      * Checks sensor collisions.
      */
     private void checkSensorCollisions() {
-        // Check collisions of sensors.
-        EntitySet sensorSet = entitySystem.getEntities(CollisionComponent.class);
-        List<ColliderSet> sensorColliders = new LinkedList<ColliderSet>();
-        // Check sensor collisions.
-        for (Entity entity : sensorSet.getEntities()) {
-            Bounds bounds = boundsSystem.getBounds(entity);
-            if (bounds != null) {
-                sensorColliders.add(new ColliderSet(bounds, entity));
-            }
-        }
-
+        Broadphase broadphase = boundsSystem.getBroadphase();
         // Check for sensor collisions against any collider.
         EntitySet aabbSet = entitySystem.getEntities(CollisionComponent.class);
         for (Entity entity : aabbSet.getEntities()) {
@@ -79,11 +86,14 @@ public class BoundsColliderSystem implements Subsystem {
                 continue;
             }
             Bounds bounds = boundsSystem.getBounds(entity);
-            if (bounds == null) {
+            if (bounds == null || !(bounds instanceof BoundsBox)) {
                 continue;
             }
-            for (ColliderSet collidee : sensorColliders) {
-                CollisionInformation information = resolver.collideBounds(bounds, collidee.getBounds());
+            candidates.clear();
+            broadphase.query((BoundsBox) bounds, bounds.getTargets(), candidates);
+            for (int i = 0; i < candidates.size(); i++) {
+                BoundsBox collidee = candidates.get(i);
+                CollisionInformation information = resolver.collideBounds(bounds, collidee);
                 if (information != null) {
                     information.setCollider(entity);
                     information.setCollidee(collidee.getEntity());
@@ -95,22 +105,37 @@ public class BoundsColliderSystem implements Subsystem {
         }
     }
 
+    /**
+     * Finds the bounds that are not sensors within the area a bounds moves through.
+     * @param boundsBox the bounds that moves.
+     * @param movementComponent the movement of the bounds.
+     * @param broadphase the broadphase to query.
+     */
+    private void findBlockers(BoundsBox boundsBox, MovementComponent movementComponent, Broadphase broadphase) {
+        candidates.clear();
+        sweptBounds.setCenter(boundsBox.getCenter());
+        sweptBounds.setXExtent(boundsBox.getXExtent());
+        sweptBounds.setYExtent(boundsBox.getYExtent());
+        sweptBounds.setZExtent(boundsBox.getZExtent());
+        sweptBounds.addBoundsLocal(movementComponent.moveX, movementComponent.moveY, movementComponent.moveZ);
+        broadphase.query(sweptBounds, boundsBox.getTargets(), candidates);
+        for (int i = candidates.size() - 1; i >= 0; i--) {
+            Entity collidee = candidates.get(i).getEntity();
+            CollisionComponent collisionComponent = entitySystem.getComponent(collidee, CollisionComponent.class);
+            if (collisionComponent == null || collisionComponent.isSensor) {
+                int last = candidates.size() - 1;
+                candidates.set(i, candidates.get(last));
+                candidates.remove(last);
+            }
+        }
+    }
+
     /**
      * Checks collisions with static objects.
      */
     private void checkStaticCollisions() {
         EntitySet set = entitySystem.getEntities(CollisionComponent.class);
-        // Create a list of all colliders and add movement bounds if needed.
-        List<BoundsBox> colliders = new LinkedList<BoundsBox>();
-        for (Entity entity : set.getEntities()) {
-            CollisionComponent collisionComponent = entitySystem.getComponent(entity, CollisionComponent.class);
-            if (!collisionComponent.isSensor) {
-                Bounds bounds = boundsSystem.getBounds(entity);
-                if (bounds != null && bounds instanceof BoundsBox) {
-                    colliders.add((BoundsBox) bounds);
-                }
-            }
-        }
+        Broadphase broadphase = boundsSystem.getBroadphase();
 
         // Check for collisions.
         for (Entity entity : set.getEntities()) {
@@ -132,15 +157,19 @@ public class BoundsColliderSystem implements Subsystem {
                 continue;
             }
             BoundsBox boundsBox = (BoundsBox) bounds;
-            CollisionInformation information = resolver.resolveCollision(boundsBox,
-                    new Vector3f(movementComponent.moveX, movementComponent.moveY, movementComponent.moveZ),
-                    colliders);
-            information.setCollider(entity);
-            Vector3f moveAmount = information.getMoveAmount();
+            findBlockers(boundsBox, movementComponent, broadphase);
+            resolver.resolveCollision(boundsBox, movementComponent.moveX, movementComponent.moveY,
+                    movementComponent.moveZ, candidates, resolved);
+            resolved.setCollider(entity);
+            Vector3f moveAmount = resolved.getMoveAmount();
             // Trigger callbacks only if the collider cannot move fully.
             boolean hasMoved = movementComponent.moveX != moveAmount.x || movementComponent.moveY != moveAmount.y
                     || movementComponent.moveZ != moveAmount.z;
-            if (hasMoved) {
+            if (hasMoved && !collisionCallbacks.isEmpty()) {
+                // Callbacks may keep the information so they get a copy.
+                CollisionInformation information = new CollisionInformation();
+                information.setCollider(entity);
+                information.setMoveAmount(moveAmount);
                 for (CollisionCallbacks callback : collisionCallbacks) {
                     callback.onBlockerCollide(information);
                 }
@@ -160,14 +189,15 @@ public class BoundsColliderSystem implements Subsystem {
                 if (speedComponent != null) {
                     speedComponent.speedY = 0;
                     if (moveAmount.y > movementComponent.moveY) {
-                        speedComponent.friction = entitySystem.getComponent(information.getCollider(), CollisionComponent.class).friction;
+                        speedComponent.friction = entitySystem.getComponent(resolved.getCollider(), CollisionComponent.class).friction;
                     }
                 }
             }
             movementComponent.moveX = moveAmount.x;
             movementComponent.moveY = moveAmount.y;
             movementComponent.moveZ = moveAmount.z;
-            boundsBox.setCenter(boundsBox.getCenter().add(movementComponent.moveX, movementComponent.moveY, movementComponent.moveZ));
+            boundsBox.getCenter().addLocal(movementComponent.moveX, movementComponent.moveY, movementComponent.moveZ);
+            broadphase.update(boundsBox);
         }
     }
 
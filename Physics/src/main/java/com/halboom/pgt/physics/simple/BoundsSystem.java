@@ -10,6 +10,9 @@ import com.halboom.pgt.physics.simple.components.AABBComponent;
 import com.halboom.pgt.physics.simple.components.CollisionComponent;
 import com.halboom.pgt.physics.simple.shapes.Bounds;
 import com.halboom.pgt.physics.simple.shapes.BoundsBox;
+import com.jme3.bounding.BoundingBox;
+import com.jme3.bounding.BoundingSphere;
+import com.jme3.bounding.BoundingVolume;
 import com.jme3.math.Ray;
 import com.jme3.math.Vector3f;
 
@@ -26,8 +29,16 @@ import java.util.Map;
  * Updates bounds to match the transform component.
  * The bounds system is special as collision resolution will need to be able to change
  * the bounds before or after this system updates.
+ * Bounds of entities that can collide are kept in a broadphase which is updated as they move
+ * and is shared by the box, sphere, ray and nearest entity queries.
+ * Queries reuse internal lists and should only be run from the thread updating the system.
  */
 public class BoundsSystem implements Subsystem {
+    /**
+     * Half of the size of the first area searched for the nearest entities.
+     */
+    private static final float NEAREST_START_RADIUS = 4f;
+
     /**
      * Entity system to use.
      */
@@ -43,6 +54,26 @@ public class BoundsSystem implements Subsystem {
      */
     private Map<Entity, Bounds> entityBoundsMap = new HashMap<Entity, Bounds>();
 
+    /**
+     * Broadphase holding the bounds of entities with a collision component.
+     */
+    private Broadphase broadphase = new SweepAndPruneBroadphase();
+
+    /**
+     * Area used for querying the broadphase.
+     */
+    private BoundsBox queryArea = new BoundsBox();
+
+    /**
+     * Bounds found by the broadphase, reused for every query.
+     */
+    private List<BoundsBox> candidates = new ArrayList<BoundsBox>();
+
+    /**
+     * Squared distances of the entities found by the current nearest entity query.
+     */
+    private float[] nearestDistances = new float[1];
+
     /**
      * Initializes the system.
      * @param entitySystem the entity system to use.
@@ -82,7 +113,10 @@ public class BoundsSystem implements Subsystem {
 
         // Remove entities from the map.
         for (Entity entity : entitySet.getRemovedEntities()) {
-            entityBoundsMap.remove(entity);
+            Bounds bounds = entityBoundsMap.remove(entity);
+            if (bounds instanceof BoundsBox) {
+                broadphase.remove((BoundsBox) bounds);
+            }
         }
 
         updateAllBounds();
@@ -138,10 +172,35 @@ public class BoundsSystem implements Subsystem {
             if (collisionComponent != null) {
                 bounds.setGroups(collisionComponent.groups);
                 bounds.setTargets(collisionComponent.targets);
+                broadphase.update(bounds);
+            } else {
+                broadphase.remove(bounds);
             }
         }
     }
 
+    /**
+     * Sets the broadphase and adds the bounds of every entity that can collide to it.
+     * @param broadphase the broadphase to use.
+     */
+    public void setBroadphase(Broadphase broadphase) {
+        this.broadphase = broadphase;
+        broadphase.clear();
+        for (Map.Entry<Entity, Bounds> entry : entityBoundsMap.entrySet()) {
+            boolean isCollidable = entitySystem.getComponent(entry.getKey(), CollisionComponent.class) != null;
+            if (isCollidable && entry.getValue() instanceof BoundsBox) {
+                broadphase.update((BoundsBox) entry.getValue());
+            }
+        }
+    }
+
+    /**
+     * @return the broadphase holding the bounds of entities with a collision component.
+     */
+    public Broadphase getBroadphase() {
+        return broadphase;
+    }
+
     /**
      * Retrieves all entities within the given bounds.
      * @param bounds the bounds to retrieve from.
@@ -150,61 +209,165 @@ public class BoundsSystem implements Subsystem {
      */
     public List<Entity> getEntitiesInBounds(Bounds bounds, Filter filter) {
         List<Entity> colliders = new ArrayList<Entity>();
-        EntitySet entitySet = entitySystem.getEntities(CollisionComponent.class);
-        for (Entity entity : entitySet.getEntities()) {
-            Bounds entityBounds = getBounds(entity);
-            boolean isValid = true;
-            if (filter != null && bounds != null && entityBounds != null) {
-                isValid = filter.filterBounds(bounds, entityBounds);
+        getEntitiesInBounds(bounds, filter, colliders);
+        return colliders;
+    }
+
+    /**
+     * Retrieves all entities within the given box or sphere bounds without creating garbage.
+     * @param bounds the bounds to retrieve from, only entities in the targets of the bounds are found.
+     * @param filter the filter to check valid entities with, null to not use any.
+     * @param results the list to add the entities within the bounds matching the filters to.
+     */
+    public void getEntitiesInBounds(Bounds bounds, Filter filter, List<Entity> results) {
+        setQueryArea(bounds);
+        candidates.clear();
+        broadphase.query(queryArea, bounds.getTargets(), candidates);
+        for (int i = 0; i < candidates.size(); i++) {
+            BoundsBox entityBounds = candidates.get(i);
+            if (filter != null && !filter.filterBounds(bounds, entityBounds)) {
+                continue;
             }
-            if (isValid && entityBounds != null) {
-                CollisionInformation collisionInformation = collisionResolver.collideBounds(bounds, entityBounds);
-                if (collisionInformation != null) {
-                    colliders.add(entity);
-                }
+            if (collisionResolver.isColliding(bounds, entityBounds)) {
+                results.add(entityBounds.getEntity());
             }
         }
-
-        return colliders;
     }
 
     /**
      * Retrieves the closest intersection of a ray.
-     * @param ray the ray to test for intersections.
+     * @param ray the ray to test for intersections, only the part within the limit of the ray is checked.
      * @param self the entity to ignore when casting the ray.
      * @param filter the filter to check valid entities with.
-     * @return the closest intersecting entity or null if none found.
+     * @return the entity whose bounds the ray enters first or null if none found.
      */
     public Entity getClosestIntersect(Ray ray, Entity self, Filter filter) {
-        EntitySet entitySet = entitySystem.getEntities(CollisionComponent.class);
+        candidates.clear();
+        // Entities in no group can still be picked like before the broadphase was used.
+        broadphase.queryRay(ray, Broadphase.ALL_GROUPS, candidates);
         Entity closestEntity = null;
         float closest = Float.MAX_VALUE;
-        Vector3f origin = ray.getOrigin();
-        for (Entity entity : entitySet.getEntities()) {
-            Bounds entityBounds = getBounds(entity);
-            boolean isValid = true;
-            if (filter != null) {
-                isValid = filter.filterEntity(entity, entityBounds);
+        for (int i = 0; i < candidates.size(); i++) {
+            BoundsBox entityBounds = candidates.get(i);
+            Entity entity = entityBounds.getEntity();
+            if (entity == self || (filter != null && !filter.filterEntity(entity, entityBounds))) {
+                continue;
             }
-            if (isValid && entity != self) {
-                if (collisionResolver.intersectsWithBounds(ray, entityBounds)) {
-                    // Calculate the partial distance.
-                    Vector3f center = entityBounds.getBounds().getCenter();
-                    float dx = origin.x - center.x;
-                    float dy = origin.y - center.y;
-                    float dz = origin.z - center.z;
-                    float distance = dx * dx + dy * dy + dz * dz;
-                    if (closest > distance) {
-                        closest = distance;
-                        closestEntity = entity;
-                    }
-                }
+            float distance = entityBounds.getRayDistance(ray);
+            if (distance >= 0 && distance < closest) {
+                closest = distance;
+                closestEntity = entity;
             }
         }
 
         return closestEntity;
     }
 
+    /**
+     * Retrieves the entities closest to a position without creating garbage.
+     * The search starts close to the position and grows until enough entities are found
+     * so the cost depends on the number of entities nearby instead of all entities.
+     * @param position the position to search from.
+     * @param maxDistance the largest distance from the position to the bounds of a found entity.
+     * @param count the largest number of entities to find.
+     * @param groups the groups the found entities must be in at least one of.
+     * @param filter the filter to check valid entities with, null to not use any.
+     * @param results the list to add the found entities to ordered from closest to farthest.
+     */
+    public void getNearestEntities(Vector3f position, float maxDistance, int count, long groups, Filter filter,
+                                   List<Entity> results) {
+        if (count <= 0 || broadphase.getSize() == 0) {
+            return;
+        }
+        if (nearestDistances.length < count) {
+            nearestDistances = new float[count];
+        }
+        int start = results.size();
+        float radius = Math.min(maxDistance, NEAREST_START_RADIUS);
+        while (true) {
+            while (results.size() > start) {
+                results.remove(results.size() - 1);
+            }
+            queryArea.setCenter(position);
+            queryArea.setXExtent(radius);
+            queryArea.setYExtent(radius);
+            queryArea.setZExtent(radius);
+            candidates.clear();
+            broadphase.query(queryArea, groups, candidates);
+
+            // Keep the closest entities within the radius sorted by distance.
+            float radiusSquared = radius * radius;
+            int found = 0;
+            for (int i = 0; i < candidates.size(); i++) {
+                BoundsBox entityBounds = candidates.get(i);
+                float distance = getDistanceSquared(position, entityBounds);
+                if (distance > radiusSquared || (found == count && distance >= nearestDistances[count - 1])) {
+                    continue;
+                }
+                Entity entity = entityBounds.getEntity();
+                if (filter != null && !filter.filterEntity(entity, entityBounds)) {
+                    continue;
+                }
+                int index = found;
+                if (found < count) {
+                    results.add(entity);
+                    found++;
+                } else {
+                    index = count - 1;
+                }
+                while (index > 0 && nearestDistances[index - 1] > distance) {
+                    nearestDistances[index] = nearestDistances[index - 1];
+                    results.set(start + index, results.get(start + index - 1));
+                    index--;
+                }
+                nearestDistances[index] = distance;
+                results.set(start + index, entity);
+            }
+            // Entities outside of the radius may still be closer than the ones not found yet.
+            if (found == count || radius >= maxDistance || candidates.size() == broadphase.getSize()) {
+                return;
+            }
+            radius = Math.min(maxDistance, radius * 2);
+        }
+    }
+
+    /**
+     * Sets the query area to the box around bounds.
+     * @param bounds the box or sphere bounds to cover.
+     */
+    private void setQueryArea(Bounds bounds) {
+        BoundingVolume volume = bounds.getBounds();
+        queryArea.setCenter(volume.getCenter());
+        if (volume instanceof BoundingBox) {
+            BoundingBox box = (BoundingBox) volume;
+            queryArea.setXExtent(box.getXExtent());
+            queryArea.setYExtent(box.getYExtent());
+            queryArea.setZExtent(box.getZExtent());
+        } else if (volume instanceof BoundingSphere) {
+            float radius = ((BoundingSphere) volume).getRadius();
+            queryArea.setXExtent(radius);
+            queryArea.setYExtent(radius);
+            queryArea.setZExtent(radius);
+        } else {
+            queryArea.setXExtent(Float.POSITIVE_INFINITY);
+            queryArea.setYExtent(Float.POSITIVE_INFINITY);
+            queryArea.setZExtent(Float.POSITIVE_INFINITY);
+        }
+    }
+
+    /**
+     * @param position the position to measure from.
+     * @param bounds the bounds to measure to.
+     * @return the squared distance from the position to the closest point of the bounds, 0 if inside.
+     */
+    private float getDistanceSquared(Vector3f position, BoundsBox bounds) {
+        Vector3f center = bounds.getCenter();
+        float dx = Math.max(0, Math.abs(position.x - center.x) - bounds.getXExtent());
+        float dy = Math.max(0, Math.abs(position.y - center.y) - bounds.getYExtent());
+        float dz = Math.max(0, Math.abs(position.z - center.z) - bounds.getZExtent());
+        return dx * dx + dy * dy + dz * dz;
+    }
+
     @Override
     public void destroy() {
     }
@@ -0,0 +1,56 @@
+package com.halboom.pgt.physics.simple;
+
+import com.halboom.pgt.physics.simple.shapes.BoundsBox;
+import com.jme3.math.Ray;
+
+import java.util.List;
+
+/**
+ * Finds the bounds that may overlap an area so collisions are only resolved against nearby bounds.
+ * Bounds are kept in the broadphase and updated as they move instead of being gathered every update.
+ * Queries add to lists given by the caller so they can be run every frame without creating garbage.
+ */
+public interface Broadphase {
+    /**
+     * Groups of a query that finds bounds in any group, including bounds that are in no group.
+     */
+    long ALL_GROUPS = ~0L;
+
+    /**
+     * Adds bounds or updates the position of bounds that were already added.
+     * @param bounds the bounds that were added or moved.
+     */
+    void update(BoundsBox bounds);
+
+    /**
+     * Removes bounds if they were added.
+     * @param bounds the bounds to remove.
+     */
+    void remove(BoundsBox bounds);
+
+    /**
+     * Removes all bounds.
+     */
+    void clear();
+
+    /**
+     * Finds the bounds overlapping an area, bounds touching the area are included.
+     * @param area the area to check.
+     * @param groups the groups the found bounds must be in at least one of, ALL_GROUPS to not filter by groups.
+     * @param results the list to add each found bounds to once.
+     */
+    void query(BoundsBox area, long groups, List<BoundsBox> results);
+
+    /**
+     * Finds the bounds hit by a ray within the limit of the ray.
+     * @param ray the ray to check.
+     * @param groups the groups the found bounds must be in at least one of, ALL_GROUPS to not filter by groups.
+     * @param results the list to add each found bounds to once.
+     */
+    void queryRay(Ray ray, long groups, List<BoundsBox> results);
+
+    /**
+     * @return the number of bounds in the broadphase.
+     */
+    int getSize();
+}
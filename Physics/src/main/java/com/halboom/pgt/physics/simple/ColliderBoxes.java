@@ -0,0 +1,178 @@
+package com.halboom.pgt.physics.simple;
+
+import com.halboom.pgt.physics.simple.shapes.BoundsBox;
+import com.jme3.math.Vector3f;
+
+/**
+ * Boxes to resolve collisions against stored as primitive arrays of their minimum and maximum.
+ * The arrays only grow so a list that is cleared and refilled every update does not create garbage.
+ */
+public class ColliderBoxes {
+    /**
+     * Number of boxes a new list has room for.
+     */
+    private static final int INITIAL_CAPACITY = 16;
+
+    /**
+     * Minimum of each box along each axis.
+     */
+    private float[] minX, minY, minZ;
+
+    /**
+     * Maximum of each box along each axis.
+     */
+    private float[] maxX, maxY, maxZ;
+
+    /**
+     * Collision groups of each box.
+     */
+    private long[] groups;
+
+    /**
+     * Number of boxes in the list.
+     */
+    private int size = 0;
+
+    /**
+     * Creates an empty list.
+     */
+    public ColliderBoxes() {
+        allocate(INITIAL_CAPACITY);
+    }
+
+    /**
+     * Adds a box.
+     * @param minX the minimum along the x axis.
+     * @param minY the minimum along the y axis.
+     * @param minZ the minimum along the z axis.
+     * @param maxX the maximum along the x axis.
+     * @param maxY the maximum along the y axis.
+     * @param maxZ the maximum along the z axis.
+     * @param groups the collision groups of the box.
+     */
+    public void add(float minX, float minY, float minZ, float maxX, float maxY, float maxZ, long groups) {
+        if (size == this.groups.length) {
+            allocate(size * 2);
+        }
+        this.minX[size] = minX;
+        this.minY[size] = minY;
+        this.minZ[size] = minZ;
+        this.maxX[size] = maxX;
+        this.maxY[size] = maxY;
+        this.maxZ[size] = maxZ;
+        this.groups[size] = groups;
+        size++;
+    }
+
+    /**
+     * Adds the box of bounds.
+     * @param bounds the bounds to add.
+     */
+    public void add(BoundsBox bounds) {
+        Vector3f center = bounds.getCenter();
+        add(center.x - bounds.getXExtent(), center.y - bounds.getYExtent(), center.z - bounds.getZExtent(),
+                center.x + bounds.getXExtent(), center.y + bounds.getYExtent(), center.z + bounds.getZExtent(),
+                bounds.getGroups());
+    }
+
+    /**
+     * Removes every box while keeping the arrays.
+     */
+    public void clear() {
+        size = 0;
+    }
+
+    /**
+     * @return the number of boxes.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @param index the index of the box.
+     * @return the minimum of the box along the x axis.
+     */
+    public float getMinX(int index) {
+        return minX[index];
+    }
+
+    /**
+     * @param index the index of the box.
+     * @return the minimum of the box along the y axis.
+     */
+    public float getMinY(int index) {
+        return minY[index];
+    }
+
+    /**
+     * @param index the index of the box.
+     * @return the minimum of the box along the z axis.
+     */
+    public float getMinZ(int index) {
+        return minZ[index];
+    }
+
+    /**
+     * @param index the index of the box.
+     * @return the maximum of the box along the x axis.
+     */
+    public float getMaxX(int index) {
+        return maxX[index];
+    }
+
+    /**
+     * @param index the index of the box.
+     * @return the maximum of the box along the y axis.
+     */
+    public float getMaxY(int index) {
+        return maxY[index];
+    }
+
+    /**
+     * @param index the index of the box.
+     * @return the maximum of the box along the z axis.
+     */
+    public float getMaxZ(int index) {
+        return maxZ[index];
+    }
+
+    /**
+     * @param index the index of the box.
+     * @return the collision groups of the box.
+     */
+    public long getGroups(int index) {
+        return groups[index];
+    }
+
+    /**
+     * Grows the arrays while keeping the boxes.
+     * @param capacity the number of boxes to have room for.
+     */
+    private void allocate(int capacity) {
+        minX = copyOf(minX, capacity);
+        minY = copyOf(minY, capacity);
+        minZ = copyOf(minZ, capacity);
+        maxX = copyOf(maxX, capacity);
+        maxY = copyOf(maxY, capacity);
+        maxZ = copyOf(maxZ, capacity);
+        long[] newGroups = new long[capacity];
+        if (groups != null) {
+            System.arraycopy(groups, 0, newGroups, 0, size);
+        }
+        groups = newGroups;
+    }
+
+    /**
+     * @param values the values to copy, null for none.
+     * @param capacity the length of the copy.
+     * @return a larger array holding the values of the boxes.
+     */
+    private float[] copyOf(float[] values, int capacity) {
+        float[] copy = new float[capacity];
+        if (values != null) {
+            System.arraycopy(values, 0, copy, 0, size);
+        }
+        return copy;
+    }
+}
@@ -44,6 +44,16 @@ public class CollisionInformation {
         this.moveAmount.set(moveAmount);
     }
 
+    /**
+     * Sets the move amount.
+     * @param x the amount along the x axis.
+     * @param y the amount along the y axis.
+     * @param z the amount along the z axis.
+     */
+    public void setMoveAmount(float x, float y, float z) {
+        moveAmount.set(x, y, z);
+    }
+
     /**
      * @return the amount that can be moved without colliding.
      */
@@ -7,7 +7,7 @@ import com.halboom.pgt.physics.simple.shapes.BoundsBox;
 import com.jme3.math.Ray;
 import com.jme3.math.Vector3f;
 
-import java.util.LinkedList;
+import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -17,12 +17,18 @@ import java.util.List;
  * Time: 11:22 AM
  * Resolves collisions between AABB objects and other types of geometries.
  * Collision resolution requires a movement amount.
+ * Resolution runs over primitive boxes and stores into given results so it creates no garbage.
  */
 public class CollisionResolver {
     /**
      * Callbacks for the collisions.
      */
-    private List<Filter> filters = new LinkedList<Filter>();
+    private List<Filter> filters = new ArrayList<Filter>();
+
+    /**
+     * Boxes of the colliders passing the filters, reused by every resolution.
+     */
+    private ColliderBoxes filteredBoxes = new ColliderBoxes();
 
     /**
      * Initializes the resolver.
@@ -48,25 +54,29 @@ public class CollisionResolver {
      * @return the collision information or null if none exists.
      */
     public CollisionInformation collideBounds(Bounds bounds, Bounds collidee) {
-        if (!bounds.equals(collidee) && (bounds.getTargets() & collidee.getGroups()) != 0) {
-            boolean isFilterPassed = true;
-            for (Filter filter : filters) {
-                if (!filter.filterBounds(bounds, collidee)) {
-                    isFilterPassed = false;
-                    break;
-                }
-            }
-            if (isFilterPassed && bounds.getBounds().intersects(collidee.getBounds())) {
-                CollisionInformation collisionInformation = new CollisionInformation();
-                collisionInformation.setCollider(bounds.getEntity());
-                collisionInformation.setCollidee(collidee.getEntity());
-                return collisionInformation;
-            }
+        if (isColliding(bounds, collidee)) {
+            CollisionInformation collisionInformation = new CollisionInformation();
+            collisionInformation.setCollider(bounds.getEntity());
+            collisionInformation.setCollidee(collidee.getEntity());
+            return collisionInformation;
         }
 
         return null;
     }
 
+    /**
+     * Checks if a bound collides with another bound without creating collision information.
+     * @param bounds the bounds to collide with.
+     * @param collidee the collidee to test with.
+     * @return true if the bounds can collide, pass the filters and intersect.
+     */
+    public boolean isColliding(Bounds bounds, Bounds collidee) {
+        if (bounds.equals(collidee) || (bounds.getTargets() & collidee.getGroups()) == 0) {
+            return false;
+        }
+        return isPassingFilters(bounds, collidee, filters) && bounds.getBounds().intersects(collidee.getBounds());
+    }
+
     /**
      * Resolves collisions between an AABB with another AABB object and returns information on how to
      * move the collided object.
@@ -77,67 +87,124 @@ public class CollisionResolver {
      * @return information on how to resolve the collision.
      */
     public CollisionInformation resolveCollision(BoundsBox bounds, Vector3f moveAmount, List<BoundsBox> colliders, List<Filter> filters) {
-        BoundsBox modifiedBounds = new BoundsBox(bounds);
-        Vector3f centerStart = modifiedBounds.getCenter();
-        Vector3f finalMovedAmount = new Vector3f(moveAmount);
+        CollisionInformation collisionInformation = new CollisionInformation();
+        resolveFiltered(bounds, moveAmount.x, moveAmount.y, moveAmount.z, colliders, filters, collisionInformation);
+        return collisionInformation;
+    }
 
-        // Use custom collision filters when necessary.
-        List<BoundsBox> validColliders = colliders;
-        if (filters != null && filters.size() > 0) {
-            validColliders = new LinkedList<BoundsBox>();
-            for (BoundsBox collidee : colliders) {
-                boolean isValid = true;
-                for (Filter filter : filters) {
-                    isValid = filter.filterBounds(bounds, collidee);
-                    if (!isValid) {
-                        break;
-                    }
-                }
-                if (isValid) {
-                    validColliders.add(collidee);
-                }
-            }
-        }
+    /**
+     * Resolves collisions of an AABB against other AABB objects without creating garbage.
+     * Default filters are used.
+     * @param bounds the collider bounds in the original location.
+     * @param moveX the amount the collider will move along the x axis if no collision occurs.
+     * @param moveY the amount the collider will move along the y axis if no collision occurs.
+     * @param moveZ the amount the collider will move along the z axis if no collision occurs.
+     * @param colliders the colliders, a random access list.
+     * @param store the information to store how to move the collided object in.
+     */
+    public void resolveCollision(BoundsBox bounds, float moveX, float moveY, float moveZ, List<BoundsBox> colliders,
+                                 CollisionInformation store) {
+        resolveFiltered(bounds, moveX, moveY, moveZ, colliders, filters, store);
+    }
+
+    /**
+     * Resolves collisions of an AABB against boxes without creating garbage.
+     * No filters are used for the collisions.
+     * Each axis is resolved in turn with the Y axis first so colliders slide along floors and walls.
+     * @param bounds the collider bounds in the original location.
+     * @param moveX the amount the collider will move along the x axis if no collision occurs.
+     * @param moveY the amount the collider will move along the y axis if no collision occurs.
+     * @param moveZ the amount the collider will move along the z axis if no collision occurs.
+     * @param colliders the boxes to collide with, boxes not in the targets of the bounds are ignored.
+     * @param store the information to store how to move the collided object in.
+     */
+    public void resolveCollision(BoundsBox bounds, float moveX, float moveY, float moveZ, ColliderBoxes colliders,
+                                 CollisionInformation store) {
+        Vector3f center = bounds.getCenter();
+        float minX = center.x - bounds.getXExtent();
+        float minY = center.y - bounds.getYExtent();
+        float minZ = center.z - bounds.getZExtent();
+        float maxX = center.x + bounds.getXExtent();
+        float maxY = center.y + bounds.getYExtent();
+        float maxZ = center.z + bounds.getZExtent();
+        long targets = bounds.getTargets();
+        int size = colliders.size();
 
         // Resolve the Y axis
-        float move = moveAmount.y;
-        // Get the collision depths.
-        for (BoundsBox collider : validColliders) {
-            if (!collider.equals(bounds) && (bounds.getTargets() & collider.getGroups()) != 0) {
-                move = getYPreCollision(collider, modifiedBounds, move);
+        float resolvedY = moveY;
+        for (int i = 0; i < size; i++) {
+            if ((targets & colliders.getGroups(i)) != 0
+                    && isCollidingOnAxis(colliders.getMinX(i), colliders.getMaxX(i), minX, maxX)
+                    && isCollidingOnAxis(colliders.getMinZ(i), colliders.getMaxZ(i), minZ, maxZ)) {
+                resolvedY = getMinimumDistance(colliders.getMinY(i), colliders.getMaxY(i), minY, maxY, resolvedY);
             }
         }
-        finalMovedAmount.y = move;
-        centerStart.y += move;
-        modifiedBounds.setCenter(centerStart);
+        minY += resolvedY;
+        maxY += resolvedY;
 
         // Resolve the X axis
-        move = moveAmount.x;
-        // Get the collision depths.
-        for (BoundsBox collider : validColliders) {
-            if (!collider.equals(bounds) && (bounds.getTargets() & collider.getGroups()) != 0) {
-                move = getXPreCollision(collider, modifiedBounds, move);
+        float resolvedX = moveX;
+        for (int i = 0; i < size; i++) {
+            if ((targets & colliders.getGroups(i)) != 0
+                    && isCollidingOnAxis(colliders.getMinY(i), colliders.getMaxY(i), minY, maxY)
+                    && isCollidingOnAxis(colliders.getMinZ(i), colliders.getMaxZ(i), minZ, maxZ)) {
+                resolvedX = getMinimumDistance(colliders.getMinX(i), colliders.getMaxX(i), minX, maxX, resolvedX);
             }
         }
-        finalMovedAmount.x = move;
-        centerStart.x += move;
-        modifiedBounds.setCenter(centerStart);
+        minX += resolvedX;
+        maxX += resolvedX;
 
         // Resolve the Z axis
-        move = moveAmount.z;
-        // Get the collision depths.
-        for (BoundsBox collider : validColliders) {
-            if (!collider.equals(bounds) && (bounds.getTargets() & collider.getGroups()) != 0) {
-                move = getZPreCollision(collider, modifiedBounds, move);
+        float resolvedZ = moveZ;
+        for (int i = 0; i < size; i++) {
+            if ((targets & colliders.getGroups(i)) != 0
+                    && isCollidingOnAxis(colliders.getMinX(i), colliders.getMaxX(i), minX, maxX)
+                    && isCollidingOnAxis(colliders.getMinY(i), colliders.getMaxY(i), minY, maxY)) {
+                resolvedZ = getMinimumDistance(colliders.getMinZ(i), colliders.getMaxZ(i), minZ, maxZ, resolvedZ);
             }
         }
-        finalMovedAmount.z = move;
-        centerStart.z += move;
-        modifiedBounds.setCenter(centerStart);
 
-        CollisionInformation collisionInformation = new CollisionInformation();
-        collisionInformation.setMoveAmount(finalMovedAmount);
-        return collisionInformation;
+        store.setMoveAmount(resolvedX, resolvedY, resolvedZ);
+    }
+
+    /**
+     * Gathers the colliders passing the filters and resolves the collision against them.
+     * @param bounds the collider bounds in the original location.
+     * @param moveX the amount the collider will move along the x axis if no collision occurs.
+     * @param moveY the amount the collider will move along the y axis if no collision occurs.
+     * @param moveZ the amount the collider will move along the z axis if no collision occurs.
+     * @param colliders the colliders, a random access list.
+     * @param filters the filters to use, null to not use any.
+     * @param store the information to store how to move the collided object in.
+     */
+    private void resolveFiltered(BoundsBox bounds, float moveX, float moveY, float moveZ, List<BoundsBox> colliders,
+                                 List<Filter> filters, CollisionInformation store) {
+        filteredBoxes.clear();
+        for (int i = 0; i < colliders.size(); i++) {
+            BoundsBox collidee = colliders.get(i);
+            if (!collidee.equals(bounds) && isPassingFilters(bounds, collidee, filters)) {
+                filteredBoxes.add(collidee);
+            }
+        }
+        resolveCollision(bounds, moveX, moveY, moveZ, filteredBoxes, store);
+    }
+
+    /**
+     * @param bounds the bounds to collide with.
+     * @param collidee the collidee to test with.
+     * @param filters the filters to use, null to not use any.
+     * @return true if every filter allows the collision.
+     */
+    private boolean isPassingFilters(Bounds bounds, Bounds collidee, List<Filter> filters) {
+        if (filters == null) {
+            return true;
+        }
+        for (int i = 0; i < filters.size(); i++) {
+            if (!filters.get(i).filterBounds(bounds, collidee)) {
+                return false;
+            }
+        }
+        return true;
     }
 
     /**
@@ -205,77 +272,6 @@ public class CollisionResolver {
         return minimum;
     }
 
-    /**
-     * Calculate the Y offset and return it if the bounds overlap and if the overlap is smaller.
-     * @param bounds the bounds to check with.
-     * @param checkedBounds the bounds to check against.
-     * @param minimumX the minimum to replace if smaller.
-     * @return the minimum in the x axis.
-     */
-    private float getXPreCollision(BoundsBox bounds, BoundsBox checkedBounds, float minimumX) {
-        Vector3f min = bounds.getMin(null);
-        Vector3f max = bounds.getMax(null);
-
-        Vector3f checkedMin = checkedBounds.getMin(null);
-        Vector3f checkedMax = checkedBounds.getMax(null);
-
-        // Check if overlapping.
-        boolean isYColliding = isCollidingOnAxis(min.y, max.y, checkedMin.y, checkedMax.y);
-        boolean isZColliding = isCollidingOnAxis(min.z, max.z, checkedMin.z, checkedMax.z);
-        float currentMinX = minimumX;
-        if (isYColliding && isZColliding) {
-            currentMinX = getMinimumDistance(min.x, max.x, checkedMin.x, checkedMax.x, minimumX);
-        }
-        return currentMinX;
-    }
-
-    /**
-     * Calculate the Y offset and return it if the bounds overlap and if the overlap is smaller.
-     * @param bounds the bounds to check with.
-     * @param checkedBounds the bounds to check against.
-     * @param minimumY the minimum to replace if smaller.
-     * @return the minimum in the y axis.
-     */
-    private float getYPreCollision(BoundsBox bounds, BoundsBox checkedBounds, float minimumY) {
-        Vector3f min = bounds.getMin(null);
-        Vector3f max = bounds.getMax(null);
-
-        Vector3f checkedMin = checkedBounds.getMin(null);
-        Vector3f checkedMax = checkedBounds.getMax(null);
-        // Check if overlapping.
-        boolean isXColliding = isCollidingOnAxis(min.x, max.x, checkedMin.x, checkedMax.x);
-        boolean isZColliding = isCollidingOnAxis(min.z, max.z, checkedMin.z, checkedMax.z);
-        float currentMinY = minimumY;
-        if (isXColliding && isZColliding) {
-            currentMinY = getMinimumDistance(min.y, max.y, checkedMin.y, checkedMax.y, minimumY);
-        }
-        return currentMinY;
-    }
-
-    /**
-     * Calculate the Y offset and return it if the bounds overlap and if the overlap is smaller.
-     * @param bounds the bounds to check with.
-     * @param checkedBounds the bounds to check against.
-     * @param minimumZ the minimum to replace if smaller.
-     * @return the minimum in the y axis.
-     */
-    private float getZPreCollision(BoundsBox bounds, BoundsBox checkedBounds, float minimumZ) {
-        Vector3f min = bounds.getMin(null);
-        Vector3f max = bounds.getMax(null);
-
-        Vector3f checkedMin = checkedBounds.getMin(null);
-        Vector3f checkedMax = checkedBounds.getMax(null);
-        // Check if overlapping.
-        boolean isXColliding = isCollidingOnAxis(min.x, max.x, checkedMin.x, checkedMax.x);
-        boolean isYColliding = isCollidingOnAxis(min.y, max.y, checkedMin.y, checkedMax.y);
-        float currentMinZ = minimumZ;
-        if (isXColliding && isYColliding) {
-            currentMinZ = getMinimumDistance(min.z, max.z, checkedMin.z, checkedMax.z, minimumZ);
-        }
-
-        return currentMinZ;
-    }
-
     /**
      * @param filter the filter to set.
      */
@@ -0,0 +1,483 @@
+package com.halboom.pgt.physics.simple;
+
+import com.halboom.pgt.physics.simple.shapes.BoundsBox;
+import com.jme3.math.Ray;
+import com.jme3.math.Vector3f;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Broadphase hashing bounds into a uniform grid of cubic cells.
+ * Bounds are only moved between cells when they cross into another cell
+ * and queries only look at the cells the area covers or the ray passes through.
+ * Bounds covering too many cells are kept in a separate list checked by every query.
+ */
+public class GridBroadphase implements Broadphase {
+    /**
+     * Number of bits used for each cell coordinate of a cell key.
+     */
+    private static final int COORDINATE_BITS = 21;
+
+    /**
+     * Mask for a cell coordinate of a cell key.
+     */
+    private static final long COORDINATE_MASK = (1L << COORDINATE_BITS) - 1;
+
+    /**
+     * Largest number of cells a bounds is added to before it is treated as oversized.
+     */
+    private static final int MAX_CELLS_PER_ENTRY = 64;
+
+    /**
+     * Bounds with the range of cells it is in.
+     */
+    private static final class Entry {
+        /**
+         * Bounds of the entry.
+         */
+        private final BoundsBox bounds;
+
+        /**
+         * First and last cell of the bounds along each axis.
+         */
+        private int minX, minY, minZ, maxX, maxY, maxZ;
+
+        /**
+         * True if the entry is in the oversized entries instead of the cells.
+         */
+        private boolean isOversized;
+
+        /**
+         * Query the entry was last found by, used to only add an entry once per query.
+         */
+        private int queryStamp;
+
+        /**
+         * Creates the entry.
+         * @param bounds the bounds of the entry.
+         */
+        private Entry(BoundsBox bounds) {
+            this.bounds = bounds;
+        }
+    }
+
+    /**
+     * Entries in each cell that has any.
+     */
+    private LongMap<List<Entry>> cells = new LongMap<List<Entry>>();
+
+    /**
+     * Entries covering too many cells to be added to each of them.
+     */
+    private List<Entry> oversizedEntries = new ArrayList<Entry>();
+
+    /**
+     * Entries of each bounds.
+     */
+    private Map<BoundsBox, Entry> entryMap = new IdentityHashMap<BoundsBox, Entry>();
+
+    /**
+     * Size of a cell along each axis.
+     */
+    private float cellSize;
+
+    /**
+     * Stamp of the current query.
+     */
+    private int queryStamp = 0;
+
+    /**
+     * Nearest and farthest distance along a ray while clipping it.
+     */
+    private final float[] clipRange = new float[2];
+
+    /**
+     * Range of cells that have held entries since the grid was cleared, rays are only traced through it.
+     */
+    private int usedMinX, usedMinY, usedMinZ, usedMaxX, usedMaxY, usedMaxZ;
+
+    /**
+     * Creates an empty grid.
+     * @param cellSize the size of a cell along each axis in world units.
+     */
+    public GridBroadphase(float cellSize) {
+        if (cellSize <= 0) {
+            throw new IllegalArgumentException("Cell size must be positive but was " + cellSize + ".");
+        }
+        this.cellSize = cellSize;
+        clearUsedRange();
+    }
+
+    @Override
+    public void update(BoundsBox bounds) {
+        Entry entry = entryMap.get(bounds);
+        boolean isAdded = entry == null;
+        if (isAdded) {
+            entry = new Entry(bounds);
+            entryMap.put(bounds, entry);
+        }
+        Vector3f center = bounds.getCenter();
+        int minX = toCell(center.x - bounds.getXExtent());
+        int minY = toCell(center.y - bounds.getYExtent());
+        int minZ = toCell(center.z - bounds.getZExtent());
+        int maxX = toCell(center.x + bounds.getXExtent());
+        int maxY = toCell(center.y + bounds.getYExtent());
+        int maxZ = toCell(center.z + bounds.getZExtent());
+        if (!isAdded && minX == entry.minX && minY == entry.minY && minZ == entry.minZ
+                && maxX == entry.maxX && maxY == entry.maxY && maxZ == entry.maxZ) {
+            return;
+        }
+        if (!isAdded) {
+            removeFromCells(entry);
+        }
+        entry.minX = minX;
+        entry.minY = minY;
+        entry.minZ = minZ;
+        entry.maxX = maxX;
+        entry.maxY = maxY;
+        entry.maxZ = maxZ;
+        entry.isOversized = getCellCount(minX, minY, minZ, maxX, maxY, maxZ) > MAX_CELLS_PER_ENTRY;
+        if (entry.isOversized) {
+            oversizedEntries.add(entry);
+            return;
+        }
+        for (int x = minX; x <= maxX; x++) {
+            for (int y = minY; y <= maxY; y++) {
+                for (int z = minZ; z <= maxZ; z++) {
+                    long key = getKey(x, y, z);
+                    List<Entry> cell = cells.get(key);
+                    if (cell == null) {
+                        cell = new ArrayList<Entry>();
+                        cells.put(key, cell);
+                    }
+                    cell.add(entry);
+                }
+            }
+        }
+        usedMinX = Math.min(usedMinX, minX);
+        usedMinY = Math.min(usedMinY, minY);
+        usedMinZ = Math.min(usedMinZ, minZ);
+        usedMaxX = Math.max(usedMaxX, maxX);
+        usedMaxY = Math.max(usedMaxY, maxY);
+        usedMaxZ = Math.max(usedMaxZ, maxZ);
+    }
+
+    @Override
+    public void remove(BoundsBox bounds) {
+        Entry entry = entryMap.remove(bounds);
+        if (entry != null) {
+            removeFromCells(entry);
+        }
+    }
+
+    @Override
+    public void clear() {
+        cells.clear();
+        oversizedEntries.clear();
+        entryMap.clear();
+        clearUsedRange();
+    }
+
+    @Override
+    public void query(BoundsBox area, long groups, List<BoundsBox> results) {
+        if (entryMap.isEmpty()) {
+            return;
+        }
+        queryStamp++;
+        Vector3f center = area.getCenter();
+        int minX = toCell(center.x - area.getXExtent());
+        int minY = toCell(center.y - area.getYExtent());
+        int minZ = toCell(center.z - area.getZExtent());
+        int maxX = toCell(center.x + area.getXExtent());
+        int maxY = toCell(center.y + area.getYExtent());
+        int maxZ = toCell(center.z + area.getZExtent());
+        // Areas covering more cells than there are bounds are cheaper to check against every bounds.
+        if (getCellCount(minX, minY, minZ, maxX, maxY, maxZ) > entryMap.size()) {
+            for (Entry entry : entryMap.values()) {
+                addIfOverlapping(entry, area, groups, results);
+            }
+            return;
+        }
+        for (int i = 0; i < oversizedEntries.size(); i++) {
+            addIfOverlapping(oversizedEntries.get(i), area, groups, results);
+        }
+        for (int x = minX; x <= maxX; x++) {
+            for (int y = minY; y <= maxY; y++) {
+                for (int z = minZ; z <= maxZ; z++) {
+                    List<Entry> cell = cells.get(getKey(x, y, z));
+                    if (cell == null) {
+                        continue;
+                    }
+                    for (int i = 0; i < cell.size(); i++) {
+                        Entry entry = cell.get(i);
+                        if (entry.queryStamp != queryStamp) {
+                            entry.queryStamp = queryStamp;
+                            addIfOverlapping(entry, area, groups, results);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    @Override
+    public void queryRay(Ray ray, long groups, List<BoundsBox> results) {
+        if (entryMap.isEmpty()) {
+            return;
+        }
+        queryStamp++;
+        for (int i = 0; i < oversizedEntries.size(); i++) {
+            addIfHit(oversizedEntries.get(i), ray, groups, results);
+        }
+        if (cells.size() == 0) {
+            return;
+        }
+        // Clip the ray to the used cells.
+        Vector3f origin = ray.getOrigin();
+        Vector3f direction = ray.getDirection();
+        float[] clip = clipRange;
+        clip[0] = 0;
+        clip[1] = ray.getLimit();
+        if (!clipAxis(origin.x, direction.x, usedMinX, usedMaxX, clip)
+                || !clipAxis(origin.y, direction.y, usedMinY, usedMaxY, clip)
+                || !clipAxis(origin.z, direction.z, usedMinZ, usedMaxZ, clip)) {
+            return;
+        }
+        float near = clip[0];
+        float far = clip[1];
+
+        // Walk through the cells the ray passes using a 3D DDA.
+        int x = clamp(toCell(origin.x + direction.x * near), usedMinX, usedMaxX);
+        int y = clamp(toCell(origin.y + direction.y * near), usedMinY, usedMaxY);
+        int z = clamp(toCell(origin.z + direction.z * near), usedMinZ, usedMaxZ);
+        int stepX = direction.x > 0 ? 1 : direction.x < 0 ? -1 : 0;
+        int stepY = direction.y > 0 ? 1 : direction.y < 0 ? -1 : 0;
+        int stepZ = direction.z > 0 ? 1 : direction.z < 0 ? -1 : 0;
+        float nextX = getNextBoundary(origin.x, direction.x, x, stepX);
+        float nextY = getNextBoundary(origin.y, direction.y, y, stepY);
+        float nextZ = getNextBoundary(origin.z, direction.z, z, stepZ);
+        float deltaX = stepX != 0 ? cellSize / Math.abs(direction.x) : Float.POSITIVE_INFINITY;
+        float deltaY = stepY != 0 ? cellSize / Math.abs(direction.y) : Float.POSITIVE_INFINITY;
+        float deltaZ = stepZ != 0 ? cellSize / Math.abs(direction.z) : Float.POSITIVE_INFINITY;
+        while (true) {
+            List<Entry> cell = cells.get(getKey(x, y, z));
+            if (cell != null) {
+                for (int i = 0; i < cell.size(); i++) {
+                    Entry entry = cell.get(i);
+                    if (entry.queryStamp != queryStamp) {
+                        entry.queryStamp = queryStamp;
+                        addIfHit(entry, ray, groups, results);
+                    }
+                }
+            }
+            if (nextX <= nextY && nextX <= nextZ) {
+                if (nextX > far || stepX == 0) {
+                    return;
+                }
+                x += stepX;
+                nextX += deltaX;
+            } else if (nextY <= nextZ) {
+                if (nextY > far || stepY == 0) {
+                    return;
+                }
+                y += stepY;
+                nextY += deltaY;
+            } else {
+                if (nextZ > far || stepZ == 0) {
+                    return;
+                }
+                z += stepZ;
+                nextZ += deltaZ;
+            }
+            if (x < usedMinX || x > usedMaxX || y < usedMinY || y > usedMaxY || z < usedMinZ || z > usedMaxZ) {
+                return;
+            }
+        }
+    }
+
+    @Override
+    public int getSize() {
+        return entryMap.size();
+    }
+
+    /**
+     * Changes the size of the cells and moves every bounds into the new cells.
+     * @param cellSize the size of a cell along each axis in world units.
+     */
+    public void setCellSize(float cellSize) {
+        if (cellSize <= 0) {
+            throw new IllegalArgumentException("Cell size must be positive but was " + cellSize + ".");
+        }
+        this.cellSize = cellSize;
+        List<BoundsBox> bounds = new ArrayList<BoundsBox>(entryMap.keySet());
+        clear();
+        for (BoundsBox box : bounds) {
+            update(box);
+        }
+    }
+
+    /**
+     * @return the size of a cell along each axis in world units.
+     */
+    public float getCellSize() {
+        return cellSize;
+    }
+
+    /**
+     * Adds the bounds of an entry to the results if it is in the groups and overlaps the area.
+     * @param entry the entry to check.
+     * @param area the area of the query.
+     * @param groups the groups of the query.
+     * @param results the results to add to.
+     */
+    private void addIfOverlapping(Entry entry, BoundsBox area, long groups, List<BoundsBox> results) {
+        BoundsBox bounds = entry.bounds;
+        if (groups != ALL_GROUPS && (bounds.getGroups() & groups) == 0) {
+            return;
+        }
+        Vector3f center = bounds.getCenter();
+        Vector3f areaCenter = area.getCenter();
+        if (Math.abs(center.x - areaCenter.x) <= bounds.getXExtent() + area.getXExtent()
+                && Math.abs(center.y - areaCenter.y) <= bounds.getYExtent() + area.getYExtent()
+                && Math.abs(center.z - areaCenter.z) <= bounds.getZExtent() + area.getZExtent()) {
+            results.add(bounds);
+        }
+    }
+
+    /**
+     * Adds the bounds of an entry to the results if it is in the groups and hit by the ray.
+     * @param entry the entry to check.
+     * @param ray the ray of the query.
+     * @param groups the groups of the query.
+     * @param results the results to add to.
+     */
+    private void addIfHit(Entry entry, Ray ray, long groups, List<BoundsBox> results) {
+        boolean isInGroups = groups == ALL_GROUPS || (entry.bounds.getGroups() & groups) != 0;
+        if (isInGroups && entry.bounds.getRayDistance(ray) >= 0) {
+            results.add(entry.bounds);
+        }
+    }
+
+    /**
+     * Clips the range of a ray to a range of cells along an axis.
+     * @param origin the origin of the ray along the axis.
+     * @param direction the direction of the ray along the axis.
+     * @param minCell the first cell of the range.
+     * @param maxCell the last cell of the range.
+     * @param clip the nearest and farthest distance along the ray to clip.
+     * @return false if nothing of the ray is left.
+     */
+    private boolean clipAxis(float origin, float direction, int minCell, int maxCell, float[] clip) {
+        float min = minCell * cellSize;
+        float max = (maxCell + 1) * cellSize;
+        if (direction == 0) {
+            return origin >= min && origin <= max;
+        }
+        float first = (min - origin) / direction;
+        float second = (max - origin) / direction;
+        clip[0] = Math.max(clip[0], Math.min(first, second));
+        clip[1] = Math.min(clip[1], Math.max(first, second));
+        return clip[0] <= clip[1];
+    }
+
+    /**
+     * Finds the distance along a ray to the next cell boundary along an axis.
+     * @param origin the origin of the ray along the axis.
+     * @param direction the direction of the ray along the axis.
+     * @param cell the cell the ray is in.
+     * @param step the direction of the next cell along the axis.
+     * @return the distance along the ray or infinity if the ray does not move along the axis.
+     */
+    private float getNextBoundary(float origin, float direction, int cell, int step) {
+        if (step == 0) {
+            return Float.POSITIVE_INFINITY;
+        }
+        float boundary = (step > 0 ? cell + 1 : cell) * cellSize;
+        return (boundary - origin) / direction;
+    }
+
+    /**
+     * @param value the value to clamp.
+     * @param min the smallest value.
+     * @param max the largest value.
+     * @return the value within the range.
+     */
+    private int clamp(int value, int min, int max) {
+        return Math.max(min, Math.min(max, value));
+    }
+
+    /**
+     * Resets the range of used cells.
+     */
+    private void clearUsedRange() {
+        usedMinX = Integer.MAX_VALUE;
+        usedMinY = Integer.MAX_VALUE;
+        usedMinZ = Integer.MAX_VALUE;
+        usedMaxX = Integer.MIN_VALUE;
+        usedMaxY = Integer.MIN_VALUE;
+        usedMaxZ = Integer.MIN_VALUE;
+    }
+
+    /**
+     * Removes an entry from the cells it is in.
+     * @param entry the entry to remove.
+     */
+    private void removeFromCells(Entry entry) {
+        if (entry.isOversized) {
+            oversizedEntries.remove(entry);
+            return;
+        }
+        for (int x = entry.minX; x <= entry.maxX; x++) {
+            for (int y = entry.minY; y <= entry.maxY; y++) {
+                for (int z = entry.minZ; z <= entry.maxZ; z++) {
+                    long key = getKey(x, y, z);
+                    List<Entry> cell = cells.get(key);
+                    if (cell != null) {
+                        cell.remove(entry);
+                        if (cell.isEmpty()) {
+                            cells.remove(key);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Counts the cells of a range of cells.
+     * @param minX the first x cell coordinate.
+     * @param minY the first y cell coordinate.
+     * @param minZ the first z cell coordinate.
+     * @param maxX the last x cell coordinate.
+     * @param maxY the last y cell coordinate.
+     * @param maxZ the last z cell coordinate.
+     * @return the number of cells in the range.
+     */
+    private long getCellCount(int minX, int minY, int minZ, int maxX, int maxY, int maxZ) {
+        return (long) (maxX - minX + 1) * (maxY - minY + 1) * (maxZ - minZ + 1);
+    }
+
+    /**
+     * Converts a position along an axis to a cell coordinate.
+     * @param position the position in world units.
+     * @return the cell coordinate containing the position.
+     */
+    private int toCell(float position) {
+        return (int) Math.floor(position / cellSize);
+    }
+
+    /**
+     * Packs cell coordinates into a key, coordinates wrap around every 2^21 cells.
+     * @param x the x cell coordinate.
+     * @param y the y cell coordinate.
+     * @param z the z cell coordinate.
+     * @return the key of the cell.
+     */
+    private long getKey(int x, int y, int z) {
+        return ((x & COORDINATE_MASK) << (COORDINATE_BITS * 2)) | ((y & COORDINATE_MASK) << COORDINATE_BITS)
+                | (z & COORDINATE_MASK);
+    }
+}
@@ -6,6 +6,7 @@ import com.exploringlines.entitysystem.EntitySet;
 import com.exploringlines.entitysystem.EntitySystem;
 import com.exploringlines.entitysystem.Subsystem;
 import com.halboom.pgt.pgutil.math.Vector3Int;
+import com.halboom.pgt.pgutil.voxel.VoxelGrid;
 import com.halboom.pgt.physics.PhysicsUnits;
 import com.halboom.pgt.physics.components.PhysicsStateComponent;
 import com.halboom.pgt.physics.simple.components.AABBComponent;
@@ -15,6 +16,7 @@ import com.halboom.pgt.physics.simple.components.MovementComponent;
 import com.halboom.pgt.physics.simple.components.SpeedComponent;
 import com.halboom.pgt.physics.simple.shapes.BoundsBox;
 import com.jme3.bounding.BoundingBox;
+import com.jme3.math.Ray;
 import com.jme3.math.Vector3f;
 
 import java.util.LinkedList;
@@ -29,9 +31,14 @@ import java.util.List;
  */
 public class GridColliderSystem implements Subsystem {
     /**
-     * Default stepping size for ray collisions.
+     * Distance before the hit of a ray that is considered empty.
      */
-    private static final float DEFAULT_LINE_STEP = 0.05f;
+    private static final float EMPTY_POINT_OFFSET = 0.05f;
+
+    /**
+     * Groups mask matching every tile, including tiles without a group.
+     */
+    private static final long ALL_GROUPS = ~0L;
 
     /**
      * Default friction of a tile.
@@ -56,7 +63,7 @@ public class GridColliderSystem implements Subsystem {
     /**
      * Tiles reference of the map.
      */
-    private byte[][][] tiles;
+    private VoxelGrid tiles;
 
     /**
      * Friction for the tile indices.
@@ -82,12 +89,46 @@ public class GridColliderSystem implements Subsystem {
      * Used for operations that return grid location.
      */
     private final Vector3Int vector3Int = new Vector3Int(0, 0, 0);
-
     /**
-     * Step size to use when stepping through line points; the smaller the step the more
-     * accurate at a trade off of performance.
+     * First and last tile index touched by the collider being resolved.
+     */
+    private final Vector3Int beginIndex = new Vector3Int(0, 0, 0), endIndex = new Vector3Int(0, 0, 0);
+    /**
+     * Amount the collider being resolved moves.
+     */
+    private final Vector3f movedAmount = new Vector3f();
+    /**
+     * Center of the collider being resolved.
+     */
+    private final Vector3f center = new Vector3f();
+    /**
+     * Bounds of the collider being resolved.
+     */
+    private final BoundsBox bounds = new BoundsBox();
+    /**
+     * Bounds of the collider being resolved including its movement.
+     */
+    private final BoundsBox sweptBounds = new BoundsBox();
+    /**
+     * Result of sweeping the collider being resolved through the tiles.
+     */
+    private final TileSweepResult swept = new TileSweepResult();
+    /**
+     * Minimum and maximum of the box being swept along each axis.
+     */
+    private final float[] sweepMin = new float[3], sweepMax = new float[3];
+    /**
+     * Result of the rays cast for the closest tile queries.
      */
-    private float lineStep = DEFAULT_LINE_STEP;
+    private final TileRayHit rayHit = new TileRayHit();
+    /**
+     * Nearest and farthest distance along a ray while clipping it to the grid.
+     */
+    private final float[] clipRange = new float[2];
+    /**
+     * Axis of the grid face a clipped ray enters through, -1 if it starts inside the grid.
+     */
+    private int clipAxis = -1;
 
     /**
      * Callbacks for tile collisions.
@@ -139,63 +180,33 @@ public class GridColliderSystem implements Subsystem {
      * @param origin the origin of the ray.
      * @param direction the direction of the ray.
      * @param maxDistance the maximum distance the ray should go.
-     * @return the index of the collided grid, null if no collision and within bounds.
+     * @return the index of the collided grid, null if no collision; vector is reused, copy if needed.
      */
     public final Vector3Int getClosestUsedGridFromRay(Vector3f origin, Vector3f direction, float maxDistance) {
-        boolean hasCollided = false;
-
-        Vector3Int currentIndex = getGridFromPosition(origin.x, origin.y, origin.z);
-        boolean isInBounds = isIndexInBounds(currentIndex.x, currentIndex.y, currentIndex.z);
-        Vector3Int lastBoundedPosition = new Vector3Int(0, 0, 0);
-
-        // Current step to increment by.
-        float step = 0f;
-        while (!hasCollided && step < maxDistance) {
-            // Update the position of the point on the ray.
-            vector3.x = origin.x + direction.x * step;
-            vector3.y = origin.y + direction.y * step;
-            vector3.z = origin.z + direction.z * step;
-            step += lineStep;
-
-            // Get the grid position and check if in bounds and if collided.
-            currentIndex = getGridFromPosition(vector3.x, vector3.y, vector3.z);
-            isInBounds = isIndexInBounds(currentIndex.x, currentIndex.y, currentIndex.z);
-            if (isInBounds) {
-                lastBoundedPosition.x = currentIndex.x;
-                lastBoundedPosition.y = currentIndex.y;
-                lastBoundedPosition.z = currentIndex.z;
-                if (tiles[currentIndex.x][currentIndex.y][currentIndex.z] != 0) {
-                    hasCollided = true;
-                }
-            }
-        }
-        if (!isInBounds) {
-            return null;
-            //return lastBoundedPosition;
-        } else if (!hasCollided) {
+        if (!castRay(origin, direction, maxDistance, ALL_GROUPS, rayHit)) {
             return null;
         }
-
-        return currentIndex;
+        vector3Int.set(rayHit.getTile());
+        return vector3Int;
     }
 
     /**
-     * Retrieves the closest empty grid from the ray.
+     * Retrieves the closest empty grid from the ray, which is the tile in front of the face the ray hits.
      * @param origin the start of the ray.
      * @param direction the direction of the ray.
      * @param maxDistance the maximum distance to check to.
-     * @return the closest empty tile in the grid.
+     * @return the closest empty tile in the grid or the tile at the end of the ray if nothing is hit;
+     * vector is reused, copy if needed.
      */
     public final Vector3Int getClosestEmptyGridFromRay(Vector3f origin, Vector3f direction, float maxDistance) {
-        getClosestUsedGridFromRay(origin, direction, maxDistance);
-
-        // Update the position of the point on the ray.
-        // This uses the shared vector3 position from the getClosestUsedGridFromRay function.
-        vector3.x -= direction.x * lineStep;
-        vector3.y -= direction.y * lineStep;
-        vector3.z -= direction.z * lineStep;
-
-        return getGridFromPosition(vector3.x, vector3.y, vector3.z);
+        if (!castRay(origin, direction, maxDistance, ALL_GROUPS, rayHit)) {
+            return getGridFromPosition(origin.x + direction.x * maxDistance, origin.y + direction.y * maxDistance,
+                    origin.z + direction.z * maxDistance);
+        }
+        Vector3Int tile = rayHit.getTile();
+        Vector3Int normal = rayHit.getNormal();
+        vector3Int.set(tile.x + normal.x, tile.y + normal.y, tile.z + normal.z);
+        return vector3Int;
     }
 
     /**
@@ -203,20 +214,354 @@ public class GridColliderSystem implements Subsystem {
      * @param origin the start of the ray.
      * @param direction the direction of the ray.
      * @param maxDistance the maximum distance to check to.
-     * @return the closest empty point on the grid.
+     * @return the point just before the ray hits a tile or the end of the ray if nothing is hit;
+     * vector is reused, copy if needed.
      */
     public final Vector3f getClosestEmptyPointFromRay(Vector3f origin, Vector3f direction, float maxDistance) {
-        getClosestUsedGridFromRay(origin, direction, maxDistance);
-
-        // Update the position of the point on the ray.
-        // This uses the shared vector3 position from the getClosestUsedGridFromRay function.
-        vector3.x -= direction.x * lineStep;
-        vector3.y -= direction.y * lineStep;
-        vector3.z -= direction.z * lineStep;
+        float distance = maxDistance;
+        if (castRay(origin, direction, maxDistance, ALL_GROUPS, rayHit)) {
+            distance = rayHit.getDistance() - EMPTY_POINT_OFFSET;
+        }
+        vector3.x = origin.x + direction.x * distance;
+        vector3.y = origin.y + direction.y * distance;
+        vector3.z = origin.z + direction.z * distance;
 
         return vector3;
     }
 
+    /**
+     * Casts a ray through the tiles and finds the first tile in the groups it hits.
+     * Each tile along the ray is visited exactly once by walking from tile to tile across their faces.
+     * @param origin the origin of the ray.
+     * @param direction the direction of the ray, distances are multiples of it.
+     * @param maxDistance the maximum distance the ray should go.
+     * @param groups the collision groups a tile has to be in at least one of to be hit,
+     * ALL_GROUPS to hit any tile.
+     * @param store the hit to store the result in.
+     * @return true if a tile was hit.
+     */
+    public final boolean castRay(Vector3f origin, Vector3f direction, float maxDistance, long groups,
+                                 TileRayHit store) {
+        store.clear();
+        if (tiles == null) {
+            return false;
+        }
+        // Work in tile units so each tile is a unit cube.
+        float originX = origin.x / scale;
+        float originY = origin.y / scale;
+        float originZ = origin.z / scale;
+        float directionX = direction.x / scale;
+        float directionY = direction.y / scale;
+        float directionZ = direction.z / scale;
+
+        // Clip the ray to the grid.
+        clipRange[0] = 0;
+        clipRange[1] = maxDistance;
+        clipAxis = -1;
+        if (!clipToGrid(0, originX, directionX, tiles.getLengthX())
+                || !clipToGrid(1, originY, directionY, tiles.getLengthY())
+                || !clipToGrid(2, originZ, directionZ, tiles.getLengthZ())) {
+            return false;
+        }
+        float distance = clipRange[0];
+        float far = clipRange[1];
+        int x = clampIndex((int) Math.floor(originX + directionX * distance), tiles.getLengthX());
+        int y = clampIndex((int) Math.floor(originY + directionY * distance), tiles.getLengthY());
+        int z = clampIndex((int) Math.floor(originZ + directionZ * distance), tiles.getLengthZ());
+        int stepX = directionX > 0 ? 1 : directionX < 0 ? -1 : 0;
+        int stepY = directionY > 0 ? 1 : directionY < 0 ? -1 : 0;
+        int stepZ = directionZ > 0 ? 1 : directionZ < 0 ? -1 : 0;
+        int normalX = clipAxis == 0 ? -stepX : 0;
+        int normalY = clipAxis == 1 ? -stepY : 0;
+        int normalZ = clipAxis == 2 ? -stepZ : 0;
+        float nextX = stepX == 0 ? Float.POSITIVE_INFINITY : ((stepX > 0 ? x + 1 : x) - originX) / directionX;
+        float nextY = stepY == 0 ? Float.POSITIVE_INFINITY : ((stepY > 0 ? y + 1 : y) - originY) / directionY;
+        float nextZ = stepZ == 0 ? Float.POSITIVE_INFINITY : ((stepZ > 0 ? z + 1 : z) - originZ) / directionZ;
+        float deltaX = stepX == 0 ? Float.POSITIVE_INFINITY : stepX / directionX;
+        float deltaY = stepY == 0 ? Float.POSITIVE_INFINITY : stepY / directionY;
+        float deltaZ = stepZ == 0 ? Float.POSITIVE_INFINITY : stepZ / directionZ;
+
+        while (true) {
+            if (isTileInGroups(tiles.get(x, y, z), groups)) {
+                store.setHit(x, y, z, normalX, normalY, normalZ, origin, direction, distance);
+                return true;
+            }
+            // Move to the neighbouring tile across the closest face.
+            if (nextX <= nextY && nextX <= nextZ) {
+                if (stepX == 0 || nextX > far) {
+                    return false;
+                }
+                distance = nextX;
+                x += stepX;
+                nextX += deltaX;
+                normalX = -stepX;
+                normalY = 0;
+                normalZ = 0;
+            } else if (nextY <= nextZ) {
+                if (nextY > far) {
+                    return false;
+                }
+                distance = nextY;
+                y += stepY;
+                nextY += deltaY;
+                normalX = 0;
+                normalY = -stepY;
+                normalZ = 0;
+            } else {
+                if (nextZ > far) {
+                    return false;
+                }
+                distance = nextZ;
+                z += stepZ;
+                nextZ += deltaZ;
+                normalX = 0;
+                normalY = 0;
+                normalZ = -stepZ;
+            }
+            if (!tiles.isInBounds(x, y, z)) {
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Casts a ray through the tiles and finds the first tile in the groups it hits.
+     * @param ray the ray to cast, the limit of the ray is the maximum distance.
+     * @param groups the collision groups a tile has to be in at least one of to be hit,
+     * ALL_GROUPS to hit any tile.
+     * @param store the hit to store the result in.
+     * @return true if a tile was hit.
+     */
+    public final boolean castRay(Ray ray, long groups, TileRayHit store) {
+        return castRay(ray.getOrigin(), ray.getDirection(), ray.getLimit(), groups, store);
+    }
+
+    /**
+     * Casts many rays at once such as for projectiles or line of sight checks.
+     * @param rays the rays to cast, the limit of each ray is its maximum distance.
+     * @param count the number of rays to cast from the start of the array.
+     * @param groups the collision groups a tile has to be in at least one of to be hit.
+     * @param hits the hits to store the result of each ray in, at least as many as the rays cast.
+     * @return the number of rays that hit a tile.
+     */
+    public final int castRays(Ray[] rays, int count, long groups, TileRayHit[] hits) {
+        int hitCount = 0;
+        for (int i = 0; i < count; i++) {
+            if (castRay(rays[i].getOrigin(), rays[i].getDirection(), rays[i].getLimit(), groups, hits[i])) {
+                hitCount++;
+            }
+        }
+        return hitCount;
+    }
+
+    /**
+     * Clips the range of a ray to the grid along an axis.
+     * @param axis the index of the axis.
+     * @param origin the origin of the ray in tile units.
+     * @param direction the direction of the ray in tile units.
+     * @param length the number of tiles along the axis.
+     * @return false if nothing of the ray is left.
+     */
+    private boolean clipToGrid(int axis, float origin, float direction, int length) {
+        if (direction == 0) {
+            return origin >= 0 && origin < length;
+        }
+        float first = -origin / direction;
+        float second = (length - origin) / direction;
+        float enter = Math.min(first, second);
+        if (enter > clipRange[0]) {
+            clipRange[0] = enter;
+            clipAxis = axis;
+        }
+        clipRange[1] = Math.min(clipRange[1], Math.max(first, second));
+        return clipRange[0] <= clipRange[1];
+    }
+
+    /**
+     * @param index the index to clamp.
+     * @param length the number of tiles along the axis.
+     * @return the index within the grid.
+     */
+    private int clampIndex(int index, int length) {
+        return Math.max(0, Math.min(length - 1, index));
+    }
+
+    /**
+     * Sweeps a box through the tiles and clips its movement before the first tiles in the groups it would enter.
+     * Each axis is swept in turn with the Y axis first so boxes slide along floors and walls.
+     * Only the layers of tiles in front of the moving face are read, so the cost grows with the area of the face
+     * and the distance moved rather than with the volume of the box.
+     * @param bounds the box in its original location.
+     * @param moveX the amount the box moves along the x axis if nothing is hit.
+     * @param moveY the amount the box moves along the y axis if nothing is hit.
+     * @param moveZ the amount the box moves along the z axis if nothing is hit.
+     * @param groups the collision groups a tile has to be in at least one of to block the box.
+     * @param store the result to store the clipped movement and the contacted tile in.
+     */
+    public final void sweepTiles(BoundsBox bounds, float moveX, float moveY, float moveZ, long groups,
+                                 TileSweepResult store) {
+        store.reset(moveX, moveY, moveZ);
+        if (tiles == null) {
+            return;
+        }
+        Vector3f boundsCenter = bounds.getCenter();
+        sweepMin[0] = boundsCenter.x - bounds.getXExtent();
+        sweepMin[1] = boundsCenter.y - bounds.getYExtent();
+        sweepMin[2] = boundsCenter.z - bounds.getZExtent();
+        sweepMax[0] = boundsCenter.x + bounds.getXExtent();
+        sweepMax[1] = boundsCenter.y + bounds.getYExtent();
+        sweepMax[2] = boundsCenter.z + bounds.getZExtent();
+
+        float resolvedY = sweepAxis(1, moveY, groups, store);
+        sweepMin[1] += resolvedY;
+        sweepMax[1] += resolvedY;
+        float resolvedX = sweepAxis(0, moveX, groups, store);
+        sweepMin[0] += resolvedX;
+        sweepMax[0] += resolvedX;
+        sweepAxis(2, moveZ, groups, store);
+    }
+
+    /**
+     * Sweeps the box along one axis layer by layer until a layer has a blocking tile or the movement ends.
+     * @param axis the index of the axis to sweep along.
+     * @param move the amount to move along the axis.
+     * @param groups the collision groups a tile has to be in at least one of to block the box.
+     * @param store the result to store the clipped movement and the contacted tile in.
+     * @return the amount that can be moved along the axis.
+     */
+    private float sweepAxis(int axis, float move, long groups, TileSweepResult store) {
+        if (move == 0) {
+            return 0;
+        }
+        // Tiles overlapping the face of the box on the other two axes.
+        int axisU = (axis + 1) % 3;
+        int axisV = (axis + 2) % 3;
+        int minU = Math.max(0, (int) Math.floor((sweepMin[axisU] + PhysicsUnits.TOLERANCE) / scale));
+        int maxU = Math.min(getLength(axisU) - 1,
+                (int) Math.ceil((sweepMax[axisU] - PhysicsUnits.TOLERANCE) / scale) - 1);
+        int minV = Math.max(0, (int) Math.floor((sweepMin[axisV] + PhysicsUnits.TOLERANCE) / scale));
+        int maxV = Math.min(getLength(axisV) - 1,
+                (int) Math.ceil((sweepMax[axisV] - PhysicsUnits.TOLERANCE) / scale) - 1);
+        if (minU > maxU || minV > maxV) {
+            return move;
+        }
+        // Tile under the center of the face, preferred as the contact.
+        int centerU = Math.max(minU, Math.min(maxU, (int) Math.floor((sweepMin[axisU] + sweepMax[axisU]) / 2 / scale)));
+        int centerV = Math.max(minV, Math.min(maxV, (int) Math.floor((sweepMin[axisV] + sweepMax[axisV]) / 2 / scale)));
+
+        int length = getLength(axis);
+        if (move > 0) {
+            float face = sweepMax[axis];
+            for (int layer = Math.max(0, (int) Math.ceil((face - PhysicsUnits.TOLERANCE) / scale));
+                 layer < length && layer * scale - face < move; layer++) {
+                if (isLayerBlocking(axis, layer, minU, maxU, minV, maxV, centerU, centerV, groups, store)) {
+                    float distance = layer * scale - face;
+                    store.setBlocked(axis, distance);
+                    return distance;
+                }
+            }
+        } else {
+            float face = sweepMin[axis];
+            for (int layer = Math.min(length - 1, (int) Math.floor((face + PhysicsUnits.TOLERANCE) / scale) - 1);
+                 layer >= 0 && (layer + 1) * scale - face > move; layer--) {
+                if (isLayerBlocking(axis, layer, minU, maxU, minV, maxV, centerU, centerV, groups, store)) {
+                    float distance = (layer + 1) * scale - face;
+                    store.setBlocked(axis, distance);
+                    return distance;
+                }
+            }
+        }
+        return move;
+    }
+
+    /**
+     * Checks a layer of tiles across an axis for a tile in the groups and stores it as the contact.
+     * @param axis the index of the axis the layer is across.
+     * @param layer the index of the layer along the axis.
+     * @param minU the first index along the next axis.
+     * @param maxU the last index along the next axis.
+     * @param minV the first index along the axis after the next.
+     * @param maxV the last index along the axis after the next.
+     * @param centerU the index along the next axis of the preferred contact.
+     * @param centerV the index along the axis after the next of the preferred contact.
+     * @param groups the collision groups a tile has to be in at least one of to block.
+     * @param store the result to store the contacted tile in.
+     * @return true if the layer has a blocking tile.
+     */
+    private boolean isLayerBlocking(int axis, int layer, int minU, int maxU, int minV, int maxV, int centerU,
+                                    int centerV, long groups, TileSweepResult store) {
+        byte tile = getTile(axis, layer, centerU, centerV);
+        if (!isTileInGroups(tile, groups)) {
+            tile = 0;
+            for (int u = minU; u <= maxU && tile == 0; u++) {
+                for (int v = minV; v <= maxV; v++) {
+                    byte candidate = getTile(axis, layer, u, v);
+                    if (isTileInGroups(candidate, groups)) {
+                        tile = candidate;
+                        break;
+                    }
+                }
+            }
+            if (tile == 0) {
+                return false;
+            }
+        }
+        int index = tile & 0xFF;
+        store.setContact(index, index < tileFriction.length ? tileFriction[index] : DEFAULT_FRICTION,
+                getTileGroups(index));
+        return true;
+    }
+
+    /**
+     * @param axis the index of the axis the layer is across.
+     * @param layer the index of the layer along the axis.
+     * @param u the index along the next axis.
+     * @param v the index along the axis after the next.
+     * @return the tile in the layer.
+     */
+    private byte getTile(int axis, int layer, int u, int v) {
+        if (axis == 0) {
+            return tiles.get(layer, u, v);
+        } else if (axis == 1) {
+            return tiles.get(v, layer, u);
+        }
+        return tiles.get(u, v, layer);
+    }
+
+    /**
+     * @param axis the index of the axis.
+     * @return the number of tiles along the axis.
+     */
+    private int getLength(int axis) {
+        if (axis == 0) {
+            return tiles.getLengthX();
+        } else if (axis == 1) {
+            return tiles.getLengthY();
+        }
+        return tiles.getLengthZ();
+    }
+
+    /**
+     * @param tile the type of the tile.
+     * @param groups the collision groups to check.
+     * @return true if the tile is not empty and is in at least one of the groups or the groups are ALL_GROUPS.
+     */
+    private boolean isTileInGroups(byte tile, long groups) {
+        if (tile == 0) {
+            return false;
+        }
+        // Every group does not filter so tiles without a group are still found.
+        return groups == ALL_GROUPS || (getTileGroups(tile & 0xFF) & groups) != 0;
+    }
+
+    /**
+     * @param index the index of the tile type.
+     * @return the collision groups of the tile type.
+     */
+    private long getTileGroups(int index) {
+        return index < collisionGroups.length ? collisionGroups[index] : DEFAULT_COLLISION_GROUP;
+    }
+
     /**
      * Checks if index is within the bounds of the tiles.
      * @param x the x index.
@@ -225,10 +570,7 @@ public class GridColliderSystem implements Subsystem {
      * @return true if the tiles are in bounds, false if out.
      */
     public final boolean isIndexInBounds(int x, int y, int z) {
-        boolean isOutsideMinimum = x < 0 || y < 0 || z < 0;
-        boolean isOutsideMaximum = x > tiles.length - 1 || y > tiles[0].length - 1 || z > tiles[0][0].length - 1;
-
-        return !(isOutsideMinimum || isOutsideMaximum);
+        return tiles.isInBounds(x, y, z);
     }
 
     /**
@@ -239,7 +581,7 @@ public class GridColliderSystem implements Subsystem {
      * @return the tile type at the index location.
      */
     public final int getTileAtIndex(int x, int y, int z) {
-        return tiles[x][y][z];
+        return tiles.get(x, y, z);
     }
 
     /**
@@ -251,20 +593,20 @@ public class GridColliderSystem implements Subsystem {
         if (minStore.x < 0) {
             minStore.x = 0;
         }
-        if (maxStore.x >= tiles.length) {
-            maxStore.x = tiles.length - 1;
+        if (maxStore.x >= tiles.getLengthX()) {
+            maxStore.x = tiles.getLengthX() - 1;
         }
         if (minStore.y < 0) {
             minStore.y = 0;
         }
-        if (maxStore.y >= tiles[0].length) {
-            maxStore.y = tiles[0].length - 1;
+        if (maxStore.y >= tiles.getLengthY()) {
+            maxStore.y = tiles.getLengthY() - 1;
         }
         if (minStore.z < 0) {
             minStore.z = 0;
         }
-        if (maxStore.z >= tiles[0][0].length) {
-            maxStore.z = tiles[0][0].length - 1;
+        if (maxStore.z >= tiles.getLengthZ()) {
+            maxStore.z = tiles.getLengthZ() - 1;
         }
     }
 
@@ -284,9 +626,9 @@ public class GridColliderSystem implements Subsystem {
         }
 
         // Check if within bounds.
-        boolean isOutsideX = (minX < 0 && maxX < 0) || (minX >= tiles.length && maxX >= tiles.length);
-        boolean isOutsideY = (minY < 0 && maxY < 0) || (minY >= tiles[0].length && maxY >= tiles[0].length);
-        boolean isOutsideZ = (minZ < 0 && maxZ < 0) || (minZ >= tiles[0][0].length && maxZ >= tiles[0][0].length);
+        boolean isOutsideX = (minX < 0 && maxX < 0) || (minX >= tiles.getLengthX() && maxX >= tiles.getLengthX());
+        boolean isOutsideY = (minY < 0 && maxY < 0) || (minY >= tiles.getLengthY() && maxY >= tiles.getLengthY());
+        boolean isOutsideZ = (minZ < 0 && maxZ < 0) || (minZ >= tiles.getLengthZ() && maxZ >= tiles.getLengthZ());
         if (isOutsideX || isOutsideY || isOutsideZ) {
             return false;
         }
@@ -335,12 +677,6 @@ public class GridColliderSystem implements Subsystem {
      * If the object collides with the floor or wall the object will lose acceleration in that direction.
      */
     public final void collideObjectsWithGrid() {
-        Vector3Int beginIndex = new Vector3Int(0, 0, 0);
-        Vector3Int endIndex = new Vector3Int(0, 0, 0);
-
-        Vector3f movedAmount = new Vector3f();
-        Vector3f center = new Vector3f();
-        BoundsBox bounds = new BoundsBox();
         EntitySet set = entitySystem.getEntities(GridColliderComponent.class);
         for (Entity entity : set.getEntities()) {
             CollisionComponent collisionComponent = entitySystem.getComponent(entity, CollisionComponent.class);
@@ -362,9 +698,14 @@ public class GridColliderSystem implements Subsystem {
             BoundsBox addedBounds = bounds;
             // Add bounds with movement if applicable.
             MovementComponent movementComponent = entitySystem.getComponent(entity, MovementComponent.class);
+            movedAmount.set(0, 0, 0);
             if (movementComponent != null) {
                 movedAmount.set(movementComponent.moveX, movementComponent.moveY, movementComponent.moveZ);
-                addedBounds = bounds.addBounds(movedAmount.x, movedAmount.y, movedAmount.z);
+                sweptBounds.setCenter(center);
+                sweptBounds.setXExtent(aabbComponent.worldExtentX);
+                sweptBounds.setYExtent(aabbComponent.worldExtentY);
+                sweptBounds.setZExtent(aabbComponent.worldExtentZ);
+                addedBounds = sweptBounds.addBoundsLocal(movedAmount.x, movedAmount.y, movedAmount.z);
             }
 
             // Do an easy terrain collision check if the collider is only a sensor.
@@ -381,7 +722,7 @@ public class GridColliderSystem implements Subsystem {
                 for (int x = beginIndex.x; x <= endIndex.x; x++) {
                     for (int y = beginIndex.y; y <= endIndex.y; y++) {
                         for (int z = beginIndex.z; z <= endIndex.z; z++) {
-                            byte tileIndex = tiles[x][y][z];
+                            byte tileIndex = tiles.get(x, y, z);
                             // Check if the tile is collidable.
                             if (tileIndex == 0) {
                                 continue;
@@ -437,41 +778,20 @@ public class GridColliderSystem implements Subsystem {
                 if (movementComponent == null) {
                     continue;
                 }
-                boolean inBounds = getTileIndicesFromBounds(addedBounds, beginIndex, endIndex);
                 // Only check entities in bounds.
-                List<BoundsBox> boundsBoxes = new LinkedList<BoundsBox>();
-                if (inBounds) {
-                    // Create a list of bounding boxes for colliding tiles.
-                    for (int x = beginIndex.x; x <= endIndex.x; x++) {
-                        for (int y = beginIndex.y; y <= endIndex.y; y++) {
-                            for (int z = beginIndex.z; z <= endIndex.z; z++) {
-                                byte tileIndex = tiles[x][y][z];
-                                if (tileIndex == 0) {
-                                    continue;
-                                }
-                                if ((collisionGroups[tileIndex] & gridColliderComponent.collisionGroup) == 0) {
-                                    continue;
-                                }
-                                BoundsBox tileBounds = new BoundsBox(new Vector3f(), scale / 2, scale / 2, scale / 2);
-                                tileBounds.setCenter(new Vector3f(x * scale + scale / 2,
-                                        y * scale + scale / 2,
-                                        z * scale + scale / 2));
-                                // Allow the tile to collide with everything as the grid collider has its own groups.
-                                tileBounds.setGroups(Long.MAX_VALUE);
-                                boundsBoxes.add(tileBounds);
-                            }
-                        }
-                    }
-                    CollisionInformation collisionInformation = collisionResolver.resolveCollisionUnfiltered(bounds, movedAmount, boundsBoxes);
-                    collisionInformation.setCollider(entity);
-                    Vector3f moveAmount = collisionInformation.getMoveAmount();
+                if (getTileIndicesFromBounds(addedBounds, beginIndex, endIndex)) {
+                    sweepTiles(bounds, movedAmount.x, movedAmount.y, movedAmount.z,
+                            gridColliderComponent.collisionGroup, swept);
+                    Vector3f moveAmount = swept.getMoveAmount();
                     // Send a callback if the entity has collided with a tile.
+                    boolean hasCollided = swept.getIsBlocked();
                     // Check size to skip other checks if no callbacks.
-                    boolean hasCollided = movementComponent.moveX != moveAmount.x
-                            || movementComponent.moveY != moveAmount.y
-                            || movementComponent.moveZ != moveAmount.z;
                     if (collisionCallbacks.size() > 0) {
                         if (hasCollided) {
+                            // Callbacks may keep the information so they get a copy.
+                            CollisionInformation collisionInformation = new CollisionInformation();
+                            collisionInformation.setCollider(entity);
+                            collisionInformation.setMoveAmount(moveAmount);
                             for (CollisionCallbacks callback : collisionCallbacks) {
                                 callback.onTileCollide(collisionInformation);
                             }
@@ -479,29 +799,20 @@ public class GridColliderSystem implements Subsystem {
                     }
 
                     SpeedComponent speedComponent = entitySystem.getComponent(entity, SpeedComponent.class);
-                    if (movementComponent.moveY != moveAmount.y) {
-                        if (movementComponent.moveY < 0) {
+                    if (swept.getIsBlockedY()) {
+                        boolean isOnFloor = movementComponent.moveY < 0;
+                        if (isOnFloor) {
                             PhysicsStateComponent physicsStateComponent = entitySystem.getComponent(entity, PhysicsStateComponent.class);
                             if (physicsStateComponent != null) {
                                 physicsStateComponent.isGroundedGrid = true;
                             }
                             collisionComponent.isOnFloor = true;
                         }
-                        // Apply friction if movement is restricted in the Y axis and reset the Y speed.
+                        // Apply the friction of the floor and reset the Y speed.
                         if (speedComponent != null) {
                             speedComponent.speedY = 0;
-                            int indexY = (int) ((aabbComponent.centerY - aabbComponent.worldExtentY) / scale - PhysicsUnits.TOLERANCE);
-                            if (indexY >= 0) {
-                                int indexX = (int) (aabbComponent.centerX / scale - PhysicsUnits.TOLERANCE);
-                                int indexZ = (int) (aabbComponent.centerZ / scale - PhysicsUnits.TOLERANCE);
-                                if (indexX < tiles.length && indexZ < tiles[indexX][indexY].length) {
-                                    int tileIndex = tiles[indexX][indexY][indexZ];
-                                    float friction = 1.0f;
-                                    if (tileIndex < tileFriction.length) {
-                                        friction = tileFriction[tileIndex];
-                                    }
-                                    speedComponent.friction = friction;
-                                }
+                            if (isOnFloor) {
+                                speedComponent.friction = swept.getContactFriction();
                             }
                         }
                     }
@@ -512,10 +823,10 @@ public class GridColliderSystem implements Subsystem {
                             speedComponent.speedY = 0;
                             speedComponent.speedZ = 0;
                         } else {
-                            if (movementComponent.moveX != moveAmount.x) {
+                            if (swept.getIsBlockedX()) {
                                 speedComponent.speedX = 0;
                             }
-                            if (movementComponent.moveZ != moveAmount.z) {
+                            if (swept.getIsBlockedZ()) {
                                 speedComponent.speedZ = 0;
                             }
                         }
@@ -542,25 +853,42 @@ public class GridColliderSystem implements Subsystem {
      * and collision groups with empty ones.
      * @param tiles the tiles reference to use.
      */
-    public void setTiles(byte[][][] tiles) {
+    public void setTiles(VoxelGrid tiles) {
         this.tiles = tiles;
+        updateTiles(0, 0, 0, tiles.getLengthX() - 1, tiles.getLengthY() - 1, tiles.getLengthZ() - 1);
+    }
 
-        // Fill the unused tile indices with default values.
+    /**
+     * Updates the collider after the tiles within a box changed.
+     * The tiles are shared by reference so only tile indices not used before need new friction and collision groups.
+     * @param minX the smallest x index of the box.
+     * @param minY the smallest y index of the box.
+     * @param minZ the smallest z index of the box.
+     * @param maxX the largest x index of the box.
+     * @param maxY the largest y index of the box.
+     * @param maxZ the largest z index of the box.
+     */
+    public void updateTiles(int minX, int minY, int minZ, int maxX, int maxY, int maxZ) {
+        if (tiles == null) {
+            return;
+        }
         int maxIndex = 0;
-        for (int x = 0; x < tiles.length; x++) {
-            for (int y = 0; y < tiles[x].length; y++) {
-                for (int z = 0; z < tiles[x][y].length; z++) {
-                    if (tiles[x][y][z] > maxIndex) {
-                        maxIndex = tiles[x][y][z];
+        for (int x = Math.max(0, minX); x <= Math.min(tiles.getLengthX() - 1, maxX); x++) {
+            for (int y = Math.max(0, minY); y <= Math.min(tiles.getLengthY() - 1, maxY); y++) {
+                for (int z = Math.max(0, minZ); z <= Math.min(tiles.getLengthZ() - 1, maxZ); z++) {
+                    if (tiles.get(x, y, z) > maxIndex) {
+                        maxIndex = tiles.get(x, y, z);
                     }
                 }
             }
         }
+        // Fill the unused tile indices with default values.
+        int length = maxIndex + 1;
         // Fill the friction.
-        if (tileFriction.length < maxIndex) {
-            float[] newFriction = new float[maxIndex];
+        if (tileFriction.length < length) {
+            float[] newFriction = new float[length];
             newFriction[0] = 0;
-            for (int i = 1; i < maxIndex; i++) {
+            for (int i = 1; i < length; i++) {
                 if (i < tileFriction.length) {
                     newFriction[i] = tileFriction[i];
                 } else {
@@ -570,16 +898,15 @@ public class GridColliderSystem implements Subsystem {
             tileFriction = newFriction;
         }
         // Fill the collision groups.
-        if (collisionGroups.length < maxIndex) {
-            long[] newCollisionGroups = new long[maxIndex];
+        if (collisionGroups.length < length) {
+            long[] newCollisionGroups = new long[length];
             newCollisionGroups[0] = 0;
-            for (int i = 1; i < maxIndex; i++) {
+            for (int i = 1; i < length; i++) {
                 if (i < collisionGroups.length) {
                     newCollisionGroups[i] = collisionGroups[i];
                 } else {
                     newCollisionGroups[i] = DEFAULT_COLLISION_GROUP;
                 }
-                System.out.println(newCollisionGroups[i]);
             }
             collisionGroups = newCollisionGroups;
         }
@@ -0,0 +1,148 @@
+package com.halboom.pgt.physics.simple;
+
+import java.util.Arrays;
+
+/**
+ * Hash map from primitive long keys to values using open addressing.
+ * Looking up a key does not box it so lookups never create garbage.
+ * @param <V> the type of the values.
+ */
+final class LongMap<V> {
+    /**
+     * Number of slots a new map starts with, a power of two.
+     */
+    private static final int INITIAL_CAPACITY = 64;
+
+    /**
+     * Keys of each slot.
+     */
+    private long[] keys;
+
+    /**
+     * Values of each slot, null for empty slots.
+     */
+    private Object[] values;
+
+    /**
+     * Number of keys in the map.
+     */
+    private int size = 0;
+
+    /**
+     * Creates an empty map.
+     */
+    LongMap() {
+        keys = new long[INITIAL_CAPACITY];
+        values = new Object[INITIAL_CAPACITY];
+    }
+
+    /**
+     * @param key the key to look up.
+     * @return the value of the key or null if none.
+     */
+    @SuppressWarnings("unchecked")
+    V get(long key) {
+        int mask = keys.length - 1;
+        for (int slot = getSlot(key, mask); values[slot] != null; slot = (slot + 1) & mask) {
+            if (keys[slot] == key) {
+                return (V) values[slot];
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Sets the value of a key.
+     * @param key the key to set.
+     * @param value the value to set, not null.
+     */
+    void put(long key, V value) {
+        if ((size + 1) * 2 > keys.length) {
+            resize(keys.length * 2);
+        }
+        int mask = keys.length - 1;
+        int slot = getSlot(key, mask);
+        while (values[slot] != null) {
+            if (keys[slot] == key) {
+                values[slot] = value;
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+        values[slot] = value;
+        size++;
+    }
+
+    /**
+     * Removes a key if it is in the map.
+     * @param key the key to remove.
+     */
+    void remove(long key) {
+        int mask = keys.length - 1;
+        int slot = getSlot(key, mask);
+        while (values[slot] != null && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        if (values[slot] == null) {
+            return;
+        }
+        values[slot] = null;
+        size--;
+        // Move back the following keys that would no longer be found past the emptied slot.
+        int next = (slot + 1) & mask;
+        while (values[next] != null) {
+            int home = getSlot(keys[next], mask);
+            if (((next - home) & mask) >= ((next - slot) & mask)) {
+                keys[slot] = keys[next];
+                values[slot] = values[next];
+                values[next] = null;
+                slot = next;
+            }
+            next = (next + 1) & mask;
+        }
+    }
+
+    /**
+     * Removes every key.
+     */
+    void clear() {
+        Arrays.fill(values, null);
+        size = 0;
+    }
+
+    /**
+     * @return the number of keys in the map.
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Moves every key into a new table.
+     * @param capacity the number of slots of the new table, a power of two.
+     */
+    @SuppressWarnings("unchecked")
+    private void resize(int capacity) {
+        long[] oldKeys = keys;
+        Object[] oldValues = values;
+        keys = new long[capacity];
+        values = new Object[capacity];
+        size = 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldValues[i] != null) {
+                put(oldKeys[i], (V) oldValues[i]);
+            }
+        }
+    }
+
+    /**
+     * @param key the key to find the slot of.
+     * @param mask the mask of the table size.
+     * @return the slot the key is placed in if there are no collisions.
+     */
+    private static int getSlot(long key, int mask) {
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+}
@@ -0,0 +1,194 @@
+package com.halboom.pgt.physics.simple;
+
+import com.halboom.pgt.physics.simple.shapes.BoundsBox;
+import com.jme3.math.Ray;
+import com.jme3.math.Vector3f;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Broadphase keeping the bounds sorted by their minimum along the X axis.
+ * Bounds only move a little between updates so a moved bounds is shifted into place with a few swaps,
+ * queries binary search the first bounds that can reach the area and sweep until the bounds start past it.
+ */
+public class SweepAndPruneBroadphase implements Broadphase {
+    /**
+     * Bounds with its interval along the sweep axis.
+     */
+    private static final class Entry {
+        /**
+         * Bounds of the entry.
+         */
+        private final BoundsBox bounds;
+
+        /**
+         * Interval of the bounds along the X axis.
+         */
+        private float minX, maxX;
+
+        /**
+         * Index of the entry in the sorted entries.
+         */
+        private int index;
+
+        /**
+         * Creates the entry.
+         * @param bounds the bounds of the entry.
+         */
+        private Entry(BoundsBox bounds) {
+            this.bounds = bounds;
+        }
+    }
+
+    /**
+     * Entries sorted by their minimum along the X axis.
+     */
+    private List<Entry> entries = new ArrayList<Entry>();
+
+    /**
+     * Entries of each bounds.
+     */
+    private Map<BoundsBox, Entry> entryMap = new IdentityHashMap<BoundsBox, Entry>();
+
+    /**
+     * Widest bounds along the X axis since the broadphase was cleared.
+     */
+    private float maxWidth = 0;
+
+    @Override
+    public void update(BoundsBox bounds) {
+        Entry entry = entryMap.get(bounds);
+        if (entry == null) {
+            entry = new Entry(bounds);
+            entry.index = entries.size();
+            entries.add(entry);
+            entryMap.put(bounds, entry);
+        }
+        float centerX = bounds.getCenter().x;
+        float extentX = bounds.getXExtent();
+        entry.minX = centerX - extentX;
+        entry.maxX = centerX + extentX;
+        maxWidth = Math.max(maxWidth, entry.maxX - entry.minX);
+
+        // Shift the entry to its sorted place.
+        int index = entry.index;
+        while (index > 0 && entries.get(index - 1).minX > entry.minX) {
+            Entry previous = entries.get(index - 1);
+            previous.index = index;
+            entries.set(index, previous);
+            index--;
+        }
+        while (index < entries.size() - 1 && entries.get(index + 1).minX < entry.minX) {
+            Entry next = entries.get(index + 1);
+            next.index = index;
+            entries.set(index, next);
+            index++;
+        }
+        entry.index = index;
+        entries.set(index, entry);
+    }
+
+    @Override
+    public void remove(BoundsBox bounds) {
+        Entry entry = entryMap.remove(bounds);
+        if (entry == null) {
+            return;
+        }
+        entries.remove(entry.index);
+        for (int i = entry.index; i < entries.size(); i++) {
+            entries.get(i).index = i;
+        }
+    }
+
+    @Override
+    public void clear() {
+        entries.clear();
+        entryMap.clear();
+        maxWidth = 0;
+    }
+
+    @Override
+    public void query(BoundsBox area, long groups, List<BoundsBox> results) {
+        Vector3f center = area.getCenter();
+        float minX = center.x - area.getXExtent();
+        float maxX = center.x + area.getXExtent();
+        // Bounds starting further left than the widest bounds cannot reach the area.
+        for (int i = findFirst(minX - maxWidth); i < entries.size(); i++) {
+            Entry entry = entries.get(i);
+            if (entry.minX > maxX) {
+                break;
+            }
+            if (entry.maxX >= minX && isInGroups(entry.bounds, groups) && isOverlappingYZ(entry.bounds, area)) {
+                results.add(entry.bounds);
+            }
+        }
+    }
+
+    @Override
+    public void queryRay(Ray ray, long groups, List<BoundsBox> results) {
+        // Only bounds along the part of the X axis the ray passes through can be hit.
+        float originX = ray.getOrigin().x;
+        float endX = originX + ray.getDirection().x * ray.getLimit();
+        float minX = ray.getDirection().x < 0 ? endX : originX;
+        float maxX = ray.getDirection().x > 0 ? endX : originX;
+        for (int i = findFirst(minX - maxWidth); i < entries.size(); i++) {
+            Entry entry = entries.get(i);
+            if (entry.minX > maxX) {
+                break;
+            }
+            if (entry.maxX >= minX && isInGroups(entry.bounds, groups) && entry.bounds.getRayDistance(ray) >= 0) {
+                results.add(entry.bounds);
+            }
+        }
+    }
+
+    /**
+     * Checks if bounds are found by a query for groups.
+     * @param bounds the bounds to check.
+     * @param groups the groups of the query.
+     * @return true if the bounds are in one of the groups or the query does not filter by groups.
+     */
+    private static boolean isInGroups(BoundsBox bounds, long groups) {
+        return groups == ALL_GROUPS || (bounds.getGroups() & groups) != 0;
+    }
+
+    @Override
+    public int getSize() {
+        return entries.size();
+    }
+
+    /**
+     * Finds the first entry starting at or after a position.
+     * @param minX the position along the X axis.
+     * @return the index of the entry or the number of entries if none start there.
+     */
+    private int findFirst(float minX) {
+        int low = 0;
+        int high = entries.size();
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (entries.get(middle).minX < minX) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Checks if two bounds overlap along the Y and Z axes.
+     * @param bounds the first bounds.
+     * @param area the second bounds.
+     * @return true if the bounds overlap or touch.
+     */
+    private boolean isOverlappingYZ(BoundsBox bounds, BoundsBox area) {
+        Vector3f center = bounds.getCenter();
+        Vector3f areaCenter = area.getCenter();
+        return Math.abs(center.y - areaCenter.y) <= bounds.getYExtent() + area.getYExtent()
+                && Math.abs(center.z - areaCenter.z) <= bounds.getZExtent() + area.getZExtent();
+    }
+}
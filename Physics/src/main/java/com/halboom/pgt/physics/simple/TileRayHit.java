@@ -0,0 +1,98 @@
+package com.halboom.pgt.physics.simple;
+
+import com.halboom.pgt.pgutil.math.Vector3Int;
+import com.jme3.math.Vector3f;
+
+/**
+ * Result of casting a ray through the tile grid, meant to be reused for every cast.
+ */
+public class TileRayHit {
+    /**
+     * Index of the tile that was hit.
+     */
+    private final Vector3Int tile = new Vector3Int();
+
+    /**
+     * Normal of the tile face the ray entered through, zero if the ray started inside the tile.
+     */
+    private final Vector3Int normal = new Vector3Int();
+
+    /**
+     * Point where the ray entered the tile.
+     */
+    private final Vector3f point = new Vector3f();
+
+    /**
+     * Distance along the ray to the point in multiples of the ray direction.
+     */
+    private float distance = 0;
+
+    /**
+     * True if a tile was hit.
+     */
+    private boolean isHit = false;
+
+    /**
+     * Stores a hit.
+     * @param x the x index of the tile.
+     * @param y the y index of the tile.
+     * @param z the z index of the tile.
+     * @param normalX the x component of the face normal.
+     * @param normalY the y component of the face normal.
+     * @param normalZ the z component of the face normal.
+     * @param origin the origin of the ray.
+     * @param direction the direction of the ray.
+     * @param distance the distance along the ray to the entry point.
+     */
+    void setHit(int x, int y, int z, int normalX, int normalY, int normalZ, Vector3f origin, Vector3f direction,
+                float distance) {
+        tile.set(x, y, z);
+        normal.set(normalX, normalY, normalZ);
+        point.set(origin.x + direction.x * distance, origin.y + direction.y * distance,
+                origin.z + direction.z * distance);
+        this.distance = distance;
+        isHit = true;
+    }
+
+    /**
+     * Marks that nothing was hit.
+     */
+    void clear() {
+        isHit = false;
+    }
+
+    /**
+     * @return the index of the tile that was hit.
+     */
+    public Vector3Int getTile() {
+        return tile;
+    }
+
+    /**
+     * @return the normal of the tile face the ray entered through, zero if the ray started inside the tile.
+     */
+    public Vector3Int getNormal() {
+        return normal;
+    }
+
+    /**
+     * @return the point where the ray entered the tile.
+     */
+    public Vector3f getPoint() {
+        return point;
+    }
+
+    /**
+     * @return the distance along the ray to the point in multiples of the ray direction.
+     */
+    public float getDistance() {
+        return distance;
+    }
+
+    /**
+     * @return true if a tile was hit.
+     */
+    public boolean getIsHit() {
+        return isHit;
+    }
+}
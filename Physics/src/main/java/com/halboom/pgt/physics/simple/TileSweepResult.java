@@ -0,0 +1,138 @@
+package com.halboom.pgt.physics.simple;
+
+import com.jme3.math.Vector3f;
+
+/**
+ * Result of sweeping a box through the tile grid, meant to be reused for every sweep.
+ */
+public class TileSweepResult {
+    /**
+     * Amount the box can move without entering a tile.
+     */
+    private final Vector3f moveAmount = new Vector3f();
+
+    /**
+     * True if the movement was clipped along the axis.
+     */
+    private boolean isBlockedX, isBlockedY, isBlockedZ;
+
+    /**
+     * Type of the first tile the box was stopped by, 0 if none.
+     */
+    private int contactTile = 0;
+
+    /**
+     * Friction of the contacted tile.
+     */
+    private float contactFriction = 0;
+
+    /**
+     * Collision groups of the contacted tile.
+     */
+    private long contactGroups = 0;
+
+    /**
+     * Resets the result to an unblocked movement.
+     * @param moveX the amount to move along the x axis.
+     * @param moveY the amount to move along the y axis.
+     * @param moveZ the amount to move along the z axis.
+     */
+    void reset(float moveX, float moveY, float moveZ) {
+        moveAmount.set(moveX, moveY, moveZ);
+        isBlockedX = false;
+        isBlockedY = false;
+        isBlockedZ = false;
+        contactTile = 0;
+        contactFriction = 0;
+        contactGroups = 0;
+    }
+
+    /**
+     * Clips the movement along an axis.
+     * @param axis the index of the axis.
+     * @param amount the amount that can be moved along the axis.
+     */
+    void setBlocked(int axis, float amount) {
+        if (axis == 0) {
+            moveAmount.x = amount;
+            isBlockedX = true;
+        } else if (axis == 1) {
+            moveAmount.y = amount;
+            isBlockedY = true;
+        } else {
+            moveAmount.z = amount;
+            isBlockedZ = true;
+        }
+    }
+
+    /**
+     * Stores the tile the box was stopped by if it is the first.
+     * @param tile the type of the tile.
+     * @param friction the friction of the tile.
+     * @param groups the collision groups of the tile.
+     */
+    void setContact(int tile, float friction, long groups) {
+        if (contactTile != 0) {
+            return;
+        }
+        contactTile = tile;
+        contactFriction = friction;
+        contactGroups = groups;
+    }
+
+    /**
+     * @return the amount the box can move without entering a tile.
+     */
+    public Vector3f getMoveAmount() {
+        return moveAmount;
+    }
+
+    /**
+     * @return true if the movement was clipped along the x axis.
+     */
+    public boolean getIsBlockedX() {
+        return isBlockedX;
+    }
+
+    /**
+     * @return true if the movement was clipped along the y axis.
+     */
+    public boolean getIsBlockedY() {
+        return isBlockedY;
+    }
+
+    /**
+     * @return true if the movement was clipped along the z axis.
+     */
+    public boolean getIsBlockedZ() {
+        return isBlockedZ;
+    }
+
+    /**
+     * @return true if the movement was clipped along any axis.
+     */
+    public boolean getIsBlocked() {
+        return isBlockedX || isBlockedY || isBlockedZ;
+    }
+
+    /**
+     * @return the type of the first tile the box was stopped by, 0 if none.
+     */
+    public int getContactTile() {
+        return contactTile;
+    }
+
+    /**
+     * @return the friction of the contacted tile.
+     */
+    public float getContactFriction() {
+        return contactFriction;
+    }
+
+    /**
+     * @return the collision groups of the contacted tile.
+     */
+    public long getContactGroups() {
+        return contactGroups;
+    }
+}
@@ -4,6 +4,7 @@ import com.exploringlines.entitysystem.Entity;
 import com.jme3.bounding.BoundingBox;
 import com.jme3.bounding.BoundingVolume;
 import com.jme3.math.FastMath;
+import com.jme3.math.Ray;
 import com.jme3.math.Vector3f;
 
 /**
@@ -98,6 +99,51 @@ public class BoundsBox extends BoundingBox implements Bounds {
         return this;
     }
 
+    /**
+     * Finds where a ray enters the bounds without creating any objects.
+     * @param ray the ray to check, only the part within the limit of the ray is checked.
+     * @return the distance along the ray to where it enters the bounds, 0 if it starts inside
+     * or -1 if the ray misses the bounds.
+     */
+    public final float getRayDistance(Ray ray) {
+        Vector3f origin = ray.getOrigin();
+        Vector3f direction = ray.getDirection();
+        float near = 0;
+        float far = ray.getLimit();
+        // Clip the ray against the slab of each axis.
+        if (direction.x == 0) {
+            if (FastMath.abs(origin.x - center.x) > getXExtent()) {
+                return -1;
+            }
+        } else {
+            float first = (center.x - getXExtent() - origin.x) / direction.x;
+            float second = (center.x + getXExtent() - origin.x) / direction.x;
+            near = Math.max(near, Math.min(first, second));
+            far = Math.min(far, Math.max(first, second));
+        }
+        if (direction.y == 0) {
+            if (FastMath.abs(origin.y - center.y) > getYExtent()) {
+                return -1;
+            }
+        } else {
+            float first = (center.y - getYExtent() - origin.y) / direction.y;
+            float second = (center.y + getYExtent() - origin.y) / direction.y;
+            near = Math.max(near, Math.min(first, second));
+            far = Math.min(far, Math.max(first, second));
+        }
+        if (direction.z == 0) {
+            if (FastMath.abs(origin.z - center.z) > getZExtent()) {
+                return -1;
+            }
+        } else {
+            float first = (center.z - getZExtent() - origin.z) / direction.z;
+            float second = (center.z + getZExtent() - origin.z) / direction.z;
+            near = Math.max(near, Math.min(first, second));
+            far = Math.min(far, Math.max(first, second));
+        }
+        return near <= far ? near : -1;
+    }
+
     /**
      * @return the collision group of the bounds.
      */
@@ -0,0 +1,166 @@
+package com.halboom.pgt.physics;
+
+import com.exploringlines.entitysystem.Entity;
+import com.exploringlines.entitysystem.EntitySystem;
+import com.halboom.pgt.entityspatial.TransformComponent;
+import com.halboom.pgt.physics.filters.Filter;
+import com.halboom.pgt.physics.simple.BoundsSystem;
+import com.halboom.pgt.physics.simple.Broadphase;
+import com.halboom.pgt.physics.simple.CollisionResolver;
+import com.halboom.pgt.physics.simple.components.AABBComponent;
+import com.halboom.pgt.physics.simple.components.CollisionComponent;
+import com.halboom.pgt.physics.simple.shapes.Bounds;
+import com.jme3.math.Ray;
+import com.jme3.math.Vector3f;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Tests for the nearest entity and ray queries of the bounds system.
+ */
+public class BoundsSystemTest {
+    /**
+     * Filter rejecting a single entity.
+     */
+    private static final class ExcludeFilter extends Filter {
+        private final Entity excluded;
+
+        private ExcludeFilter(Entity excluded) {
+            this.excluded = excluded;
+        }
+
+        @Override
+        public boolean filterEntity(Entity entity, Bounds entityBounds) {
+            return !entity.equals(excluded);
+        }
+    }
+
+    private EntitySystem entitySystem;
+    private BoundsSystem boundsSystem;
+
+    @Before
+    public void setUp() throws Exception {
+        entitySystem = new EntitySystem();
+        boundsSystem = new BoundsSystem(entitySystem, new CollisionResolver());
+    }
+
+    /**
+     * Creates an entity with cube bounds that can collide.
+     * @param x the x position of the center of the bounds.
+     * @param extent half of the size of the bounds.
+     * @param groups the collision groups of the entity.
+     * @return the created entity.
+     */
+    private Entity createEntity(float x, float extent, long groups) {
+        Entity entity = entitySystem.createEntity();
+        AABBComponent aabbComponent = new AABBComponent();
+        aabbComponent.localExtentX = extent;
+        aabbComponent.localExtentY = extent;
+        aabbComponent.localExtentZ = extent;
+        entitySystem.setComponent(entity, aabbComponent);
+        TransformComponent transformComponent = new TransformComponent();
+        transformComponent.positionX = x;
+        entitySystem.setComponent(entity, transformComponent);
+        CollisionComponent collisionComponent = new CollisionComponent();
+        collisionComponent.groups = groups;
+        entitySystem.setComponent(entity, collisionComponent);
+        return entity;
+    }
+
+    /**
+     * Updates the bounds system and flushes the entity changes like a frame of the game.
+     */
+    private void update() {
+        boundsSystem.update(0);
+        entitySystem.flushSetChanges();
+    }
+
+    /**
+     * Runs a nearest entity query from the origin.
+     * @param maxDistance the largest distance to the bounds of a found entity.
+     * @param count the largest number of entities to find.
+     * @param groups the groups the found entities must be in.
+     * @param filter the filter to check entities with, null for none.
+     * @return the found entities from closest to farthest.
+     */
+    private List<Entity> getNearest(float maxDistance, int count, long groups, Filter filter) {
+        List<Entity> results = new ArrayList<Entity>();
+        boundsSystem.getNearestEntities(Vector3f.ZERO, maxDistance, count, groups, filter, results);
+        return results;
+    }
+
+    @Test
+    /**
+     * Test that the nearest entities are found in order of distance to their bounds up to the largest distance.
+     */
+    public void testNearestEntities() throws Exception {
+        // Created out of order with the bounds 0.5 closer than the centers.
+        Entity tenth = createEntity(10f, 0.5f, 1);
+        Entity first = createEntity(1f, 0.5f, 1);
+        Entity twentieth = createEntity(20f, 0.5f, 1);
+        Entity sixth = createEntity(6f, 0.5f, 1);
+        Entity third = createEntity(3f, 0.5f, 1);
+        Entity other = createEntity(2f, 0.5f, 2);
+        update();
+
+        Assert.assertEquals(Arrays.asList(first, third, sixth), getNearest(100f, 3, 1, null));
+        Assert.assertEquals(Arrays.asList(first, third, sixth, tenth, twentieth), getNearest(100f, 10, 1, null));
+        // The entity at 6 is 5.5 away from the origin.
+        Assert.assertEquals(Arrays.asList(first, third), getNearest(5f, 10, 1, null));
+        Assert.assertEquals(Arrays.asList(first, other, third), getNearest(100f, 3, Broadphase.ALL_GROUPS, null));
+        Assert.assertTrue(getNearest(100f, 0, 1, null).isEmpty());
+
+        // Found entities are added after the existing ones.
+        List<Entity> results = new ArrayList<Entity>();
+        results.add(twentieth);
+        boundsSystem.getNearestEntities(Vector3f.ZERO, 100f, 2, 1, null, results);
+        Assert.assertEquals(Arrays.asList(twentieth, first, third), results);
+    }
+
+    @Test
+    /**
+     * Test that filtered entities are skipped by the nearest entity query without taking up the count.
+     */
+    public void testNearestEntitiesFilter() throws Exception {
+        Entity first = createEntity(1f, 0.5f, 1);
+        Entity third = createEntity(3f, 0.5f, 1);
+        Entity sixth = createEntity(6f, 0.5f, 1);
+        update();
+
+        Assert.assertEquals(Arrays.asList(third, sixth), getNearest(100f, 2, 1, new ExcludeFilter(first)));
+        Assert.assertEquals(Arrays.asList(first, sixth), getNearest(100f, 2, 1, new ExcludeFilter(third)));
+    }
+
+    @Test
+    /**
+     * Test that the ray picks the entity it enters first rather than the one with the closest center.
+     */
+    public void testClosestIntersect() throws Exception {
+        // The large entity is entered at 2 and the small one at 4.5.
+        Entity large = createEntity(10f, 8f, 1);
+        Entity small = createEntity(5f, 0.5f, 1);
+        Entity behind = createEntity(-3f, 0.5f, 1);
+        update();
+
+        Ray ray = new Ray(new Vector3f(0, 0, 0), new Vector3f(1f, 0, 0));
+        Assert.assertEquals(large, boundsSystem.getClosestIntersect(ray, null, null));
+        Assert.assertEquals(small, boundsSystem.getClosestIntersect(ray, large, null));
+        Assert.assertEquals(small, boundsSystem.getClosestIntersect(ray, null, new ExcludeFilter(large)));
+
+        // Entities outside of the limit of the ray are not hit.
+        ray.setLimit(1.5f);
+        Assert.assertNull(boundsSystem.getClosestIntersect(ray, null, null));
+        ray.setLimit(3f);
+        Assert.assertEquals(large, boundsSystem.getClosestIntersect(ray, null, null));
+        Assert.assertNull(boundsSystem.getClosestIntersect(ray, large, null));
+
+        // A ray starting inside bounds hits them right away.
+        ray.setOrigin(new Vector3f(-3f, 0, 0));
+        Assert.assertEquals(behind, boundsSystem.getClosestIntersect(ray, null, null));
+    }
+}
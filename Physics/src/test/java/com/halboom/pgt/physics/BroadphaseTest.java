@@ -0,0 +1,191 @@
+package com.halboom.pgt.physics;
+
+import com.halboom.pgt.physics.simple.Broadphase;
+import com.halboom.pgt.physics.simple.GridBroadphase;
+import com.halboom.pgt.physics.simple.SweepAndPruneBroadphase;
+import com.halboom.pgt.physics.simple.shapes.BoundsBox;
+import com.jme3.math.Ray;
+import com.jme3.math.Vector3f;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Tests for the broadphase implementations.
+ */
+public class BroadphaseTest {
+    @Test
+    /**
+     * Test the sweep and prune broadphase against checking every bounds with boxes and rays.
+     */
+    public void testSweepAndPrune() throws Exception {
+        checkAgainstBruteForce(new SweepAndPruneBroadphase());
+    }
+
+    @Test
+    /**
+     * Test the grid broadphase against checking every bounds with boxes and rays, including bounds covering many cells.
+     */
+    public void testGrid() throws Exception {
+        checkAgainstBruteForce(new GridBroadphase(1f));
+    }
+
+    @Test
+    /**
+     * Test that removed bounds are no longer found and groups filter the results.
+     */
+    public void testRemoveAndGroups() throws Exception {
+        Broadphase broadphase = new GridBroadphase(2f);
+        BoundsBox first = createBounds(new Vector3f(0, 0, 0), 1f, 1);
+        BoundsBox second = createBounds(new Vector3f(1, 0, 0), 1f, 2);
+        broadphase.update(first);
+        broadphase.update(second);
+        Assert.assertEquals(2, broadphase.getSize());
+
+        List<BoundsBox> results = new ArrayList<BoundsBox>();
+        broadphase.query(createBounds(new Vector3f(0.5f, 0, 0), 0.5f, 0), 2, results);
+        Assert.assertEquals(1, results.size());
+        Assert.assertSame(second, results.get(0));
+
+        broadphase.remove(second);
+        results.clear();
+        broadphase.query(createBounds(new Vector3f(0.5f, 0, 0), 0.5f, 0), 3, results);
+        Assert.assertEquals(1, results.size());
+        Assert.assertSame(first, results.get(0));
+        Assert.assertEquals(1, broadphase.getSize());
+    }
+
+    @Test
+    /**
+     * Test that queries for all groups find bounds that are in no group.
+     */
+    public void testAllGroups() throws Exception {
+        Broadphase[] broadphases = {new SweepAndPruneBroadphase(), new GridBroadphase(2f)};
+        for (Broadphase broadphase : broadphases) {
+            BoundsBox bounds = createBounds(new Vector3f(0, 0, 0), 1f, 0);
+            broadphase.update(bounds);
+            List<BoundsBox> results = new ArrayList<BoundsBox>();
+            broadphase.query(createBounds(new Vector3f(0.5f, 0, 0), 0.5f, 0), 1, results);
+            Assert.assertTrue(results.isEmpty());
+            broadphase.query(createBounds(new Vector3f(0.5f, 0, 0), 0.5f, 0), Broadphase.ALL_GROUPS, results);
+            Assert.assertEquals(1, results.size());
+            results.clear();
+            broadphase.queryRay(new Ray(new Vector3f(-5, 0, 0), Vector3f.UNIT_X), Broadphase.ALL_GROUPS, results);
+            Assert.assertEquals(1, results.size());
+        }
+    }
+
+    /**
+     * Moves random bounds around and compares every query with a brute force check.
+     * @param broadphase the broadphase to check.
+     */
+    private void checkAgainstBruteForce(Broadphase broadphase) {
+        Random random = new Random(7);
+        List<BoundsBox> boundsList = new ArrayList<BoundsBox>();
+        for (int i = 0; i < 200; i++) {
+            float extent = i % 50 == 0 ? 20f : 0.1f + random.nextFloat();
+            BoundsBox bounds = createBounds(randomPoint(random), extent, 1L << (i % 3));
+            boundsList.add(bounds);
+            broadphase.update(bounds);
+        }
+
+        List<BoundsBox> results = new ArrayList<BoundsBox>();
+        for (int step = 0; step < 20; step++) {
+            for (BoundsBox bounds : boundsList) {
+                bounds.setCenter(bounds.getCenter().add(random.nextFloat() - 0.5f, random.nextFloat() - 0.5f,
+                        random.nextFloat() - 0.5f));
+                broadphase.update(bounds);
+            }
+            for (int i = 0; i < 20; i++) {
+                BoundsBox area = createBounds(randomPoint(random), 0.5f + random.nextFloat() * 3f, 0);
+                long groups = i % 2 == 0 ? 1 : 6;
+                results.clear();
+                broadphase.query(area, groups, results);
+                Set<BoundsBox> found = new HashSet<BoundsBox>(results);
+                Assert.assertEquals(results.size(), found.size());
+
+                Set<BoundsBox> expected = new HashSet<BoundsBox>();
+                for (BoundsBox bounds : boundsList) {
+                    if ((bounds.getGroups() & groups) != 0 && overlaps(area, bounds)) {
+                        expected.add(bounds);
+                    }
+                }
+                Assert.assertEquals(expected, found);
+            }
+            for (int i = 0; i < 20; i++) {
+                Ray ray = new Ray(randomPoint(random), randomPoint(random).normalizeLocal());
+                if (i % 2 == 0) {
+                    ray.setLimit(random.nextFloat() * 20f);
+                }
+                results.clear();
+                broadphase.queryRay(ray, 7, results);
+                Set<BoundsBox> found = new HashSet<BoundsBox>(results);
+                Assert.assertEquals(results.size(), found.size());
+
+                Set<BoundsBox> expected = new HashSet<BoundsBox>();
+                for (BoundsBox bounds : boundsList) {
+                    if (bounds.getRayDistance(ray) >= 0) {
+                        expected.add(bounds);
+                    }
+                }
+                Assert.assertEquals(expected, found);
+            }
+        }
+    }
+
+    @Test
+    /**
+     * Test the distance along a ray to bounds.
+     */
+    public void testRayDistance() throws Exception {
+        BoundsBox bounds = createBounds(new Vector3f(5, 0, 0), 1f, 1);
+        Ray ray = new Ray(new Vector3f(0, 0.5f, 0), new Vector3f(1, 0, 0));
+        Assert.assertEquals(4f, bounds.getRayDistance(ray), 0.001f);
+        ray.setLimit(3.5f);
+        Assert.assertEquals(-1f, bounds.getRayDistance(ray), 0.001f);
+        ray.setDirection(new Vector3f(-1, 0, 0));
+        ray.setLimit(Float.POSITIVE_INFINITY);
+        Assert.assertEquals(-1f, bounds.getRayDistance(ray), 0.001f);
+        ray.setOrigin(new Vector3f(5, 0, 0));
+        Assert.assertEquals(0f, bounds.getRayDistance(ray), 0.001f);
+    }
+
+    /**
+     * @param random the random generator to use.
+     * @return a random point within a 40 unit wide cube.
+     */
+    private Vector3f randomPoint(Random random) {
+        return new Vector3f(random.nextFloat() * 40f - 20f, random.nextFloat() * 40f - 20f,
+                random.nextFloat() * 40f - 20f);
+    }
+
+    /**
+     * @param center the center of the bounds.
+     * @param extent the extent along every axis.
+     * @param groups the groups of the bounds.
+     * @return the created bounds.
+     */
+    private BoundsBox createBounds(Vector3f center, float extent, long groups) {
+        BoundsBox bounds = new BoundsBox(center, extent, extent, extent);
+        bounds.setGroups(groups);
+        return bounds;
+    }
+
+    /**
+     * @param first the first bounds.
+     * @param second the second bounds.
+     * @return true if the bounds touch or overlap.
+     */
+    private boolean overlaps(BoundsBox first, BoundsBox second) {
+        Vector3f a = first.getCenter();
+        Vector3f b = second.getCenter();
+        return Math.abs(a.x - b.x) <= first.getXExtent() + second.getXExtent()
+                && Math.abs(a.y - b.y) <= first.getYExtent() + second.getYExtent()
+                && Math.abs(a.z - b.z) <= first.getZExtent() + second.getZExtent();
+    }
+}
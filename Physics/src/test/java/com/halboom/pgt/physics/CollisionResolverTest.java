@@ -0,0 +1,104 @@
+package com.halboom.pgt.physics;
+
+import com.halboom.pgt.physics.filters.Filter;
+import com.halboom.pgt.physics.simple.ColliderBoxes;
+import com.halboom.pgt.physics.simple.CollisionInformation;
+import com.halboom.pgt.physics.simple.CollisionResolver;
+import com.halboom.pgt.physics.simple.shapes.BoundsBox;
+import com.jme3.math.Vector3f;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tests for resolving collisions over primitive boxes.
+ */
+public class CollisionResolverTest {
+    private static final int ITERATIONS = 20000;
+
+    private CollisionResolver resolver;
+    private BoundsBox mover;
+    private List<BoundsBox> colliders;
+    private ColliderBoxes boxes;
+    private CollisionInformation information;
+
+    @Before
+    /**
+     * Create a mover above a floor with a wall to its side.
+     */
+    public void setUp() throws Exception {
+        resolver = new CollisionResolver();
+        resolver.addFilter(new Filter() {
+        });
+        mover = new BoundsBox(new Vector3f(0, 2, 0), 0.5f, 0.5f, 0.5f);
+        colliders = new ArrayList<BoundsBox>();
+        colliders.add(new BoundsBox(new Vector3f(-5, -1, -5), new Vector3f(5, 0, 5)));
+        colliders.add(new BoundsBox(new Vector3f(1, 0, -5), new Vector3f(2, 5, 5)));
+        boxes = new ColliderBoxes();
+        for (BoundsBox collider : colliders) {
+            boxes.add(collider);
+        }
+        information = new CollisionInformation();
+    }
+
+    @Test
+    /**
+     * Test that movement stops at the floor and the wall for both collider types.
+     */
+    public void testResolveCollision() throws Exception {
+        resolver.resolveCollision(mover, 2f, -3f, 0.25f, colliders, information);
+        checkMoveAmount(0.5f, -1.5f, 0.25f);
+
+        resolver.resolveCollision(mover, 2f, -3f, 0.25f, boxes, information);
+        checkMoveAmount(0.5f, -1.5f, 0.25f);
+
+        // Boxes outside of the targets are ignored.
+        mover.setTargets(2);
+        resolver.resolveCollision(mover, 2f, -3f, 0.25f, boxes, information);
+        checkMoveAmount(2f, -3f, 0.25f);
+    }
+
+    @Test
+    /**
+     * Test that resolving collisions does not allocate once warmed up.
+     */
+    public void testNoAllocation() throws Exception {
+        ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+        if (!(threadBean instanceof com.sun.management.ThreadMXBean)) {
+            return;
+        }
+        com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) threadBean;
+        if (!bean.isThreadAllocatedMemorySupported() || !bean.isThreadAllocatedMemoryEnabled()) {
+            return;
+        }
+        long threadId = Thread.currentThread().getId();
+        resolveRepeatedly();
+
+        // Measure the cost of measuring so only the resolver is counted.
+        long start = bean.getThreadAllocatedBytes(threadId);
+        long overhead = bean.getThreadAllocatedBytes(threadId) - start;
+        start = bean.getThreadAllocatedBytes(threadId);
+        resolveRepeatedly();
+        long allocated = bean.getThreadAllocatedBytes(threadId) - start - overhead;
+        Assert.assertEquals(0, allocated);
+    }
+
+    private void resolveRepeatedly() {
+        for (int i = 0; i < ITERATIONS; i++) {
+            resolver.resolveCollision(mover, 2f, -3f, 0.25f, colliders, information);
+            resolver.resolveCollision(mover, 2f, -3f, 0.25f, boxes, information);
+        }
+    }
+
+    private void checkMoveAmount(float x, float y, float z) {
+        Vector3f moveAmount = information.getMoveAmount();
+        Assert.assertEquals(x, moveAmount.x, 0.001f);
+        Assert.assertEquals(y, moveAmount.y, 0.001f);
+        Assert.assertEquals(z, moveAmount.z, 0.001f);
+    }
+}
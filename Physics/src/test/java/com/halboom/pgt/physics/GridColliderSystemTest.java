@@ -2,15 +2,24 @@ package com.halboom.pgt.physics;
 
 import com.exploringlines.entitysystem.EntitySystem;
 import com.halboom.pgt.pgutil.math.Vector3Int;
+import com.halboom.pgt.pgutil.voxel.ArrayVoxelGrid;
+import com.halboom.pgt.pgutil.voxel.VoxelGrid;
+import com.halboom.pgt.physics.simple.ColliderBoxes;
+import com.halboom.pgt.physics.simple.CollisionInformation;
 import com.halboom.pgt.physics.simple.CollisionResolver;
 import com.halboom.pgt.physics.simple.GridColliderSystem;
+import com.halboom.pgt.physics.simple.TileRayHit;
+import com.halboom.pgt.physics.simple.TileSweepResult;
 import com.halboom.pgt.physics.simple.shapes.BoundsBox;
+import com.jme3.math.Ray;
 import com.jme3.math.Vector3f;
 import org.junit.After;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.util.Random;
+
 /**
  * Created with IntelliJ IDEA.
  * User: MW
@@ -19,26 +28,26 @@ import org.junit.Test;
  */
 public class GridColliderSystemTest {
     private GridColliderSystem gridColliderSystem;
-    private byte grid[][][];
+    private VoxelGrid grid;
 
     @Before
     /**
      * Create a simple map.
      */
     public void setUp() throws Exception {
-        grid = new byte[32][32][32];
+        grid = new ArrayVoxelGrid(32, 32, 32);
         float scale = 1.0f;
         gridColliderSystem = new GridColliderSystem(new EntitySystem(), new CollisionResolver());
         gridColliderSystem.setTiles(grid);
         gridColliderSystem.setScale(scale);
 
-        for (int x = 0; x < grid.length; x++) {
-            for (int y = 0; y < grid[x].length; y++) {
-                for (int z = 0; z < grid[x][y].length; z++) {
+        for (int x = 0; x < grid.getLengthX(); x++) {
+            for (int y = 0; y < grid.getLengthY(); y++) {
+                for (int z = 0; z < grid.getLengthZ(); z++) {
                     if (y < 4) {
-                        grid[x][y][z] = 1;
+                        grid.set(x, y, z, (byte) 1);
                     } else {
-                        grid[x][y][z] = 0;
+                        grid.set(x, y, z, (byte) 0);
                     }
                 }
             }
@@ -126,4 +135,160 @@ public class GridColliderSystemTest {
         Assert.assertEquals(5, maxStore.y);
         Assert.assertEquals(8, maxStore.z);
     }
+
+    @Test
+    /**
+     * Test that rays find the first tile they enter along with the face and point they enter through.
+     */
+    public void testCastRay() throws Exception {
+        TileRayHit hit = new TileRayHit();
+        Assert.assertTrue(gridColliderSystem.castRay(new Vector3f(5.5f, 10f, 5.5f), new Vector3f(0, -1, 0), 20f,
+                1, hit));
+        checkIndex(hit.getTile(), 5, 3, 5);
+        checkIndex(hit.getNormal(), 0, 1, 0);
+        Assert.assertEquals(6f, hit.getDistance(), 0.001f);
+        Assert.assertEquals(4f, hit.getPoint().y, 0.001f);
+
+        // Too short to reach the floor.
+        Assert.assertFalse(gridColliderSystem.castRay(new Vector3f(5.5f, 10f, 5.5f), new Vector3f(0, -1, 0), 5.9f,
+                1, hit));
+        Assert.assertFalse(hit.getIsHit());
+
+        // Starting outside of the grid at an angle.
+        Assert.assertTrue(gridColliderSystem.castRay(new Vector3f(-2f, 40f, 10.5f), new Vector3f(0.5f, -1f, 0), 100f,
+                1, hit));
+        checkIndex(hit.getTile(), 16, 3, 10);
+        checkIndex(hit.getNormal(), 0, 1, 0);
+        Assert.assertEquals(36f, hit.getDistance(), 0.001f);
+
+        // Starting inside a tile.
+        Assert.assertTrue(gridColliderSystem.castRay(new Vector3f(1.5f, 1.5f, 1.5f), new Vector3f(1, 0, 0), 10f,
+                1, hit));
+        checkIndex(hit.getTile(), 1, 1, 1);
+        checkIndex(hit.getNormal(), 0, 0, 0);
+
+        // Tiles outside of the groups are passed through.
+        Assert.assertFalse(gridColliderSystem.castRay(new Vector3f(5.5f, 10f, 5.5f), new Vector3f(0, -1, 0), 20f,
+                2, hit));
+        gridColliderSystem.setCollisionGroups(new long[]{0, 2});
+        Assert.assertTrue(gridColliderSystem.castRay(new Vector3f(5.5f, 10f, 5.5f), new Vector3f(0, -1, 0), 20f,
+                2, hit));
+
+        // Tiles without a group are only hit when every group is checked, as picking does.
+        gridColliderSystem.setCollisionGroups(new long[]{0, 0});
+        Assert.assertFalse(gridColliderSystem.castRay(new Vector3f(5.5f, 10f, 5.5f), new Vector3f(0, -1, 0), 20f,
+                1, hit));
+        Assert.assertTrue(gridColliderSystem.castRay(new Vector3f(5.5f, 10f, 5.5f), new Vector3f(0, -1, 0), 20f,
+                ~0L, hit));
+        checkIndex(hit.getTile(), 5, 3, 5);
+        checkIndex(gridColliderSystem.getClosestUsedGridFromRay(new Vector3f(5.5f, 10f, 5.5f), new Vector3f(0, -1, 0),
+                20f), 5, 3, 5);
+    }
+
+    @Test
+    /**
+     * Test casting many rays at once.
+     */
+    public void testCastRays() throws Exception {
+        Ray[] rays = new Ray[]{new Ray(new Vector3f(1.5f, 8f, 1.5f), new Vector3f(0, -1, 0)),
+                new Ray(new Vector3f(1.5f, 8f, 1.5f), new Vector3f(0, 1, 0)),
+                new Ray(new Vector3f(20.5f, 6f, 3.5f), new Vector3f(0, -1, 0))};
+        TileRayHit[] hits = new TileRayHit[]{new TileRayHit(), new TileRayHit(), new TileRayHit()};
+        Assert.assertEquals(2, gridColliderSystem.castRays(rays, rays.length, 1, hits));
+        checkIndex(hits[0].getTile(), 1, 3, 1);
+        Assert.assertFalse(hits[1].getIsHit());
+        checkIndex(hits[2].getTile(), 20, 3, 3);
+    }
+
+    @Test
+    /**
+     * Test the closest used and empty tiles along a ray.
+     */
+    public void testClosestFromRay() throws Exception {
+        Vector3f origin = new Vector3f(5.5f, 10f, 5.5f);
+        checkIndex(gridColliderSystem.getClosestUsedGridFromRay(origin, new Vector3f(0, -1, 0), 20f), 5, 3, 5);
+        checkIndex(gridColliderSystem.getClosestEmptyGridFromRay(origin, new Vector3f(0, -1, 0), 20f), 5, 4, 5);
+        Assert.assertEquals(4f, gridColliderSystem.getClosestEmptyPointFromRay(origin, new Vector3f(0, -1, 0), 20f).y,
+                0.1f);
+        Assert.assertNull(gridColliderSystem.getClosestUsedGridFromRay(origin, new Vector3f(0, 1, 0), 20f));
+    }
+
+    @Test
+    /**
+     * Test that sweeping boxes stops them at floors and walls with the friction of the contacted tile.
+     */
+    public void testSweepTiles() throws Exception {
+        gridColliderSystem.setTileFriction(new float[]{0, 0.5f, 0.25f});
+        for (int y = 4; y < 7; y++) {
+            grid.set(8, y, 5, (byte) 2);
+        }
+        TileSweepResult result = new TileSweepResult();
+        BoundsBox bounds = new BoundsBox(new Vector3f(5.5f, 6f, 5.5f), 0.5f, 0.5f, 0.5f);
+        gridColliderSystem.sweepTiles(bounds, 5f, -20f, 0, 1, result);
+        Assert.assertEquals(-1.5f, result.getMoveAmount().y, 0.001f);
+        Assert.assertEquals(2f, result.getMoveAmount().x, 0.001f);
+        Assert.assertTrue(result.getIsBlockedY());
+        Assert.assertTrue(result.getIsBlockedX());
+        Assert.assertFalse(result.getIsBlockedZ());
+        Assert.assertEquals(1, result.getContactTile());
+        Assert.assertEquals(0.5f, result.getContactFriction(), 0.001f);
+
+        // Tiles outside of the groups are passed through.
+        gridColliderSystem.sweepTiles(bounds, 5f, -20f, 0, 2, result);
+        Assert.assertEquals(-20f, result.getMoveAmount().y, 0.001f);
+        Assert.assertFalse(result.getIsBlocked());
+    }
+
+    @Test
+    /**
+     * Test that sweeping tiles moves boxes the same as resolving against the boxes of every touched tile.
+     */
+    public void testSweepTilesMatchesResolver() throws Exception {
+        Random random = new Random(3);
+        for (int i = 0; i < 400; i++) {
+            grid.set(random.nextInt(32), 4 + random.nextInt(8), random.nextInt(32), (byte) 1);
+        }
+        CollisionResolver resolver = new CollisionResolver();
+        TileSweepResult result = new TileSweepResult();
+        CollisionInformation expected = new CollisionInformation();
+        ColliderBoxes boxes = new ColliderBoxes();
+        for (int i = 0; i < 500; i++) {
+            float extent = 0.2f + random.nextFloat() * 1.5f;
+            Vector3f center = new Vector3f(2 + random.nextFloat() * 28, 4 + extent + random.nextFloat() * 12,
+                    2 + random.nextFloat() * 28);
+            BoundsBox bounds = new BoundsBox(center, extent, extent, extent);
+            bounds.setTargets(Long.MAX_VALUE);
+            float moveX = random.nextFloat() * 6 - 3;
+            float moveY = random.nextFloat() * 16 - 12;
+            float moveZ = random.nextFloat() * 6 - 3;
+
+            BoundsBox swept = new BoundsBox(bounds.getCenter().clone(), extent, extent, extent);
+            swept.addBoundsLocal(moveX, moveY, moveZ);
+            Vector3Int minStore = new Vector3Int();
+            Vector3Int maxStore = new Vector3Int();
+            boxes.clear();
+            if (gridColliderSystem.getTileIndicesFromBounds(swept, minStore, maxStore)) {
+                for (int x = minStore.x; x <= maxStore.x; x++) {
+                    for (int y = minStore.y; y <= maxStore.y; y++) {
+                        for (int z = minStore.z; z <= maxStore.z; z++) {
+                            if (grid.get(x, y, z) != 0) {
+                                boxes.add(x, y, z, x + 1, y + 1, z + 1, Long.MAX_VALUE);
+                            }
+                        }
+                    }
+                }
+            }
+            resolver.resolveCollision(bounds, moveX, moveY, moveZ, boxes, expected);
+            gridColliderSystem.sweepTiles(bounds, moveX, moveY, moveZ, 1, result);
+            Assert.assertEquals(expected.getMoveAmount().x, result.getMoveAmount().x, 0.001f);
+            Assert.assertEquals(expected.getMoveAmount().y, result.getMoveAmount().y, 0.001f);
+            Assert.assertEquals(expected.getMoveAmount().z, result.getMoveAmount().z, 0.001f);
+        }
+    }
+
+    private void checkIndex(Vector3Int index, int x, int y, int z) {
+        Assert.assertEquals(x, index.x);
+        Assert.assertEquals(y, index.y);
+        Assert.assertEquals(z, index.z);
+    }
 }
@@ -0,0 +1,183 @@
+package com.halboom.pgt.physics;
+
+import com.halboom.pgt.pgutil.voxel.ArrayVoxelGrid;
+import com.halboom.pgt.pgutil.voxel.VoxelGrid;
+import com.halboom.pgt.physics.pathfinding.PathRequest;
+import com.halboom.pgt.physics.pathfinding.Pathfinder;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for the voxel pathfinder.
+ */
+public class PathfinderTest {
+    private static final long TIMEOUT = 5000;
+
+    private VoxelGrid grid;
+    private Pathfinder pathfinder;
+
+    @Before
+    /**
+     * Create a flat floor split by a wall along x = 20 with a gap at z = 28.
+     */
+    public void setUp() throws Exception {
+        grid = new ArrayVoxelGrid(40, 16, 40);
+        for (int x = 0; x < grid.getLengthX(); x++) {
+            for (int z = 0; z < grid.getLengthZ(); z++) {
+                grid.set(x, 0, z, (byte) 1);
+            }
+        }
+        for (int z = 0; z < grid.getLengthZ(); z++) {
+            if (z != 28) {
+                for (int y = 1; y < 4; y++) {
+                    grid.set(20, y, z, (byte) 1);
+                }
+            }
+        }
+        pathfinder = new Pathfinder(grid, new long[]{0, 1}, 1f, 8);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        pathfinder.destroy();
+    }
+
+    private void waitFor(PathRequest request) throws Exception {
+        long start = System.currentTimeMillis();
+        while (!request.getIsDone()) {
+            Assert.assertTrue("Search timed out.", System.currentTimeMillis() - start < TIMEOUT);
+            pathfinder.update();
+            Thread.sleep(1);
+        }
+    }
+
+    @Test
+    /**
+     * Test that paths go through the gap in the wall and only pass walkable cells.
+     */
+    public void testPathAroundWall() throws Exception {
+        PathRequest request = pathfinder.requestPath(5.5f, 1f, 5.5f, 35.5f, 1f, 5.5f, 1.8f, 1);
+        waitFor(request);
+        Assert.assertTrue(request.getIsFound());
+        int last = request.getWaypointCount() - 1;
+        Assert.assertEquals(35.5f, request.getWaypointX(last), 0.001f);
+        Assert.assertEquals(1f, request.getWaypointY(last), 0.001f);
+        Assert.assertEquals(5.5f, request.getWaypointZ(last), 0.001f);
+
+        boolean passesGap = false;
+        float x = 5.5f;
+        float z = 5.5f;
+        for (int i = 0; i <= last; i++) {
+            float nextX = request.getWaypointX(i);
+            float nextZ = request.getWaypointZ(i);
+            Assert.assertEquals(1f, request.getWaypointY(i), 0.001f);
+            // Walk the segment in small steps and check that it never enters the wall.
+            for (float t = 0; t <= 1; t += 0.01f) {
+                int cellX = (int) Math.floor(x + (nextX - x) * t);
+                int cellZ = (int) Math.floor(z + (nextZ - z) * t);
+                Assert.assertEquals(0, grid.get(cellX, 1, cellZ));
+                passesGap |= cellX == 20 && cellZ == 28;
+            }
+            x = nextX;
+            z = nextZ;
+        }
+        Assert.assertTrue(passesGap);
+    }
+
+    @Test
+    /**
+     * Test walking up steps one tile high and dropping off ledges.
+     */
+    public void testSteps() throws Exception {
+        for (int step = 1; step < 4; step++) {
+            for (int x = 4 + step; x < 20; x++) {
+                for (int z = 0; z < 4; z++) {
+                    grid.set(x, step, z, (byte) 1);
+                }
+            }
+        }
+        PathRequest request = pathfinder.requestPath(1.5f, 1f, 1.5f, 10.5f, 4f, 1.5f, 1.8f, 1);
+        waitFor(request);
+        Assert.assertTrue(request.getIsFound());
+        Assert.assertEquals(4f, request.getWaypointY(request.getWaypointCount() - 1), 0.001f);
+
+        // Cut the lower steps away along the first two rows, leaving a ledge three tiles high.
+        for (int z = 0; z < 2; z++) {
+            grid.set(5, 1, z, (byte) 0);
+            grid.set(6, 1, z, (byte) 0);
+            grid.set(6, 2, z, (byte) 0);
+        }
+        pathfinder.invalidate(5, 1, 0, 6, 2, 1);
+        request = pathfinder.requestPath(1.5f, 1f, 1.5f, 10.5f, 4f, 1.5f, 1.8f, 1);
+        waitFor(request);
+        Assert.assertTrue(request.getIsFound());
+        // The ledge is too high to climb so the path goes up the steps left standing.
+        for (int i = 0; i < request.getWaypointCount(); i++) {
+            if (request.getWaypointY(i) > 1f && request.getWaypointX(i) < 7f) {
+                Assert.assertTrue(request.getWaypointZ(i) > 2f);
+            }
+        }
+
+        // Dropping down the cut is allowed.
+        request = pathfinder.requestPath(10.5f, 4f, 1.5f, 1.5f, 1f, 1.5f, 1.8f, 1);
+        waitFor(request);
+        Assert.assertTrue(request.getIsFound());
+    }
+
+    @Test
+    /**
+     * Test that closing the gap makes the other side unreachable and opening it finds paths again.
+     */
+    public void testInvalidate() throws Exception {
+        PathRequest request = pathfinder.requestPath(5.5f, 1f, 5.5f, 35.5f, 1f, 5.5f, 1.8f, 1);
+        waitFor(request);
+        Assert.assertTrue(request.getIsFound());
+        Assert.assertFalse(pathfinder.getIsOutdated(request));
+
+        for (int y = 1; y < 4; y++) {
+            grid.set(20, y, 28, (byte) 1);
+        }
+        pathfinder.invalidate(20, 1, 28, 20, 3, 28);
+        pathfinder.update();
+        Assert.assertTrue(pathfinder.getIsOutdated(request));
+        request = pathfinder.requestPath(5.5f, 1f, 5.5f, 35.5f, 1f, 5.5f, 1.8f, 1);
+        waitFor(request);
+        Assert.assertFalse(request.getIsFound());
+
+        grid.set(20, 1, 10, (byte) 0);
+        grid.set(20, 2, 10, (byte) 0);
+        pathfinder.invalidate(20, 1, 10, 20, 2, 10);
+        request = pathfinder.requestPath(5.5f, 1f, 5.5f, 35.5f, 1f, 5.5f, 1.8f, 1);
+        waitFor(request);
+        Assert.assertTrue(request.getIsFound());
+
+        // Walkers too tall for the opening are blocked.
+        request = pathfinder.requestPath(5.5f, 1f, 5.5f, 35.5f, 1f, 5.5f, 2.5f, 1);
+        waitFor(request);
+        Assert.assertFalse(request.getIsFound());
+    }
+
+    @Test
+    /**
+     * Test that tiles outside of the collision groups of the walker do not block it.
+     */
+    public void testCollisionGroups() throws Exception {
+        for (int z = 0; z < grid.getLengthZ(); z++) {
+            for (int y = 1; y < 4; y++) {
+                grid.set(20, y, z, (byte) 2);
+            }
+        }
+        pathfinder.destroy();
+        pathfinder = new Pathfinder(grid, new long[]{0, 1, 2}, 1f, 8);
+        PathRequest request = pathfinder.requestPath(5.5f, 1f, 5.5f, 35.5f, 1f, 5.5f, 1.8f, 1);
+        waitFor(request);
+        Assert.assertTrue(request.getIsFound());
+        Assert.assertEquals(1, request.getWaypointCount());
+
+        request = pathfinder.requestPath(5.5f, 1f, 5.5f, 35.5f, 1f, 5.5f, 1.8f, 3);
+        waitFor(request);
+        Assert.assertFalse(request.getIsFound());
+    }
+}
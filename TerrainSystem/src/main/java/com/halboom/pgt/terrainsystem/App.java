@@ -129,7 +129,7 @@ public final class App extends SimpleApplication {
 
             //quint.setMidpoint(new Vector3f(FastMath.nextRandomFloat(), FastMath.nextRandomFloat(), FastMath.nextRandomFloat()));
 
-            terrain.cull(Threading.getInstance().getExecutor(), getCamera().getLocation());
+            terrain.cull(Threading.getInstance().getExecutor(), getCamera());
         }
 
         @Override
@@ -0,0 +1,674 @@
+package com.halboom.pgt.terrainsystem;
+
+import com.halboom.pgt.pgutil.Random;
+import com.halboom.pgt.pgutil.math.Vector3Int;
+import com.halboom.pgt.pgutil.voxel.VoxelGrid;
+import com.jme3.math.FastMath;
+import com.jme3.math.Transform;
+import com.jme3.scene.Geometry;
+import com.jme3.scene.Mesh;
+import com.jme3.scene.Node;
+import com.jme3.scene.Spatial;
+import com.jme3.scene.VertexBuffer;
+import com.jme3.scene.mesh.IndexBuffer;
+import com.jme3.util.BufferUtils;
+
+import java.nio.FloatBuffer;
+import java.util.Arrays;
+
+/**
+ * Creates the same quint faces as the quad mesh but writes them straight into the mesh buffers.
+ * Each face is placed using a per direction axis table instead of a transformed geometry so no
+ * objects are created per face. The quad mesh rotates faces with a quaternion which leaves
+ * rounding errors around 1e-7, the tables place faces exactly on the tile borders instead.
+ * Meshes keep spare face slots so single tile edits rewrite only the faces of the edited tile and its
+ * neighbours in place, the chunk is only merged again once the spare slots run out.
+ */
+public class BufferMesh implements TileMesher {
+    /**
+     * Number of components per vertex group.
+     */
+    static final int COMPONENTS = 3;
+
+    /**
+     * Number of components per vertex texture group.
+     */
+    static final int COMPONENTS_PER_TEXTURE = 2;
+
+    /**
+     * Corners of a quint before the midpoint is added, matching the quint vertex order.
+     */
+    private static final int CORNERS = 4;
+
+    /**
+     * Meshes with at least this many vertices need integer indices.
+     */
+    private static final int MAX_SHORT_VERTICES = 65536;
+
+    /**
+     * Minimum number of spare face slots kept in a mesh for faces added by tile edits.
+     */
+    private static final int MIN_SPARE_FACES = 24;
+
+    /**
+     * Spare face slots kept in a mesh as a fraction of its faces.
+     */
+    private static final int SPARE_FACES_DIVISOR = 8;
+
+    /**
+     * Number of low bits of a face slot entry holding the number of slots owned by the tile.
+     */
+    private static final int SLOT_CAPACITY_BITS = 3;
+
+    /**
+     * Mask of the number of slots owned by a tile in a face slot entry.
+     */
+    private static final int SLOT_CAPACITY_MASK = (1 << SLOT_CAPACITY_BITS) - 1;
+
+    /**
+     * Offsets of the tiles whose faces can change when a tile changes, starting with the tile itself.
+     */
+    private static final int[][] TOUCHED_OFFSETS = {
+            {0, 0, 0},
+            {-1, 0, 0}, {1, 0, 0},
+            {0, -1, 0}, {0, 1, 0},
+            {0, 0, -1}, {0, 0, 1}
+    };
+
+    /**
+     * Local X and Y of each quint corner in tile units, counter clockwise from the origin.
+     */
+    private static final float[] CORNER_X = {0, 1, 1, 0}, CORNER_Y = {0, 0, 1, 1};
+
+    /**
+     * Local axis written to each world axis for every direction ordered by the tile side indices.
+     */
+    static final int[][] FACE_AXES = {
+            {2, 1, 0}, {2, 1, 0},
+            {0, 1, 2}, {0, 1, 2},
+            {0, 2, 1}, {0, 2, 1}
+    };
+
+    /**
+     * Sign applied to each world axis for every direction ordered by the tile side indices.
+     */
+    static final float[][] FACE_SIGNS = {
+            {-1, 1, 1}, {1, 1, -1},
+            {-1, 1, -1}, {1, 1, 1},
+            {1, 1, -1}, {1, -1, 1}
+    };
+
+    /**
+     * Offset of the face origin from the tile origin in tile units for every direction.
+     */
+    static final float[][] FACE_OFFSETS = {
+            {0, 0, 0}, {1, 0, 1},
+            {1, 0, 0}, {0, 0, 1},
+            {0, 1, 1}, {0, 0, 0}
+    };
+
+    /**
+     * True if the face masks are up to date.
+     */
+    private boolean isOptimized = false;
+
+    /**
+     * Visible directions of each tile in the chunk indexed by (x * lengthY + y) * lengthZ + z,
+     * null if no tile of the chunk is visible.
+     */
+    private byte[] faceMasks;
+
+    /**
+     * Number of visible faces in the face masks.
+     */
+    private int faceCount = 0;
+
+    /**
+     * First face slot of each tile shifted past the capacity bits combined with the number of slots the tile owns,
+     * null until the last merged mesh is first updated.
+     */
+    private int[] faceSlots;
+
+    /**
+     * Number of face slots of the last merged mesh that are used or owned by a tile.
+     */
+    private int usedSlots = 0;
+
+    /**
+     * Number of face slots in the last merged mesh.
+     */
+    private int totalSlots = 0;
+
+    /**
+     * Stores the most recently used texture position.
+     */
+    private TileAtlas.TexturePosition texturePosition = new TileAtlas.TexturePosition();
+
+    /**
+     * Local positions of the current face, corners followed by the midpoint.
+     */
+    private float[] localX = new float[CORNERS + 1], localY = new float[CORNERS + 1], localZ = new float[CORNERS + 1];
+
+    /**
+     * Buffers being written to while emitting faces.
+     */
+    private FloatBuffer positions, normals, textures;
+
+    /**
+     * Index buffer being written to while emitting faces.
+     */
+    private IndexBuffer indices;
+
+    /**
+     * Number of vertices written so far.
+     */
+    private int vertexCount;
+
+    /**
+     * Number of triangles written so far.
+     */
+    private int triangleCount;
+
+    /**
+     * Initializes the mesh.
+     */
+    public BufferMesh() {
+    }
+
+    @Override
+    public Spatial merge(VoxelGrid tiles, float scale, TileAtlas atlas, TileBank tileBank, Vector3Int startIndex, Vector3Int endIndex) {
+        int lengthX = endIndex.x - startIndex.x + 1;
+        int lengthY = endIndex.y - startIndex.y + 1;
+        int lengthZ = endIndex.z - startIndex.z + 1;
+        // Only find the visible faces if they have not been found before.
+        if (!isOptimized) {
+            int size = lengthX * lengthY * lengthZ;
+            if (faceMasks != null && faceMasks.length == size) {
+                Arrays.fill(faceMasks, TileFaces.SIDE_NONE);
+            } else {
+                faceMasks = null;
+            }
+            faceCount = 0;
+            int index = 0;
+            for (int x = startIndex.x; x <= endIndex.x; x++) {
+                for (int y = startIndex.y; y <= endIndex.y; y++) {
+                    for (int z = startIndex.z; z <= endIndex.z; z++) {
+                        if (tiles.get(x, y, z) != 0 && !TileFaces.isTileSurrounded(tiles, x, y, z)) {
+                            byte direction = TileFaces.getTileVisibleDirections(tiles, x, y, z);
+                            // Only chunks with visible tiles keep masks so empty or buried chunks stay small.
+                            if (faceMasks == null) {
+                                faceMasks = new byte[size];
+                            }
+                            faceMasks[index] = direction;
+                            if (!isTileMerged(tileBank.getTile(tiles.get(x, y, z)), atlas)) {
+                                faceCount += TileFaces.countFaces(direction);
+                            }
+                        }
+                        index++;
+                    }
+                }
+            }
+            isOptimized = true;
+        }
+
+        // Chunks without visible tiles are merged again when edited so they get no spare slots.
+        totalSlots = faceCount;
+        if (faceMasks != null) {
+            totalSlots += Math.max(MIN_SPARE_FACES, faceCount / SPARE_FACES_DIVISOR);
+        }
+        usedSlots = faceCount;
+        faceSlots = null;
+        Mesh mesh = createMesh(totalSlots * Quint.VERTICES, totalSlots * Quint.TRIANGLES);
+        try {
+            writeFaces(mesh, tiles, scale, atlas, tileBank, startIndex, lengthX, lengthY, lengthZ);
+        } catch (RuntimeException e) {
+            // Free the buffers of the unfinished mesh and find the faces again on the next merge.
+            closeBuffers();
+            destroyBuffers(mesh);
+            setDirty();
+            throw e;
+        }
+
+        // Update the bounds of the mesh.
+        mesh.updateCounts();
+        mesh.updateBound();
+
+        Geometry optimizedGeometry = new Geometry("Chunk Mesh", mesh);
+        optimizedGeometry.setLocalTransform(Transform.IDENTITY);
+        optimizedGeometry.setMaterial(atlas.getMaterial());
+
+        return optimizedGeometry;
+    }
+
+    /**
+     * Writes the faces found in the face masks into the buffers of a new mesh.
+     * @param mesh the mesh to write to.
+     * @param tiles the tiles to load from.
+     * @param scale the scale of a tile.
+     * @param atlas the atlas to get the coordinates from.
+     * @param tileBank the data to use for the tiles.
+     * @param startIndex the starting index of the chunk.
+     * @param lengthX the number of tiles of the chunk along x.
+     * @param lengthY the number of tiles of the chunk along y.
+     * @param lengthZ the number of tiles of the chunk along z.
+     */
+    private void writeFaces(Mesh mesh, VoxelGrid tiles, float scale, TileAtlas atlas, TileBank tileBank,
+                            Vector3Int startIndex, int lengthX, int lengthY, int lengthZ) {
+        openBuffers(mesh);
+        vertexCount = 0;
+        triangleCount = 0;
+
+        int index = 0;
+        for (int x = 0; faceMasks != null && x < lengthX; x++) {
+            for (int y = 0; y < lengthY; y++) {
+                for (int z = 0; z < lengthZ; z++) {
+                    byte direction = faceMasks[index];
+                    index++;
+                    if (direction == TileFaces.SIDE_NONE) {
+                        continue;
+                    }
+                    int mx = x + startIndex.x;
+                    int my = y + startIndex.y;
+                    int mz = z + startIndex.z;
+                    byte type = tiles.get(mx, my, mz);
+                    TileBank.Tile tile = tileBank.getTile(type);
+                    if (isTileMerged(tile, atlas)) {
+                        continue;
+                    }
+                    for (int side = 0; side < TileFaces.DIRECTIONS; side++) {
+                        if ((direction & TileFaces.SIDES[side]) != 0) {
+                            texturePosition = atlas.getTextureFromIndex(type, side, texturePosition);
+                            writeFace(side, mx * scale, my * scale, mz * scale, scale, tile);
+                        }
+                    }
+                }
+            }
+        }
+
+        clearSlots(usedSlots, totalSlots - usedSlots, startIndex, scale);
+        closeBuffers();
+    }
+
+    /**
+     * Rewrites the faces of the changed tile and of the neighbours whose visible sides changed.
+     * Only meshes of plain quints can be updated, subclasses merging faces must merge again.
+     */
+    @Override
+    public boolean update(VoxelGrid tiles, float scale, TileAtlas atlas, TileBank tileBank,
+                          Vector3Int startIndex, Vector3Int endIndex, int x, int y, int z, Spatial spatial) {
+        int lengthX = endIndex.x - startIndex.x + 1;
+        int lengthY = endIndex.y - startIndex.y + 1;
+        int lengthZ = endIndex.z - startIndex.z + 1;
+        if (!isOptimized || faceMasks == null || faceMasks.length != lengthX * lengthY * lengthZ
+                || !(spatial instanceof Geometry)) {
+            return false;
+        }
+        if (faceSlots == null) {
+            findFaceSlots();
+        }
+
+        Mesh mesh = ((Geometry) spatial).getMesh();
+        openBuffers(mesh);
+        boolean isUpdated = true;
+        for (int i = 0; isUpdated && i < TOUCHED_OFFSETS.length; i++) {
+            int tx = x + TOUCHED_OFFSETS[i][0];
+            int ty = y + TOUCHED_OFFSETS[i][1];
+            int tz = z + TOUCHED_OFFSETS[i][2];
+            boolean isInChunk = tx >= startIndex.x && tx <= endIndex.x
+                    && ty >= startIndex.y && ty <= endIndex.y
+                    && tz >= startIndex.z && tz <= endIndex.z;
+            if (!isInChunk) {
+                continue;
+            }
+            byte direction = TileFaces.SIDE_NONE;
+            if (tiles.get(tx, ty, tz) != 0 && !TileFaces.isTileSurrounded(tiles, tx, ty, tz)) {
+                direction = TileFaces.getTileVisibleDirections(tiles, tx, ty, tz);
+            }
+            int index = ((tx - startIndex.x) * lengthY + ty - startIndex.y) * lengthZ + tz - startIndex.z;
+            // Neighbours only change when their visible sides do while the changed tile may have a new type.
+            if (i == 0 || direction != faceMasks[index]) {
+                isUpdated = rewriteTile(tiles, scale, atlas, tileBank, startIndex, tx, ty, tz, index, direction);
+            }
+        }
+        closeBuffers();
+        if (!isUpdated) {
+            return false;
+        }
+
+        mesh.getBuffer(VertexBuffer.Type.Position).setUpdateNeeded();
+        mesh.getBuffer(VertexBuffer.Type.Normal).setUpdateNeeded();
+        mesh.getBuffer(VertexBuffer.Type.TexCoord).setUpdateNeeded();
+        mesh.getBuffer(VertexBuffer.Type.Index).setUpdateNeeded();
+        mesh.updateBound();
+        spatial.updateModelBound();
+        return true;
+    }
+
+    /**
+     * Finds the face slots of every tile in the order the last merge wrote them.
+     */
+    private void findFaceSlots() {
+        faceSlots = new int[faceMasks.length];
+        int slot = 0;
+        for (int index = 0; index < faceMasks.length; index++) {
+            int faces = TileFaces.countFaces(faceMasks[index]);
+            faceSlots[index] = slot << SLOT_CAPACITY_BITS | faces;
+            slot += faces;
+        }
+    }
+
+    /**
+     * Writes the faces of a tile into its face slots, moving it to the spare slots if it has more faces than slots.
+     * @param tiles the tiles of the map.
+     * @param scale the scale of a tile.
+     * @param atlas the atlas used for meshing.
+     * @param tileBank the data of the tiles.
+     * @param startIndex the starting index of the chunk.
+     * @param x the x index of the tile.
+     * @param y the y index of the tile.
+     * @param z the z index of the tile.
+     * @param index the index of the tile in the face masks.
+     * @param direction the visible directions of the tile.
+     * @return true if the faces were written, false if there were not enough spare slots.
+     */
+    private boolean rewriteTile(VoxelGrid tiles, float scale, TileAtlas atlas, TileBank tileBank, Vector3Int startIndex,
+                                int x, int y, int z, int index, byte direction) {
+        int faces = TileFaces.countFaces(direction);
+        int slot = faceSlots[index] >> SLOT_CAPACITY_BITS;
+        int capacity = faceSlots[index] & SLOT_CAPACITY_MASK;
+        if (faces > capacity) {
+            if (usedSlots + faces > totalSlots) {
+                return false;
+            }
+            clearSlots(slot, capacity, startIndex, scale);
+            slot = usedSlots;
+            capacity = faces;
+            usedSlots += faces;
+            faceSlots[index] = slot << SLOT_CAPACITY_BITS | capacity;
+        }
+        faceCount += faces - TileFaces.countFaces(faceMasks[index]);
+        faceMasks[index] = direction;
+
+        vertexCount = slot * Quint.VERTICES;
+        triangleCount = slot * Quint.TRIANGLES;
+        if (faces > 0) {
+            byte type = tiles.get(x, y, z);
+            TileBank.Tile tile = tileBank.getTile(type);
+            for (int side = 0; side < TileFaces.DIRECTIONS; side++) {
+                if ((direction & TileFaces.SIDES[side]) != 0) {
+                    texturePosition = atlas.getTextureFromIndex(type, side, texturePosition);
+                    writeFace(side, x * scale, y * scale, z * scale, scale, tile);
+                }
+            }
+        }
+        // Slots the tile no longer needs stay owned by it so it can grow back without moving.
+        clearSlots(slot + faces, capacity - faces, startIndex, scale);
+        return true;
+    }
+
+    /**
+     * Turns face slots into degenerate triangles that are not rendered.
+     * The vertices are moved to the chunk origin so they do not grow the bounds of the mesh.
+     * @param slot the first face slot to clear.
+     * @param count the number of face slots to clear.
+     * @param startIndex the starting index of the chunk.
+     * @param scale the scale of a tile.
+     */
+    private void clearSlots(int slot, int count, Vector3Int startIndex, float scale) {
+        for (int face = slot; face < slot + count; face++) {
+            int firstVertex = face * Quint.VERTICES;
+            for (int vertex = firstVertex; vertex < firstVertex + Quint.VERTICES; vertex++) {
+                int offset = vertex * COMPONENTS;
+                positions.put(offset, startIndex.x * scale);
+                positions.put(offset + 1, startIndex.y * scale);
+                positions.put(offset + 2, startIndex.z * scale);
+            }
+            int firstTriangle = face * Quint.TRIANGLES;
+            for (int triangle = firstTriangle; triangle < firstTriangle + Quint.TRIANGLES; triangle++) {
+                int offset = triangle * COMPONENTS;
+                indices.put(offset, firstVertex);
+                indices.put(offset + 1, firstVertex);
+                indices.put(offset + 2, firstVertex);
+            }
+        }
+    }
+
+    /**
+     * Sets the buffers of a mesh as the buffers faces are written to.
+     * @param mesh the mesh to write to.
+     */
+    private void openBuffers(Mesh mesh) {
+        positions = (FloatBuffer) mesh.getBuffer(VertexBuffer.Type.Position).getData();
+        normals = (FloatBuffer) mesh.getBuffer(VertexBuffer.Type.Normal).getData();
+        textures = (FloatBuffer) mesh.getBuffer(VertexBuffer.Type.TexCoord).getData();
+        indices = mesh.getIndexBuffer();
+    }
+
+    /**
+     * Releases the buffers faces were written to.
+     */
+    private void closeBuffers() {
+        positions = null;
+        normals = null;
+        textures = null;
+        indices = null;
+    }
+
+    /**
+     * Checks if the faces of a tile are meshed elsewhere instead of as quints.
+     * @param tile the data of the tile.
+     * @param atlas the atlas used for meshing.
+     * @return true to skip the tile when writing quints.
+     */
+    protected boolean isTileMerged(TileBank.Tile tile, TileAtlas atlas) {
+        return false;
+    }
+
+    /**
+     * @return the visible directions of each tile from the last merge indexed by (x * lengthY + y) * lengthZ + z,
+     * null if no tile of the chunk is visible.
+     */
+    protected final byte[] getFaceMasks() {
+        return faceMasks;
+    }
+
+    /**
+     * Creates a mesh with empty buffers large enough for the given counts.
+     * @param totalVertices the number of vertices of the mesh.
+     * @param totalTriangles the number of triangles of the mesh.
+     * @return the created mesh.
+     */
+    static Mesh createMesh(int totalVertices, int totalTriangles) {
+        Mesh mesh = new Mesh();
+
+        VertexBuffer indexBuffer = new VertexBuffer(VertexBuffer.Type.Index);
+        VertexBuffer.Format indexFormat = VertexBuffer.Format.UnsignedShort;
+        if (totalVertices >= MAX_SHORT_VERTICES) {
+            indexFormat = VertexBuffer.Format.UnsignedInt;
+        }
+        indexBuffer.setupData(VertexBuffer.Usage.Static, COMPONENTS, indexFormat,
+                VertexBuffer.createBuffer(indexFormat, COMPONENTS, totalTriangles));
+        mesh.setBuffer(indexBuffer);
+
+        VertexBuffer positionBuffer = new VertexBuffer(VertexBuffer.Type.Position);
+        positionBuffer.setupData(VertexBuffer.Usage.Static, COMPONENTS, VertexBuffer.Format.Float,
+                VertexBuffer.createBuffer(VertexBuffer.Format.Float, COMPONENTS, totalVertices));
+        mesh.setBuffer(positionBuffer);
+
+        VertexBuffer normalBuffer = new VertexBuffer(VertexBuffer.Type.Normal);
+        normalBuffer.setupData(VertexBuffer.Usage.Static, COMPONENTS, VertexBuffer.Format.Float,
+                VertexBuffer.createBuffer(VertexBuffer.Format.Float, COMPONENTS, totalVertices));
+        mesh.setBuffer(normalBuffer);
+
+        VertexBuffer textureBuffer = new VertexBuffer(VertexBuffer.Type.TexCoord);
+        textureBuffer.setupData(VertexBuffer.Usage.Static, COMPONENTS_PER_TEXTURE, VertexBuffer.Format.Float,
+                VertexBuffer.createBuffer(VertexBuffer.Format.Float, COMPONENTS_PER_TEXTURE, totalVertices));
+        mesh.setBuffer(textureBuffer);
+
+        return mesh;
+    }
+
+    /**
+     * Frees the direct buffers of a geometry created by a mesher.
+     * @param spatial the geometry or node of geometries to free.
+     */
+    static void destroyBuffers(Spatial spatial) {
+        if (spatial instanceof Node) {
+            for (Spatial child : ((Node) spatial).getChildren()) {
+                destroyBuffers(child);
+            }
+        } else if (spatial instanceof Geometry) {
+            destroyBuffers(((Geometry) spatial).getMesh());
+        }
+    }
+
+    /**
+     * Frees the direct buffers of a mesh.
+     * @param mesh the mesh to free.
+     */
+    static void destroyBuffers(Mesh mesh) {
+        for (VertexBuffer buffer : mesh.getBufferList()) {
+            BufferUtils.destroyDirectBuffer(buffer.getData());
+        }
+    }
+
+    /**
+     * Writes a quint face into the buffers using the current texture position.
+     * @param side the tile side index of the face.
+     * @param px the x position of the tile origin.
+     * @param py the y position of the tile origin.
+     * @param pz the z position of the tile origin.
+     * @param scale the scale of a tile.
+     * @param tile the data of the tile.
+     */
+    private void writeFace(int side, float px, float py, float pz, float scale, TileBank.Tile tile) {
+        // Local quint positions with the randomized midpoint last.
+        for (int corner = 0; corner < CORNERS; corner++) {
+            localX[corner] = CORNER_X[corner] * scale;
+            localY[corner] = CORNER_Y[corner] * scale;
+            localZ[corner] = 0;
+        }
+        localX[CORNERS] = Random.randomFloat() * (tile.mx2 - tile.mx1) + tile.mx1;
+        localY[CORNERS] = Random.randomFloat() * (tile.my2 - tile.my1) + tile.my1;
+        localZ[CORNERS] = Random.randomFloat() * (tile.mz2 - tile.mz1) + tile.mz1;
+
+        // Texture coordinate of the midpoint.
+        float texWidth = texturePosition.x2 - texturePosition.x1;
+        float texHeight = texturePosition.y2 - texturePosition.y1;
+        float midU;
+        float midV;
+        if (tile.isAligned) {
+            midU = localX[CORNERS] / scale * texWidth + texturePosition.x1;
+            midV = localY[CORNERS] / scale * texHeight + texturePosition.y1;
+        } else {
+            midU = 0.5f / scale * texWidth + texturePosition.x1;
+            midV = 0.5f / scale * texHeight + texturePosition.y1;
+        }
+
+        int[] axes = FACE_AXES[side];
+        float[] signs = FACE_SIGNS[side];
+        float[] offsets = FACE_OFFSETS[side];
+        float ox = px + offsets[0] * scale;
+        float oy = py + offsets[1] * scale;
+        float oz = pz + offsets[2] * scale;
+
+        // Each triangle is two neighbouring corners and the midpoint.
+        for (int triangle = 0; triangle < CORNERS; triangle++) {
+            int first = triangle;
+            int second = (triangle + 1) % CORNERS;
+
+            // Normal computed the same way as FastMath.computeNormal.
+            float ax = localX[first] - localX[second];
+            float ay = localY[first] - localY[second];
+            float az = localZ[first] - localZ[second];
+            float bx = localX[CORNERS] - localX[second];
+            float by = localY[CORNERS] - localY[second];
+            float bz = localZ[CORNERS] - localZ[second];
+            float nx = by * az - bz * ay;
+            float ny = bz * ax - bx * az;
+            float nz = bx * ay - by * ax;
+            float length = nx * nx + ny * ny + nz * nz;
+            if (length != 1f && length != 0f) {
+                length = 1.0f / FastMath.sqrt(length);
+                nx *= length;
+                ny *= length;
+                nz *= length;
+            }
+
+            writeVertex(first, axes, signs, ox, oy, oz, nx, ny, nz,
+                    CORNER_X[first] == 0 ? texturePosition.x1 : texturePosition.x2,
+                    CORNER_Y[first] == 0 ? texturePosition.y1 : texturePosition.y2);
+            writeVertex(second, axes, signs, ox, oy, oz, nx, ny, nz,
+                    CORNER_X[second] == 0 ? texturePosition.x1 : texturePosition.x2,
+                    CORNER_Y[second] == 0 ? texturePosition.y1 : texturePosition.y2);
+            writeVertex(CORNERS, axes, signs, ox, oy, oz, nx, ny, nz, midU, midV);
+
+            int indexOffset = triangleCount * COMPONENTS;
+            indices.put(indexOffset, vertexCount - 3);
+            indices.put(indexOffset + 1, vertexCount - 2);
+            indices.put(indexOffset + 2, vertexCount - 1);
+            triangleCount++;
+        }
+    }
+
+    /**
+     * Writes a single vertex into the buffers.
+     * @param local the index of the local position to write.
+     * @param axes the local axis written to each world axis.
+     * @param signs the sign applied to each world axis.
+     * @param ox the x position of the face origin.
+     * @param oy the y position of the face origin.
+     * @param oz the z position of the face origin.
+     * @param nx the local x normal.
+     * @param ny the local y normal.
+     * @param nz the local z normal.
+     * @param u the u texture coordinate.
+     * @param v the v texture coordinate.
+     */
+    private void writeVertex(int local, int[] axes, float[] signs, float ox, float oy, float oz,
+                             float nx, float ny, float nz, float u, float v) {
+        int offset = vertexCount * COMPONENTS;
+        positions.put(offset, ox + signs[0] * pick(axes[0], localX[local], localY[local], localZ[local]));
+        positions.put(offset + 1, oy + signs[1] * pick(axes[1], localX[local], localY[local], localZ[local]));
+        positions.put(offset + 2, oz + signs[2] * pick(axes[2], localX[local], localY[local], localZ[local]));
+        normals.put(offset, signs[0] * pick(axes[0], nx, ny, nz));
+        normals.put(offset + 1, signs[1] * pick(axes[1], nx, ny, nz));
+        normals.put(offset + 2, signs[2] * pick(axes[2], nx, ny, nz));
+        int textureOffset = vertexCount * COMPONENTS_PER_TEXTURE;
+        textures.put(textureOffset, u);
+        textures.put(textureOffset + 1, v);
+        vertexCount++;
+    }
+
+    /**
+     * Picks a component of a vector by axis.
+     * @param axis the axis to pick, 0 for x, 1 for y and 2 for z.
+     * @param x the x component.
+     * @param y the y component.
+     * @param z the z component.
+     * @return the picked component.
+     */
+    private static float pick(int axis, float x, float y, float z) {
+        switch (axis) {
+            case 0:
+                return x;
+            case 1:
+                return y;
+            default:
+                return z;
+        }
+    }
+
+    @Override
+    public void setDirty() {
+        isOptimized = false;
+        faceSlots = null;
+    }
+
+    @Override
+    public void destroy(Spatial spatial) {
+        isOptimized = false;
+        faceMasks = null;
+        faceSlots = null;
+    }
+}
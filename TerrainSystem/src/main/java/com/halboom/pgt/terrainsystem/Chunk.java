@@ -1,16 +1,12 @@
 package com.halboom.pgt.terrainsystem;
 
 import com.halboom.pgt.pgutil.math.Vector3Int;
+import com.halboom.pgt.pgutil.voxel.VoxelGrid;
+import com.jme3.bounding.BoundingBox;
 import com.jme3.math.Vector3f;
 import com.jme3.renderer.queue.RenderQueue;
-import com.jme3.scene.Geometry;
-import com.jme3.scene.Mesh;
 import com.jme3.scene.Node;
 import com.jme3.scene.Spatial;
-import com.jme3.scene.VertexBuffer;
-import com.jme3.util.BufferUtils;
-
-import java.util.List;
 
 /**
  * Created with IntelliJ IDEA.
@@ -49,6 +45,55 @@ public class Chunk {
      */
     private boolean isMerged = false;
 
+    /**
+     * Revision of the chunk which is incremented every time the chunk is set dirty.
+     * Meshes built from an older revision are discarded.
+     */
+    private int revision = 0;
+
+    /**
+     * True while a mesh for the chunk is being built on a worker thread.
+     * The mesher is not touched from the render thread meanwhile, every change that would reset it also changes
+     * the revision so the mesher is reset once the build finishes instead.
+     */
+    private boolean isMeshing = false;
+
+    /**
+     * Revision a mesh failed to build for, meshing is not retried until the chunk changes again.
+     */
+    private int failedRevision = -1;
+
+    /**
+     * Distance from the chunk center to the last visibility update center.
+     */
+    private float distance = Float.MAX_VALUE;
+
+    /**
+     * True while the chunk is close enough to the visibility center to be checked every update.
+     */
+    private boolean isInRange = false;
+
+    /**
+     * World bounds of the chunk tiles used for frustum checks.
+     */
+    private BoundingBox bounds;
+
+    /**
+     * Level of detail the chunk is meshed at, each level halves the number of tiles along every axis.
+     */
+    private int lod = 0;
+
+    /**
+     * Coarsest level of detail used by any chunk, used to keep faces on the chunk borders.
+     * Zero meshes the chunk without checking other levels.
+     */
+    private int maxLod = 0;
+
+    /**
+     * True while the geometry is shown at a level of detail that is no longer wanted.
+     */
+    private boolean isLodStale = false;
+
     /**
      * Initializes the chunk and maps the tiles without copying them.
      * @param startIndex the starting index for the chunk.
@@ -61,8 +106,11 @@ public class Chunk {
                 startIndex.x * scale + (endIndex.x - startIndex.x) * scale / 2,
                 startIndex.y * scale + (endIndex.y - startIndex.y) * scale / 2,
                 startIndex.z * scale + (endIndex.z - startIndex.z) * scale / 2);
+        bounds = new BoundingBox(
+                new Vector3f(startIndex.x * scale, startIndex.y * scale, startIndex.z * scale),
+                new Vector3f((endIndex.x + 1) * scale, (endIndex.y + 1) * scale, (endIndex.z + 1) * scale));
 
-        mesh = new QuadMesh();
+        mesh = new BufferMesh();
     }
 
     /**
@@ -88,17 +136,92 @@ public class Chunk {
      * @param tileBank the data to use for the tiles.
      * @return the attachable node.
      */
-    public Spatial createAttachable(byte[][][] tiles, float scale, TileAtlas atlas, TileBank tileBank) {
+    public Spatial createAttachable(VoxelGrid tiles, float scale, TileAtlas atlas, TileBank tileBank) {
         if (!isMerged) {
-            batchedGeometry = mesh.merge(tiles, scale, atlas, tileBank, startIndex, endIndex);
-            // TODO: Set shadow mode elsewhere.
-            batchedGeometry.setShadowMode(RenderQueue.ShadowMode.CastAndReceive);
+            batchedGeometry = buildMesh(tiles, scale, atlas, tileBank);
             isMerged = true;
         }
 
         return batchedGeometry;
     }
 
+    /**
+     * Builds the chunk geometry at the current level of detail without changing the state of the chunk.
+     * Safe to call from a worker thread as long as only one mesh is built per chunk at a time,
+     * meshes built while the level of detail changes are discarded through the revision.
+     * @param tiles the tiles to generate the mesh from.
+     * @param scale the scale of a tile.
+     * @param atlas the tile atlas to use.
+     * @param tileBank the data to use for the tiles.
+     * @return the built geometry.
+     */
+    public Spatial buildMesh(VoxelGrid tiles, float scale, TileAtlas atlas, TileBank tileBank) {
+        Spatial spatial;
+        if (maxLod == 0) {
+            spatial = mesh.merge(tiles, scale, atlas, tileBank, startIndex, endIndex);
+        } else {
+            int factor = 1 << lod;
+            Vector3Int lodStart = new Vector3Int(startIndex.x / factor, startIndex.y / factor, startIndex.z / factor);
+            Vector3Int lodEnd = new Vector3Int((endIndex.x + 1) / factor - 1,
+                    (endIndex.y + 1) / factor - 1, (endIndex.z + 1) / factor - 1);
+            VoxelGrid lodTiles = new LodVoxelGrid(tiles, factor, 1 << maxLod, lodStart, lodEnd);
+            spatial = mesh.merge(lodTiles, scale * factor, atlas, tileBank, lodStart, lodEnd);
+        }
+        // TODO: Set shadow mode elsewhere.
+        spatial.setShadowMode(RenderQueue.ShadowMode.CastAndReceive);
+        return spatial;
+    }
+
+    /**
+     * Flags the chunk as having a mesh built on a worker thread.
+     * Must be called from the render thread.
+     * @return the revision the mesh is being built for.
+     */
+    public int startMeshing() {
+        isMeshing = true;
+        return revision;
+    }
+
+    /**
+     * Sets the geometry built on a worker thread as the chunk geometry.
+     * Must be called from the render thread.
+     * @param spatial the built geometry or null if building failed.
+     * @param builtRevision the revision returned when meshing was started.
+     * @return true if the geometry was used, false if it was out of date and has been destroyed.
+     */
+    public boolean finishMeshing(Spatial spatial, int builtRevision) {
+        isMeshing = false;
+        if (spatial == null) {
+            // Failures of meshes that were already out of date do not stop the chunk from meshing again.
+            failedRevision = builtRevision;
+            mesh.setDirty();
+            return false;
+        }
+        if (builtRevision != revision || (isMerged && !isLodStale)) {
+            // Tiles changed or the chunk was released while meshing so the cached mesh data is also stale.
+            if (isMerged) {
+                mesh.setDirty();
+            } else {
+                mesh.destroy(spatial);
+            }
+            destroyGeometry(spatial);
+            return false;
+        }
+        if (isMerged) {
+            // Swap the old level of detail out only now so the chunk never disappears while meshing.
+            Node parent = batchedGeometry.getParent();
+            batchedGeometry.removeFromParent();
+            destroyGeometry(batchedGeometry);
+            if (parent != null) {
+                parent.attachChild(spatial);
+            }
+        }
+        batchedGeometry = spatial;
+        isMerged = true;
+        isLodStale = false;
+        return true;
+    }
+
     /**
      * Attaches the chunk to the given node only if already merged.
      * @param node the node to attach the chunk to.
@@ -110,24 +233,50 @@ public class Chunk {
     }
 
     /**
-     * Detaches the chunk from the attached node and frees memory.
+     * Removes the chunk from the attached node but keeps the geometry for reattaching.
      */
-    public void detach() {
+    public void hide() {
         if (batchedGeometry != null) {
-            mesh.destroy(batchedGeometry);
             batchedGeometry.removeFromParent();
+        }
+    }
 
-            if (batchedGeometry instanceof Geometry) {
-                Geometry geom = (Geometry) batchedGeometry;
-                Mesh geomMesh = geom.getMesh();
-                List<VertexBuffer> buffers = geomMesh.getBufferList();
-                for (VertexBuffer buffer : buffers) {
-                    BufferUtils.destroyDirectBuffer(buffer.getData());
-                }
+    /**
+     * Detaches the chunk from the attached node and frees memory.
+     * A mesh being built for the chunk is discarded once it finishes.
+     */
+    public void detach() {
+        if (isMeshing || batchedGeometry != null) {
+            revision++;
+        }
+        if (batchedGeometry != null) {
+            if (!isMeshing) {
+                mesh.destroy(batchedGeometry);
             }
+            batchedGeometry.removeFromParent();
+            destroyGeometry(batchedGeometry);
 
             batchedGeometry = null;
             isMerged = false;
+            isLodStale = false;
+        }
+    }
+
+    /**
+     * Frees the buffers of a geometry created by the mesher.
+     * @param spatial the spatial to free.
+     */
+    private void destroyGeometry(Spatial spatial) {
+        BufferMesh.destroyBuffers(spatial);
+    }
+
+    /**
+     * Tells the mesher its information is out of date unless a mesh is being built with it,
+     * in which case the revision has changed and the mesher is reset when the build finishes.
+     */
+    private void setMesherDirty() {
+        if (!isMeshing) {
+            mesh.setDirty();
         }
     }
 
@@ -136,7 +285,8 @@ public class Chunk {
      */
     public void setDirty() {
         detach();
-        mesh.setDirty();
+        setMesherDirty();
+        revision++;
     }
 
     /**
@@ -147,13 +297,92 @@ public class Chunk {
      * @param tileBank the data to use for the tiles.
      * @param node the node to attach to.
      */
-    public void updateTiles(byte[][][] tiles, float scale, TileAtlas atlas, TileBank tileBank, Node node) {
+    public void updateTiles(VoxelGrid tiles, float scale, TileAtlas atlas, TileBank tileBank, Node node) {
         detach();
-        mesh.setDirty();
+        setMesherDirty();
         createAttachable(tiles, scale, atlas, tileBank);
         attach(node);
     }
 
+    /**
+     * Patches the chunk geometry in place after a single tile changed.
+     * Only merged chunks in range at full detail are patched, others have to be merged again.
+     * @param tiles the tiles to generate the mesh from.
+     * @param scale the scale of a tile.
+     * @param atlas the tile atlas to use.
+     * @param tileBank the data to use for the tiles.
+     * @param x the x index of the changed tile.
+     * @param y the y index of the changed tile.
+     * @param z the z index of the changed tile.
+     * @return true if the geometry was patched, false if the chunk needs to be merged again.
+     */
+    public boolean updateTile(VoxelGrid tiles, float scale, TileAtlas atlas, TileBank tileBank, int x, int y, int z) {
+        // Downsampled meshes depend on whole cells so they are always merged again.
+        boolean isPatchable = isMerged && isInRange && maxLod == 0;
+        return isPatchable && mesh.update(tiles, scale, atlas, tileBank, startIndex, endIndex, x, y, z, batchedGeometry);
+    }
+
+    /**
+     * Replaces the mesher used to create the chunk geometry.
+     * @param mesher the mesher to use.
+     */
+    public void setMesher(TileMesher mesher) {
+        setDirty();
+        mesh = mesher;
+    }
+
+    /**
+     * Changes the level of detail of the chunk.
+     * A merged chunk keeps its current geometry until the mesh at the new level is finished.
+     * @param lod the level of detail to mesh the chunk at.
+     */
+    public void setLod(int lod) {
+        if (this.lod != lod) {
+            this.lod = lod;
+            setMesherDirty();
+            revision++;
+            isLodStale = isMerged;
+        }
+    }
+
+    /**
+     * @return the level of detail the chunk is meshed at.
+     */
+    public int getLod() {
+        return lod;
+    }
+
+    /**
+     * Sets the coarsest level of detail used by any chunk, the chunk must be set dirty afterwards
+     * if it was already meshed.
+     * @param maxLod the coarsest level of detail, 0 if levels of detail are not used.
+     */
+    public void setMaxLod(int maxLod) {
+        this.maxLod = maxLod;
+        lod = Math.min(lod, maxLod);
+    }
+
+    /**
+     * @return true if the shown geometry is waiting to be replaced by a mesh at another level of detail.
+     */
+    public boolean getIsLodStale() {
+        return isLodStale;
+    }
+
+    /**
+     * @return the first tile index of the chunk.
+     */
+    public Vector3Int getStartIndex() {
+        return startIndex;
+    }
+
+    /**
+     * @return the last tile index of the chunk.
+     */
+    public Vector3Int getEndIndex() {
+        return endIndex;
+    }
+
     /**
      * @return the center of the chunk in world units.
      */
@@ -168,6 +397,62 @@ public class Chunk {
         return isMerged;
     }
 
+    /**
+     * @return true if a mesh is being built for the chunk on a worker thread.
+     */
+    public boolean getIsMeshing() {
+        return isMeshing;
+    }
+
+    /**
+     * @return true if building the mesh failed and the chunk did not change since.
+     */
+    public boolean getIsMeshFailed() {
+        return failedRevision == revision;
+    }
+
+    /**
+     * @return the distance from the center of the last visibility update.
+     */
+    public float getDistance() {
+        return distance;
+    }
+
+    /**
+     * @param distance the distance from the center of the visibility update to set.
+     */
+    public void setDistance(float distance) {
+        this.distance = distance;
+    }
+
+    /**
+     * @return true if the chunk geometry is attached to a node.
+     */
+    public boolean getIsAttached() {
+        return batchedGeometry != null && batchedGeometry.getParent() != null;
+    }
+
+    /**
+     * @return true if the chunk is checked every visibility update.
+     */
+    public boolean getIsInRange() {
+        return isInRange;
+    }
+
+    /**
+     * @param isInRange true if the chunk is checked every visibility update.
+     */
+    public void setIsInRange(boolean isInRange) {
+        this.isInRange = isInRange;
+    }
+
+    /**
+     * @return the world bounds of the chunk tiles.
+     */
+    public BoundingBox getBounds() {
+        return bounds;
+    }
+
     /**
      * @return the batched geometry.
      */
@@ -180,5 +465,6 @@ public class Chunk {
      */
     public void destroy() {
         detach();
+        revision++;
     }
 }
@@ -1,15 +1,27 @@
 package com.halboom.pgt.terrainsystem;
 
 import com.halboom.pgt.pgutil.math.Vector3Int;
+import com.halboom.pgt.pgutil.voxel.VoxelGrid;
+import com.halboom.pgt.terrainsystem.generator.Generator;
+import com.halboom.pgt.terrainsystem.generator.GeneratorTask;
 import com.jme3.math.FastMath;
 import com.jme3.math.Vector3f;
+import com.jme3.renderer.Camera;
 import com.jme3.scene.Node;
+import com.jme3.scene.Spatial;
 
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.concurrent.ExecutionException;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -31,20 +43,179 @@ public class ChunkUpdater {
      */
     private static final float DEFAULT_VIEW_DISTANCE = 96f;
 
+    /**
+     * Default maximum number of meshes being built or waiting to be attached at once.
+     */
+    private static final int DEFAULT_MAX_MESHES_IN_FLIGHT = 4;
+
+    /**
+     * Default time in nanoseconds allowed per frame for applying finished meshes.
+     */
+    private static final long DEFAULT_MESH_TIME_BUDGET = 2000000L;
+
+    /**
+     * Default maximum number of chunks being generated at once.
+     */
+    private static final int DEFAULT_MAX_GENERATIONS_IN_FLIGHT = 4;
+
+    /**
+     * Coarsest level of detail which meshes a cell for every 4x4x4 tiles.
+     */
+    private static final int MAX_LOD = 2;
+
+    /**
+     * Default distance past a level of detail band before a chunk switches level.
+     */
+    private static final float DEFAULT_LOD_HYSTERESIS = 8f;
+
+    /**
+     * Sorts chunks by their distance from the visibility center, closest first.
+     */
+    private static final Comparator<Chunk> DISTANCE_COMPARATOR = new Comparator<Chunk>() {
+        @Override
+        public int compare(Chunk o1, Chunk o2) {
+            return Float.compare(o1.getDistance(), o2.getDistance());
+        }
+    };
+
+    /**
+     * A mesh built on a worker thread waiting to be applied on the render thread.
+     */
+    private static final class FinishedMesh {
+        /**
+         * Chunk the mesh was built for.
+         */
+        private final Chunk chunk;
+
+        /**
+         * Revision of the chunk the mesh was built from.
+         */
+        private final int revision;
+
+        /**
+         * Built geometry or null if the build failed.
+         */
+        private final Spatial spatial;
+
+        /**
+         * Initializes the finished mesh.
+         * @param chunk the chunk the mesh was built for.
+         * @param revision the revision of the chunk the mesh was built from.
+         * @param spatial the built geometry or null if the build failed.
+         */
+        private FinishedMesh(Chunk chunk, int revision, Spatial spatial) {
+            this.chunk = chunk;
+            this.revision = revision;
+            this.spatial = spatial;
+        }
+    }
+
+    /**
+     * Tiles of a chunk generated on a worker thread waiting to be marked as generated on the render thread.
+     */
+    private static final class FinishedGeneration {
+        /**
+         * Chunk that was generated.
+         */
+        private final Chunk chunk;
+
+        /**
+         * Index of the generated chunk.
+         */
+        private final int index;
+
+        /**
+         * Generation epoch the chunk was generated in.
+         */
+        private final int epoch;
+
+        /**
+         * Initializes the finished generation.
+         * @param chunk the chunk that was generated.
+         * @param index the index of the generated chunk.
+         * @param epoch the generation epoch the chunk was generated in.
+         */
+        private FinishedGeneration(Chunk chunk, int index, int epoch) {
+            this.chunk = chunk;
+            this.index = index;
+            this.epoch = epoch;
+        }
+    }
+
     /**
      * Chunks for holding the map tiles.
      */
     private Chunk[][][] chunks;
 
     /**
-     * Future that is used to check chunk updating status.
+     * Meshes that have finished building and are waiting to be applied.
+     */
+    private Queue<FinishedMesh> finishedMeshes = new ConcurrentLinkedQueue<FinishedMesh>();
+
+    /**
+     * Number of meshes currently being built on worker threads.
+     */
+    private AtomicInteger meshesInFlight = new AtomicInteger();
+
+    /**
+     * Number of meshes waiting in the finished queue.
+     */
+    private AtomicInteger queuedMeshes = new AtomicInteger();
+
+    /**
+     * Number of visible chunks that were waiting to be meshed during the last update.
+     */
+    private int pendingChunks = 0;
+
+    /**
+     * Maximum number of meshes being built or waiting to be attached at once.
+     */
+    private int maxMeshesInFlight = DEFAULT_MAX_MESHES_IN_FLIGHT;
+
+    /**
+     * Time in nanoseconds allowed per frame for applying finished meshes.
+     */
+    private long meshTimeBudget = DEFAULT_MESH_TIME_BUDGET;
+
+    /**
+     * Chunks within view distance and inside the camera frustum that need meshing, reused every update.
+     */
+    private List<Chunk> meshCandidates = new ArrayList<Chunk>();
+
+    /**
+     * Chunks within view distance but outside the camera frustum that need meshing, reused every update.
+     */
+    private List<Chunk> hiddenCandidates = new ArrayList<Chunk>();
+
+    /**
+     * Chunks around the center cell that are checked every update.
+     */
+    private List<Chunk> activeChunks = new ArrayList<Chunk>();
+
+    /**
+     * Chunk cell containing the center of the last range update.
+     */
+    private Vector3Int centerCell = new Vector3Int();
+
+    /**
+     * World center of the center cell.
      */
-    private Future updatedChunkFuture;
+    private Vector3f cellCenter = new Vector3f();
+
+    /**
+     * Maximum visible distance used by the last range update.
+     */
+    private float rangeDistance = 0;
+
+    /**
+     * True if the chunks in range must be found again on the next update.
+     */
+    private boolean isRangeDirty = true;
 
     /**
      * Tiles of the chunk.
      */
-    private byte[][][] tiles;
+    private VoxelGrid tiles;
 
     /**
      * Atlas to use for the meshing material.
@@ -76,6 +247,77 @@ public class ChunkUpdater {
      */
     private float scale = 1f;
 
+    /**
+     * True to merge flat faces into larger quads when meshing.
+     */
+    private boolean isGreedyMeshing = false;
+
+    /**
+     * Distances from the center where chunks switch to the next coarser level of detail, closest first.
+     */
+    private float[] lodDistances = new float[0];
+
+    /**
+     * Distance a chunk must pass a level of detail band by before switching level.
+     */
+    private float lodHysteresis = DEFAULT_LOD_HYSTERESIS;
+
+    /**
+     * Coarsest level of detail in use, 0 if chunks are always meshed at full detail.
+     */
+    private int maxLod = 0;
+
+    /**
+     * Generator filling in the tiles of chunks as they come into range, null if every chunk already has its tiles.
+     */
+    private Generator generator;
+
+    /**
+     * Chunks whose tiles have been generated, indexed by (x * chunks along y + y) * chunks along z + z.
+     */
+    private BitSet generatedChunks = new BitSet();
+
+    /**
+     * Chunks being generated on worker threads, indexed like the generated chunks.
+     */
+    private BitSet generatingChunks = new BitSet();
+
+    /**
+     * Tiles edited in chunks that have not finished generating by chunk index, indexed like a region buffer.
+     * The bit sets are shared with the generating workers and only changed or read while holding the tiles lock.
+     */
+    private Map<Integer, BitSet> keptTiles = new HashMap<Integer, BitSet>();
+
+    /**
+     * Chunks already added to the generation candidates during the current update.
+     */
+    private BitSet requestedChunks = new BitSet();
+
+    /**
+     * Chunks in range that need their tiles generated, reused every update.
+     */
+    private List<Chunk> generationCandidates = new ArrayList<Chunk>();
+
+    /**
+     * Chunks that have finished generating and are waiting to be marked as generated.
+     */
+    private Queue<FinishedGeneration> finishedGenerations = new ConcurrentLinkedQueue<FinishedGeneration>();
+
+    /**
+     * Number of chunks being generated on worker threads or waiting to be marked as generated.
+     */
+    private int generationsInFlight = 0;
+
+    /**
+     * Maximum number of chunks being generated at once.
+     */
+    private int maxGenerationsInFlight = DEFAULT_MAX_GENERATIONS_IN_FLIGHT;
+
+    /**
+     * Incremented whenever the generated chunks are reset so generations started before are ignored.
+     */
+    private int generationEpoch = 0;
+
     /**
      * Callbacks for the chunk states.
      */
@@ -86,7 +328,7 @@ public class ChunkUpdater {
      * @param tiles the tiles of the map.
      * @param mapDimensions the dimensions of the map in tiles.
      */
-    public ChunkUpdater(byte[][][] tiles, Vector3Int mapDimensions) {
+    public ChunkUpdater(VoxelGrid tiles, Vector3Int mapDimensions) {
         this.tiles = tiles;
         this.mapDimensions.set(mapDimensions);
 
@@ -98,6 +340,8 @@ public class ChunkUpdater {
      */
     private void recreateChunks() {
         destroy();
+        activeChunks.clear();
+        isRangeDirty = true;
 
         // Create the empty chunks and map them to the tile segments.
         chunks = new Chunk[mapDimensions.x / chunkDimensions.x]
@@ -115,76 +359,435 @@ public class ChunkUpdater {
                     endIndex.y = y * chunkDimensions.y + chunkDimensions.y - 1;
                     endIndex.z = z * chunkDimensions.z + chunkDimensions.z - 1;
                     chunks[x][y][z] = new Chunk(startingIndex, endIndex, scale);
+                    chunks[x][y][z].setMaxLod(maxLod);
+                    if (isGreedyMeshing) {
+                        chunks[x][y][z].setMesher(new GreedyMesh());
+                    }
                 }
             }
         }
     }
 
     /**
-     * Updates the visibility of chunks depending on the camera orientation.
+     * Updates the visibility of chunks depending on the camera position.
+     * Meshes for visible chunks are built on the executor closest first and attached
+     * on later updates once finished.
      * @param executorService the executor service to create threads with.
      * @param center the center point to update from.
      * @param attachedNode the node to attach a visible chunk to.
      */
     public void updateVisibility(ExecutorService executorService, Vector3f center, Node attachedNode) {
+        updateVisibility(executorService, center, null, attachedNode);
+    }
+
+    /**
+     * Updates the visibility of chunks depending on the camera orientation.
+     * Only chunks around the cell of the center are checked so the cost does not depend on the map size,
+     * chunks within the view distance but outside of the camera frustum are hidden without losing their mesh.
+     * Meshes for visible chunks are built on the executor closest first and attached
+     * on later updates once finished.
+     * When the terrain is generated lazily the chunks in range are generated on the executor first
+     * and a chunk is only meshed once it and the chunks it borders have their tiles.
+     * @param executorService the executor service to create threads with.
+     * @param center the center point to update from.
+     * @param camera the camera to cull chunks against or null to only cull by distance.
+     * @param attachedNode the node to attach a visible chunk to.
+     */
+    public void updateVisibility(ExecutorService executorService, Vector3f center, Camera camera, Node attachedNode) {
+        applyFinishedMeshes();
+        applyFinishedGenerations();
+
         float diagonal = FastMath.sqrt(2);
         float maxDistance = viewDistance + chunkDimensions.x * scale * diagonal;
-        // Find the closest chunk that has not been optimized.
-        float smallestDistance = Float.MAX_VALUE;
-        // Index of the smallest distance chunk.
-        int sx = -1, sy = -1, sz = -1;
-        // Go through each chunk and check if it is within view distance.
-        for (int x = 0; x < chunks.length; x++) {
-            for (int y = 0; y < chunks[x].length; y++) {
-                for (int z = 0; z < chunks[x][y].length; z++) {
-                    // Show chunks that are within the view distance from the center of the chunk.
-                    float distance = chunks[x][y][z].getCenter().distance(center);
-                    if (distance < maxDistance) {
-                        // Find the smallest distance chunk that isn't merged.
-                        if (!chunks[x][y][z].getIsMerged() && distance < smallestDistance) {
-                            smallestDistance = distance;
-                            sx = x;
-                            sy = y;
-                            sz = z;
-                        }
-                        // Show the chunk when merged otherwise merge the chunk as long as no other chunks are being merged.
-                        if (chunks[x][y][z].getIsMerged()) {
-                            if (chunks[x][y][z].getBatchedGeometry().getParent() == null) {
-                                if (callbacks != null) {
-                                    callbacks.onChunkAttached(chunks[x][y][z]);
-                                }
-                            }
-                            chunks[x][y][z].attach(attachedNode);
-                        }
+        updateRange(center, maxDistance);
+
+        // Only mesh if a tile atlas is being used as meshing is mainly used for rendering.
+        boolean isMeshable = tileAtlas != null && tileBank != null;
+        meshCandidates.clear();
+        hiddenCandidates.clear();
+        generationCandidates.clear();
+        requestedChunks.clear();
+        // Go through each chunk around the center and check if it is within view distance.
+        for (int i = 0; i < activeChunks.size(); i++) {
+            Chunk chunk = activeChunks.get(i);
+            // Show chunks that are within the view distance from the center of the chunk.
+            float distance = chunk.getCenter().distance(center);
+            chunk.setDistance(distance);
+            // Chunks are generated once they are in range so they have their tiles before becoming visible.
+            requestGeneration(chunk, center);
+            if (distance < maxDistance) {
+                boolean isInFrustum = camera == null
+                        || camera.contains(chunk.getBounds()) != Camera.FrustumIntersect.Outside;
+                chunk.setLod(findLod(chunk.getLod(), distance));
+                // Show the chunk when merged and queue it for meshing when it has no mesh at its level.
+                if (chunk.getIsMerged()) {
+                    if (isInFrustum) {
+                        showChunk(chunk, attachedNode);
                     } else {
-                        // Hide
-                        chunks[x][y][z].detach();
-                        if (callbacks != null) {
-                            callbacks.onChunkRemoved(chunks[x][y][z]);
-                        }
+                        hideChunk(chunk, false);
+                    }
+                }
+                // Chunks that failed to mesh wait until they change instead of failing again every update.
+                boolean isMeshNeeded = (!chunk.getIsMerged() || chunk.getIsLodStale()) && !chunk.getIsMeshFailed();
+                if (isMeshNeeded && isMeshable && !chunk.getIsMeshing() && isGeneratedAround(chunk, center)) {
+                    if (isInFrustum) {
+                        meshCandidates.add(chunk);
+                    } else {
+                        hiddenCandidates.add(chunk);
+                    }
+                }
+            } else {
+                hideChunk(chunk, true);
+            }
+        }
+        pendingChunks = meshCandidates.size() + hiddenCandidates.size();
+
+        // Start meshing the closest chunks in view while there is room in the pipeline.
+        submitMeshes(executorService, meshCandidates);
+        submitMeshes(executorService, hiddenCandidates);
+        submitGenerations(executorService);
+    }
+
+    /**
+     * Adds a chunk to the generation candidates if its tiles have not been generated.
+     * @param chunk the chunk to generate.
+     * @param center the center point of the update.
+     */
+    private void requestGeneration(Chunk chunk, Vector3f center) {
+        if (generator == null) {
+            return;
+        }
+        int index = getChunkIndex(chunk);
+        if (!generatedChunks.get(index) && !generatingChunks.get(index) && !requestedChunks.get(index)) {
+            requestedChunks.set(index);
+            if (!chunk.getIsInRange()) {
+                chunk.setDistance(chunk.getCenter().distance(center));
+            }
+            generationCandidates.add(chunk);
+        }
+    }
+
+    /**
+     * Checks if a chunk and the chunks it borders have their tiles, requesting the ones that do not.
+     * @param chunk the chunk to check.
+     * @param center the center point of the update.
+     * @return true if the chunk can be meshed.
+     */
+    private boolean isGeneratedAround(Chunk chunk, Vector3f center) {
+        if (generator == null) {
+            return true;
+        }
+        Vector3Int start = chunk.getStartIndex();
+        int chunkX = start.x / chunkDimensions.x;
+        int chunkY = start.y / chunkDimensions.y;
+        int chunkZ = start.z / chunkDimensions.z;
+        boolean isGenerated = isChunkGenerated(chunkX, chunkY, chunkZ, center);
+        // Border faces depend on the tiles of the six bordering chunks.
+        isGenerated &= isChunkGenerated(chunkX - 1, chunkY, chunkZ, center);
+        isGenerated &= isChunkGenerated(chunkX + 1, chunkY, chunkZ, center);
+        isGenerated &= isChunkGenerated(chunkX, chunkY - 1, chunkZ, center);
+        isGenerated &= isChunkGenerated(chunkX, chunkY + 1, chunkZ, center);
+        isGenerated &= isChunkGenerated(chunkX, chunkY, chunkZ - 1, center);
+        isGenerated &= isChunkGenerated(chunkX, chunkY, chunkZ + 1, center);
+        return isGenerated;
+    }
+
+    /**
+     * Checks if a chunk has its tiles and requests its generation if it does not.
+     * @param chunkX the x index of the chunk.
+     * @param chunkY the y index of the chunk.
+     * @param chunkZ the z index of the chunk.
+     * @param center the center point of the update.
+     * @return true if the chunk has its tiles or is outside of the map.
+     */
+    private boolean isChunkGenerated(int chunkX, int chunkY, int chunkZ, Vector3f center) {
+        if (chunkX < 0 || chunkY < 0 || chunkZ < 0
+                || chunkX >= chunks.length || chunkY >= chunks[0].length || chunkZ >= chunks[0][0].length) {
+            return true;
+        }
+        if (generatedChunks.get(getChunkIndex(chunkX, chunkY, chunkZ))) {
+            return true;
+        }
+        requestGeneration(chunks[chunkX][chunkY][chunkZ], center);
+        return false;
+    }
+
+    /**
+     * Retrieves the tiles kept from generation for a chunk, creating an empty set if there is none.
+     * @param index the index of the chunk.
+     * @return the tiles of the chunk to keep.
+     */
+    private BitSet getKeptTiles(int index) {
+        BitSet chunkKeptTiles = keptTiles.get(index);
+        if (chunkKeptTiles == null) {
+            chunkKeptTiles = new BitSet();
+            keptTiles.put(index, chunkKeptTiles);
+        }
+        return chunkKeptTiles;
+    }
+
+    /**
+     * Keeps an edited tile from being replaced once its chunk finishes generating.
+     * Must be called from the render thread while holding the lock of the tiles, before the tile is written.
+     * @param x the x index of the tile.
+     * @param y the y index of the tile.
+     * @param z the z index of the tile.
+     */
+    public void keepTile(int x, int y, int z) {
+        if (generator == null) {
+            return;
+        }
+        Chunk chunk = getChunkAtTileIndex(x, y, z);
+        if (chunk == null) {
+            return;
+        }
+        int index = getChunkIndex(chunk);
+        if (generatedChunks.get(index)) {
+            return;
+        }
+        Vector3Int start = chunk.getStartIndex();
+        Vector3Int end = chunk.getEndIndex();
+        int lengthY = end.y - start.y + 1;
+        int lengthZ = end.z - start.z + 1;
+        getKeptTiles(index).set(((x - start.x) * lengthY + y - start.y) * lengthZ + z - start.z);
+    }
+
+    /**
+     * Sorts the generation candidates and starts generating the closest while there is room in the pipeline.
+     * @param executorService the executor to generate the chunks with.
+     */
+    private void submitGenerations(ExecutorService executorService) {
+        if (generationCandidates.isEmpty()) {
+            return;
+        }
+        Collections.sort(generationCandidates, DISTANCE_COMPARATOR);
+        for (Chunk chunk : generationCandidates) {
+            if (generationsInFlight >= maxGenerationsInFlight) {
+                break;
+            }
+            submitGeneration(executorService, chunk);
+        }
+    }
+
+    /**
+     * Generates the tiles of a chunk on the executor and queues the result.
+     * @param executorService the executor to generate the chunk with.
+     * @param chunk the chunk to generate.
+     */
+    private void submitGeneration(ExecutorService executorService, final Chunk chunk) {
+        final int index = getChunkIndex(chunk);
+        final int epoch = generationEpoch;
+        final Generator chunkGenerator = generator;
+        final VoxelGrid generatedTiles = tiles;
+        final BitSet chunkKeptTiles = getKeptTiles(index);
+        generatingChunks.set(index);
+        generationsInFlight++;
+        executorService.submit(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    GeneratorTask.generateRegion(chunkGenerator, generatedTiles, chunk.getStartIndex(),
+                            chunk.getEndIndex(), chunkKeptTiles);
+                } catch (RuntimeException e) {
+                    Logger.getLogger(ChunkUpdater.class.getName()).log(Level.SEVERE, "Unable to generate the chunk tiles.", e);
+                } finally {
+                    finishedGenerations.add(new FinishedGeneration(chunk, index, epoch));
+                }
+            }
+        });
+    }
+
+    /**
+     * Marks the chunks generated by the workers as generated and tells the callbacks their tiles changed.
+     */
+    private void applyFinishedGenerations() {
+        FinishedGeneration finishedGeneration = finishedGenerations.poll();
+        while (finishedGeneration != null) {
+            generationsInFlight--;
+            if (finishedGeneration.epoch == generationEpoch) {
+                generatingChunks.clear(finishedGeneration.index);
+                generatedChunks.set(finishedGeneration.index);
+                keptTiles.remove(finishedGeneration.index);
+                if (callbacks != null) {
+                    callbacks.onChunkChanged(finishedGeneration.chunk);
+                }
+            }
+            finishedGeneration = finishedGenerations.poll();
+        }
+    }
+
+    /**
+     * Finds the level of detail of a chunk at a distance.
+     * Chunks only move to another level once they are past the band by the hysteresis
+     * so chunks close to a band do not keep switching levels while the center moves around it.
+     * @param lod the current level of detail of the chunk.
+     * @param distance the distance of the chunk from the center.
+     * @return the level of detail to use.
+     */
+    private int findLod(int lod, float distance) {
+        int level = Math.min(lod, maxLod);
+        while (level < maxLod && distance >= lodDistances[level] + lodHysteresis) {
+            level++;
+        }
+        while (level > 0 && distance < lodDistances[level - 1] - lodHysteresis) {
+            level--;
+        }
+        return level;
+    }
+
+    /**
+     * Updates the chunks checked every update when the center moves to another chunk cell.
+     * Chunks are kept in range while they can be within the view distance from anywhere in the cell
+     * so only the chunks that enter or leave the range are touched.
+     * @param center the center point to update from.
+     * @param maxDistance the maximum distance of a visible chunk.
+     */
+    private void updateRange(Vector3f center, float maxDistance) {
+        float cellX = chunkDimensions.x * scale;
+        float cellY = chunkDimensions.y * scale;
+        float cellZ = chunkDimensions.z * scale;
+        int x = (int) FastMath.floor(center.x / cellX);
+        int y = (int) FastMath.floor(center.y / cellY);
+        int z = (int) FastMath.floor(center.z / cellZ);
+        if (!isRangeDirty && x == centerCell.x && y == centerCell.y && z == centerCell.z
+                && maxDistance == rangeDistance) {
+            return;
+        }
+        isRangeDirty = false;
+        centerCell.x = x;
+        centerCell.y = y;
+        centerCell.z = z;
+        rangeDistance = maxDistance;
+
+        // Any chunk within the view distance of a point in the cell is within this distance of the cell center.
+        cellCenter.set((x + 0.5f) * cellX, (y + 0.5f) * cellY, (z + 0.5f) * cellZ);
+        float reach = maxDistance + FastMath.sqrt(cellX * cellX + cellY * cellY + cellZ * cellZ) / 2;
+
+        // Release chunks that left the range.
+        for (int i = activeChunks.size() - 1; i >= 0; i--) {
+            Chunk chunk = activeChunks.get(i);
+            if (chunk.getCenter().distance(cellCenter) >= reach) {
+                hideChunk(chunk, true);
+                chunk.setIsInRange(false);
+                chunk.setDistance(Float.MAX_VALUE);
+                int last = activeChunks.size() - 1;
+                activeChunks.set(i, activeChunks.get(last));
+                activeChunks.remove(last);
+            }
+        }
+
+        // Add chunks that entered the range.
+        int minX = Math.max(0, (int) FastMath.floor((cellCenter.x - reach) / cellX));
+        int minY = Math.max(0, (int) FastMath.floor((cellCenter.y - reach) / cellY));
+        int minZ = Math.max(0, (int) FastMath.floor((cellCenter.z - reach) / cellZ));
+        int maxX = Math.min(chunks.length - 1, (int) FastMath.floor((cellCenter.x + reach) / cellX));
+        for (int cx = minX; cx <= maxX; cx++) {
+            int maxY = Math.min(chunks[cx].length - 1, (int) FastMath.floor((cellCenter.y + reach) / cellY));
+            for (int cy = minY; cy <= maxY; cy++) {
+                int maxZ = Math.min(chunks[cx][cy].length - 1, (int) FastMath.floor((cellCenter.z + reach) / cellZ));
+                for (int cz = minZ; cz <= maxZ; cz++) {
+                    Chunk chunk = chunks[cx][cy][cz];
+                    if (!chunk.getIsInRange() && chunk.getCenter().distance(cellCenter) < reach) {
+                        chunk.setIsInRange(true);
+                        activeChunks.add(chunk);
                     }
                 }
             }
         }
-        // Merge the closest chunk when no merging threads are running.
-        // Only merge if a tile atlas is being used as merging is mainly used for rendering.
-        if (tileAtlas != null && tileBank != null && (updatedChunkFuture == null || updatedChunkFuture.isDone()) && sx != -1) {
-            final int tx = sx;
-            final int ty = sy;
-            final int tz = sz;
-            updatedChunkFuture = executorService.submit(new Runnable() {
-                @Override
-                public void run() {
-                    chunks[tx][ty][tz].createAttachable(tiles, scale, tileAtlas, tileBank);
+    }
+
+    /**
+     * Attaches a merged chunk and sends a callback if it was not attached.
+     * @param chunk the chunk to show.
+     * @param attachedNode the node to attach to.
+     */
+    private void showChunk(Chunk chunk, Node attachedNode) {
+        if (!chunk.getIsAttached()) {
+            chunk.attach(attachedNode);
+            if (callbacks != null) {
+                callbacks.onChunkAttached(chunk);
+            }
+        }
+    }
+
+    /**
+     * Removes a chunk from the scene and sends a callback if it was attached.
+     * @param chunk the chunk to hide.
+     * @param isReleased true to also free the geometry of the chunk.
+     */
+    private void hideChunk(Chunk chunk, boolean isReleased) {
+        boolean wasAttached = chunk.getIsAttached();
+        if (isReleased) {
+            chunk.detach();
+        } else {
+            chunk.hide();
+        }
+        if (wasAttached && callbacks != null) {
+            callbacks.onChunkRemoved(chunk);
+        }
+    }
+
+    /**
+     * Sorts the candidates and starts meshing the closest while there is room in the pipeline.
+     * @param executorService the executor to build the meshes with.
+     * @param candidates the chunks waiting to be meshed.
+     */
+    private void submitMeshes(ExecutorService executorService, List<Chunk> candidates) {
+        if (candidates.isEmpty()) {
+            return;
+        }
+        Collections.sort(candidates, DISTANCE_COMPARATOR);
+        for (Chunk chunk : candidates) {
+            if (meshesInFlight.get() + queuedMeshes.get() >= maxMeshesInFlight) {
+                break;
+            }
+            submitMesh(executorService, chunk);
+        }
+    }
+
+    /**
+     * Builds the mesh of a chunk on the executor and queues the result.
+     * @param executorService the executor to build the mesh with.
+     * @param chunk the chunk to build the mesh for.
+     */
+    private void submitMesh(ExecutorService executorService, final Chunk chunk) {
+        final int revision = chunk.startMeshing();
+        final VoxelGrid meshedTiles = tiles;
+        final float meshedScale = scale;
+        final TileAtlas meshedAtlas = tileAtlas;
+        final TileBank meshedBank = tileBank;
+        meshesInFlight.incrementAndGet();
+        executorService.submit(new Runnable() {
+            @Override
+            public void run() {
+                Spatial spatial = null;
+                try {
+                    spatial = chunk.buildMesh(meshedTiles, meshedScale, meshedAtlas, meshedBank);
+                } catch (RuntimeException e) {
+                    Logger.getLogger(ChunkUpdater.class.getName()).log(Level.SEVERE, "Unable to create the chunk mesh.", e);
+                } finally {
+                    queuedMeshes.incrementAndGet();
+                    finishedMeshes.add(new FinishedMesh(chunk, revision, spatial));
+                    meshesInFlight.decrementAndGet();
                 }
-            });
-            try {
-                updatedChunkFuture.get();
-            } catch (InterruptedException e) {
-                Logger.getLogger(ChunkUpdater.class.getName()).log(Level.SEVERE, "Unable to create the chunk mesh.", e);
-            } catch (ExecutionException e) {
-                Logger.getLogger(ChunkUpdater.class.getName()).log(Level.SEVERE, "Unable to create the chunk mesh.", e);
             }
+        });
+    }
+
+    /**
+     * Applies meshes finished by the workers to their chunks until the frame budget runs out.
+     * At least one mesh is applied per call so the queue always drains.
+     */
+    private void applyFinishedMeshes() {
+        long startTime = System.nanoTime();
+        FinishedMesh finishedMesh = finishedMeshes.poll();
+        while (finishedMesh != null) {
+            queuedMeshes.decrementAndGet();
+            finishedMesh.chunk.finishMeshing(finishedMesh.spatial, finishedMesh.revision);
+            if (System.nanoTime() - startTime >= meshTimeBudget) {
+                break;
+            }
+            finishedMesh = finishedMeshes.poll();
         }
     }
 
@@ -193,45 +796,47 @@ public class ChunkUpdater {
      * @param x the x index of the tile.
      * @param y the y index of the tile.
      * @param z the z index of the tile.
-     * @param attachedNode the node to attach to.
-     * @param isQueued true to queue the updated chunks or false to instantly update.
+     * @param isQueued true to queue the updated chunks or false to instantly patch the ones that can be.
      */
-    public void updateTouchedChunks(int x, int y, int z, Node attachedNode, boolean isQueued) {
+    public void updateTouchedChunks(int x, int y, int z, boolean isQueued) {
         // Add the modified chunk to a changed chunk list.
         Chunk modifiedChunk = getChunkAtTileIndex(x, y, z);
         List<Chunk> updatedChunks = new LinkedList<Chunk>();
         updatedChunks.add(modifiedChunk);
-        // Find other chunks that border the modified tile
-        Chunk borderingChunk = getChunkAtTileIndex(x + 1, y, z);
+        // Find other chunks that border the modified tile or share a downsampled cell on the border with it.
+        int reach = 1 << maxLod;
+        Chunk borderingChunk = getChunkAtTileIndex(x + reach, y, z);
         if (borderingChunk != null && !modifiedChunk.equals(borderingChunk)) {
             updatedChunks.add(borderingChunk);
         }
-        borderingChunk = getChunkAtTileIndex(x - 1, y, z);
+        borderingChunk = getChunkAtTileIndex(x - reach, y, z);
         if (borderingChunk != null && !modifiedChunk.equals(borderingChunk)) {
             updatedChunks.add(borderingChunk);
         }
-        borderingChunk = getChunkAtTileIndex(x, y + 1, z);
+        borderingChunk = getChunkAtTileIndex(x, y + reach, z);
         if (borderingChunk != null && !modifiedChunk.equals(borderingChunk)) {
             updatedChunks.add(borderingChunk);
         }
-        borderingChunk = getChunkAtTileIndex(x, y - 1, z);
+        borderingChunk = getChunkAtTileIndex(x, y - reach, z);
         if (borderingChunk != null && !modifiedChunk.equals(borderingChunk)) {
             updatedChunks.add(borderingChunk);
         }
-        borderingChunk = getChunkAtTileIndex(x, y, z + 1);
+        borderingChunk = getChunkAtTileIndex(x, y, z + reach);
         if (borderingChunk != null && !modifiedChunk.equals(borderingChunk)) {
             updatedChunks.add(borderingChunk);
         }
-        borderingChunk = getChunkAtTileIndex(x, y, z - 1);
+        borderingChunk = getChunkAtTileIndex(x, y, z - reach);
         if (borderingChunk != null && !modifiedChunk.equals(borderingChunk)) {
             updatedChunks.add(borderingChunk);
         }
 
         for (Chunk chunk : updatedChunks) {
-            if (isQueued) {
-                chunk.setDirty();
-            } else {
-                chunk.updateTiles(tiles, scale, tileAtlas, tileBank, attachedNode);
+            // Chunks being meshed on a worker are always queued to avoid sharing mesh data,
+            // chunks that cannot be patched are merged again by the visibility update so it attaches them.
+            boolean isPatched = !isQueued && !chunk.getIsMeshing()
+                    && chunk.updateTile(tiles, scale, tileAtlas, tileBank, x, y, z);
+            if (!isPatched) {
+                dirtyChunk(chunk);
             }
             if (callbacks != null) {
                 callbacks.onChunkChanged(chunk);
@@ -239,6 +844,61 @@ public class ChunkUpdater {
         }
     }
 
+    /**
+     * Marks the chunks whose meshes depend on the tiles within a box.
+     * The box is grown by the tiles a border face can depend on so neighbouring chunks are included.
+     * @param dirtyChunks the chunk indices to mark, indexed by (x * chunks along y + y) * chunks along z + z.
+     * @param minX the smallest x index of the box.
+     * @param minY the smallest y index of the box.
+     * @param minZ the smallest z index of the box.
+     * @param maxX the largest x index of the box.
+     * @param maxY the largest y index of the box.
+     * @param maxZ the largest z index of the box.
+     */
+    public void markTouchedChunks(BitSet dirtyChunks, int minX, int minY, int minZ, int maxX, int maxY, int maxZ) {
+        if (chunks.length == 0 || chunks[0].length == 0 || chunks[0][0].length == 0) {
+            return;
+        }
+        int reach = 1 << maxLod;
+        int startX = Math.max(0, minX - reach) / chunkDimensions.x;
+        int startY = Math.max(0, minY - reach) / chunkDimensions.y;
+        int startZ = Math.max(0, minZ - reach) / chunkDimensions.z;
+        int endX = Math.min(chunks.length - 1, (maxX + reach) / chunkDimensions.x);
+        int endY = Math.min(chunks[0].length - 1, (maxY + reach) / chunkDimensions.y);
+        int endZ = Math.min(chunks[0][0].length - 1, (maxZ + reach) / chunkDimensions.z);
+        for (int x = startX; x <= endX; x++) {
+            for (int y = startY; y <= endY; y++) {
+                for (int z = startZ; z <= endZ; z++) {
+                    dirtyChunks.set(getChunkIndex(x, y, z));
+                }
+            }
+        }
+    }
+
+    /**
+     * Sets marked chunks as dirty so they are meshed again in the background,
+     * the callbacks are told of each changed chunk once.
+     * @param dirtyChunks the marked chunk indices, indexed by (x * chunks along y + y) * chunks along z + z.
+     */
+    public void updateChunks(BitSet dirtyChunks) {
+        if (chunks.length == 0 || chunks[0].length == 0) {
+            return;
+        }
+        int lengthY = chunks[0].length;
+        int lengthZ = chunks[0][0].length;
+        for (int i = dirtyChunks.nextSetBit(0); i >= 0; i = dirtyChunks.nextSetBit(i + 1)) {
+            int x = i / (lengthY * lengthZ);
+            if (x >= chunks.length) {
+                break;
+            }
+            Chunk chunk = chunks[x][i / lengthZ % lengthY][i % lengthZ];
+            dirtyChunk(chunk);
+            if (callbacks != null) {
+                callbacks.onChunkChanged(chunk);
+            }
+        }
+    }
+
     /**
      * Retrieves the chunk at a specified tile index.
      * @param x the x index of the tiles.
@@ -263,6 +923,27 @@ public class ChunkUpdater {
         return chunks[chunkX][chunkY][chunkZ];
     }
 
+    /**
+     * Retrieves the index of a chunk in the chunk bit sets.
+     * @param chunkX the x index of the chunk.
+     * @param chunkY the y index of the chunk.
+     * @param chunkZ the z index of the chunk.
+     * @return the index of the chunk.
+     */
+    private int getChunkIndex(int chunkX, int chunkY, int chunkZ) {
+        return (chunkX * chunks[0].length + chunkY) * chunks[0][0].length + chunkZ;
+    }
+
+    /**
+     * Retrieves the index of a chunk in the chunk bit sets.
+     * @param chunk the chunk to find the index of.
+     * @return the index of the chunk.
+     */
+    private int getChunkIndex(Chunk chunk) {
+        Vector3Int start = chunk.getStartIndex();
+        return getChunkIndex(start.x / chunkDimensions.x, start.y / chunkDimensions.y, start.z / chunkDimensions.z);
+    }
+
     /**
      * Marks all chunks as dirty.
      */
@@ -270,18 +951,30 @@ public class ChunkUpdater {
         for (int x = 0; x < chunks.length; x++) {
             for (int y = 0; y < chunks[x].length; y++) {
                 for (int z = 0; z < chunks[x][y].length; z++) {
-                    chunks[x][y][z].setDirty();
+                    dirtyChunk(chunks[x][y][z]);
                 }
             }
         }
     }
 
+    /**
+     * Sets a chunk as dirty and sends a callback if that removed it from the scene.
+     * @param chunk the chunk to set as dirty.
+     */
+    private void dirtyChunk(Chunk chunk) {
+        boolean wasAttached = chunk.getIsAttached();
+        chunk.setDirty();
+        if (wasAttached && callbacks != null) {
+            callbacks.onChunkRemoved(chunk);
+        }
+    }
+
     /**
      * Set the tiles to use as a reference.
      * This is normally used when the tile map reference is changed.
      * @param tiles the tiles to use for chunk generation.
      */
-    public void setTilesReference(byte[][][] tiles) {
+    public void setTilesReference(VoxelGrid tiles) {
         this.tiles = tiles;
         makeChunksDirty();
     }
@@ -302,20 +995,45 @@ public class ChunkUpdater {
         makeChunksDirty();
     }
 
+    /**
+     * Sets the generator that fills in chunks as they come into range.
+     * The generator must already be prepared for the map and every chunk is treated as not generated.
+     * @param generator the generator to use or null if the tiles of every chunk are already set.
+     */
+    public void setGenerator(Generator generator) {
+        this.generator = generator;
+        resetGeneration();
+    }
+
+    /**
+     * Treats every chunk as not generated and ignores the generations that are still running.
+     */
+    private void resetGeneration() {
+        generatedChunks.clear();
+        generatingChunks.clear();
+        keptTiles.clear();
+        generationEpoch++;
+    }
+
     /**
      * @param mapDimensions the dimension of the map to set as.
      */
     public void setMapDimensions(Vector3Int mapDimensions) {
         this.mapDimensions.set(mapDimensions);
         recreateChunks();
+        resetGeneration();
     }
 
     /**
+     * Sets the dimensions of the chunks.
+     * Chunks of a lazily generated terrain are generated again which replaces any edits made to them.
      * @param chunkDimensions the dimensions of the chunk to set as.
      */
     public void setChunkDimensions(Vector3Int chunkDimensions) {
         this.chunkDimensions.set(chunkDimensions);
         recreateChunks();
+        resetGeneration();
+        updateMaxLod();
     }
 
     /**
@@ -332,6 +1050,119 @@ public class ChunkUpdater {
         this.viewDistance = viewDistance;
     }
 
+    /**
+     * @param isGreedyMeshing true to merge flat faces into larger quads, false to mesh each face separately.
+     */
+    public void setGreedyMeshing(boolean isGreedyMeshing) {
+        if (this.isGreedyMeshing != isGreedyMeshing) {
+            this.isGreedyMeshing = isGreedyMeshing;
+            for (int x = 0; x < chunks.length; x++) {
+                for (int y = 0; y < chunks[x].length; y++) {
+                    for (int z = 0; z < chunks[x][y].length; z++) {
+                        if (isGreedyMeshing) {
+                            chunks[x][y][z].setMesher(new GreedyMesh());
+                        } else {
+                            chunks[x][y][z].setMesher(new BufferMesh());
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Sets the distances where chunks switch to a coarser level of detail.
+     * Each distance adds a level meshed from tiles downsampled by another factor of two up to 4x,
+     * levels the chunk dimensions cannot be divided into are not used.
+     * @param lodDistances the distances from the center ordered closest first, empty to always use full detail.
+     */
+    public void setLodDistances(float... lodDistances) {
+        this.lodDistances = lodDistances.clone();
+        updateMaxLod();
+    }
+
+    /**
+     * @param lodHysteresis the distance a chunk must pass a level of detail band by before switching level.
+     */
+    public void setLodHysteresis(float lodHysteresis) {
+        this.lodHysteresis = lodHysteresis;
+    }
+
+    /**
+     * Finds the coarsest level of detail that can be used and remeshes the chunks if it changed.
+     */
+    private void updateMaxLod() {
+        int level = 0;
+        while (level < Math.min(lodDistances.length, MAX_LOD)) {
+            int factor = 1 << (level + 1);
+            if (chunkDimensions.x % factor != 0 || chunkDimensions.y % factor != 0 || chunkDimensions.z % factor != 0) {
+                break;
+            }
+            level++;
+        }
+        if (level != maxLod) {
+            maxLod = level;
+            for (int x = 0; x < chunks.length; x++) {
+                for (int y = 0; y < chunks[x].length; y++) {
+                    for (int z = 0; z < chunks[x][y].length; z++) {
+                        chunks[x][y][z].setMaxLod(maxLod);
+                    }
+                }
+            }
+            // Border faces depend on the coarsest level so every chunk needs a new mesh.
+            makeChunksDirty();
+        }
+    }
+
+    /**
+     * @param maxMeshesInFlight the maximum number of meshes being built or waiting to be attached at once.
+     */
+    public void setMaxMeshesInFlight(int maxMeshesInFlight) {
+        this.maxMeshesInFlight = maxMeshesInFlight;
+    }
+
+    /**
+     * @param meshTimeBudget the time in nanoseconds allowed per frame for applying finished meshes.
+     */
+    public void setMeshTimeBudget(long meshTimeBudget) {
+        this.meshTimeBudget = meshTimeBudget;
+    }
+
+    /**
+     * @param maxGenerationsInFlight the maximum number of chunks being generated at once.
+     */
+    public void setMaxGenerationsInFlight(int maxGenerationsInFlight) {
+        this.maxGenerationsInFlight = maxGenerationsInFlight;
+    }
+
+    /**
+     * @return the number of chunks being generated on worker threads.
+     */
+    public int getGenerationsInFlight() {
+        return generationsInFlight;
+    }
+
+    /**
+     * @return the number of meshes currently being built on worker threads.
+     */
+    public int getMeshesInFlight() {
+        return meshesInFlight.get();
+    }
+
+    /**
+     * @return the number of finished meshes waiting to be applied.
+     */
+    public int getQueuedMeshes() {
+        return queuedMeshes.get();
+    }
+
+    /**
+     * @return the number of visible chunks that were waiting to be meshed during the last update.
+     */
+    public int getPendingChunks() {
+        return pendingChunks;
+    }
+
     /**
      * @param scale the scale of each tile to set as.
      */
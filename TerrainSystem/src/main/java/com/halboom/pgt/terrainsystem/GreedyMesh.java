@@ -0,0 +1,326 @@
+package com.halboom.pgt.terrainsystem;
+
+import com.halboom.pgt.pgutil.math.Vector3Int;
+import com.halboom.pgt.pgutil.voxel.VoxelGrid;
+import com.jme3.material.Material;
+import com.jme3.math.Transform;
+import com.jme3.scene.Geometry;
+import com.jme3.scene.Mesh;
+import com.jme3.scene.Node;
+import com.jme3.scene.Spatial;
+import com.jme3.scene.VertexBuffer;
+import com.jme3.scene.mesh.IndexBuffer;
+
+import java.nio.FloatBuffer;
+import java.util.Arrays;
+
+/**
+ * Merges coplanar faces of the same texture and direction into larger quads.
+ * Merged quads repeat a texture cut out of the atlas so each atlas texture gets its own geometry.
+ * Tiles with a randomized midpoint still use quints as merging would flatten them.
+ */
+public class GreedyMesh extends BufferMesh {
+    /**
+     * Vertices and triangles per merged quad.
+     */
+    private static final int VERTICES_PER_QUAD = 4, TRIANGLES_PER_QUAD = 2;
+
+    /**
+     * Values stored per merged rectangle.
+     */
+    private static final int RECT_TEXTURE = 0, RECT_SIDE = 1, RECT_SLICE = 2,
+            RECT_U = 3, RECT_V = 4, RECT_WIDTH = 5, RECT_HEIGHT = 6, RECT_SIZE = 7;
+
+    /**
+     * Initial number of rectangles that can be stored before growing.
+     */
+    private static final int INITIAL_RECTS = 64;
+
+    /**
+     * Texture index plus one of every face in the slice being merged, zero for no face.
+     */
+    private int[] slice = new int[0];
+
+    /**
+     * Merged rectangles stored as consecutive groups of values.
+     */
+    private int[] rects = new int[INITIAL_RECTS * RECT_SIZE];
+
+    /**
+     * Number of merged rectangles.
+     */
+    private int rectCount = 0;
+
+    /**
+     * Initializes the mesh.
+     */
+    public GreedyMesh() {
+    }
+
+    @Override
+    public Spatial merge(VoxelGrid tiles, float scale, TileAtlas atlas, TileBank tileBank, Vector3Int startIndex, Vector3Int endIndex) {
+        Spatial quints = super.merge(tiles, scale, atlas, tileBank, startIndex, endIndex);
+        Node node = new Node("Chunk Mesh");
+        node.attachChild(quints);
+
+        int[] lengths = {
+                endIndex.x - startIndex.x + 1,
+                endIndex.y - startIndex.y + 1,
+                endIndex.z - startIndex.z + 1
+        };
+        try {
+            rectCount = 0;
+            for (int side = 0; getFaceMasks() != null && side < TileFaces.DIRECTIONS; side++) {
+                findRects(tiles, atlas, tileBank, startIndex, lengths, side);
+            }
+
+            // Create a geometry for each texture that has merged faces.
+            boolean[] isBuilt = new boolean[rectCount];
+            for (int i = 0; i < rectCount; i++) {
+                if (!isBuilt[i]) {
+                    int texture = rects[i * RECT_SIZE + RECT_TEXTURE];
+                    node.attachChild(createTextureGeometry(atlas.getRegionMaterial(texture), texture, isBuilt,
+                            startIndex, lengths, scale));
+                }
+            }
+        } catch (RuntimeException e) {
+            // Free the buffers of the geometries built so far.
+            destroyBuffers(node);
+            setDirty();
+            throw e;
+        }
+
+        node.setLocalTransform(Transform.IDENTITY);
+        return node;
+    }
+
+    @Override
+    public boolean update(VoxelGrid tiles, float scale, TileAtlas atlas, TileBank tileBank,
+                          Vector3Int startIndex, Vector3Int endIndex, int x, int y, int z, Spatial spatial) {
+        // A single tile can split or join merged quads anywhere in its slices.
+        return false;
+    }
+
+    @Override
+    protected boolean isTileMerged(TileBank.Tile tile, TileAtlas atlas) {
+        return isFlat(tile) && atlas.isRegionMaterialSupported();
+    }
+
+    /**
+     * Checks if a tile always creates flat faces.
+     * @param tile the tile to check.
+     * @return true if the midpoint of the tile never moves off the face.
+     */
+    private static boolean isFlat(TileBank.Tile tile) {
+        return tile.mx1 == tile.mx2 && tile.my1 == tile.my2 && tile.mz1 == 0 && tile.mz2 == 0;
+    }
+
+    /**
+     * Finds the merged rectangles of every slice of the chunk facing a direction.
+     * @param tiles the tiles of the map.
+     * @param atlas the atlas used for meshing.
+     * @param tileBank the data of the tiles.
+     * @param startIndex the starting index of the chunk.
+     * @param lengths the number of tiles of the chunk along each axis.
+     * @param side the tile side index of the faces.
+     */
+    private void findRects(VoxelGrid tiles, TileAtlas atlas, TileBank tileBank, Vector3Int startIndex, int[] lengths, int side) {
+        int[] axes = FACE_AXES[side];
+        int uAxis = worldAxis(axes, 0);
+        int vAxis = worldAxis(axes, 1);
+        int nAxis = worldAxis(axes, 2);
+        int lengthU = lengths[uAxis];
+        int lengthV = lengths[vAxis];
+        if (slice.length < lengthU * lengthV) {
+            slice = new int[lengthU * lengthV];
+        }
+        byte[] faceMasks = getFaceMasks();
+        byte sideFlag = TileFaces.SIDES[side];
+        int[] local = new int[3];
+
+        for (int n = 0; n < lengths[nAxis]; n++) {
+            // Fill the slice with the textures of the mergeable faces.
+            local[nAxis] = n;
+            for (int v = 0; v < lengthV; v++) {
+                local[vAxis] = v;
+                for (int u = 0; u < lengthU; u++) {
+                    local[uAxis] = u;
+                    int value = 0;
+                    byte mask = faceMasks[(local[0] * lengths[1] + local[1]) * lengths[2] + local[2]];
+                    if ((mask & sideFlag) != 0) {
+                        TileBank.Tile tile = tileBank.getTile(
+                                tiles.get(startIndex.x + local[0], startIndex.y + local[1], startIndex.z + local[2]));
+                        if (isTileMerged(tile, atlas)) {
+                            value = tile.type[side] + 1;
+                        }
+                    }
+                    slice[u + v * lengthU] = value;
+                }
+            }
+
+            // Grow rectangles along U first then along V.
+            for (int v = 0; v < lengthV; v++) {
+                for (int u = 0; u < lengthU; u++) {
+                    int value = slice[u + v * lengthU];
+                    if (value == 0) {
+                        continue;
+                    }
+                    int width = 1;
+                    while (u + width < lengthU && slice[u + width + v * lengthU] == value) {
+                        width++;
+                    }
+                    int height = 1;
+                    boolean isGrowing = true;
+                    while (isGrowing && v + height < lengthV) {
+                        for (int k = 0; k < width; k++) {
+                            if (slice[u + k + (v + height) * lengthU] != value) {
+                                isGrowing = false;
+                                break;
+                            }
+                        }
+                        if (isGrowing) {
+                            height++;
+                        }
+                    }
+                    for (int dv = 0; dv < height; dv++) {
+                        for (int du = 0; du < width; du++) {
+                            slice[u + du + (v + dv) * lengthU] = 0;
+                        }
+                    }
+                    addRect(value - 1, side, n, u, v, width, height);
+                }
+            }
+        }
+    }
+
+    /**
+     * Stores a merged rectangle.
+     * @param texture the atlas texture index of the rectangle.
+     * @param side the tile side index of the rectangle.
+     * @param slice the local index of the slice along the face normal.
+     * @param u the starting local index along the face X axis.
+     * @param v the starting local index along the face Y axis.
+     * @param width the number of tiles along the face X axis.
+     * @param height the number of tiles along the face Y axis.
+     */
+    private void addRect(int texture, int side, int slice, int u, int v, int width, int height) {
+        int offset = rectCount * RECT_SIZE;
+        if (offset + RECT_SIZE > rects.length) {
+            rects = Arrays.copyOf(rects, rects.length * 2);
+        }
+        rects[offset + RECT_TEXTURE] = texture;
+        rects[offset + RECT_SIDE] = side;
+        rects[offset + RECT_SLICE] = slice;
+        rects[offset + RECT_U] = u;
+        rects[offset + RECT_V] = v;
+        rects[offset + RECT_WIDTH] = width;
+        rects[offset + RECT_HEIGHT] = height;
+        rectCount++;
+    }
+
+    /**
+     * Creates the geometry of all the merged rectangles using a texture.
+     * @param material the material repeating the texture.
+     * @param texture the atlas texture index.
+     * @param isBuilt flags of rectangles already added to a geometry, updated with the added rectangles.
+     * @param startIndex the starting index of the chunk.
+     * @param lengths the number of tiles of the chunk along each axis.
+     * @param scale the scale of a tile.
+     * @return the geometry of the rectangles.
+     */
+    private Geometry createTextureGeometry(Material material, int texture, boolean[] isBuilt,
+                                           Vector3Int startIndex, int[] lengths, float scale) {
+        int quads = 0;
+        for (int i = 0; i < rectCount; i++) {
+            if (rects[i * RECT_SIZE + RECT_TEXTURE] == texture) {
+                quads++;
+            }
+        }
+        Mesh mesh = createMesh(quads * VERTICES_PER_QUAD, quads * TRIANGLES_PER_QUAD);
+        FloatBuffer positions = (FloatBuffer) mesh.getBuffer(VertexBuffer.Type.Position).getData();
+        FloatBuffer normals = (FloatBuffer) mesh.getBuffer(VertexBuffer.Type.Normal).getData();
+        FloatBuffer textures = (FloatBuffer) mesh.getBuffer(VertexBuffer.Type.TexCoord).getData();
+        IndexBuffer indices = mesh.getIndexBuffer();
+        float[] start = {startIndex.x, startIndex.y, startIndex.z};
+        int[] origin = new int[3];
+        float[] corner = new float[3];
+
+        int vertex = 0;
+        int index = 0;
+        for (int i = 0; i < rectCount; i++) {
+            int offset = i * RECT_SIZE;
+            if (rects[offset + RECT_TEXTURE] != texture) {
+                continue;
+            }
+            isBuilt[i] = true;
+            int side = rects[offset + RECT_SIDE];
+            int width = rects[offset + RECT_WIDTH];
+            int height = rects[offset + RECT_HEIGHT];
+            int[] axes = FACE_AXES[side];
+            float[] signs = FACE_SIGNS[side];
+            float[] offsets = FACE_OFFSETS[side];
+            int uAxis = worldAxis(axes, 0);
+            int vAxis = worldAxis(axes, 1);
+            int nAxis = worldAxis(axes, 2);
+
+            // The face origin belongs to the tile at the start of the local face axes.
+            origin[nAxis] = rects[offset + RECT_SLICE];
+            origin[uAxis] = rects[offset + RECT_U];
+            if (signs[uAxis] < 0) {
+                origin[uAxis] += width - 1;
+            }
+            origin[vAxis] = rects[offset + RECT_V];
+            if (signs[vAxis] < 0) {
+                origin[vAxis] += height - 1;
+            }
+
+            for (int c = 0; c < VERTICES_PER_QUAD; c++) {
+                // Corners counter clockwise from the origin like a quint.
+                float cu = (c == 1 || c == 2) ? width : 0;
+                float cv = (c == 2 || c == 3) ? height : 0;
+                corner[0] = cu * scale;
+                corner[1] = cv * scale;
+                corner[2] = 0;
+                int positionOffset = (vertex + c) * COMPONENTS;
+                for (int axis = 0; axis < COMPONENTS; axis++) {
+                    float position = (start[axis] + origin[axis] + offsets[axis]) * scale;
+                    positions.put(positionOffset + axis, position + signs[axis] * corner[axes[axis]]);
+                    normals.put(positionOffset + axis, axes[axis] == 2 ? signs[axis] : 0);
+                }
+                int textureOffset = (vertex + c) * COMPONENTS_PER_TEXTURE;
+                textures.put(textureOffset, cu);
+                textures.put(textureOffset + 1, cv);
+            }
+            indices.put(index, vertex);
+            indices.put(index + 1, vertex + 1);
+            indices.put(index + 2, vertex + 2);
+            indices.put(index + 3, vertex);
+            indices.put(index + 4, vertex + 2);
+            indices.put(index + 5, vertex + 3);
+            index += TRIANGLES_PER_QUAD * COMPONENTS;
+            vertex += VERTICES_PER_QUAD;
+        }
+
+        mesh.updateCounts();
+        mesh.updateBound();
+
+        Geometry geometry = new Geometry("Chunk Mesh", mesh);
+        geometry.setMaterial(material);
+        return geometry;
+    }
+
+    /**
+     * Finds the world axis a local face axis is written to.
+     * @param axes the local axis written to each world axis.
+     * @param localAxis the local axis to find.
+     * @return the world axis.
+     */
+    private static int worldAxis(int[] axes, int localAxis) {
+        for (int axis = 0; axis < axes.length; axis++) {
+            if (axes[axis] == localAxis) {
+                return axis;
+            }
+        }
+        throw new AssertionError("No matching axis.");
+    }
+}
@@ -0,0 +1,214 @@
+package com.halboom.pgt.terrainsystem;
+
+import com.halboom.pgt.pgutil.math.Vector3Int;
+import com.halboom.pgt.pgutil.voxel.VoxelGrid;
+
+/**
+ * View of the tiles downsampled for meshing a chunk at a lower level of detail.
+ * Each cell covers a cube of tiles and takes the most common tile type if at least half of the cube is filled.
+ * Cells outside of the meshed chunk are treated as empty whenever a chunk at any level of detail could
+ * see them as empty so border faces are kept and neighbouring chunks at different levels never leave holes.
+ * Cells are sampled from the source tiles on every read so writes through the view or to the source are seen
+ * by every level of detail at once.
+ * A view is not thread safe and should only be used for a single mesh.
+ */
+final class LodVoxelGrid implements VoxelGrid {
+    /**
+     * Tiles being downsampled.
+     */
+    private final VoxelGrid source;
+
+    /**
+     * Number of tiles along each axis of a cell.
+     */
+    private final int factor;
+
+    /**
+     * Number of tiles along each axis of a cell at the coarsest level of detail in use.
+     */
+    private final int maxFactor;
+
+    /**
+     * Number of cells along each axis.
+     */
+    private final int lengthX, lengthY, lengthZ;
+
+    /**
+     * First and last cell of the chunk being meshed.
+     */
+    private final Vector3Int start, end;
+
+    /**
+     * Distinct tile types found while sampling a cube.
+     */
+    private final byte[] sampleTypes;
+
+    /**
+     * Number of tiles of each distinct type found while sampling a cube.
+     */
+    private final int[] sampleCounts;
+
+    /**
+     * Creates the view.
+     * @param source the tiles to downsample.
+     * @param factor the number of tiles along each axis of a cell, a power of two.
+     * @param maxFactor the number of tiles along each axis of a cell at the coarsest level in use.
+     * @param start the first cell of the meshed chunk.
+     * @param end the last cell of the meshed chunk.
+     */
+    LodVoxelGrid(VoxelGrid source, int factor, int maxFactor, Vector3Int start, Vector3Int end) {
+        this.source = source;
+        this.factor = factor;
+        this.maxFactor = Math.max(factor, maxFactor);
+        this.start = start;
+        this.end = end;
+        lengthX = (source.getLengthX() + factor - 1) / factor;
+        lengthY = (source.getLengthY() + factor - 1) / factor;
+        lengthZ = (source.getLengthZ() + factor - 1) / factor;
+        sampleTypes = new byte[this.maxFactor * this.maxFactor * this.maxFactor];
+        sampleCounts = new int[sampleTypes.length];
+    }
+
+    @Override
+    public int getLengthX() {
+        return lengthX;
+    }
+
+    @Override
+    public int getLengthY() {
+        return lengthY;
+    }
+
+    @Override
+    public int getLengthZ() {
+        return lengthZ;
+    }
+
+    @Override
+    public boolean isInBounds(int x, int y, int z) {
+        return x >= 0 && x < lengthX && y >= 0 && y < lengthY && z >= 0 && z < lengthZ;
+    }
+
+    @Override
+    public byte get(int x, int y, int z) {
+        int tileX = x * factor;
+        int tileY = y * factor;
+        int tileZ = z * factor;
+        byte tile = sample(tileX, tileY, tileZ, factor);
+        boolean isInChunk = x >= start.x && x <= end.x && y >= start.y && y <= end.y && z >= start.z && z <= end.z;
+        if (isInChunk || tile == 0) {
+            return tile;
+        }
+
+        // A finer neighbour shows any empty tile of the cell.
+        if (factor > 1 && hasEmptyTile(tileX, tileY, tileZ)) {
+            return 0;
+        }
+        // A coarser neighbour shows the whole cube holding the cell as empty if most of it is empty.
+        for (int coarse = factor * 2; coarse <= maxFactor; coarse *= 2) {
+            int mask = ~(coarse - 1);
+            if (sample(tileX & mask, tileY & mask, tileZ & mask, coarse) == 0) {
+                return 0;
+            }
+        }
+        return tile;
+    }
+
+    /**
+     * Sets every source tile covered by a cell so the cell reads back as the tile.
+     * The chunks showing the tiles still have to be updated by the caller like for any other tile edit.
+     * @param x the x index of the cell.
+     * @param y the y index of the cell.
+     * @param z the z index of the cell.
+     * @param tile the tile to set.
+     */
+    @Override
+    public void set(int x, int y, int z, byte tile) {
+        int maxX = Math.min((x + 1) * factor, source.getLengthX());
+        int maxY = Math.min((y + 1) * factor, source.getLengthY());
+        int maxZ = Math.min((z + 1) * factor, source.getLengthZ());
+        for (int tileX = x * factor; tileX < maxX; tileX++) {
+            for (int tileY = y * factor; tileY < maxY; tileY++) {
+                for (int tileZ = z * factor; tileZ < maxZ; tileZ++) {
+                    source.set(tileX, tileY, tileZ, tile);
+                }
+            }
+        }
+    }
+
+    /**
+     * Finds the tile type of a cube of tiles by majority vote.
+     * @param tileX the first x tile index of the cube.
+     * @param tileY the first y tile index of the cube.
+     * @param tileZ the first z tile index of the cube.
+     * @param size the number of tiles along each axis of the cube.
+     * @return the most common tile type if at least half of the tiles within the map are filled, 0 otherwise.
+     */
+    private byte sample(int tileX, int tileY, int tileZ, int size) {
+        if (size == 1) {
+            return source.get(tileX, tileY, tileZ);
+        }
+        int maxX = Math.min(tileX + size, source.getLengthX());
+        int maxY = Math.min(tileY + size, source.getLengthY());
+        int maxZ = Math.min(tileZ + size, source.getLengthZ());
+        int types = 0;
+        int filled = 0;
+        int total = 0;
+        for (int x = tileX; x < maxX; x++) {
+            for (int y = tileY; y < maxY; y++) {
+                for (int z = tileZ; z < maxZ; z++) {
+                    total++;
+                    byte tile = source.get(x, y, z);
+                    if (tile == 0) {
+                        continue;
+                    }
+                    filled++;
+                    int type = 0;
+                    while (type < types && sampleTypes[type] != tile) {
+                        type++;
+                    }
+                    if (type == types) {
+                        sampleTypes[type] = tile;
+                        sampleCounts[type] = 0;
+                        types++;
+                    }
+                    sampleCounts[type]++;
+                }
+            }
+        }
+        // Ties keep the cube filled so thin walls and floors do not disappear.
+        if (filled == 0 || filled * 2 < total) {
+            return 0;
+        }
+        int best = 0;
+        for (int type = 1; type < types; type++) {
+            if (sampleCounts[type] > sampleCounts[best]) {
+                best = type;
+            }
+        }
+        return sampleTypes[best];
+    }
+
+    /**
+     * Checks if a cell contains any empty tile.
+     * @param tileX the first x tile index of the cell.
+     * @param tileY the first y tile index of the cell.
+     * @param tileZ the first z tile index of the cell.
+     * @return true if a tile of the cell within the map is empty.
+     */
+    private boolean hasEmptyTile(int tileX, int tileY, int tileZ) {
+        int maxX = Math.min(tileX + factor, source.getLengthX());
+        int maxY = Math.min(tileY + factor, source.getLengthY());
+        int maxZ = Math.min(tileZ + factor, source.getLengthZ());
+        for (int x = tileX; x < maxX; x++) {
+            for (int y = tileY; y < maxY; y++) {
+                for (int z = tileZ; z < maxZ; z++) {
+                    if (source.get(x, y, z) == 0) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+}
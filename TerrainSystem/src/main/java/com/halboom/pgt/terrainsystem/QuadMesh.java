@@ -2,6 +2,7 @@ package com.halboom.pgt.terrainsystem;
 
 import com.halboom.pgt.pgutil.Random;
 import com.halboom.pgt.pgutil.math.Vector3Int;
+import com.halboom.pgt.pgutil.voxel.VoxelGrid;
 import com.jme3.math.FastMath;
 import com.jme3.math.Matrix4f;
 import com.jme3.math.Quaternion;
@@ -38,20 +39,6 @@ public class QuadMesh implements TileMesher {
         WEST, EAST, NORTH, SOUTH, UP, DOWN
     }
 
-    /**
-     * Directional sides in byte form for bitwise operations.
-     */
-    private static final byte SIDE_NONE = 0,
-            SIDE_WEST = 1, SIDE_EAST = 2,
-            SIDE_NORTH = 4, SIDE_SOUTH = 8,
-            SIDE_UP = 16, SIDE_DOWN = 32;
-
-    /**
-     * Tile side indices.
-     */
-    private static final int INDEX_WEST = 0, INDEX_EAST = 1, INDEX_NORTH = 2,
-            INDEX_SOUTH = 3, INDEX_UP = 4, INDEX_DOWN = 5;
-
     /**
      * Tile angles rotations depending on the orientation.
      */
@@ -77,10 +64,16 @@ public class QuadMesh implements TileMesher {
      */
     private byte[][][] optimizedTiles;
 
+    /**
+     * Shared directions of a chunk without visible tiles so empty chunks do not allocate a cube.
+     */
+    private static final byte[][][] NO_VISIBLE_TILES = new byte[0][0][0];
+
     /**
      * Rotation quaternion used for rotating quads.
+     * Kept per mesher so chunks can be meshed on separate threads.
      */
-    private static Quaternion rotation = new Quaternion();
+    private Quaternion rotation = new Quaternion();
 
     /**
      * Number of components per vertex group.
@@ -131,15 +124,19 @@ public class QuadMesh implements TileMesher {
      * @param endIndex the end index of the chunk.
      * @return the optimized mesh based on the tiles.
      */
-    public Spatial merge(byte[][][] tiles, float scale, TileAtlas atlas, TileBank tileBank, Vector3Int startIndex, Vector3Int endIndex) {
+    public Spatial merge(VoxelGrid tiles, float scale, TileAtlas atlas, TileBank tileBank, Vector3Int startIndex, Vector3Int endIndex) {
         // Only merge tiles if they have not been merged before.
         if (!isOptimized) {
-            optimizedTiles = new byte[endIndex.x - startIndex.x + 1][endIndex.y - startIndex.y + 1][endIndex.z - startIndex.z + 1];
+            optimizedTiles = NO_VISIBLE_TILES;
             for (int x = startIndex.x; x <= endIndex.x; x++) {
                 for (int y = startIndex.y; y <= endIndex.y; y++) {
                     for (int z = startIndex.z; z <= endIndex.z; z++) {
-                        if (tiles[x][y][z] != 0 && !isTileSurrounded(tiles, x, y, z)) {
-                            byte direction = getTileVisibleDirections(tiles, x, y, z);
+                        if (tiles.get(x, y, z) != 0 && !TileFaces.isTileSurrounded(tiles, x, y, z)) {
+                            byte direction = TileFaces.getTileVisibleDirections(tiles, x, y, z);
+                            if (optimizedTiles == NO_VISIBLE_TILES) {
+                                optimizedTiles = new byte[endIndex.x - startIndex.x + 1]
+                                        [endIndex.y - startIndex.y + 1][endIndex.z - startIndex.z + 1];
+                            }
                             optimizedTiles[x - startIndex.x][y - startIndex.y][z - startIndex.z] = direction;
                         }
                     }
@@ -208,7 +205,7 @@ public class QuadMesh implements TileMesher {
      * @param startIndex the starting index of the quad.
      * @return the optimized mesh.
      */
-    private Spatial optimize(byte[][][] tiles, float scale, TileAtlas atlas, TileBank tileBank, Vector3Int startIndex) {
+    private Spatial optimize(VoxelGrid tiles, float scale, TileAtlas atlas, TileBank tileBank, Vector3Int startIndex) {
         // Total number of quads in the mesh.
         int numQuads = 0;
 
@@ -216,7 +213,7 @@ public class QuadMesh implements TileMesher {
         for (int x = 0; x < optimizedTiles.length; x++) {
             for (int y = 0; y < optimizedTiles.length; y++) {
                 for (int z = 0; z < optimizedTiles.length; z++) {
-                    int tileQuads = setFacesPerDirection(optimizedTiles[x][y][z]);
+                    int tileQuads = TileFaces.countFaces(optimizedTiles[x][y][z]);
                     numQuads += tileQuads;
                 }
             }
@@ -294,10 +291,10 @@ public class QuadMesh implements TileMesher {
                     int mx = x + startIndex.x;
                     int my = y + startIndex.y;
                     int mz = z + startIndex.z;
-                    TileBank.Tile tile = tileBank.getTile(tiles[mx][my][mz]);
-                    if (direction != SIDE_NONE) {
+                    TileBank.Tile tile = tileBank.getTile(tiles.get(mx, my, mz));
+                    if (direction != TileFaces.SIDE_NONE) {
                         // Prepare the quad to be copied for each direction.
-                        if ((direction & SIDE_WEST) > 0) {
+                        if ((direction & TileFaces.SIDE_WEST) > 0) {
                             if (areQuintsUsed) {
                                 midpoint.x = Random.randomFloat() * (tile.mx2 - tile.mx1) + tile.mx1;
                                 midpoint.y = Random.randomFloat() * (tile.my2 - tile.my1) + tile.my1;
@@ -305,11 +302,11 @@ public class QuadMesh implements TileMesher {
                                 ((Quint) faceMesh).setTextureAligned(tile.isAligned);
                                 ((Quint) faceMesh).setMidpoint(midpoint);
                             }
-                            setQuadMappingsFromDirection(tiles[mx][my][mz], atlas, Direction.WEST, faceMesh);
+                            setQuadMappingsFromDirection(tiles.get(mx, my, mz), atlas, Direction.WEST, faceMesh);
                             setQuadPositionFromGrid(geometry, mx, my, mz, scale, Direction.WEST);
                             copyMeshData(geometry, mesh, indices);
                         }
-                        if ((direction & SIDE_EAST) > 0) {
+                        if ((direction & TileFaces.SIDE_EAST) > 0) {
                             if (areQuintsUsed) {
                                 midpoint.x = Random.randomFloat() * (tile.mx2 - tile.mx1) + tile.mx1;
                                 midpoint.y = Random.randomFloat() * (tile.my2 - tile.my1) + tile.my1;
@@ -317,11 +314,11 @@ public class QuadMesh implements TileMesher {
                                 ((Quint) faceMesh).setTextureAligned(tile.isAligned);
                                 ((Quint) faceMesh).setMidpoint(midpoint);
                             }
-                            setQuadMappingsFromDirection(tiles[mx][my][mz], atlas, Direction.EAST, faceMesh);
+                            setQuadMappingsFromDirection(tiles.get(mx, my, mz), atlas, Direction.EAST, faceMesh);
                             setQuadPositionFromGrid(geometry, mx, my, mz, scale, Direction.EAST);
                             copyMeshData(geometry, mesh, indices);
                         }
-                        if ((direction & SIDE_NORTH) > 0) {
+                        if ((direction & TileFaces.SIDE_NORTH) > 0) {
                             if (areQuintsUsed) {
                                 midpoint.x = Random.randomFloat() * (tile.mx2 - tile.mx1) + tile.mx1;
                                 midpoint.y = Random.randomFloat() * (tile.my2 - tile.my1) + tile.my1;
@@ -329,11 +326,11 @@ public class QuadMesh implements TileMesher {
                                 ((Quint) faceMesh).setTextureAligned(tile.isAligned);
                                 ((Quint) faceMesh).setMidpoint(midpoint);
                             }
-                            setQuadMappingsFromDirection(tiles[mx][my][mz], atlas, Direction.NORTH, faceMesh);
+                            setQuadMappingsFromDirection(tiles.get(mx, my, mz), atlas, Direction.NORTH, faceMesh);
                             setQuadPositionFromGrid(geometry, mx, my, mz, scale, Direction.NORTH);
                             copyMeshData(geometry, mesh, indices);
                         }
-                        if ((direction & SIDE_SOUTH) > 0) {
+                        if ((direction & TileFaces.SIDE_SOUTH) > 0) {
                             if (areQuintsUsed) {
                                 midpoint.x = Random.randomFloat() * (tile.mx2 - tile.mx1) + tile.mx1;
                                 midpoint.y = Random.randomFloat() * (tile.my2 - tile.my1) + tile.my1;
@@ -341,11 +338,11 @@ public class QuadMesh implements TileMesher {
                                 ((Quint) faceMesh).setTextureAligned(tile.isAligned);
                                 ((Quint) faceMesh).setMidpoint(midpoint);
                             }
-                            setQuadMappingsFromDirection(tiles[mx][my][mz], atlas, Direction.SOUTH, faceMesh);
+                            setQuadMappingsFromDirection(tiles.get(mx, my, mz), atlas, Direction.SOUTH, faceMesh);
                             setQuadPositionFromGrid(geometry, mx, my, mz, scale, Direction.SOUTH);
                             copyMeshData(geometry, mesh, indices);
                         }
-                        if ((direction & SIDE_UP) > 0) {
+                        if ((direction & TileFaces.SIDE_UP) > 0) {
                             if (areQuintsUsed) {
                                 midpoint.x = Random.randomFloat() * (tile.mx2 - tile.mx1) + tile.mx1;
                                 midpoint.y = Random.randomFloat() * (tile.my2 - tile.my1) + tile.my1;
@@ -353,11 +350,11 @@ public class QuadMesh implements TileMesher {
                                 ((Quint) faceMesh).setTextureAligned(tile.isAligned);
                                 ((Quint) faceMesh).setMidpoint(midpoint);
                             }
-                            setQuadMappingsFromDirection(tiles[mx][my][mz], atlas, Direction.UP, faceMesh);
+                            setQuadMappingsFromDirection(tiles.get(mx, my, mz), atlas, Direction.UP, faceMesh);
                             setQuadPositionFromGrid(geometry, mx, my, mz, scale, Direction.UP);
                             copyMeshData(geometry, mesh, indices);
                         }
-                        if ((direction & SIDE_DOWN) > 0) {
+                        if ((direction & TileFaces.SIDE_DOWN) > 0) {
                             if (areQuintsUsed) {
                                 midpoint.x = Random.randomFloat() * (tile.mx2 - tile.mx1) + tile.mx1;
                                 midpoint.y = Random.randomFloat() * (tile.my2 - tile.my1) + tile.my1;
@@ -365,7 +362,7 @@ public class QuadMesh implements TileMesher {
                                 ((Quint) faceMesh).setTextureAligned(tile.isAligned);
                                 ((Quint) faceMesh).setMidpoint(midpoint);
                             }
-                            setQuadMappingsFromDirection(tiles[mx][my][mz], atlas, Direction.DOWN, faceMesh);
+                            setQuadMappingsFromDirection(tiles.get(mx, my, mz), atlas, Direction.DOWN, faceMesh);
                             setQuadPositionFromGrid(geometry, mx, my, mz, scale, Direction.DOWN);
                             copyMeshData(geometry, mesh, indices);
                         }
@@ -396,22 +393,22 @@ public class QuadMesh implements TileMesher {
         if (direction != Direction.NONE) {
             switch (direction) {
                 case WEST:
-                    texturePosition = atlas.getTextureFromIndex(type, INDEX_WEST, texturePosition);
+                    texturePosition = atlas.getTextureFromIndex(type, TileFaces.INDEX_WEST, texturePosition);
                     break;
                 case EAST:
-                    texturePosition = atlas.getTextureFromIndex(type, INDEX_EAST, texturePosition);
+                    texturePosition = atlas.getTextureFromIndex(type, TileFaces.INDEX_EAST, texturePosition);
                     break;
                 case NORTH:
-                    texturePosition = atlas.getTextureFromIndex(type, INDEX_NORTH, texturePosition);
+                    texturePosition = atlas.getTextureFromIndex(type, TileFaces.INDEX_NORTH, texturePosition);
                     break;
                 case SOUTH:
-                    texturePosition = atlas.getTextureFromIndex(type, INDEX_SOUTH, texturePosition);
+                    texturePosition = atlas.getTextureFromIndex(type, TileFaces.INDEX_SOUTH, texturePosition);
                     break;
                 case UP:
-                    texturePosition = atlas.getTextureFromIndex(type, INDEX_UP, texturePosition);
+                    texturePosition = atlas.getTextureFromIndex(type, TileFaces.INDEX_UP, texturePosition);
                     break;
                 case DOWN:
-                    texturePosition = atlas.getTextureFromIndex(type, INDEX_DOWN, texturePosition);
+                    texturePosition = atlas.getTextureFromIndex(type, TileFaces.INDEX_DOWN, texturePosition);
                     break;
                 default:
                     throw new AssertionError("No matching direction found.");
@@ -480,113 +477,6 @@ public class QuadMesh implements TileMesher {
         geo.setLocalRotation(rotation);
     }
 
-    /**
-     * Checks if a tile is surrounded by other tiles on all sides.
-     * @param tiles the tiles to check with.
-     * @param x the x index of the tile.
-     * @param y the y index of the tile.
-     * @param z the z index of the tile.
-     * @return true if the tile is surrounded.
-     */
-    private boolean isTileSurrounded(byte[][][] tiles, int x, int y, int z) {
-        // Check if within the grid bounds.
-        boolean isValidIndex = (x - 1 >= 0 && x + 1 < tiles.length
-                && y - 1 >= 0 && y + 1 < tiles[x].length
-                && z - 1 >= 0 && z + 1 < tiles[x][y].length);
-
-        if (isValidIndex) {
-            // Check if the tile is surrounded.
-            return (tiles[x - 1][y][z] != 0 && tiles[x + 1][y][z] != 0
-                    && tiles[x][y - 1][z] != 0 && tiles[x][y + 1][z] != 0
-                    && tiles[x][y][z - 1] != 0 && tiles[x][y][z + 1] != 0);
-        }
-        return false;
-    }
-
-    /**
-     * Retrieves the directions a tile that should be visible.
-     * @param tiles the tiles of the world.
-     * @param x the x index of the tile.
-     * @param y the y index of the tile.
-     * @param z the z index of the tile.
-     * @return the directions of the tile.
-     */
-    private byte getTileVisibleDirections(byte[][][] tiles, int x, int y, int z) {
-        int direction = SIDE_NONE;
-
-        // Find the visible direction by checking for sides that are not bordering tiles.
-        // Create the left quad
-        if (x > 0 && tiles[x - 1][y][z] == 0) {
-            direction = direction | SIDE_WEST;
-        } else if (x == 0) {
-            direction = direction | SIDE_WEST;
-        }
-        // Create the right quad
-        if (x < tiles.length - 1 && tiles[x + 1][y][z] == 0) {
-            direction = direction | SIDE_EAST;
-        } else if (x == tiles.length - 1) {
-            direction = direction | SIDE_EAST;
-        }
-        // Create the back quad
-        if (z > 0 && tiles[x][y][z - 1] == 0) {
-            direction = direction | SIDE_NORTH;
-        } else if (z == 0) {
-            direction = direction | SIDE_NORTH;
-        }
-        // Create the front quad
-        if (z < tiles[x][y].length - 1 && tiles[x][y][z + 1] == 0) {
-            direction = direction | SIDE_SOUTH;
-        } else if (z == tiles[x][y].length - 1) {
-            direction = direction | SIDE_SOUTH;
-        }
-        // Create the top quad
-        if (y < tiles[x].length - 1 && tiles[x][y + 1][z] == 0) {
-            direction = direction | SIDE_UP;
-        } else if (y == tiles[x].length - 1) {
-            direction = direction | SIDE_UP;
-        }
-        // Create the bottom quad
-        if (y > 0 && tiles[x][y - 1][z] == 0) {
-            direction = direction | SIDE_DOWN;
-        } else if (y == 0) {
-            direction = direction | SIDE_DOWN;
-        }
-
-        return (byte) direction;
-    }
-
-    /**
-     * Gets the number of quads per tile direction.
-     * @param direction the direction of the tile.
-     * @return the number of quads based on the direction.
-     */
-    private int setFacesPerDirection(byte direction) {
-        int faces = 0;
-
-        if (direction != SIDE_NONE) {
-            if ((direction & SIDE_WEST) > 0) {
-                faces++;
-            }
-            if ((direction & SIDE_EAST) > 0) {
-                faces++;
-            }
-            if ((direction & SIDE_NORTH) > 0) {
-                faces++;
-            }
-            if ((direction & SIDE_SOUTH) > 0) {
-                faces++;
-            }
-            if ((direction & SIDE_UP) > 0) {
-                faces++;
-            }
-            if ((direction & SIDE_DOWN) > 0) {
-                faces++;
-            }
-        }
-
-        return faces;
-    }
-
     /**
      * Transforms to vertices.
      * @param inBuf the input buffer.
@@ -649,6 +539,13 @@ public class QuadMesh implements TileMesher {
         setDirty();
     }
 
+    @Override
+    public boolean update(VoxelGrid tiles, float scale, TileAtlas atlas, TileBank tileBank,
+                          Vector3Int startIndex, Vector3Int endIndex, int x, int y, int z, Spatial spatial) {
+        // Faces are batched from geometries so the whole chunk is always merged again.
+        return false;
+    }
+
     @Override
     public void setDirty() {
         isOptimized = false;
@@ -1,11 +1,18 @@
 package com.halboom.pgt.terrainsystem;
 
 import com.halboom.pgt.pgutil.math.Vector3Int;
+import com.halboom.pgt.pgutil.threading.Threading;
+import com.halboom.pgt.pgutil.voxel.ChunkedVoxelGrid;
+import com.halboom.pgt.pgutil.voxel.VoxelGrid;
 import com.halboom.pgt.terrainsystem.generator.Generator;
+import com.halboom.pgt.terrainsystem.generator.GeneratorTask;
 import com.jme3.math.Vector3f;
+import com.jme3.renderer.Camera;
 import com.jme3.scene.Node;
 
+import java.util.BitSet;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * Created with IntelliJ IDEA.
@@ -49,7 +56,7 @@ public class Terrain {
     /**
      * Tiles of the map.
      */
-    private byte[][][] tiles = new byte[dimensions.x][dimensions.y][dimensions.z];
+    private VoxelGrid tiles = new ChunkedVoxelGrid(dimensions.x, dimensions.y, dimensions.z);
 
     /**
      * Main node for the terrain.
@@ -66,6 +73,11 @@ public class Terrain {
      */
     private TerrainCallbacks callbacks;
 
+    /**
+     * Batch opened with beginEdit which also records queued tile changes, null if no batch is open.
+     */
+    private TileEditBatch openBatch;
+
     /**
      * Initializes parameters and creates the floor.
      * @param tileAtlas the tile atlas to use for displaying the terrain.
@@ -96,6 +108,15 @@ public class Terrain {
         chunkUpdater.updateVisibility(executorService, center, tileNode);
     }
 
+    /**
+     * Updates which chunks are visible from a camera.
+     * @param executorService the executor service to create the update thread with.
+     * @param camera the camera to cull chunks against.
+     */
+    public void cull(ExecutorService executorService, Camera camera) {
+        chunkUpdater.updateVisibility(executorService, camera.getLocation(), camera, tileNode);
+    }
+
     /**
      * Attaches the terrain to a node.
      * @param node  Node to attach the terrain to.
@@ -113,18 +134,55 @@ public class Terrain {
     }
 
     /**
-     * Generates a terrain using the given generator.
+     * Generates a terrain using the given generator on the shared fork join pool.
      * @param generator the generator to generate with.
      */
     public void generate(Generator generator) {
+        generate(generator, Threading.getInstance().getForkJoinPool());
+    }
+
+    /**
+     * Generates a terrain using the given generator, the map is split into blocks of columns generated in parallel.
+     * @param generator the generator to generate with.
+     * @param pool the pool to generate the blocks on.
+     */
+    public void generate(Generator generator, ForkJoinPool pool) {
+        tiles = new ChunkedVoxelGrid(dimensions.x, dimensions.y, dimensions.z);
+        // Generate empty terrain if no generator is given.
         if (generator != null) {
-            tiles = generator.generate(dimensions.x, dimensions.y, dimensions.z);
-        } else {
-            // Generate empty terrain if no generator is given.
-            tiles = new byte[dimensions.x][dimensions.y][dimensions.z];
+            generator.prepare(dimensions.x, dimensions.y, dimensions.z);
+            pool.invoke(new GeneratorTask(generator, tiles));
         }
+        compactTiles();
 
         chunkUpdater.setTilesReference(tiles);
+        chunkUpdater.setGenerator(null);
+    }
+
+    /**
+     * Generates a terrain using the given generator as it is needed.
+     * Chunks are generated in the background when they come into range of the culling center,
+     * tiles of chunks that have not been generated yet are empty.
+     * @param generator the generator to generate with.
+     */
+    public void generateLazily(Generator generator) {
+        generator.prepare(dimensions.x, dimensions.y, dimensions.z);
+        tiles = new ChunkedVoxelGrid(dimensions.x, dimensions.y, dimensions.z);
+        chunkUpdater.setTilesReference(tiles);
+        chunkUpdater.setGenerator(generator);
+    }
+
+    /**
+     * Opens a batch of tile edits that invalidates the touched chunks once when committed.
+     * Queued tile changes are added to the batch until it is committed.
+     * @return the opened batch.
+     */
+    public TileEditBatch beginEdit() {
+        if (openBatch != null) {
+            throw new IllegalStateException("A tile edit batch is already open.");
+        }
+        openBatch = new TileEditBatch(this);
+        return openBatch;
     }
 
     /**
@@ -135,9 +193,13 @@ public class Terrain {
      * @param isQueued true to queue the update or false to instantly update.
      */
     public void removeTile(int x, int y, int z, boolean isQueued) {
+        if (isQueued && openBatch != null) {
+            openBatch.set(x, y, z, (byte) TILE_EMPTY);
+            return;
+        }
         // Set the modified tile to empty
-        tiles[x][y][z] = TILE_EMPTY;
-        chunkUpdater.updateTouchedChunks(x, y, z, tileNode, isQueued);
+        writeTile(x, y, z, (byte) TILE_EMPTY);
+        chunkUpdater.updateTouchedChunks(x, y, z, isQueued);
     }
 
     /**
@@ -149,9 +211,11 @@ public class Terrain {
      * @param isQueued true to queue the update or false to instantly update.
      */
     public void addTile(byte type, int x, int y, int z, boolean isQueued) {
-        if (isIndexInBounds(x, y, z)) {
-            tiles[x][y][z] = type;
-            chunkUpdater.updateTouchedChunks(x, y, z, tileNode, isQueued);
+        if (isQueued && openBatch != null) {
+            openBatch.set(x, y, z, type);
+        } else if (isIndexInBounds(x, y, z)) {
+            writeTile(x, y, z, type);
+            chunkUpdater.updateTouchedChunks(x, y, z, isQueued);
         }
     }
 
@@ -159,9 +223,10 @@ public class Terrain {
      * Sets the tiles of the terrain by reference.
      * @param tiles the tiles to set.
      */
-    public void setTiles(byte[][][] tiles) {
+    public void setTiles(VoxelGrid tiles) {
         this.tiles = tiles;
         chunkUpdater.setTilesReference(tiles);
+        chunkUpdater.setGenerator(null);
     }
 
     /**
@@ -172,25 +237,90 @@ public class Terrain {
      * @param offsetY the Y offset ot the tiles to add.
      * @param offsetZ the Z offset of the tiles to add.
      */
-    public void addTiles(byte[][][] tiles, int offsetX, int offsetY, int offsetZ) {
-        for (int x = 0; x < tiles.length; x++) {
-            for (int y = 0; y < tiles[x].length; y++) {
-                for (int z = 0; z < tiles[x][y].length; z++) {
-                    int oX = x + offsetX;
-                    int oY = y + offsetY;
-                    int oZ = z + offsetZ;
-                    if (!isIndexOutOfBounds(oX, oY, oZ) && tiles[x][y][z] != 0) {
-                        this.tiles[oX][oY][oZ] = tiles[x][y][z];
+    public void addTiles(VoxelGrid tiles, int offsetX, int offsetY, int offsetZ) {
+        TileEditBatch batch = new TileEditBatch(this);
+        for (int x = 0; x < tiles.getLengthX(); x++) {
+            for (int y = 0; y < tiles.getLengthY(); y++) {
+                for (int z = 0; z < tiles.getLengthZ(); z++) {
+                    byte tile = tiles.get(x, y, z);
+                    if (tile != 0) {
+                        batch.set(x + offsetX, y + offsetY, z + offsetZ, tile);
                     }
                 }
             }
         }
+        batch.commit();
+        compactTiles();
+    }
+
+    /**
+     * Writes a tile while holding the lock of the tiles.
+     * Chunks generated in the background write with the same lock and keep the tiles written before they finish.
+     * @param x the x index.
+     * @param y the y index.
+     * @param z the z index.
+     * @param tile the tile to write.
+     */
+    void writeTile(int x, int y, int z, byte tile) {
+        synchronized (tiles) {
+            writeTileLocked(x, y, z, tile);
+        }
+    }
+
+    /**
+     * Writes a tile, the caller must hold the lock of the tiles.
+     * @param x the x index.
+     * @param y the y index.
+     * @param z the z index.
+     * @param tile the tile to write.
+     */
+    void writeTileLocked(int x, int y, int z, byte tile) {
+        chunkUpdater.keepTile(x, y, z);
+        tiles.set(x, y, z, tile);
+    }
+
+    /**
+     * Marks the chunks whose meshes depend on the tiles within a box as dirty.
+     * @param dirtyChunks the indices of the dirty chunks to add to.
+     * @param minX the smallest x index of the box.
+     * @param minY the smallest y index of the box.
+     * @param minZ the smallest z index of the box.
+     * @param maxX the largest x index of the box.
+     * @param maxY the largest y index of the box.
+     * @param maxZ the largest z index of the box.
+     */
+    void markEditedChunks(BitSet dirtyChunks, int minX, int minY, int minZ, int maxX, int maxY, int maxZ) {
+        chunkUpdater.markTouchedChunks(dirtyChunks, minX, minY, minZ, maxX, maxY, maxZ);
+    }
+
+    /**
+     * Invalidates the chunks of a committed batch.
+     * @param batch the committed batch.
+     * @param dirtyChunks the indices of the chunks touched by the batch.
+     */
+    void commitEdit(TileEditBatch batch, BitSet dirtyChunks) {
+        if (openBatch == batch) {
+            openBatch = null;
+        }
+        chunkUpdater.updateChunks(dirtyChunks);
+    }
+
+    /**
+     * Shrinks the storage of the tiles after large edits if the tiles are stored sparsely.
+     */
+    public void compactTiles() {
+        if (tiles instanceof ChunkedVoxelGrid) {
+            // Chunks being generated lazily write to the tiles while holding their lock.
+            synchronized (tiles) {
+                ((ChunkedVoxelGrid) tiles).compact();
+            }
+        }
     }
 
     /**
      * @return the tiles of the terrain.
      */
-    public byte[][][] getTiles() {
+    public VoxelGrid getTiles() {
         return tiles;
     }
 
@@ -231,7 +361,7 @@ public class Terrain {
      * @return true if the index is outside of the grid, false otherwise.
      */
     public final boolean isIndexOutOfBounds(int x, int y, int z) {
-        return x < 0 || y < 0 || z < 0 || x >= tiles.length || y >= tiles[x].length || z >= tiles[x][y].length;
+        return !tiles.isInBounds(x, y, z);
     }
 
     /**
@@ -242,16 +372,7 @@ public class Terrain {
      * @return true if the index is within the grid, false otherwise.
      */
     public final boolean isIndexInBounds(int x, int y, int z) {
-        boolean isOutsideMinimum = (x < 0 || y < 0 || z < 0);
-        if (isOutsideMinimum) {
-            return false;
-        }
-        boolean isOutsideMaximum = (x >= tiles.length || y >= tiles[0].length || z >= tiles[0][0].length);
-        if (isOutsideMaximum) {
-            return false;
-        }
-
-        return true;
+        return tiles.isInBounds(x, y, z);
     }
 
     /**
@@ -261,6 +382,77 @@ public class Terrain {
         chunkUpdater.setViewDistance(distance);
     }
 
+    /**
+     * @param isGreedyMeshing true to merge flat tile faces into larger quads.
+     */
+    public void setGreedyMeshing(boolean isGreedyMeshing) {
+        chunkUpdater.setGreedyMeshing(isGreedyMeshing);
+    }
+
+    /**
+     * @param distances the distances where chunks switch to a coarser level of detail, closest first,
+     *                  none to always mesh chunks at full detail.
+     */
+    public void setLodDistances(float... distances) {
+        chunkUpdater.setLodDistances(distances);
+    }
+
+    /**
+     * @param hysteresis the distance a chunk must pass a level of detail band by before switching level.
+     */
+    public void setLodHysteresis(float hysteresis) {
+        chunkUpdater.setLodHysteresis(hysteresis);
+    }
+
+    /**
+     * @param maxMeshesInFlight the maximum number of chunk meshes built in the background at once.
+     */
+    public void setMaxMeshesInFlight(int maxMeshesInFlight) {
+        chunkUpdater.setMaxMeshesInFlight(maxMeshesInFlight);
+    }
+
+    /**
+     * @param meshTimeBudget the time in nanoseconds allowed per frame for attaching finished chunk meshes.
+     */
+    public void setMeshTimeBudget(long meshTimeBudget) {
+        chunkUpdater.setMeshTimeBudget(meshTimeBudget);
+    }
+
+    /**
+     * @param maxGenerationsInFlight the maximum number of chunks generated in the background at once.
+     */
+    public void setMaxGenerationsInFlight(int maxGenerationsInFlight) {
+        chunkUpdater.setMaxGenerationsInFlight(maxGenerationsInFlight);
+    }
+
+    /**
+     * @return the number of chunks being generated in the background.
+     */
+    public int getGenerationsInFlight() {
+        return chunkUpdater.getGenerationsInFlight();
+    }
+
+    /**
+     * @return the number of chunk meshes being built in the background.
+     */
+    public int getMeshesInFlight() {
+        return chunkUpdater.getMeshesInFlight();
+    }
+
+    /**
+     * @return the number of finished chunk meshes waiting to be attached.
+     */
+    public int getQueuedMeshes() {
+        return chunkUpdater.getQueuedMeshes();
+    }
+
+    /**
+     * @return the number of visible chunks waiting to be meshed.
+     */
+    public int getPendingChunks() {
+        return chunkUpdater.getPendingChunks();
+    }
+
     /**
      * @param callbacks the terrain callbacks to set.
      */
@@ -5,7 +5,14 @@ import com.jme3.asset.TextureKey;
 import com.jme3.material.Material;
 import com.jme3.material.RenderState;
 import com.jme3.math.ColorRGBA;
+import com.jme3.texture.Image;
 import com.jme3.texture.Texture;
+import com.jme3.texture.Texture2D;
+import com.jme3.util.BufferUtils;
+
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
 
 /**
  * Created with IntelliJ IDEA.
@@ -111,6 +118,11 @@ public class TileAtlas {
      */
     private Texture texture;
 
+    /**
+     * Materials using a single repeating texture cut out of the atlas keyed by texture index.
+     */
+    private Map<Integer, Material> regionMaterials = new HashMap<Integer, Material>();
+
     /**
      * Initializes the tile atlas.
      * @param assetManager the asset manager to load resources from.
@@ -145,21 +157,34 @@ public class TileAtlas {
      * @param isShadingEnabled true to enable shading of the tiles.
      */
     public void setShadingEnabled(boolean isShadingEnabled) {
-        if (isShadingEnabled) {
-            material = new Material(assetManager, "Common/MatDefs/Light/Lighting.j3md");
-            material.setTexture("DiffuseMap", texture);
-            material.setBoolean("UseMaterialColors", true);
-            material.setColor("Ambient", ColorRGBA.White);
-            material.setColor("Diffuse", ColorRGBA.White);
-            material.setColor("Specular", ColorRGBA.Gray);
-            material.setReceivesShadows(true);
-            setShininess(shininess);
+        material = createMaterial(texture, isShadingEnabled);
+        this.isShadingEnabled = isShadingEnabled;
+        clearRegionMaterials();
+    }
+
+    /**
+     * Creates a material for the tiles.
+     * @param diffuse the texture to use.
+     * @param isShaded true to create a lit material.
+     * @return the created material.
+     */
+    private Material createMaterial(Texture diffuse, boolean isShaded) {
+        Material created;
+        if (isShaded) {
+            created = new Material(assetManager, "Common/MatDefs/Light/Lighting.j3md");
+            created.setTexture("DiffuseMap", diffuse);
+            created.setBoolean("UseMaterialColors", true);
+            created.setColor("Ambient", ColorRGBA.White);
+            created.setColor("Diffuse", ColorRGBA.White);
+            created.setColor("Specular", ColorRGBA.Gray);
+            created.setReceivesShadows(true);
+            created.setFloat("Shininess", shininess);
         } else {
-            material = new Material(assetManager, "Common/MatDefs/Misc/Unshaded.j3md");
-            material.setTexture("ColorMap", texture);
+            created = new Material(assetManager, "Common/MatDefs/Misc/Unshaded.j3md");
+            created.setTexture("ColorMap", diffuse);
         }
-        material.getAdditionalRenderState().setBlendMode(RenderState.BlendMode.Alpha);
-        this.isShadingEnabled = isShadingEnabled;
+        created.getAdditionalRenderState().setBlendMode(RenderState.BlendMode.Alpha);
+        return created;
     }
 
     /**
@@ -173,8 +198,14 @@ public class TileAtlas {
      * @param shininess the shininess to set.
      */
     public void setShininess(float shininess) {
+        this.shininess = shininess;
         if (isShadingEnabled) {
             material.setFloat("Shininess", shininess);
+            synchronized (this) {
+                for (Material regionMaterial : regionMaterials.values()) {
+                    regionMaterial.setFloat("Shininess", shininess);
+                }
+            }
         }
     }
 
@@ -220,6 +251,7 @@ public class TileAtlas {
      */
     public void setMinFilter(Texture.MinFilter minFilter) {
         texture.setMinFilter(minFilter);
+        clearRegionMaterials();
     }
 
     /**
@@ -227,6 +259,7 @@ public class TileAtlas {
      */
     public void setMagFilter(Texture.MagFilter magFilter) {
         texture.setMagFilter(magFilter);
+        clearRegionMaterials();
     }
 
     /**
@@ -234,6 +267,7 @@ public class TileAtlas {
      */
     public void setAnisotropicFilter(int level) {
         texture.setAnisotropicFilter(level);
+        clearRegionMaterials();
     }
 
     /**
@@ -265,4 +299,55 @@ public class TileAtlas {
 
         return store;
     }
+
+    /**
+     * Checks if single texture materials can be cut out of the atlas.
+     * Only uncompressed atlases can be cut.
+     * @return true if region materials are supported.
+     */
+    public boolean isRegionMaterialSupported() {
+        Image.Format format = texture.getImage().getFormat();
+        return !format.isCompressed() && format.getBitsPerPixel() % Byte.SIZE == 0;
+    }
+
+    /**
+     * Retrieves a material which repeats a single atlas texture so merged faces can tile it.
+     * The texture covers the same texels as the coordinates from getTextureFromIndex.
+     * Safe to call from meshing threads.
+     * @param textureIndex the index of the texture in the atlas.
+     * @return the material for the texture or null if region materials are not supported.
+     */
+    public synchronized Material getRegionMaterial(int textureIndex) {
+        Material regionMaterial = regionMaterials.get(textureIndex);
+        if (regionMaterial == null && isRegionMaterialSupported()) {
+            Image atlasImage = texture.getImage();
+            int bytesPerPixel = atlasImage.getFormat().getBitsPerPixel() / Byte.SIZE;
+            int rowBytes = textureWidth * bytesPerPixel;
+            ByteBuffer atlasData = atlasImage.getData(0);
+            ByteBuffer regionData = BufferUtils.createByteBuffer(rowBytes * textureHeight);
+            for (int row = 0; row < textureHeight; row++) {
+                int rowStart = (row * atlasImage.getWidth() + textureIndex * textureWidth) * bytesPerPixel;
+                for (int i = 0; i < rowBytes; i++) {
+                    regionData.put(atlasData.get(rowStart + i));
+                }
+            }
+            regionData.flip();
+
+            Texture regionTexture = new Texture2D(new Image(atlasImage.getFormat(), textureWidth, textureHeight, regionData));
+            regionTexture.setWrap(Texture.WrapMode.Repeat);
+            regionTexture.setMinFilter(texture.getMinFilter());
+            regionTexture.setMagFilter(texture.getMagFilter());
+            regionTexture.setAnisotropicFilter(texture.getAnisotropicFilter());
+            regionMaterial = createMaterial(regionTexture, isShadingEnabled);
+            regionMaterials.put(textureIndex, regionMaterial);
+        }
+        return regionMaterial;
+    }
+
+    /**
+     * Removes the cached region materials so they are recreated with the current settings.
+     */
+    private synchronized void clearRegionMaterials() {
+        regionMaterials.clear();
+    }
 }
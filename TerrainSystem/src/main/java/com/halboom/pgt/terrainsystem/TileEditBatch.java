@@ -0,0 +1,157 @@
+package com.halboom.pgt.terrainsystem;
+
+import com.halboom.pgt.pgutil.voxel.VoxelGrid;
+
+import java.util.BitSet;
+
+/**
+ * Collects tile edits and invalidates every touched chunk only once when committed.
+ * Tiles are written right away while the chunks stay as they are until the batch is committed,
+ * the terrain callbacks are then told of each changed chunk once instead of once per tile.
+ */
+public class TileEditBatch {
+    /**
+     * Terrain being edited.
+     */
+    private final Terrain terrain;
+
+    /**
+     * Indices of the chunks touched by the edits.
+     */
+    private final BitSet dirtyChunks = new BitSet();
+
+    /**
+     * True once the batch has been committed and can no longer be edited.
+     */
+    private boolean isCommitted = false;
+
+    /**
+     * Starts a batch, use Terrain.beginEdit to open a batch the terrain also records queued tile changes in.
+     * @param terrain the terrain to edit.
+     */
+    TileEditBatch(Terrain terrain) {
+        this.terrain = terrain;
+    }
+
+    /**
+     * Sets a single tile, indices outside of the terrain are ignored.
+     * @param x the x index.
+     * @param y the y index.
+     * @param z the z index.
+     * @param type the type of the tile or 0 to remove it.
+     */
+    public void set(int x, int y, int z, byte type) {
+        checkOpen();
+        VoxelGrid tiles = terrain.getTiles();
+        if (tiles.isInBounds(x, y, z) && tiles.get(x, y, z) != type) {
+            terrain.writeTile(x, y, z, type);
+            terrain.markEditedChunks(dirtyChunks, x, y, z, x, y, z);
+        }
+    }
+
+    /**
+     * Sets every tile of a box including the maximum indices, the box is clipped to the terrain.
+     * @param minX the smallest x index.
+     * @param minY the smallest y index.
+     * @param minZ the smallest z index.
+     * @param maxX the largest x index.
+     * @param maxY the largest y index.
+     * @param maxZ the largest z index.
+     * @param type the type of the tiles or 0 to remove them.
+     */
+    public void fillBox(int minX, int minY, int minZ, int maxX, int maxY, int maxZ, byte type) {
+        checkOpen();
+        VoxelGrid tiles = terrain.getTiles();
+        int startX = Math.max(0, minX);
+        int startY = Math.max(0, minY);
+        int startZ = Math.max(0, minZ);
+        int endX = Math.min(tiles.getLengthX() - 1, maxX);
+        int endY = Math.min(tiles.getLengthY() - 1, maxY);
+        int endZ = Math.min(tiles.getLengthZ() - 1, maxZ);
+        if (startX > endX || startY > endY || startZ > endZ) {
+            return;
+        }
+        synchronized (tiles) {
+            for (int x = startX; x <= endX; x++) {
+                for (int y = startY; y <= endY; y++) {
+                    for (int z = startZ; z <= endZ; z++) {
+                        terrain.writeTileLocked(x, y, z, type);
+                    }
+                }
+            }
+        }
+        terrain.markEditedChunks(dirtyChunks, startX, startY, startZ, endX, endY, endZ);
+    }
+
+    /**
+     * Sets every tile within a distance of a center tile, tiles outside of the terrain are ignored.
+     * @param centerX the x index of the center.
+     * @param centerY the y index of the center.
+     * @param centerZ the z index of the center.
+     * @param radius the distance from the center in tiles.
+     * @param type the type of the tiles or 0 to remove them.
+     */
+    public void fillSphere(int centerX, int centerY, int centerZ, float radius, byte type) {
+        checkOpen();
+        VoxelGrid tiles = terrain.getTiles();
+        int reach = (int) radius;
+        int startX = Math.max(0, centerX - reach);
+        int startY = Math.max(0, centerY - reach);
+        int startZ = Math.max(0, centerZ - reach);
+        int endX = Math.min(tiles.getLengthX() - 1, centerX + reach);
+        int endY = Math.min(tiles.getLengthY() - 1, centerY + reach);
+        int endZ = Math.min(tiles.getLengthZ() - 1, centerZ + reach);
+        if (startX > endX || startY > endY || startZ > endZ) {
+            return;
+        }
+        float radiusSquared = radius * radius;
+        synchronized (tiles) {
+            for (int x = startX; x <= endX; x++) {
+                int dx = x - centerX;
+                for (int y = startY; y <= endY; y++) {
+                    int dy = y - centerY;
+                    for (int z = startZ; z <= endZ; z++) {
+                        int dz = z - centerZ;
+                        if (dx * dx + dy * dy + dz * dz <= radiusSquared) {
+                            terrain.writeTileLocked(x, y, z, type);
+                        }
+                    }
+                }
+            }
+        }
+        terrain.markEditedChunks(dirtyChunks, startX, startY, startZ, endX, endY, endZ);
+    }
+
+    /**
+     * @return the number of chunks that will be invalidated by the commit.
+     */
+    public int getDirtyChunkCount() {
+        return dirtyChunks.cardinality();
+    }
+
+    /**
+     * @return true if the batch has been committed.
+     */
+    public boolean getIsCommitted() {
+        return isCommitted;
+    }
+
+    /**
+     * Invalidates every chunk touched by the batch once so they are meshed again in the background.
+     */
+    public void commit() {
+        checkOpen();
+        isCommitted = true;
+        terrain.commitEdit(this, dirtyChunks);
+        dirtyChunks.clear();
+    }
+
+    /**
+     * Makes sure the batch can still be edited.
+     */
+    private void checkOpen() {
+        if (isCommitted) {
+            throw new IllegalStateException("The tile edit batch has already been committed.");
+        }
+    }
+}
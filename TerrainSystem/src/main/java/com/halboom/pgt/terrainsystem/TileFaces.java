@@ -0,0 +1,125 @@
+package com.halboom.pgt.terrainsystem;
+
+import com.halboom.pgt.pgutil.voxel.VoxelGrid;
+
+/**
+ * Helpers for finding the visible faces of tiles shared by the tile meshers.
+ */
+final class TileFaces {
+    /**
+     * Directional sides in byte form for bitwise operations.
+     */
+    static final byte SIDE_NONE = 0,
+            SIDE_WEST = 1, SIDE_EAST = 2,
+            SIDE_NORTH = 4, SIDE_SOUTH = 8,
+            SIDE_UP = 16, SIDE_DOWN = 32;
+
+    /**
+     * Tile side indices which match the face indices of a tile type.
+     */
+    static final int INDEX_WEST = 0, INDEX_EAST = 1, INDEX_NORTH = 2,
+            INDEX_SOUTH = 3, INDEX_UP = 4, INDEX_DOWN = 5;
+
+    /**
+     * Number of faces of a tile.
+     */
+    static final int DIRECTIONS = 6;
+
+    /**
+     * Side flags ordered by the tile side indices.
+     */
+    static final byte[] SIDES = {SIDE_WEST, SIDE_EAST, SIDE_NORTH, SIDE_SOUTH, SIDE_UP, SIDE_DOWN};
+
+    /**
+     * Prevent instantiation.
+     */
+    private TileFaces() {
+    }
+
+    /**
+     * Checks if a tile is surrounded by other tiles on all sides.
+     * @param tiles the tiles to check with.
+     * @param x the x index of the tile.
+     * @param y the y index of the tile.
+     * @param z the z index of the tile.
+     * @return true if the tile is surrounded.
+     */
+    static boolean isTileSurrounded(VoxelGrid tiles, int x, int y, int z) {
+        // Check if within the grid bounds.
+        boolean isValidIndex = (x - 1 >= 0 && x + 1 < tiles.getLengthX()
+                && y - 1 >= 0 && y + 1 < tiles.getLengthY()
+                && z - 1 >= 0 && z + 1 < tiles.getLengthZ());
+
+        if (isValidIndex) {
+            // Check if the tile is surrounded.
+            return (tiles.get(x - 1, y, z) != 0 && tiles.get(x + 1, y, z) != 0
+                    && tiles.get(x, y - 1, z) != 0 && tiles.get(x, y + 1, z) != 0
+                    && tiles.get(x, y, z - 1) != 0 && tiles.get(x, y, z + 1) != 0);
+        }
+        return false;
+    }
+
+    /**
+     * Retrieves the directions a tile that should be visible.
+     * @param tiles the tiles of the world.
+     * @param x the x index of the tile.
+     * @param y the y index of the tile.
+     * @param z the z index of the tile.
+     * @return the directions of the tile.
+     */
+    static byte getTileVisibleDirections(VoxelGrid tiles, int x, int y, int z) {
+        int direction = SIDE_NONE;
+        int lastX = tiles.getLengthX() - 1;
+        int lastY = tiles.getLengthY() - 1;
+        int lastZ = tiles.getLengthZ() - 1;
+
+        // Find the visible direction by checking for sides that are not bordering tiles.
+        // Create the left quad
+        if (x > 0 && tiles.get(x - 1, y, z) == 0) {
+            direction = direction | SIDE_WEST;
+        } else if (x == 0) {
+            direction = direction | SIDE_WEST;
+        }
+        // Create the right quad
+        if (x < lastX && tiles.get(x + 1, y, z) == 0) {
+            direction = direction | SIDE_EAST;
+        } else if (x == lastX) {
+            direction = direction | SIDE_EAST;
+        }
+        // Create the back quad
+        if (z > 0 && tiles.get(x, y, z - 1) == 0) {
+            direction = direction | SIDE_NORTH;
+        } else if (z == 0) {
+            direction = direction | SIDE_NORTH;
+        }
+        // Create the front quad
+        if (z < lastZ && tiles.get(x, y, z + 1) == 0) {
+            direction = direction | SIDE_SOUTH;
+        } else if (z == lastZ) {
+            direction = direction | SIDE_SOUTH;
+        }
+        // Create the top quad
+        if (y < lastY && tiles.get(x, y + 1, z) == 0) {
+            direction = direction | SIDE_UP;
+        } else if (y == lastY) {
+            direction = direction | SIDE_UP;
+        }
+        // Create the bottom quad
+        if (y > 0 && tiles.get(x, y - 1, z) == 0) {
+            direction = direction | SIDE_DOWN;
+        } else if (y == 0) {
+            direction = direction | SIDE_DOWN;
+        }
+
+        return (byte) direction;
+    }
+
+    /**
+     * Gets the number of faces of a tile given its visible directions.
+     * @param direction the visible directions of the tile.
+     * @return the number of faces.
+     */
+    static int countFaces(byte direction) {
+        return Integer.bitCount(direction & (SIDE_WEST | SIDE_EAST | SIDE_NORTH | SIDE_SOUTH | SIDE_UP | SIDE_DOWN));
+    }
+}
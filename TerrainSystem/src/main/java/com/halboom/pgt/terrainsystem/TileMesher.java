@@ -1,6 +1,7 @@
 package com.halboom.pgt.terrainsystem;
 
 import com.halboom.pgt.pgutil.math.Vector3Int;
+import com.halboom.pgt.pgutil.voxel.VoxelGrid;
 import com.jme3.scene.Spatial;
 
 /**
@@ -20,7 +21,24 @@ public interface TileMesher {
      * @param endIndex the end index of the chunk.
      * @return the optimized mesh based on the tiles.
      */
-    Spatial merge(byte[][][] tiles, float scale, TileAtlas atlas, TileBank tileBank, Vector3Int startIndex, Vector3Int endIndex);
+    Spatial merge(VoxelGrid tiles, float scale, TileAtlas atlas, TileBank tileBank, Vector3Int startIndex, Vector3Int endIndex);
+
+    /**
+     * Updates the spatial created by the last merge in place after a single tile changed.
+     * @param tiles the tiles to load from.
+     * @param scale the scale of a tile.
+     * @param atlas the atlas to get the material and coordinates from.
+     * @param tileBank the data to use for the tiles.
+     * @param startIndex the starting index of the chunk.
+     * @param endIndex the end index of the chunk.
+     * @param x the x index of the changed tile.
+     * @param y the y index of the changed tile.
+     * @param z the z index of the changed tile.
+     * @param spatial the spatial created by the last merge.
+     * @return true if the spatial was updated, false if the chunk has to be merged again.
+     */
+    boolean update(VoxelGrid tiles, float scale, TileAtlas atlas, TileBank tileBank,
+                   Vector3Int startIndex, Vector3Int endIndex, int x, int y, int z, Spatial spatial);
 
     /**
      * Tells the mesher that the information is out of date and should be regenerated.
@@ -1,7 +1,8 @@
 package com.halboom.pgt.terrainsystem.generator;
 
 import com.halboom.pgt.pgutil.math.Vector3Int;
-import com.jme3.math.FastMath;
+
+import java.util.Random;
 
 /**
  * Created with IntelliJ IDEA.
@@ -9,13 +10,24 @@ import com.jme3.math.FastMath;
  * Date: 5/16/13
  * Time: 1:24 PM
  * Generates a simple dungeon using walkers.
+ * The walk is done once for the whole map when prepared and regions only carve the rooms it found.
  */
-public class Dungeon implements Generator {
+public class Dungeon extends SeededGenerator {
+    /**
+     * Highest level of the floor, rooms are carved out above the lowest level.
+     */
+    private static final int FLOOR_TOP = 4;
+
     /**
      * Sizes to use for each room.
      */
     private int sizeX, sizeZ;
 
+    /**
+     * Columns of the prepared map that are inside of a room.
+     */
+    private boolean[][] roomColumns = new boolean[0][0];
+
     /**
      * Initializes the generator.
      * @param sizeX the x size of each room.
@@ -44,41 +56,27 @@ public class Dungeon implements Generator {
     }
 
     /**
-     * Creates a room at the given index location.
-     * @param tiles the tiles to create the room in.
+     * Marks the columns of a room at the given index location.
      * @param x the x location of the room.
      * @param z the y location of the room.
      */
-    private void createRoom(byte[][][] tiles, int x, int z) {
-        int minX = x * sizeX - sizeX / 2;
-        int maxX = x * sizeX + sizeX / 2;
-        int minZ = z * sizeZ - sizeZ / 2;
-        int maxZ = z * sizeZ + sizeZ / 2;
+    private void createRoom(int x, int z) {
+        int minX = Math.max(0, x * sizeX - sizeX / 2);
+        int maxX = Math.min(roomColumns.length, x * sizeX + sizeX / 2);
+        int minZ = Math.max(0, z * sizeZ - sizeZ / 2);
+        int maxZ = Math.min(roomColumns.length == 0 ? 0 : roomColumns[0].length, z * sizeZ + sizeZ / 2);
 
         for (int rx = minX; rx < maxX; rx++) {
             for (int rz = minZ; rz < maxZ; rz++) {
-                tiles[rx][1][rz] = 0;
-                tiles[rx][2][rz] = 0;
-                tiles[rx][3][rz] = 0;
-                tiles[rx][4][rz] = 0;
+                roomColumns[rx][rz] = true;
             }
         }
     }
 
     @Override
-    public byte[][][] generate(int xLength, int yLength, int zLength) {
-        // Tiles for the map.
-        byte[][][] tiles = new byte[xLength][yLength][zLength];
-        // Create the floor.
-        for (int x = 0; x < xLength; x++) {
-            for (int z = 0; z < zLength; z++) {
-                tiles[x][0][z] = 1;
-                tiles[x][1][z] = 1;
-                tiles[x][2][z] = 1;
-                tiles[x][3][z] = 1;
-                tiles[x][4][z] = 1;
-            }
-        }
+    public void prepare(int xLength, int yLength, int zLength) {
+        roomColumns = new boolean[xLength][zLength];
+        Random random = createRandom();
 
         // Set the properties of each room.
         final int directionsPerRoom = 4;
@@ -89,11 +87,11 @@ public class Dungeon implements Generator {
         // Tiles for a floor.
         byte[][] floor = new byte[roomsX][roomsZ];
 
-        Vector3Int location = new Vector3Int(FastMath.nextRandomInt(0, roomsX - 1), 0, FastMath.nextRandomInt(0, roomsZ - 1));
+        Vector3Int location = new Vector3Int(random.nextInt(roomsX), 0, random.nextInt(roomsZ));
         boolean isWalkerDone = false;
         while (!isWalkerDone) {
             floor[location.x][location.z] = 1;
-            int direction = FastMath.nextRandomInt(0, directionsPerRoom - 1);
+            int direction = random.nextInt(directionsPerRoom);
             // Forward, Backward, East, West for directions.
             switch (direction) {
                 case 0:
@@ -132,11 +130,23 @@ public class Dungeon implements Generator {
         for (int x = 0; x < floor.length; x++) {
             for (int y = 0; y < floor[x].length; y++) {
                 if (floor[x][y] != 0) {
-                    createRoom(tiles, x, y);
+                    createRoom(x, y);
                 }
             }
         }
+    }
 
-        return tiles;
+    @Override
+    public void generate(Vector3Int start, Vector3Int end, TileSink sink) {
+        int maxY = Math.min(end.y, FLOOR_TOP);
+        for (int x = start.x; x <= end.x; x++) {
+            for (int z = start.z; z <= end.z; z++) {
+                // Rooms leave only the lowest level of the floor.
+                int top = roomColumns[x][z] ? 0 : maxY;
+                for (int y = start.y; y <= top; y++) {
+                    sink.set(x, y, z, (byte) 1);
+                }
+            }
+        }
     }
 }
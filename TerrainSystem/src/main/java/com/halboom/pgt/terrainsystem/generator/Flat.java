@@ -1,5 +1,7 @@
 package com.halboom.pgt.terrainsystem.generator;
 
+import com.halboom.pgt.pgutil.math.Vector3Int;
+
 /**
  * Created with IntelliJ IDEA.
  * User: MW
@@ -7,7 +9,7 @@ package com.halboom.pgt.terrainsystem.generator;
  * Time: 3:03 PM
  * Generates flat terrain.
  */
-public class Flat implements Generator {
+public class Flat extends SeededGenerator {
     /**
      * Height of the terrain.
      */
@@ -22,21 +24,18 @@ public class Flat implements Generator {
     }
 
     @Override
-    public byte[][][] generate(int xLength, int yLength, int zLength) {
-        byte[][][] tiles = new byte[xLength][yLength][zLength];
-
-        for (int x = 0; x < xLength; x++) {
-            for (int z = 0; z < zLength; z++) {
-                for (int y = 0; y < height; y++) {
+    public void generate(Vector3Int start, Vector3Int end, TileSink sink) {
+        int maxY = Math.min(end.y, height - 1);
+        for (int x = start.x; x <= end.x; x++) {
+            for (int z = start.z; z <= end.z; z++) {
+                for (int y = start.y; y <= maxY; y++) {
                     if (y == height - 1) {
-                        tiles[x][y][z] = 1;
+                        sink.set(x, y, z, (byte) 1);
                     } else {
-                        tiles[x][y][z] = 2;
+                        sink.set(x, y, z, (byte) 2);
                     }
                 }
             }
         }
-
-        return tiles;
     }
 }
@@ -1,18 +1,36 @@
 package com.halboom.pgt.terrainsystem.generator;
 
+import com.halboom.pgt.pgutil.math.Vector3Int;
+
 /**
  * Created with IntelliJ IDEA.
  * User: MW
  * Date: 2/20/13
  * Time: 10:19 AM
+ * Generates the tiles of a map one region at a time.
+ * A generator is prepared once for the size of the map and may then generate disjoint regions
+ * from several threads at once, every tile must only depend on the seed, the prepared state and its index
+ * so the map is the same no matter how it is split up or in which order the regions are generated.
  */
 public interface Generator {
     /**
-     * Generates tile indices to use with the map.
+     * @param seed the seed every random value of the generator is derived from.
+     */
+    void setSeed(long seed);
+
+    /**
+     * Prepares the state shared by every region, called once before any region is generated.
      * @param xLength the x length of the map.
      * @param yLength the y length of the map.
      * @param zLength the z length of the map.
-     * @return the generated tile indices.
      */
-    byte[][][] generate(int xLength, int yLength, int zLength);
+    void prepare(int xLength, int yLength, int zLength);
+
+    /**
+     * Generates the tiles of a region, only tiles that are not empty have to be set.
+     * @param start the first index of the region.
+     * @param end the last index of the region.
+     * @param sink the sink to write the tiles of the region to.
+     */
+    void generate(Vector3Int start, Vector3Int end, TileSink sink);
 }
@@ -0,0 +1,113 @@
+package com.halboom.pgt.terrainsystem.generator;
+
+import com.halboom.pgt.pgutil.math.Vector3Int;
+import com.halboom.pgt.pgutil.voxel.VoxelGrid;
+
+import java.util.BitSet;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Generates a region of the map on a fork join pool by splitting it into blocks of columns.
+ * Each block is generated into its own buffer and copied into the map while holding the lock of the map,
+ * so the result is the same for any number of threads.
+ */
+public class GeneratorTask extends RecursiveAction {
+    /**
+     * Largest number of columns generated by a single task.
+     */
+    private static final int MAX_COLUMNS = 256;
+
+    /**
+     * Generator to generate with.
+     */
+    private final Generator generator;
+
+    /**
+     * Tiles to write the generated region to.
+     */
+    private final VoxelGrid tiles;
+
+    /**
+     * First and last index of the region.
+     */
+    private final Vector3Int start, end;
+
+    /**
+     * Creates a task generating the whole map, the generator must already be prepared.
+     * @param generator the generator to generate with.
+     * @param tiles the tiles to write to.
+     */
+    public GeneratorTask(Generator generator, VoxelGrid tiles) {
+        this(generator, tiles, new Vector3Int(0, 0, 0),
+                new Vector3Int(tiles.getLengthX() - 1, tiles.getLengthY() - 1, tiles.getLengthZ() - 1));
+    }
+
+    /**
+     * Creates a task generating a region, the generator must already be prepared.
+     * @param generator the generator to generate with.
+     * @param tiles the tiles to write to.
+     * @param start the first index of the region.
+     * @param end the last index of the region.
+     */
+    public GeneratorTask(Generator generator, VoxelGrid tiles, Vector3Int start, Vector3Int end) {
+        this.generator = generator;
+        this.tiles = tiles;
+        this.start = start;
+        this.end = end;
+    }
+
+    /**
+     * Generates a region on the calling thread.
+     * @param generator the prepared generator to generate with.
+     * @param tiles the tiles to write to.
+     * @param start the first index of the region.
+     * @param end the last index of the region.
+     */
+    public static void generateRegion(Generator generator, VoxelGrid tiles, Vector3Int start, Vector3Int end) {
+        generateRegion(generator, tiles, start, end, null);
+    }
+
+    /**
+     * Generates a region on the calling thread without replacing tiles that were edited before it finished.
+     * The kept tiles are only read while holding the lock of the tiles so writers must hold it to change them.
+     * @param generator the prepared generator to generate with.
+     * @param tiles the tiles to write to.
+     * @param start the first index of the region.
+     * @param end the last index of the region.
+     * @param keptTiles the tiles to leave as they are indexed by (x * length y + y) * length z + z within the region,
+     *                  null to write every tile.
+     */
+    public static void generateRegion(Generator generator, VoxelGrid tiles, Vector3Int start, Vector3Int end,
+                                      BitSet keptTiles) {
+        if (start.x > end.x || start.y > end.y || start.z > end.z) {
+            return;
+        }
+        RegionBuffer buffer = new RegionBuffer(start, end);
+        generator.generate(start, end, buffer);
+        synchronized (tiles) {
+            buffer.copyTo(tiles, keptTiles);
+        }
+    }
+
+    @Override
+    protected void compute() {
+        int lengthX = end.x - start.x + 1;
+        int lengthZ = end.z - start.z + 1;
+        if (lengthX * lengthZ <= MAX_COLUMNS) {
+            generateRegion(generator, tiles, start, end);
+            return;
+        }
+        // Split the longer side in half, whole columns are kept together.
+        Vector3Int firstEnd = new Vector3Int(end.x, end.y, end.z);
+        Vector3Int secondStart = new Vector3Int(start.x, start.y, start.z);
+        if (lengthX >= lengthZ) {
+            firstEnd.x = start.x + lengthX / 2 - 1;
+            secondStart.x = firstEnd.x + 1;
+        } else {
+            firstEnd.z = start.z + lengthZ / 2 - 1;
+            secondStart.z = firstEnd.z + 1;
+        }
+        invokeAll(new GeneratorTask(generator, tiles, start, firstEnd),
+                new GeneratorTask(generator, tiles, secondStart, end));
+    }
+}
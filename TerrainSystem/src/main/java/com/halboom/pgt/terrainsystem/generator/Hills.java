@@ -1,6 +1,6 @@
 package com.halboom.pgt.terrainsystem.generator;
 
-import com.jme3.math.FastMath;
+import com.halboom.pgt.pgutil.math.Vector3Int;
 
 /**
  * Created with IntelliJ IDEA.
@@ -8,56 +8,66 @@ import com.jme3.math.FastMath;
  * Date: 2/20/13
  * Time: 10:24 AM
  * Generates hilly terrain.
+ * Every column draws a random height which is averaged with the heights of the neighbouring columns,
+ * the heights are hashed from the column index so columns can be generated in any order.
  */
-public class Hills implements Generator {
+public class Hills extends SeededGenerator {
+    /**
+     * Salts for each random value of a column.
+     */
+    private static final int SALT_HEIGHT = 0, SALT_OFFSET = 1, SALT_TILE = 2;
+
+    /**
+     * Number of neighbouring columns averaged for the height of a column.
+     */
+    private static final int NEIGHBOURS = 4;
+
+    /**
+     * Length of the map along each axis.
+     */
+    private int lengthX, lengthY, lengthZ;
+
     @Override
-    public byte[][][] generate(int xLength, int yLength, int zLength) {
-        byte[][][] tiles = new byte[xLength][yLength][zLength];
-        int[][] heightMap = new int[xLength][zLength];
-        int height = yLength / 2;
-        for (int x = 0; x < heightMap.length; x++) {
-            for (int z = 0; z < heightMap[x].length; z++) {
-                heightMap[x][z] = FastMath.nextRandomInt(height - height / 5, height + height / 5);
-            }
-        }
-        for (int x = 0; x < tiles.length; x++) {
-            for (int z = 0; z < tiles[x][0].length; z++) {
-                // Get average yLength around the tile.
-                height = 0;
-                if (x > 0) {
-                    height += heightMap[x - 1][z];
-                } else {
-                    height += yLength / 2;
-                }
-                if (x < heightMap.length - 1) {
-                    height += heightMap[x + 1][z];
-                } else {
-                    height += yLength / 2;
-                }
-                if (z > 0) {
-                    height += heightMap[x][z - 1];
-                } else {
-                    height += yLength / 2;
-                }
-                if (z < heightMap[x].length -1) {
-                    height += heightMap[x][z + 1];
-                } else {
-                    height += yLength / 2;
-                }
-                height = height / 4;
+    public void prepare(int xLength, int yLength, int zLength) {
+        this.lengthX = xLength;
+        this.lengthY = yLength;
+        this.lengthZ = zLength;
+    }
 
-                height += FastMath.nextRandomInt(-1, 1);
+    @Override
+    public void generate(Vector3Int start, Vector3Int end, TileSink sink) {
+        for (int x = start.x; x <= end.x; x++) {
+            for (int z = start.z; z <= end.z; z++) {
+                // Get average height around the tile.
+                int height = getColumnHeight(x - 1, z) + getColumnHeight(x + 1, z)
+                        + getColumnHeight(x, z - 1) + getColumnHeight(x, z + 1);
+                height = height / NEIGHBOURS;
+
+                height += randomInt(-1, 1, x, 0, z, SALT_OFFSET);
                 if (height < 0) {
                     height = 0;
-                } else if (height > yLength - 1) {
-                    height = yLength - 1;
+                } else if (height > lengthY - 1) {
+                    height = lengthY - 1;
                 }
-                for (int h = 0; h < height; h++) {
-                    tiles[x][h][z] = (byte) (FastMath.rand.nextInt(2) + 1);
+                int maxY = Math.min(end.y, height - 1);
+                for (int h = start.y; h <= maxY; h++) {
+                    sink.set(x, h, z, (byte) randomInt(1, 2, x, h, z, SALT_TILE));
                 }
             }
         }
+    }
 
-        return tiles;
+    /**
+     * Retrieves the random height of a column before it is averaged.
+     * @param x the x index of the column.
+     * @param z the z index of the column.
+     * @return the height of the column or half the map height outside of the map.
+     */
+    private int getColumnHeight(int x, int z) {
+        int height = lengthY / 2;
+        if (x < 0 || z < 0 || x >= lengthX || z >= lengthZ) {
+            return height;
+        }
+        return randomInt(height - height / 5, height + height / 5, x, 0, z, SALT_HEIGHT);
     }
 }
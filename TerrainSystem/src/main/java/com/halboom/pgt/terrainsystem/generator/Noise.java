@@ -1,5 +1,7 @@
 package com.halboom.pgt.terrainsystem.generator;
 
+import com.halboom.pgt.pgutil.math.Vector3Int;
+
 import java.util.Random;
 
 /**
@@ -8,13 +10,19 @@ import java.util.Random;
  * Date: 2/20/13
  * Time: 10:19 AM
  * Generates terrain randomly using the Diamond Square algorithm.
+ * The height map is generated once for the whole map when prepared and regions only fill in its columns.
  */
-public class Noise implements Generator {
+public class Noise extends SeededGenerator {
     /**
-     * Maximum height of the generator.
+     * Maximum height of the generator, 0 to use the height of the map.
      */
     private int maxHeight;
 
+    /**
+     * Height of each column of the prepared map.
+     */
+    private int[][] heights = new int[0][0];
+
     /**
      * Initializes the generator.
      */
@@ -33,9 +41,10 @@ public class Noise implements Generator {
      * Generates the map given the dimensions.
      * Size of grid to generate, note this must be a value 2^n+1.
      * @param dimensions the dimensions of the map which must be in the power of 2^n + 1.
+     * @param r the random values to offset the points with.
      * @return the generated map.
      */
-    private double[][] generateMap(int dimensions) {
+    private double[][] generateMap(int dimensions, Random r) {
         // An initial seed value for the corners of the data.
         final double seed = 1000.0;
         final double points = 4.0;
@@ -49,8 +58,6 @@ public class Noise implements Generator {
         // The range (-h -> +h) for the average offset.
         final double startingRange = 500.0;
         double range = startingRange;
-        // Used for the new value in range of h.
-        Random r = new Random();
         // Side length is distance of a single square side or distance of diagonal in diamond.
         // Side length must be >= 2 so we always have a new value (if its 1 we overwrite existing values on the last iteration).
         // Each iteration we are looking at smaller squares diamonds, and we decrease the variation of the offset.
@@ -108,14 +115,14 @@ public class Noise implements Generator {
     }
 
     @Override
-    public byte[][][] generate(int xLength, int yLength, int zLength) {
-        if (maxHeight == 0) {
-            maxHeight = yLength;
+    public void prepare(int xLength, int yLength, int zLength) {
+        int height = maxHeight;
+        if (height == 0) {
+            height = yLength;
         }
 
-        double[][] map = generateMap(xLength + 1);
+        double[][] map = generateMap(Math.max(xLength, zLength) + 1, createRandom());
 
-        //print out the data
         double min = Double.MAX_VALUE;
         double max = Double.MIN_VALUE;
         for (double[] row : map) {
@@ -131,21 +138,28 @@ public class Noise implements Generator {
         // Difference of the max value and min value which will be used for normalization.
         double difference = max - min;
 
-        byte[][][] tiles = new byte[xLength][yLength][zLength];
+        heights = new int[xLength][zLength];
+        for (int x = 0; x < xLength; x++) {
+            for (int z = 0; z < zLength; z++) {
+                heights[x][z] = (int) ((map[x][z] - min) / difference * height);
+            }
+        }
+    }
 
-        for (int x = 0; x < tiles.length; x++) {
-            for (int z = 0; z < tiles[x][0].length; z++) {
-                int height = (int) ((map[x][z] - min) / difference * maxHeight);
-                for (int y = 0; y < height; y++) {
+    @Override
+    public void generate(Vector3Int start, Vector3Int end, TileSink sink) {
+        for (int x = start.x; x <= end.x; x++) {
+            for (int z = start.z; z <= end.z; z++) {
+                int height = heights[x][z];
+                int maxY = Math.min(end.y, height - 1);
+                for (int y = start.y; y <= maxY; y++) {
                     if (y == height - 1) {
-                        tiles[x][y][z] = 1;
+                        sink.set(x, y, z, (byte) 1);
                     } else {
-                        tiles[x][y][z] = 2;
+                        sink.set(x, y, z, (byte) 2);
                     }
                 }
             }
         }
-
-        return tiles;
     }
 }
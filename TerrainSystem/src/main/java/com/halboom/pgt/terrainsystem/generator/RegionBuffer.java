@@ -0,0 +1,69 @@
+package com.halboom.pgt.terrainsystem.generator;
+
+import com.halboom.pgt.pgutil.math.Vector3Int;
+import com.halboom.pgt.pgutil.voxel.VoxelGrid;
+
+import java.util.BitSet;
+
+/**
+ * Holds the tiles of a region while it is generated so the map is only locked while the region is copied.
+ */
+public class RegionBuffer implements TileSink {
+    /**
+     * First index of the region.
+     */
+    private final Vector3Int start = new Vector3Int();
+
+    /**
+     * Number of tiles along each axis of the region.
+     */
+    private final int lengthX, lengthY, lengthZ;
+
+    /**
+     * Tiles of the region indexed by (x * lengthY + y) * lengthZ + z.
+     */
+    private final byte[] tiles;
+
+    /**
+     * Creates an empty buffer.
+     * @param start the first index of the region.
+     * @param end the last index of the region.
+     */
+    public RegionBuffer(Vector3Int start, Vector3Int end) {
+        this.start.set(start);
+        lengthX = end.x - start.x + 1;
+        lengthY = end.y - start.y + 1;
+        lengthZ = end.z - start.z + 1;
+        tiles = new byte[lengthX * lengthY * lengthZ];
+    }
+
+    @Override
+    public void set(int x, int y, int z, byte tile) {
+        int localX = x - start.x;
+        int localY = y - start.y;
+        int localZ = z - start.z;
+        if (localX >= 0 && localX < lengthX && localY >= 0 && localY < lengthY && localZ >= 0 && localZ < lengthZ) {
+            tiles[(localX * lengthY + localY) * lengthZ + localZ] = tile;
+        }
+    }
+
+    /**
+     * Writes the tiles of the region to a grid, replacing the tiles that were there.
+     * @param grid the grid to write to.
+     * @param keptTiles the tiles of the grid to leave as they are indexed like the region,
+     *                  null to write every tile.
+     */
+    public void copyTo(VoxelGrid grid, BitSet keptTiles) {
+        int index = 0;
+        for (int x = 0; x < lengthX; x++) {
+            for (int y = 0; y < lengthY; y++) {
+                for (int z = 0; z < lengthZ; z++) {
+                    if (keptTiles == null || !keptTiles.get(index)) {
+                        grid.set(start.x + x, start.y + y, start.z + z, tiles[index]);
+                    }
+                    index++;
+                }
+            }
+        }
+    }
+}
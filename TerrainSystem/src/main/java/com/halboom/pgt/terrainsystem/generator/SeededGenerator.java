@@ -0,0 +1,102 @@
+package com.halboom.pgt.terrainsystem.generator;
+
+import java.util.Random;
+
+/**
+ * Base of the generators that keeps the seed and derives random values from it.
+ * Random values of a tile are hashed from the seed and the index of the tile instead of drawn from a shared
+ * sequence, so they are the same whichever thread generates the tile and in whatever order.
+ */
+public abstract class SeededGenerator implements Generator {
+    /**
+     * Odd constant used to spread the bits of the hashed values.
+     */
+    private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+
+    /**
+     * Number of bits of a hash used for a random float.
+     */
+    private static final int FLOAT_BITS = 24;
+
+    /**
+     * Seed of the generator.
+     */
+    private long seed = 0;
+
+    @Override
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    /**
+     * @return the seed of the generator.
+     */
+    public long getSeed() {
+        return seed;
+    }
+
+    @Override
+    public void prepare(int xLength, int yLength, int zLength) {
+    }
+
+    /**
+     * Creates a sequence of random values for the state prepared before any region is generated.
+     * @return a random number generator seeded by the seed of the generator.
+     */
+    protected final Random createRandom() {
+        return new Random(seed);
+    }
+
+    /**
+     * Hashes the seed with the index of a tile.
+     * @param x the x index.
+     * @param y the y index.
+     * @param z the z index.
+     * @param salt a value to get a different hash for each use of the same tile.
+     * @return the hash of the tile.
+     */
+    protected final long hash(int x, int y, int z, int salt) {
+        long hash = seed;
+        hash = mix(hash + GOLDEN_GAMMA + x);
+        hash = mix(hash + GOLDEN_GAMMA + y);
+        hash = mix(hash + GOLDEN_GAMMA + z);
+        return mix(hash + GOLDEN_GAMMA + salt);
+    }
+
+    /**
+     * Retrieves a random value for a tile.
+     * @param x the x index.
+     * @param y the y index.
+     * @param z the z index.
+     * @param salt a value to get a different random value for each use of the same tile.
+     * @return a value from 0 inclusive to 1 exclusive.
+     */
+    protected final float random(int x, int y, int z, int salt) {
+        return (hash(x, y, z, salt) >>> (Long.SIZE - FLOAT_BITS)) / (float) (1 << FLOAT_BITS);
+    }
+
+    /**
+     * Retrieves a random integer for a tile.
+     * @param min the smallest value.
+     * @param max the largest value.
+     * @param x the x index.
+     * @param y the y index.
+     * @param z the z index.
+     * @param salt a value to get a different random value for each use of the same tile.
+     * @return a value from min to max inclusive.
+     */
+    protected final int randomInt(int min, int max, int x, int y, int z, int salt) {
+        return min + (int) ((hash(x, y, z, salt) >>> 1) % (max - min + 1));
+    }
+
+    /**
+     * Scrambles the bits of a value.
+     * @param value the value to scramble.
+     * @return the scrambled value.
+     */
+    private static long mix(long value) {
+        long mixed = (value ^ (value >>> 30)) * 0xBF58476D1CE4E5B9L;
+        mixed = (mixed ^ (mixed >>> 27)) * 0x94D049BB133111EBL;
+        return mixed ^ (mixed >>> 31);
+    }
+}
@@ -0,0 +1,15 @@
+package com.halboom.pgt.terrainsystem.generator;
+
+/**
+ * Receives the tiles written by a generator.
+ */
+public interface TileSink {
+    /**
+     * Sets a tile, indices outside of the generated region are ignored.
+     * @param x the x index.
+     * @param y the y index.
+     * @param z the z index.
+     * @param tile the tile to set.
+     */
+    void set(int x, int y, int z, byte tile);
+}
@@ -0,0 +1,170 @@
+package com.halboom.pgt.terrainsystem;
+
+import com.halboom.pgt.pgutil.math.Vector3Int;
+import com.halboom.pgt.pgutil.voxel.ArrayVoxelGrid;
+import com.halboom.pgt.pgutil.voxel.VoxelGrid;
+import com.jme3.asset.DesktopAssetManager;
+import com.jme3.scene.Geometry;
+import com.jme3.scene.Mesh;
+import com.jme3.scene.Spatial;
+import com.jme3.scene.VertexBuffer;
+import com.jme3.scene.mesh.IndexBuffer;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Tests for writing quint faces into mesh buffers and patching them in place.
+ */
+public class BufferMeshTest {
+    /**
+     * Types of tiles with a fixed midpoint so meshes can be compared.
+     */
+    private static final byte FIXED = 3, FIXED_OTHER = 4;
+
+    private TileBank tileBank;
+    private TileAtlas atlas;
+    private VoxelGrid tiles;
+    private Vector3Int startIndex;
+    private Vector3Int endIndex;
+
+    @Before
+    public void setUp() throws Exception {
+        tileBank = new TileBank();
+        tileBank.addTile(tileBank.new Tile(0.5f, 0.5f, 0.5f, 0.5f, 0, 0, 1f, false, 1, new int[]{2, 2, 2, 2, 1, 3}));
+        tileBank.addTile(tileBank.new Tile(0.5f, 0.5f, 0.5f, 0.5f, 0, 0, 1f, false, 1, new int[]{4, 4, 4, 4, 4, 4}));
+        atlas = new TileAtlas(new DesktopAssetManager(true), tileBank, null);
+        tiles = new ArrayVoxelGrid(4, 4, 4);
+        startIndex = new Vector3Int(0, 0, 0);
+        endIndex = new Vector3Int(3, 3, 3);
+    }
+
+    /**
+     * Lists the triangles of a mesh that are rendered, skipping the degenerate triangles of unused face slots.
+     * @param spatial the geometry of the mesh.
+     * @return the sorted triangles as their positions, normals and texture coordinates.
+     */
+    private static List<String> getTriangles(Spatial spatial) {
+        Mesh mesh = ((Geometry) spatial).getMesh();
+        FloatBuffer positions = mesh.getFloatBuffer(VertexBuffer.Type.Position);
+        FloatBuffer normals = mesh.getFloatBuffer(VertexBuffer.Type.Normal);
+        FloatBuffer textures = mesh.getFloatBuffer(VertexBuffer.Type.TexCoord);
+        IndexBuffer indices = mesh.getIndexBuffer();
+        List<String> triangles = new ArrayList<String>();
+        for (int triangle = 0; triangle < indices.size() / 3; triangle++) {
+            int first = indices.get(triangle * 3);
+            if (first == indices.get(triangle * 3 + 1) && first == indices.get(triangle * 3 + 2)) {
+                continue;
+            }
+            StringBuilder builder = new StringBuilder();
+            for (int corner = 0; corner < 3; corner++) {
+                int vertex = indices.get(triangle * 3 + corner);
+                builder.append(String.format("(%.3f %.3f %.3f / %.3f %.3f %.3f / %.3f %.3f)",
+                        positions.get(vertex * 3), positions.get(vertex * 3 + 1), positions.get(vertex * 3 + 2),
+                        normals.get(vertex * 3), normals.get(vertex * 3 + 1), normals.get(vertex * 3 + 2),
+                        textures.get(vertex * 2), textures.get(vertex * 2 + 1)));
+            }
+            triangles.add(builder.toString());
+        }
+        Collections.sort(triangles);
+        return triangles;
+    }
+
+    /**
+     * Patches a tile edit into a mesh and checks it renders the same as a fresh merge.
+     */
+    private void checkEdit(BufferMesh mesher, Spatial spatial, int x, int y, int z, byte type) {
+        tiles.set(x, y, z, type);
+        Assert.assertTrue(mesher.update(tiles, 1f, atlas, tileBank, startIndex, endIndex, x, y, z, spatial));
+        Spatial merged = new BufferMesh().merge(tiles, 1f, atlas, tileBank, startIndex, endIndex);
+        Assert.assertEquals(getTriangles(merged), getTriangles(spatial));
+    }
+
+    /**
+     * Checks that the start of a buffer matches another buffer within rounding errors.
+     */
+    private static void checkBuffer(Mesh expected, Mesh actual, VertexBuffer.Type type) {
+        FloatBuffer expectedData = expected.getFloatBuffer(type);
+        FloatBuffer actualData = actual.getFloatBuffer(type);
+        for (int i = 0; i < expectedData.limit(); i++) {
+            Assert.assertEquals(type + " " + i, expectedData.get(i), actualData.get(i), 0.0001f);
+        }
+    }
+
+    @Test
+    /**
+     * Test that the faces written into the buffers match the transformed quints of the quad mesh.
+     */
+    public void testMatchesQuadMesh() throws Exception {
+        for (int x = 0; x < 4; x++) {
+            for (int y = 0; y < 4; y++) {
+                for (int z = 0; z < 4; z++) {
+                    // Mix types and holes so every direction is visible somewhere.
+                    if ((x + y * 2 + z * 3) % 4 != 0) {
+                        tiles.set(x, y, z, (x + z) % 2 == 0 ? FIXED : FIXED_OTHER);
+                    }
+                }
+            }
+        }
+        Mesh expected = ((Geometry) new QuadMesh().merge(tiles, 1f, atlas, tileBank, startIndex, endIndex)).getMesh();
+        Mesh actual = ((Geometry) new BufferMesh().merge(tiles, 1f, atlas, tileBank, startIndex, endIndex)).getMesh();
+        Assert.assertTrue(expected.getTriangleCount() > 0);
+
+        // The buffer mesh only adds spare face slots after the faces.
+        checkBuffer(expected, actual, VertexBuffer.Type.Position);
+        checkBuffer(expected, actual, VertexBuffer.Type.Normal);
+        checkBuffer(expected, actual, VertexBuffer.Type.TexCoord);
+        IndexBuffer expectedIndices = expected.getIndexBuffer();
+        IndexBuffer actualIndices = actual.getIndexBuffer();
+        for (int i = 0; i < expectedIndices.size(); i++) {
+            Assert.assertEquals("Index " + i, expectedIndices.get(i), actualIndices.get(i));
+        }
+    }
+
+    @Test
+    /**
+     * Test that adding and removing tiles patches the mesh to match a fresh merge.
+     */
+    public void testUpdate() throws Exception {
+        for (int x = 0; x < 4; x++) {
+            for (int z = 0; z < 4; z++) {
+                tiles.set(x, 0, z, FIXED);
+            }
+        }
+        BufferMesh mesher = new BufferMesh();
+        Spatial spatial = mesher.merge(tiles, 1f, atlas, tileBank, startIndex, endIndex);
+        Assert.assertEquals(48 * Quint.TRIANGLES, getTriangles(spatial).size());
+
+        // A new tile moves to the spare slots while the tile below loses its top face.
+        checkEdit(mesher, spatial, 1, 1, 1, FIXED);
+        checkEdit(mesher, spatial, 1, 1, 1, (byte) 0);
+        // Neighbours gaining faces move to the spare slots.
+        checkEdit(mesher, spatial, 2, 0, 2, (byte) 0);
+        checkEdit(mesher, spatial, 2, 0, 2, FIXED);
+        // Changing the type only rewrites the faces of the tile.
+        checkEdit(mesher, spatial, 3, 0, 3, FIXED_OTHER);
+    }
+
+    @Test
+    /**
+     * Test that updating fails once the spare slots run out so the chunk is merged again.
+     */
+    public void testUpdateOverflow() throws Exception {
+        tiles.set(0, 0, 0, FIXED);
+        BufferMesh mesher = new BufferMesh();
+        Spatial spatial = mesher.merge(tiles, 1f, atlas, tileBank, startIndex, endIndex);
+
+        // Six used slots and 24 spare ones leave room for four more lone tiles.
+        int[][] lone = {{2, 0, 0}, {0, 2, 0}, {0, 0, 2}, {2, 2, 0}};
+        for (int[] tile : lone) {
+            checkEdit(mesher, spatial, tile[0], tile[1], tile[2], FIXED);
+        }
+        tiles.set(2, 0, 2, FIXED);
+        Assert.assertFalse(mesher.update(tiles, 1f, atlas, tileBank, startIndex, endIndex, 2, 0, 2, spatial));
+    }
+}
@@ -0,0 +1,175 @@
+package com.halboom.pgt.terrainsystem;
+
+import com.halboom.pgt.pgutil.math.Vector3Int;
+import com.halboom.pgt.pgutil.voxel.VoxelGrid;
+import com.jme3.scene.Node;
+import com.jme3.scene.Spatial;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for handing chunk meshes between the render thread and the workers.
+ */
+public class ChunkTest {
+    /**
+     * Mesher counting its resets that fails if it is reset while a worker builds with it.
+     */
+    private static final class CountingMesher implements TileMesher {
+        private boolean isBuilding;
+        private int updateCount;
+        private int dirtyCount;
+        private int destroyCount;
+
+        @Override
+        public Spatial merge(VoxelGrid tiles, float scale, TileAtlas atlas, TileBank tileBank,
+                             Vector3Int startIndex, Vector3Int endIndex) {
+            return new Node();
+        }
+
+        @Override
+        public boolean update(VoxelGrid tiles, float scale, TileAtlas atlas, TileBank tileBank,
+                              Vector3Int startIndex, Vector3Int endIndex, int x, int y, int z, Spatial spatial) {
+            updateCount++;
+            return true;
+        }
+
+        @Override
+        public void setDirty() {
+            Assert.assertFalse("Mesher reset while building", isBuilding);
+            dirtyCount++;
+        }
+
+        @Override
+        public void destroy(Spatial spatial) {
+            Assert.assertFalse("Mesher destroyed while building", isBuilding);
+            destroyCount++;
+        }
+    }
+
+    private Chunk chunk;
+    private CountingMesher mesher;
+
+    @Before
+    public void setUp() throws Exception {
+        chunk = new Chunk(new Vector3Int(0, 0, 0), new Vector3Int(15, 15, 15), 1f);
+        mesher = new CountingMesher();
+        chunk.setMesher(mesher);
+    }
+
+    /**
+     * Starts building a mesh as the chunk updater does before handing the chunk to a worker.
+     */
+    private int startMeshing() {
+        int revision = chunk.startMeshing();
+        mesher.isBuilding = true;
+        return revision;
+    }
+
+    /**
+     * Finishes building a mesh as the chunk updater does once the worker is done.
+     */
+    private boolean finishMeshing(Spatial spatial, int revision) {
+        mesher.isBuilding = false;
+        return chunk.finishMeshing(spatial, revision);
+    }
+
+    @Test
+    /**
+     * Test that a failed mesh is not retried until the chunk changes.
+     */
+    public void testFailedMesh() throws Exception {
+        int revision = startMeshing();
+        Assert.assertFalse(finishMeshing(null, revision));
+        Assert.assertTrue(chunk.getIsMeshFailed());
+        chunk.setDirty();
+        Assert.assertFalse(chunk.getIsMeshFailed());
+    }
+
+    @Test
+    /**
+     * Test that releasing a chunk while it is meshed leaves the mesher alone and discards the mesh.
+     */
+    public void testDetachWhileMeshing() throws Exception {
+        int revision = startMeshing();
+        chunk.detach();
+        chunk.setDirty();
+        Assert.assertFalse(finishMeshing(new Node(), revision));
+        Assert.assertFalse(chunk.getIsMerged());
+        Assert.assertEquals(1, mesher.destroyCount);
+        Assert.assertFalse(chunk.getIsMeshFailed());
+    }
+
+    @Test
+    /**
+     * Test that a mesh failing after the chunk was released does not stop the chunk from meshing again.
+     */
+    public void testFailureAfterDetach() throws Exception {
+        int revision = startMeshing();
+        chunk.detach();
+        Assert.assertFalse(finishMeshing(null, revision));
+        Assert.assertFalse(chunk.getIsMeshFailed());
+        Assert.assertEquals(1, mesher.dirtyCount);
+    }
+
+    @Test
+    /**
+     * Test releasing a merged chunk while it is meshed again at another level of detail.
+     */
+    public void testDetachMergedWhileMeshing() throws Exception {
+        int revision = startMeshing();
+        Assert.assertTrue(finishMeshing(new Node(), revision));
+        Assert.assertTrue(chunk.getIsMerged());
+        revision = startMeshing();
+        chunk.detach();
+        Assert.assertFalse(finishMeshing(new Node(), revision));
+        Assert.assertFalse(chunk.getIsMerged());
+        Assert.assertNull(chunk.getBatchedGeometry());
+    }
+
+    @Test
+    /**
+     * Test changing the level of detail and releasing a chunk while it is meshed at the old level.
+     */
+    public void testLodChangeWhileMeshing() throws Exception {
+        chunk.setMaxLod(2);
+        int revision = startMeshing();
+        Assert.assertTrue(finishMeshing(new Node(), revision));
+        chunk.setLod(1);
+        Assert.assertTrue(chunk.getIsLodStale());
+        revision = startMeshing();
+        chunk.setLod(2);
+        chunk.detach();
+        Assert.assertFalse(finishMeshing(new Node(), revision));
+        Assert.assertFalse(chunk.getIsLodStale());
+        Assert.assertFalse(chunk.getIsMerged());
+        Assert.assertFalse(chunk.getIsMeshFailed());
+    }
+
+    @Test
+    /**
+     * Test that an edit to a merged chunk out of range is not patched or attached.
+     */
+    public void testEditOutOfRange() throws Exception {
+        int revision = startMeshing();
+        Assert.assertTrue(finishMeshing(new Node(), revision));
+        Assert.assertFalse(chunk.updateTile(null, 1f, null, null, 0, 0, 0));
+        Assert.assertEquals(0, mesher.updateCount);
+        Assert.assertFalse(chunk.getIsAttached());
+
+        chunk.setIsInRange(true);
+        Assert.assertTrue(chunk.updateTile(null, 1f, null, null, 0, 0, 0));
+        Assert.assertEquals(1, mesher.updateCount);
+    }
+
+    @Test
+    /**
+     * Test that an edit to an unmerged chunk is left to be merged by the visibility update.
+     */
+    public void testEditUnmerged() throws Exception {
+        chunk.setIsInRange(true);
+        Assert.assertFalse(chunk.updateTile(null, 1f, null, null, 0, 0, 0));
+        Assert.assertFalse(chunk.getIsMerged());
+        Assert.assertEquals(0, mesher.updateCount);
+    }
+}
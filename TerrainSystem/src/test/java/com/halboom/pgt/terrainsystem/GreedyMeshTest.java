@@ -0,0 +1,176 @@
+package com.halboom.pgt.terrainsystem;
+
+import com.halboom.pgt.pgutil.math.Vector3Int;
+import com.halboom.pgt.pgutil.voxel.ArrayVoxelGrid;
+import com.halboom.pgt.pgutil.voxel.VoxelGrid;
+import com.jme3.asset.DesktopAssetManager;
+import com.jme3.scene.Geometry;
+import com.jme3.scene.Node;
+import com.jme3.scene.Spatial;
+import com.jme3.scene.VertexBuffer;
+import com.jme3.scene.mesh.IndexBuffer;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.FloatBuffer;
+
+/**
+ * Tests for merging flat tile faces into larger quads.
+ */
+public class GreedyMeshTest {
+    /**
+     * Jittered tile type of the default tile bank.
+     */
+    private static final byte JITTERED = 1;
+
+    /**
+     * Flat tile types, the first with a texture per direction and the others with a single texture.
+     */
+    private static final byte FLAT = 3, FLAT_A = 4, FLAT_B = 5;
+
+    /**
+     * Atlas textures of the flat tile types.
+     */
+    private static final int TEXTURE_SIDE = 2, TEXTURE_UP = 1, TEXTURE_DOWN = 3, TEXTURE_A = 5, TEXTURE_B = 6;
+
+    private TileBank tileBank;
+    private TileAtlas atlas;
+    private VoxelGrid tiles;
+    private Vector3Int startIndex;
+    private Vector3Int endIndex;
+
+    @Before
+    public void setUp() throws Exception {
+        tileBank = new TileBank();
+        tileBank.addTile(tileBank.new Tile(0.5f, 0.5f, 0.5f, 0.5f, 0, 0, 1f, false, 1,
+                new int[]{TEXTURE_SIDE, TEXTURE_SIDE, TEXTURE_SIDE, TEXTURE_SIDE, TEXTURE_UP, TEXTURE_DOWN}));
+        tileBank.addTile(tileBank.new Tile(0.5f, 0.5f, 0.5f, 0.5f, 0, 0, 1f, false, 1,
+                new int[]{TEXTURE_A, TEXTURE_A, TEXTURE_A, TEXTURE_A, TEXTURE_A, TEXTURE_A}));
+        tileBank.addTile(tileBank.new Tile(0.5f, 0.5f, 0.5f, 0.5f, 0, 0, 1f, false, 1,
+                new int[]{TEXTURE_B, TEXTURE_B, TEXTURE_B, TEXTURE_B, TEXTURE_B, TEXTURE_B}));
+        atlas = new TileAtlas(new DesktopAssetManager(true), tileBank, null);
+        tiles = new ArrayVoxelGrid(16, 16, 16);
+        startIndex = new Vector3Int(0, 0, 0);
+        endIndex = new Vector3Int(15, 15, 15);
+    }
+
+    /**
+     * @return the merged chunk.
+     */
+    private Node merge() {
+        Assert.assertTrue(atlas.isRegionMaterialSupported());
+        return (Node) new GreedyMesh().merge(tiles, 1f, atlas, tileBank, startIndex, endIndex);
+    }
+
+    /**
+     * @param spatial the geometry to count.
+     * @return the number of triangles that are not degenerate.
+     */
+    private static int countTriangles(Spatial spatial) {
+        IndexBuffer indices = ((Geometry) spatial).getMesh().getIndexBuffer();
+        int count = 0;
+        for (int triangle = 0; triangle < indices.size() / 3; triangle++) {
+            int first = indices.get(triangle * 3);
+            if (first != indices.get(triangle * 3 + 1) || first != indices.get(triangle * 3 + 2)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @param node the merged chunk.
+     * @param texture the atlas texture index.
+     * @return the geometry of the merged quads using the texture, null if none.
+     */
+    private Geometry getTextureGeometry(Node node, int texture) {
+        for (Spatial child : node.getChildren()) {
+            if (child instanceof Geometry && ((Geometry) child).getMaterial() == atlas.getRegionMaterial(texture)) {
+                return (Geometry) child;
+            }
+        }
+        return null;
+    }
+
+    @Test
+    /**
+     * Test that a flat floor collapses into a quad per side instead of a quint per tile face.
+     */
+    public void testFlatFloor() throws Exception {
+        for (int x = 0; x < 16; x++) {
+            for (int z = 0; z < 16; z++) {
+                tiles.set(x, 0, z, FLAT);
+            }
+        }
+        Node node = merge();
+        Assert.assertEquals(4, node.getQuantity());
+        Assert.assertEquals(0, countTriangles(node.getChild(0)));
+
+        // The top is a single quad of four vertices instead of 256 quints.
+        Geometry up = getTextureGeometry(node, TEXTURE_UP);
+        Assert.assertEquals(2, countTriangles(up));
+        Assert.assertEquals(4, up.getMesh().getVertexCount());
+        Assert.assertEquals(2, countTriangles(getTextureGeometry(node, TEXTURE_DOWN)));
+        Assert.assertEquals(8, countTriangles(getTextureGeometry(node, TEXTURE_SIDE)));
+
+        // The region texture repeats once per tile across the merged quad.
+        FloatBuffer textures = up.getMesh().getFloatBuffer(VertexBuffer.Type.TexCoord);
+        float maxU = 0;
+        float maxV = 0;
+        for (int vertex = 0; vertex < up.getMesh().getVertexCount(); vertex++) {
+            maxU = Math.max(maxU, textures.get(vertex * 2));
+            maxV = Math.max(maxV, textures.get(vertex * 2 + 1));
+        }
+        Assert.assertEquals(16f, maxU, 0.0001f);
+        Assert.assertEquals(16f, maxV, 0.0001f);
+
+        // The merged top lies on top of the floor.
+        Assert.assertEquals(1f, up.getMesh().getBound().getCenter().y, 0.0001f);
+    }
+
+    @Test
+    /**
+     * Test that faces with different atlas textures are not merged together.
+     */
+    public void testSplitTextures() throws Exception {
+        tiles.set(0, 0, 0, FLAT_A);
+        tiles.set(1, 0, 0, FLAT_A);
+        tiles.set(2, 0, 0, FLAT_B);
+        tiles.set(3, 0, 0, FLAT_B);
+        Node node = merge();
+        Assert.assertEquals(3, node.getQuantity());
+        // Each half has a west or east end, north, south, top and bottom quad.
+        Assert.assertEquals(5 * 2, countTriangles(getTextureGeometry(node, TEXTURE_A)));
+        Assert.assertEquals(5 * 2, countTriangles(getTextureGeometry(node, TEXTURE_B)));
+    }
+
+    @Test
+    /**
+     * Test that only coplanar faces facing the same direction are merged.
+     */
+    public void testDirections() throws Exception {
+        // The top of the lower tile and the bottom of the upper tile lie on the same plane,
+        // the tops of both tiles face the same way on different planes.
+        tiles.set(0, 0, 0, FLAT_A);
+        tiles.set(1, 1, 0, FLAT_A);
+        Node node = merge();
+        Assert.assertEquals(12 * 2, countTriangles(getTextureGeometry(node, TEXTURE_A)));
+    }
+
+    @Test
+    /**
+     * Test that tiles with a randomized midpoint are still meshed as quints.
+     */
+    public void testJitteredTiles() throws Exception {
+        tiles.set(0, 0, 0, JITTERED);
+        tiles.set(1, 0, 0, JITTERED);
+        tiles.set(2, 0, 0, FLAT_A);
+        tiles.set(3, 0, 0, FLAT_A);
+        Node node = merge();
+        Assert.assertEquals(2, node.getQuantity());
+        // Five faces of the end tile and four of the inner tile.
+        Assert.assertEquals(9 * Quint.TRIANGLES, countTriangles(node.getChild(0)));
+        Assert.assertEquals(5 * 2, countTriangles(getTextureGeometry(node, TEXTURE_A)));
+    }
+}
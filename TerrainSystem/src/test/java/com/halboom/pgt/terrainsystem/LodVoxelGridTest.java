@@ -0,0 +1,58 @@
+package com.halboom.pgt.terrainsystem;
+
+import com.halboom.pgt.pgutil.math.Vector3Int;
+import com.halboom.pgt.pgutil.voxel.ArrayVoxelGrid;
+import com.halboom.pgt.pgutil.voxel.VoxelGrid;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests for the downsampled view of the tiles.
+ */
+public class LodVoxelGridTest {
+    @Test
+    /**
+     * Test that cells take the most common type once at least half of their tiles are filled.
+     */
+    public void testSampling() throws Exception {
+        VoxelGrid tiles = new ArrayVoxelGrid(8, 8, 8);
+        LodVoxelGrid view = new LodVoxelGrid(tiles, 2, 2, new Vector3Int(0, 0, 0), new Vector3Int(3, 3, 3));
+        Assert.assertEquals(4, view.getLengthX());
+        tiles.set(0, 0, 0, (byte) 1);
+        tiles.set(1, 0, 0, (byte) 2);
+        tiles.set(0, 1, 0, (byte) 2);
+        Assert.assertEquals(0, view.get(0, 0, 0));
+        tiles.set(1, 1, 0, (byte) 1);
+        Assert.assertEquals(1, view.get(0, 0, 0));
+        tiles.set(0, 0, 1, (byte) 2);
+        Assert.assertEquals(2, view.get(0, 0, 0));
+    }
+
+    @Test
+    /**
+     * Test that writing a cell writes every tile it covers, clipped to the map.
+     */
+    public void testSet() throws Exception {
+        VoxelGrid tiles = new ArrayVoxelGrid(7, 7, 7);
+        LodVoxelGrid view = new LodVoxelGrid(tiles, 2, 2, new Vector3Int(0, 0, 0), new Vector3Int(3, 3, 3));
+        view.set(1, 1, 1, (byte) 3);
+        view.set(3, 3, 3, (byte) 4);
+        for (int x = 0; x < tiles.getLengthX(); x++) {
+            for (int y = 0; y < tiles.getLengthY(); y++) {
+                for (int z = 0; z < tiles.getLengthZ(); z++) {
+                    byte expected = 0;
+                    if (x / 2 == 1 && y / 2 == 1 && z / 2 == 1) {
+                        expected = 3;
+                    } else if (x == 6 && y == 6 && z == 6) {
+                        expected = 4;
+                    }
+                    Assert.assertEquals(expected, tiles.get(x, y, z));
+                }
+            }
+        }
+        Assert.assertEquals(3, view.get(1, 1, 1));
+        Assert.assertEquals(4, view.get(3, 3, 3));
+        view.set(1, 1, 1, (byte) 0);
+        Assert.assertEquals(0, view.get(1, 1, 1));
+    }
+}
@@ -0,0 +1,166 @@
+package com.halboom.pgt.terrainsystem;
+
+import com.halboom.pgt.pgutil.voxel.VoxelGrid;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Tests for batching tile edits on a terrain of 4x4x4 chunks of 16 tiles.
+ */
+public class TileEditBatchTest {
+    /**
+     * Callbacks recording the start index of every changed chunk.
+     */
+    private static final class RecordingCallbacks implements TerrainCallbacks {
+        private final List<String> changed = new ArrayList<String>();
+
+        @Override
+        public void onChunkAttached(Chunk chunk) {
+        }
+
+        @Override
+        public void onChunkChanged(Chunk chunk) {
+            changed.add(chunk.getStartIndex().x + " " + chunk.getStartIndex().y + " " + chunk.getStartIndex().z);
+        }
+
+        @Override
+        public void onChunkRemoved(Chunk chunk) {
+        }
+
+        /**
+         * @return the sorted changed chunks.
+         */
+        private List<String> getChanged() {
+            Collections.sort(changed);
+            return changed;
+        }
+    }
+
+    private Terrain terrain;
+    private RecordingCallbacks callbacks;
+
+    @Before
+    public void setUp() throws Exception {
+        terrain = new Terrain(null, null);
+        callbacks = new RecordingCallbacks();
+        terrain.setCallbacks(callbacks);
+    }
+
+    /**
+     * @return the number of tiles that are not empty.
+     */
+    private int countTiles() {
+        VoxelGrid tiles = terrain.getTiles();
+        int count = 0;
+        for (int x = 0; x < tiles.getLengthX(); x++) {
+            for (int y = 0; y < tiles.getLengthY(); y++) {
+                for (int z = 0; z < tiles.getLengthZ(); z++) {
+                    if (tiles.get(x, y, z) != 0) {
+                        count++;
+                    }
+                }
+            }
+        }
+        return count;
+    }
+
+    @Test
+    /**
+     * Test that each touched chunk is changed once on commit no matter how many of its tiles were edited.
+     */
+    public void testCommit() throws Exception {
+        TileEditBatch batch = terrain.beginEdit();
+        batch.set(5, 5, 5, (byte) 1);
+        batch.set(6, 5, 5, (byte) 1);
+        batch.fillBox(4, 4, 4, 8, 8, 8, (byte) 2);
+        batch.fillSphere(40, 40, 40, 2f, (byte) 1);
+        Assert.assertEquals(1, terrain.getTiles().get(40, 40, 40));
+        Assert.assertTrue(callbacks.getChanged().isEmpty());
+        Assert.assertEquals(2, batch.getDirtyChunkCount());
+
+        batch.commit();
+        Assert.assertEquals("[0 0 0, 32 32 32]", callbacks.getChanged().toString());
+        Assert.assertTrue(batch.getIsCommitted());
+        try {
+            batch.set(1, 1, 1, (byte) 1);
+            Assert.fail("Edited a committed batch.");
+        } catch (IllegalStateException e) {
+            Assert.assertEquals(0, terrain.getTiles().get(1, 1, 1));
+        }
+    }
+
+    @Test
+    /**
+     * Test that chunks sharing a face with an edited border tile are changed too.
+     */
+    public void testNeighbours() throws Exception {
+        TileEditBatch batch = terrain.beginEdit();
+        batch.set(15, 5, 5, (byte) 1);
+        batch.commit();
+        Assert.assertEquals("[0 0 0, 16 0 0]", callbacks.getChanged().toString());
+
+        // Setting a tile to its current type changes nothing.
+        callbacks.changed.clear();
+        batch = terrain.beginEdit();
+        batch.set(15, 5, 5, (byte) 1);
+        Assert.assertEquals(0, batch.getDirtyChunkCount());
+        batch.commit();
+        Assert.assertTrue(callbacks.getChanged().isEmpty());
+    }
+
+    @Test
+    /**
+     * Test that boxes and spheres reaching out of the map only fill the tiles within it.
+     */
+    public void testClipping() throws Exception {
+        TileEditBatch batch = terrain.beginEdit();
+        batch.fillBox(-5, -5, -5, 1, 1, 1, (byte) 1);
+        Assert.assertEquals(8, countTiles());
+        batch.fillBox(62, 62, 62, 70, 70, 70, (byte) 1);
+        Assert.assertEquals(16, countTiles());
+        batch.fillBox(64, 0, 0, 70, 5, 5, (byte) 1);
+        Assert.assertEquals(16, countTiles());
+        // Only the octant of the sphere within the map is filled.
+        batch.fillSphere(63, 0, 63, 1f, (byte) 2);
+        Assert.assertEquals(2, terrain.getTiles().get(63, 0, 63));
+        Assert.assertEquals(2, terrain.getTiles().get(62, 0, 63));
+        Assert.assertEquals(2, terrain.getTiles().get(63, 1, 63));
+        Assert.assertEquals(2, terrain.getTiles().get(63, 0, 62));
+        Assert.assertEquals(0, terrain.getTiles().get(62, 1, 63));
+        Assert.assertEquals(20, countTiles());
+        batch.fillSphere(-10, -10, -10, 3f, (byte) 2);
+        Assert.assertEquals(20, countTiles());
+        batch.commit();
+        Assert.assertEquals("[0 0 0, 48 0 48, 48 48 48]", callbacks.getChanged().toString());
+    }
+
+    @Test
+    /**
+     * Test that queued tile changes wait for the open batch while instant ones do not.
+     */
+    public void testQueuedTiles() throws Exception {
+        TileEditBatch batch = terrain.beginEdit();
+        terrain.addTile((byte) 1, 20, 20, 20, true);
+        terrain.removeTile(5, 5, 5, true);
+        Assert.assertEquals(1, terrain.getTiles().get(20, 20, 20));
+        Assert.assertTrue(callbacks.getChanged().isEmpty());
+        Assert.assertEquals(1, batch.getDirtyChunkCount());
+
+        terrain.addTile((byte) 1, 40, 40, 40, false);
+        Assert.assertEquals("[32 32 32]", callbacks.getChanged().toString());
+
+        callbacks.changed.clear();
+        batch.commit();
+        Assert.assertEquals("[16 16 16]", callbacks.getChanged().toString());
+
+        // Queued changes after the commit are no longer batched.
+        callbacks.changed.clear();
+        terrain.addTile((byte) 1, 21, 20, 20, true);
+        Assert.assertEquals("[16 16 16]", callbacks.getChanged().toString());
+    }
+}
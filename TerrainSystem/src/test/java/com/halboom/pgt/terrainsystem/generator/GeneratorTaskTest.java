@@ -0,0 +1,118 @@
+package com.halboom.pgt.terrainsystem.generator;
+
+import com.halboom.pgt.pgutil.math.Vector3Int;
+import com.halboom.pgt.pgutil.voxel.ChunkedVoxelGrid;
+import com.halboom.pgt.pgutil.voxel.VoxelGrid;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.BitSet;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Tests for generating terrain by region.
+ */
+public class GeneratorTaskTest {
+    private static final int LENGTH = 64;
+
+    /**
+     * Generates a whole map on a pool.
+     */
+    private VoxelGrid generate(Generator generator, long seed, int threads) {
+        generator.setSeed(seed);
+        generator.prepare(LENGTH, LENGTH, LENGTH);
+        VoxelGrid tiles = new ChunkedVoxelGrid(LENGTH, LENGTH, LENGTH);
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            pool.invoke(new GeneratorTask(generator, tiles));
+        } finally {
+            pool.shutdown();
+        }
+        return tiles;
+    }
+
+    private boolean isEqual(VoxelGrid first, VoxelGrid second) {
+        for (int x = 0; x < LENGTH; x++) {
+            for (int y = 0; y < LENGTH; y++) {
+                for (int z = 0; z < LENGTH; z++) {
+                    if (first.get(x, y, z) != second.get(x, y, z)) {
+                        return false;
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
+    @Test
+    /**
+     * Test that the map does not depend on the number of threads.
+     */
+    public void testThreadCount() throws Exception {
+        Assert.assertTrue(isEqual(generate(new Hills(), 42, 1), generate(new Hills(), 42, 4)));
+        Assert.assertTrue(isEqual(generate(new Noise(), 42, 1), generate(new Noise(), 42, 4)));
+        Assert.assertTrue(isEqual(generate(new Dungeon(6, 6), 42, 1), generate(new Dungeon(6, 6), 42, 4)));
+    }
+
+    @Test
+    public void testSeed() throws Exception {
+        Assert.assertTrue(isEqual(generate(new Hills(), 7, 2), generate(new Hills(), 7, 2)));
+        Assert.assertFalse(isEqual(generate(new Hills(), 7, 2), generate(new Hills(), 8, 2)));
+        Assert.assertFalse(isEqual(generate(new Noise(), 7, 2), generate(new Noise(), 8, 2)));
+    }
+
+    @Test
+    /**
+     * Test that generating chunks one at a time gives the same map as generating it at once.
+     */
+    public void testRegions() throws Exception {
+        VoxelGrid whole = generate(new Hills(), 3, 2);
+
+        Hills hills = new Hills();
+        hills.setSeed(3);
+        hills.prepare(LENGTH, LENGTH, LENGTH);
+        VoxelGrid chunked = new ChunkedVoxelGrid(LENGTH, LENGTH, LENGTH);
+        final int chunkSize = 16;
+        // Generate the chunks back to front to make sure the order does not matter.
+        for (int x = LENGTH - chunkSize; x >= 0; x -= chunkSize) {
+            for (int y = LENGTH - chunkSize; y >= 0; y -= chunkSize) {
+                for (int z = LENGTH - chunkSize; z >= 0; z -= chunkSize) {
+                    GeneratorTask.generateRegion(hills, chunked, new Vector3Int(x, y, z),
+                            new Vector3Int(x + chunkSize - 1, y + chunkSize - 1, z + chunkSize - 1));
+                }
+            }
+        }
+        Assert.assertTrue(isEqual(whole, chunked));
+    }
+
+    @Test
+    /**
+     * Test that tiles edited before a region is generated are not replaced by the generated tiles.
+     */
+    public void testKeptTiles() throws Exception {
+        Hills hills = new Hills();
+        hills.setSeed(5);
+        hills.prepare(LENGTH, LENGTH, LENGTH);
+        final int chunkSize = 16;
+        Vector3Int start = new Vector3Int(0, 0, 0);
+        Vector3Int end = new Vector3Int(chunkSize - 1, chunkSize - 1, chunkSize - 1);
+        VoxelGrid generated = new ChunkedVoxelGrid(LENGTH, LENGTH, LENGTH);
+        GeneratorTask.generateRegion(hills, generated, start, end);
+
+        // Dig out the bottom tile and place one at the top before generating.
+        VoxelGrid edited = new ChunkedVoxelGrid(LENGTH, LENGTH, LENGTH);
+        BitSet keptTiles = new BitSet();
+        edited.set(3, 0, 4, (byte) 0);
+        keptTiles.set((3 * chunkSize) * chunkSize + 4);
+        edited.set(5, chunkSize - 1, 6, (byte) 9);
+        keptTiles.set((5 * chunkSize + chunkSize - 1) * chunkSize + 6);
+        GeneratorTask.generateRegion(hills, edited, start, end, keptTiles);
+
+        Assert.assertTrue(generated.get(3, 0, 4) != 0);
+        Assert.assertEquals(0, edited.get(3, 0, 4));
+        Assert.assertEquals(9, edited.get(5, chunkSize - 1, 6));
+        edited.set(3, 0, 4, generated.get(3, 0, 4));
+        edited.set(5, chunkSize - 1, 6, generated.get(5, chunkSize - 1, 6));
+        Assert.assertTrue(isEqual(generated, edited));
+    }
+}